@@ -0,0 +1,53 @@
+package Bench;
+
+import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
+import Model.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountDAOBenchmark {
+
+    @Param({"100", "100000"})
+    public int accountCount;
+
+    private final AccountDAO accountDAO = new JdbcAccountDAO();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Dataset.load(accountCount, 1);
+    }
+
+    @Benchmark
+    public Account getAccountById() {
+        return accountDAO.getAccount(randomAccountID());
+    }
+
+    @Benchmark
+    public Account getAccountByUsername() {
+        return accountDAO.getAccount(Dataset.username(randomAccountID()));
+    }
+
+    private int randomAccountID() {
+        return ThreadLocalRandom.current().nextInt(1, accountCount + 1);
+    }
+}
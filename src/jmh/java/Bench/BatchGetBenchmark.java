@@ -0,0 +1,66 @@
+package Bench;
+
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import Model.VersionedMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a page of messages by message_id, uncached: one query per message against one array-bound query for all of
+ * them. The message_ids are random on every call so H2 cannot reuse a previous result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchGetBenchmark {
+
+    private static final int MESSAGE_COUNT = 100_000;
+
+    @Param({"10", "100"})
+    public int batchSize;
+
+    private final MessageDAO messageDAO = new JdbcMessageDAO();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Dataset.load(100, MESSAGE_COUNT);
+    }
+
+    @Benchmark
+    public void oneByOne(Blackhole blackhole) {
+        for (int messageID : randomMessageIDs())
+            blackhole.consume(messageDAO.getMessage(messageID));
+    }
+
+    @Benchmark
+    public List<VersionedMessage> batch() {
+        return messageDAO.getVersionedMessages(randomMessageIDs());
+    }
+
+    private List<Integer> randomMessageIDs() {
+        List<Integer> messageIDs = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++)
+            messageIDs.add(ThreadLocalRandom.current().nextInt(1, MESSAGE_COUNT + 1));
+        return messageIDs;
+    }
+}
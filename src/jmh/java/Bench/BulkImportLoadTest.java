@@ -0,0 +1,114 @@
+package Bench;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Times importing messages through POST /messages/bulk and exporting them again through GET /messages/export. The
+ * import body is generated as it is sent and the export is counted as it is received, so neither is held in memory on
+ * the client side either.
+ * <pre>
+ *     mvn -Pjmh test-compile exec:exec -Dbench.main=Bench.BulkImportLoadTest -Djmh.args="1000000"
+ * </pre>
+ * The argument is the number of messages, spread over 100 accounts.
+ */
+public final class BulkImportLoadTest {
+
+    private static final int ACCOUNT_COUNT = 100;
+    private static final int PORT = 8083;
+
+    private BulkImportLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int messageCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Dataset.load(ACCOUNT_COUNT, 1);
+        Javalin app = new SocialMediaController().startAPI();
+        app.start(PORT);
+        try {
+            HttpClient webClient = HttpClient.newHttpClient();
+
+            long start = System.nanoTime();
+            HttpRequest importRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:" + PORT + "/messages/bulk"))
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new GeneratedMessages(messageCount)))
+                    .build();
+            HttpResponse<String> imported = webClient.send(importRequest, HttpResponse.BodyHandlers.ofString());
+            double importSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("import: %d messages in %.1f s, %.0f messages/s, status %d, %s%n", messageCount,
+                    importSeconds, messageCount / importSeconds, imported.statusCode(),
+                    imported.body().substring(0, Math.min(200, imported.body().length())));
+
+            start = System.nanoTime();
+            HttpRequest exportRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:" + PORT + "/messages/export"))
+                    .build();
+            long lines = 0;
+            long bytes = 0;
+            try (InputStream body = webClient.send(exportRequest, HttpResponse.BodyHandlers.ofInputStream()).body()) {
+                byte[] buffer = new byte[65536];
+                int read;
+                while ((read = body.read(buffer)) > 0) {
+                    bytes += read;
+                    for (int i = 0; i < read; i++)
+                        if (buffer[i] == '\n')
+                            lines++;
+                }
+            }
+            double exportSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("export: %d lines, %d bytes in %.1f s, %.0f messages/s%n", lines, bytes,
+                    exportSeconds, lines / exportSeconds);
+        } finally {
+            app.stop();
+        }
+    }
+
+    /**
+     * The NDJSON import body, generated a line at a time.
+     */
+    private static final class GeneratedMessages extends InputStream {
+        private final int messageCount;
+        private int next;
+        private byte[] line = new byte[0];
+        private int position;
+
+        GeneratedMessages(int messageCount) {
+            this.messageCount = messageCount;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length && !nextLine())
+                return -1;
+            return line[position++];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == line.length && !nextLine())
+                return -1;
+            int count = Math.min(length, line.length - position);
+            System.arraycopy(line, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean nextLine() {
+            if (next == messageCount)
+                return false;
+            next++;
+            line = ("{\"posted_by\":" + (1 + next % ACCOUNT_COUNT) + ",\"message_text\":\"imported message " + next +
+                    "\",\"time_posted_epoch\":" + (Dataset.FIRST_EPOCH + next) + "}\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package Bench;
+
+import Util.ConnectionUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Fills the database with a synthetic dataset for the benchmarks. Account 1 is "testuser1" and message 1 is
+ * "test message 1" from the test data; the remaining accounts are named "user{account_id}" and the messages are spread
+ * round-robin over every account with increasing time_posted_epoch.
+ */
+public final class Dataset {
+
+    public static final String PASSWORD = "password";
+    public static final long FIRST_EPOCH = 1669947792L;
+    private static final int BATCH_SIZE = 1000;
+
+    private Dataset() {
+    }
+
+    /**
+     * Resets the database and loads accountCount accounts and messageCount messages.
+     */
+    public static void load(int accountCount, int messageCount) {
+        ConnectionUtil.resetTestDatabase();
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement accounts = connection.prepareStatement(
+                    "INSERT INTO account(username, password) VALUES (?,?);")) {
+                for (int id = 2; id <= accountCount; id++) {
+                    accounts.setString(1, username(id));
+                    accounts.setString(2, PASSWORD);
+                    accounts.addBatch();
+                    if (id % BATCH_SIZE == 0)
+                        accounts.executeBatch();
+                }
+                accounts.executeBatch();
+            }
+            try (PreparedStatement messages = connection.prepareStatement(
+                    "INSERT INTO message(posted_by, message_text, time_posted_epoch) VALUES (?,?,?);")) {
+                for (int id = 2; id <= messageCount; id++) {
+                    messages.setInt(1, postedBy(id, accountCount));
+                    messages.setString(2, "benchmark message " + id);
+                    messages.setLong(3, FIRST_EPOCH + id);
+                    messages.addBatch();
+                    if (id % BATCH_SIZE == 0)
+                        messages.executeBatch();
+                }
+                messages.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load the benchmark dataset", e);
+        }
+    }
+
+    /**
+     * @return the username of the account with the given account_id
+     */
+    public static String username(int accountID) {
+        return accountID == 1 ? "testuser1" : "user" + accountID;
+    }
+
+    /**
+     * @return the account_id that posted the message with the given message_id
+     */
+    public static int postedBy(int messageID, int accountCount) {
+        return messageID == 1 ? 1 : 1 + messageID % accountCount;
+    }
+}
@@ -0,0 +1,146 @@
+package Bench;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A closed-loop load test of GET /accounts/{account_id}/messages under each handler mode, with as many concurrent
+ * connections as there are clients. Each client sends its next request as soon as the previous one answers, and the
+ * test reports throughput and latency percentiles per mode and connection count.
+ * <p>
+ * JMH's per-thread model does not stretch to thousands of concurrent connections, so this is a plain main class:
+ * <pre>
+ *     mvn -Pjmh test-compile exec:exec -Dbench.main=Bench.HandlerModeLoadTest -Djmh.args="1000,10000 jetty,executor,virtual 10"
+ * </pre>
+ * The arguments are the connection counts, the handler modes and the seconds measured per run, after a warmup of a
+ * third as long. Client and server share this process and each connection costs a file descriptor on both sides, so
+ * 10000 connections need an open file limit (ulimit -n) well above 20000.
+ */
+public final class HandlerModeLoadTest {
+
+    private static final int ACCOUNT_COUNT = 100;
+    private static final int MESSAGE_COUNT = 10_000;
+    private static final int PORT = 8082;
+    private static final int MAX_SAMPLES = 10_000_000;
+
+    private HandlerModeLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] connectionCounts = Arrays.stream((args.length > 0 ? args[0] : "1000,10000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        String[] modes = (args.length > 1 ? args[1] : "jetty,executor,virtual").split(",");
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Dataset.load(ACCOUNT_COUNT, MESSAGE_COUNT);
+        System.out.printf("%-10s %12s %12s %10s %10s %10s %10s%n",
+                "mode", "connections", "requests/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (int connections : connectionCounts) {
+            for (String mode : modes) {
+                System.setProperty("socialmedia.handler.mode", mode);
+                Javalin app = new SocialMediaController().startAPI();
+                app.start(PORT);
+                try {
+                    run(connections, Math.max(1, seconds / 3), null);
+                    Result result = new Result();
+                    run(connections, seconds, result);
+                    System.out.printf("%-10s %12d %12.0f %10.2f %10.2f %10.2f %10d%n", mode, connections,
+                            result.count() / (double) seconds, result.percentile(0.50), result.percentile(0.99),
+                            result.percentile(1.0), result.errors.get());
+                } finally {
+                    app.stop();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the given number of closed-loop clients for the given time.
+     *
+     * @param result where to record latencies, or null to discard them during warmup
+     */
+    private static void run(int connections, int seconds, Result result) throws InterruptedException {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient webClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch finished = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++)
+            next(webClient, deadline, finished, result);
+        // Requests time out after a minute, so every client has finished well before this unless one was lost.
+        if (!finished.await(seconds + 120, TimeUnit.SECONDS))
+            System.out.println(finished.getCount() + " clients did not finish");
+        clientExecutor.shutdownNow();
+    }
+
+    private static void next(HttpClient webClient, long deadline, CountDownLatch finished, Result result) {
+        long start = System.nanoTime();
+        if (start - deadline >= 0) {
+            finished.countDown();
+            return;
+        }
+        int accountID = ThreadLocalRandom.current().nextInt(1, ACCOUNT_COUNT + 1);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + PORT + "/accounts/" + accountID + "/messages"))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        try {
+            webClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (result != null)
+                    result.record(System.nanoTime() - start, failure == null && response.statusCode() == 200);
+                next(webClient, deadline, finished, result);
+            });
+        } catch (RuntimeException e) {
+            System.out.println("Client stopped: " + e);
+            finished.countDown();
+        }
+    }
+
+    private static final class Result {
+        final long[] latencies = new long[MAX_SAMPLES];
+        final AtomicInteger samples = new AtomicInteger();
+        final AtomicLong errors = new AtomicLong();
+
+        void record(long latencyNanos, boolean ok) {
+            if (!ok)
+                errors.incrementAndGet();
+            int index = samples.getAndIncrement();
+            if (index < MAX_SAMPLES)
+                latencies[index] = latencyNanos;
+        }
+
+        int count() {
+            return Math.min(samples.get(), MAX_SAMPLES);
+        }
+
+        /**
+         * @return the latency at the given quantile in milliseconds
+         */
+        double percentile(double quantile) {
+            int count = count();
+            if (count == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = Math.min(count - 1, (int) Math.ceil(quantile * count) - 1);
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package Bench;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end round trips through SocialMediaController.startAPI over a loopback socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpBenchmark {
+
+    private static final int ACCOUNT_COUNT = 100;
+    private static final int PORT = 8081;
+
+    @Param({"1000", "100000"})
+    public int messageCount;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Dataset.load(ACCOUNT_COUNT, messageCount);
+        // Every request comes from one address and createMessage posts as one account, as no real client would.
+        System.setProperty("socialmedia.ratelimit.enabled", "false");
+        app = new SocialMediaController().startAPI();
+        app.start(PORT);
+        webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUri = "http://localhost:" + PORT;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public String getMessage() throws IOException, InterruptedException {
+        return get("/messages/" + ThreadLocalRandom.current().nextInt(1, messageCount + 1));
+    }
+
+    @Benchmark
+    public String getAccountMessages() throws IOException, InterruptedException {
+        return get("/accounts/" + ThreadLocalRandom.current().nextInt(1, ACCOUNT_COUNT + 1) + "/messages");
+    }
+
+    @Benchmark
+    public String getMessagesPage() throws IOException, InterruptedException {
+        return get("/messages?limit=100&after=" + ThreadLocalRandom.current().nextInt(0, messageCount));
+    }
+
+    @Benchmark
+    public String getAllMessages() throws IOException, InterruptedException {
+        return get("/messages");
+    }
+
+    @Benchmark
+    public String createMessage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUri + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, " +
+                        "\"message_text\": \"benchmark message\", " +
+                        "\"time_posted_epoch\": " + Dataset.FIRST_EPOCH + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private String get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUri + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
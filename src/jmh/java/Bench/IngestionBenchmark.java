@@ -0,0 +1,62 @@
+package Bench;
+
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import Model.Message;
+import Service.MessageIngestor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of concurrent posters, one row per statement versus coalesced into batches by MessageIngestor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"0", "2"})
+    public long maxLatencyMillis;
+
+    private final MessageDAO messageDAO = new JdbcMessageDAO();
+    private MessageIngestor ingestor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Dataset.load(100, 1);
+        ingestor = new MessageIngestor(messageDAO, 10_000, 256, maxLatencyMillis, 1_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ingestor.close();
+    }
+
+    @Benchmark
+    public Message singleRowInsert() {
+        return messageDAO.createMessage(new Message(1, "benchmark message", Dataset.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public Message batchedInsert() {
+        return ingestor.submit(new Message(1, "benchmark message", Dataset.FIRST_EPOCH)).join();
+    }
+}
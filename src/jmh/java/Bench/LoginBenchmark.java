@@ -0,0 +1,71 @@
+package Bench;
+
+import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
+import Model.Account;
+import Service.AccountCache;
+import Service.AccountService;
+import Util.PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login throughput with PBKDF2 password hashes at several work factors. The hasher gets one thread per core and JMH
+ * runs one caller per core, so dividing the score by the number of cores gives logins per second per core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(Threads.MAX)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final int ACCOUNT_COUNT = 10;
+
+    @Param({"100000", "600000"})
+    public int iterations;
+
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Dataset.load(ACCOUNT_COUNT, 1);
+        AccountDAO accountDAO = new JdbcAccountDAO();
+        PasswordHasher hasher = new PasswordHasher(iterations, Runtime.getRuntime().availableProcessors(), 1000);
+        accountService = new AccountService(accountDAO, new AccountCache(accountDAO), hasher);
+        // The dataset stores plaintext passwords; a first login replaces each with a hash.
+        for (int accountID = 1; accountID <= ACCOUNT_COUNT; accountID++)
+            login(accountID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        accountService.close();
+    }
+
+    @Benchmark
+    public Account login() {
+        return login(ThreadLocalRandom.current().nextInt(1, ACCOUNT_COUNT + 1));
+    }
+
+    private Account login(int accountID) {
+        return accountService.loginUser(new Account(Dataset.username(accountID), Dataset.PASSWORD)).join();
+    }
+}
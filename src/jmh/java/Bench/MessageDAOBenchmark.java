@@ -0,0 +1,103 @@
+package Bench;
+
+import DAO.JdbcMessageDAO;
+import DAO.MemoryMessageDAO;
+import DAO.MemoryStore;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same calls against both storage engines. The memory engine is loaded from the database after it is filled and
+ * keeps its log in a temporary file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageDAOBenchmark {
+
+    private static final int ACCOUNT_COUNT = 100;
+
+    @Param({"1000", "100000"})
+    public int messageCount;
+
+    @Param({"jdbc", "memory"})
+    public String engine;
+
+    private MessageDAO messageDAO;
+    private MemoryStore store;
+    private Path logPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        Dataset.load(ACCOUNT_COUNT, messageCount);
+        if (engine.equals("memory")) {
+            logPath = Files.createTempFile("memory", ".log");
+            store = MemoryStore.open(logPath);
+            try (Connection connection = ConnectionUtil.getConnection()) {
+                store.loadFrom(connection);
+            }
+            messageDAO = new MemoryMessageDAO(store);
+        } else {
+            messageDAO = new JdbcMessageDAO();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (store != null) {
+            store.close();
+            Files.delete(logPath);
+        }
+    }
+
+    @Benchmark
+    public Message getMessage() {
+        return messageDAO.getMessage(ThreadLocalRandom.current().nextInt(1, messageCount + 1));
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        return messageDAO.createMessage(new Message(1, "benchmark message", Dataset.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() {
+        return messageDAO.getAllMessages();
+    }
+
+    @Benchmark
+    public List<Message> getMessagesPage() {
+        return messageDAO.getMessagesAfter(ThreadLocalRandom.current().nextInt(0, messageCount), 100);
+    }
+
+    @Benchmark
+    public List<Message> getAccountMessages() {
+        return messageDAO.getAccountMessages(ThreadLocalRandom.current().nextInt(1, ACCOUNT_COUNT + 1));
+    }
+}
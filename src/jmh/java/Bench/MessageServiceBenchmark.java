@@ -0,0 +1,61 @@
+package Bench;
+
+import Model.Message;
+import Service.MessageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The validation in MessageService.createMessage: requests rejected before touching the database, a request rejected
+ * by the account lookup, and a request that is stored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageServiceBenchmark {
+
+    private static final int ACCOUNT_COUNT = 100;
+
+    private MessageService messageService;
+    private final String tooLong = "a".repeat(256);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Dataset.load(ACCOUNT_COUNT, 1000);
+        messageService = new MessageService();
+    }
+
+    @Benchmark
+    public Message rejectBlankText() {
+        return messageService.createMessage(new Message(1, "", Dataset.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public Message rejectTextOver255() {
+        return messageService.createMessage(new Message(1, tooLong, Dataset.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public Message rejectUnknownAccount() {
+        return messageService.createMessage(new Message(ACCOUNT_COUNT + 1, "benchmark message", Dataset.FIRST_EPOCH));
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        return messageService.createMessage(new Message(1, "benchmark message", Dataset.FIRST_EPOCH));
+    }
+}
@@ -0,0 +1,132 @@
+package Bench;
+
+import Model.Message;
+import Util.IntObjectHashMap;
+import Util.JsonUtil;
+import Util.OffHeapMessageTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A store of messageCount messages held on the heap, as Message objects in an IntObjectHashMap the way the memory
+ * store kept them, against the same messages in an {@link OffHeapMessageTable}. Each operation serializes a random
+ * message to JSON, and one in UPDATE_EVERY replaces a message's text, which on the heap leaves old-generation garbage
+ * behind. The trial prints the heap retained by the store and the collections and pause time of every collector over
+ * the measurement; -prof gc adds the allocation rate. It runs on one thread, as neither store is thread safe alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:MaxDirectMemorySize=3g"})
+public class OffHeapMessageBenchmark {
+
+    private static final int UPDATE_EVERY = 10;
+
+    @Param({"heap", "offHeap"})
+    public String store;
+
+    @Param({"5000000"})
+    public int messageCount;
+
+    private IntObjectHashMap<Message> heap;
+    private OffHeapMessageTable table;
+    private long retainedHeapBytes;
+    private long collectionsBefore;
+    private long collectionMillisBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long heapBefore = usedHeapAfterGc();
+        if (store.equals("heap"))
+            heap = new IntObjectHashMap<>();
+        else
+            table = new OffHeapMessageTable();
+        for (int messageID = 1; messageID <= messageCount; messageID++)
+            put(messageID, text(messageID, 0));
+        retainedHeapBytes = usedHeapAfterGc() - heapBefore;
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        // Warmup iterations are counted too; only the last setup before the teardown matters.
+        collectionsBefore = collections();
+        collectionMillisBefore = collectionMillis();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s: %d MiB of heap retained, %d MiB off the heap; last iteration: %d collections, "
+                        + "%d ms paused%n", store, retainedHeapBytes >> 20,
+                table == null ? 0 : table.getOffHeapBytes() >> 20,
+                collections() - collectionsBefore, collectionMillis() - collectionMillisBefore);
+    }
+
+    @Benchmark
+    public byte[] serializeMessage() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int messageID = random.nextInt(messageCount) + 1;
+        if (random.nextInt(UPDATE_EVERY) == 0)
+            put(messageID, text(messageID, random.nextInt()));
+        if (heap != null)
+            return JsonUtil.MESSAGE_WRITER.writeValueAsBytes(heap.get(messageID));
+        ByteArrayOutputStream json = new ByteArrayOutputStream(256);
+        table.writeJson(messageID, messageID, json);
+        return json.toByteArray();
+    }
+
+    private void put(int messageID, String text) {
+        long time = Dataset.FIRST_EPOCH + messageID;
+        if (heap != null)
+            heap.put(messageID, new Message(messageID, messageID % 1000 + 1, text, time));
+        else
+            table.put(messageID, messageID % 1000 + 1, text, time, 0);
+    }
+
+    private static String text(int messageID, int revision) {
+        return "message " + messageID + " revision " + revision + ", padded to a typical length of a post";
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors())
+            count += collector.getCollectionCount();
+        return count;
+    }
+
+    private static long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : collectors())
+            millis += collector.getCollectionTime();
+        return millis;
+    }
+
+    private static List<GarbageCollectorMXBean> collectors() {
+        return ManagementFactory.getGarbageCollectorMXBeans();
+    }
+}
@@ -0,0 +1,72 @@
+package Bench;
+
+import Util.JsonUtil;
+import Util.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a rate limit check: an admitted request, a rejected one, and reading the account from a request body
+ * to key the check by. Keys are remote-address-like strings spread over keyCount buckets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "10000"})
+    public int keyCount;
+
+    private String[] keys;
+    private RateLimiter<String> admitting;
+    private RateLimiter<String> rejecting;
+    private final byte[] body = "{\"posted_by\":1,\"message_text\":\"benchmark message\",\"time_posted_epoch\":1669947792}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++)
+            keys[i] = "10.0." + (i / 256) + "." + (i % 256);
+        admitting = new RateLimiter<>(1e9, 1_000_000, keyCount);
+        rejecting = new RateLimiter<>(1e-3, 1, keyCount);
+        for (String key : keys)
+            rejecting.acquire(key);
+    }
+
+    @Benchmark
+    public long admitted() {
+        return admitting.acquire(randomKey());
+    }
+
+    @Benchmark
+    public long rejected() {
+        return rejecting.acquire(randomKey());
+    }
+
+    @Benchmark
+    public String readPostedBy() {
+        return JsonUtil.readField(body, "posted_by");
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keyCount)];
+    }
+}
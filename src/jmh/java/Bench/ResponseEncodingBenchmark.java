@@ -0,0 +1,105 @@
+package Bench;
+
+import Model.Message;
+import Util.CompressingOutputStream;
+import Util.JsonUtil;
+import Util.Representation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU cost and bytes on the wire of writing a list of messages, as GET /accounts/{account_id}/messages does, in
+ * each format and encoding. The body goes to a sink that only counts bytes, so the time is serialization plus
+ * compression alone. The size of one body is printed when each trial starts.
+ * <p>
+ * encoding is IDENTITY, or GZIP or DEFLATE with the Deflater level after the dash. Message texts are a few words drawn
+ * from a small vocabulary, repetitive like real posts but far from constant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+
+    private static final String[] WORDS = {"the", "a", "message", "hello", "world", "today", "coffee", "great",
+            "new", "post", "java", "server", "love", "this", "morning", "weekend", "check", "out", "my", "photo"};
+
+    @Param({"1000"})
+    public int messageCount;
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public Representation.Format format;
+
+    @Param({"IDENTITY", "GZIP-1", "GZIP-4", "GZIP-6", "DEFLATE-4"})
+    public String encoding;
+
+    private List<Message> messages;
+    private Representation.Encoding contentEncoding;
+    private int level;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        messages = new ArrayList<>(messageCount);
+        for (int id = 1; id <= messageCount; id++) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 0, words = 3 + random.nextInt(12); word < words; word++)
+                text.append(word == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+            messages.add(new Message(id, 1 + random.nextInt(1000), text.toString(), Dataset.FIRST_EPOCH + id));
+        }
+        String[] parts = encoding.split("-");
+        contentEncoding = Representation.Encoding.valueOf(parts[0]);
+        level = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        try {
+            System.out.printf("%n%s %s: %d bytes on the wire%n", format, encoding, write());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the size of the body
+     */
+    @Benchmark
+    public long write() throws IOException {
+        CountingSink sink = new CountingSink();
+        try (OutputStream body = new CompressingOutputStream(sink, contentEncoding, level, 1500, () -> {
+        })) {
+            JsonUtil.MESSAGE_LIST_WRITER.with(format.getFactory()).writeValue(body, messages);
+        }
+        return sink.count;
+    }
+
+    private static final class CountingSink extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+}
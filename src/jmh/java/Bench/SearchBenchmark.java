@@ -0,0 +1,131 @@
+package Bench;
+
+import Model.Message;
+import Service.MessageSearchIndex;
+import Util.ConnectionUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches of the message search index over synthetic messages of eight words each, drawn from a vocabulary of
+ * VOCABULARY_SIZE words "w1", "w2", ... with Zipf-distributed frequencies, so "w1" is in about one message in ten and
+ * "w40000" in about one in thirty thousand. Timestamps run mostly in message_id order with some jitter, as they do
+ * when clients set them.
+ * <p>
+ * likeScan is the search the index replaces, a LIKE '%word%' scan of the message table, over the smaller benchmark
+ * Dataset in H2.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SearchBenchmark {
+
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int WORDS_PER_MESSAGE = 8;
+    private static final int LIMIT = 20;
+    private static final int DATABASE_MESSAGE_COUNT = 100_000;
+
+    @Param({"1000000", "10000000"})
+    public int messageCount;
+
+    private MessageSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double[] cumulative = new double[VOCABULARY_SIZE];
+        double total = 0;
+        for (int rank = 1; rank <= VOCABULARY_SIZE; rank++) {
+            total += 1.0 / rank;
+            cumulative[rank - 1] = total;
+        }
+        Random random = new Random(42);
+        index = new MessageSearchIndex();
+        StringBuilder text = new StringBuilder();
+        for (int id = 1; id <= messageCount; id++) {
+            text.setLength(0);
+            for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                text.append('w').append((rank < 0 ? -rank - 1 : rank) + 1).append(' ');
+            }
+            index.add(new Message(id, 1, text.toString(), Dataset.FIRST_EPOCH + id + random.nextInt(1000)));
+        }
+        System.out.printf("%n%d messages, %d words, %d posting bytes%n", index.getMessageCount(),
+                index.getWordCount(), index.getPostingBytes());
+    }
+
+    @Benchmark
+    public List<Integer> commonWord() {
+        return index.search("w1", LIMIT);
+    }
+
+    @Benchmark
+    public List<Integer> rareWord() {
+        return index.search("w40000", LIMIT);
+    }
+
+    @Benchmark
+    public List<Integer> commonAnd() {
+        return index.search("w1 w2", LIMIT);
+    }
+
+    @Benchmark
+    public List<Integer> rareAnd() {
+        return index.search("w3 w500", LIMIT);
+    }
+
+    @Benchmark
+    public List<Integer> commonPhrase() {
+        return index.search("\"w1 w2\"", LIMIT);
+    }
+
+    @Benchmark
+    public List<Integer> noMatch() {
+        return index.search("w40000 w40001", LIMIT);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        @Setup(Level.Trial)
+        public void setUp() {
+            Dataset.load(100, DATABASE_MESSAGE_COUNT);
+        }
+    }
+
+    @Benchmark
+    public int likeScan(Database database) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "SELECT * FROM message WHERE message_text LIKE ? ORDER BY time_posted_epoch DESC LIMIT ?;")) {
+            preparedStatement.setString(1, "%message 4242%");
+            preparedStatement.setInt(2, LIMIT);
+            int count = 0;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next())
+                    count++;
+            }
+            return count;
+        }
+    }
+}
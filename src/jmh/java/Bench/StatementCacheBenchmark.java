@@ -0,0 +1,63 @@
+package Bench;
+
+import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups by primary key with and without the connection pool's prepared statement cache. JMH runs each
+ * statementCacheSize in its own fork, and the size is set before the pool is first touched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementCacheBenchmark {
+
+    private static final int ACCOUNT_COUNT = 1000;
+    private static final int MESSAGE_COUNT = 100_000;
+
+    @Param({"0", "32"})
+    public int statementCacheSize;
+
+    private MessageDAO messageDAO;
+    private AccountDAO accountDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("socialmedia.pool.statementCacheSize", Integer.toString(statementCacheSize));
+        Dataset.load(ACCOUNT_COUNT, MESSAGE_COUNT);
+        messageDAO = new JdbcMessageDAO();
+        accountDAO = new JdbcAccountDAO();
+    }
+
+    @Benchmark
+    public Message getMessage() {
+        return messageDAO.getMessage(ThreadLocalRandom.current().nextInt(1, MESSAGE_COUNT + 1));
+    }
+
+    @Benchmark
+    public Account getAccount() {
+        return accountDAO.getAccount(ThreadLocalRandom.current().nextInt(1, ACCOUNT_COUNT + 1));
+    }
+}
@@ -0,0 +1,74 @@
+package Bench;
+
+import Model.Message;
+import Service.MessageTimeIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-range queries of the message time index, in hour buckets, over synthetic messages posted about one a second,
+ * so a larger dataset covers a longer span of time while the ranges queried stay the same size: a page of the latest
+ * hour, a page from deep inside a day, and the count of a day. Timestamps run mostly in message_id order with some
+ * jitter, as they do when clients set them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class TimeRangeBenchmark {
+
+    private static final long HOUR = 3600;
+    private static final long DAY = 24 * HOUR;
+    private static final int LIMIT = 100;
+
+    @State(Scope.Benchmark)
+    public static class Index {
+        @Param({"100000", "1000000", "10000000"})
+        public int messageCount;
+
+        MessageTimeIndex index;
+        long lastEpoch;
+        long middleEpoch;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            index = new MessageTimeIndex(HOUR);
+            for (int id = 1; id <= messageCount; id++)
+                index.add(new Message(id, 1, "", Dataset.FIRST_EPOCH + id + random.nextInt(60)));
+            lastEpoch = Dataset.FIRST_EPOCH + messageCount;
+            middleEpoch = Dataset.FIRST_EPOCH + messageCount / 2;
+            System.out.printf("%n%d messages, %d buckets%n", index.getMessageCount(), index.getBucketCount());
+        }
+    }
+
+    @Benchmark
+    public List<Integer> latestHour(Index index) {
+        return index.index.page(index.lastEpoch - HOUR, index.lastEpoch, Integer.MAX_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public List<Integer> deepInDay(Index index) {
+        return index.index.page(index.middleEpoch - DAY / 2, index.middleEpoch, Integer.MAX_VALUE, LIMIT);
+    }
+
+    @Benchmark
+    public int countDay(Index index) {
+        return index.index.count(index.middleEpoch - DAY / 2, index.middleEpoch + DAY / 2);
+    }
+}
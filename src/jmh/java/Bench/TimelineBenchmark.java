@@ -0,0 +1,135 @@
+package Bench;
+
+import DAO.FollowDAO;
+import DAO.JdbcFollowDAO;
+import DAO.JdbcMessageDAO;
+import DAO.MemoryMessageDAO;
+import DAO.MemoryStore;
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Home timelines of an account following thousands of others. Account 1 follows every other account, and every other
+ * account follows account 1, so reading account 1's timeline merges followeeCount authors and a message posted by
+ * account 1 fans out to followeeCount timelines.
+ * <p>
+ * mergeOnRead is the alternative the materialized timeline replaces: joining the follow graph to the messages and
+ * sorting them on every read. With the memory engine, firstPage and deepPage merge the followed accounts' messages on
+ * every read instead, in memory.
+ * <p>
+ * H2 hands back the previous result when a statement runs again with the same parameters and no table has changed
+ * since, so every read here varies its cursor; the first page cursors are all past the newest message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimelineBenchmark {
+
+    private static final int MESSAGE_COUNT = 100_000;
+    private static final int PAGE_SIZE = 50;
+    private static final String MERGE_ON_READ_SQL = "SELECT m.* FROM follow f " +
+            "JOIN message m ON m.posted_by=f.followee_id WHERE f.follower_id=? AND m.time_posted_epoch<=? " +
+            "ORDER BY m.time_posted_epoch DESC, m.message_id DESC LIMIT ?;";
+
+    @Param({"100", "1000", "5000"})
+    public int followeeCount;
+
+    @Param({"jdbc", "memory"})
+    public String engine;
+
+    private MessageDAO messageDAO;
+    private MemoryStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        Dataset.load(followeeCount + 1, MESSAGE_COUNT);
+        FollowDAO followDAO = new JdbcFollowDAO(MESSAGE_COUNT);
+        for (int accountID = 2; accountID <= followeeCount + 1; accountID++)
+            followDAO.follow(1, accountID);
+        try (Connection connection = ConnectionUtil.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO follow(follower_id, followee_id) " +
+                    "SELECT account_id, 1 FROM account WHERE account_id>1;");
+        }
+        if (engine.equals("memory")) {
+            store = MemoryStore.open(null);
+            try (Connection connection = ConnectionUtil.getConnection()) {
+                store.loadFrom(connection);
+            }
+            messageDAO = new MemoryMessageDAO(store);
+        } else {
+            messageDAO = new JdbcMessageDAO();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (store != null)
+            store.close();
+    }
+
+    @Benchmark
+    public List<Message> firstPage() {
+        return messageDAO.getTimeline(1, firstPageCursor(), Integer.MAX_VALUE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Message> deepPage() {
+        long beforeEpoch = Dataset.FIRST_EPOCH + ThreadLocalRandom.current().nextInt(PAGE_SIZE, MESSAGE_COUNT);
+        return messageDAO.getTimeline(1, beforeEpoch, Integer.MAX_VALUE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Message> mergeOnRead() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(MERGE_ON_READ_SQL)) {
+            preparedStatement.setInt(1, 1);
+            preparedStatement.setLong(2, firstPageCursor());
+            preparedStatement.setInt(3, PAGE_SIZE);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<Message> messages = new ArrayList<>();
+                while (resultSet.next())
+                    messages.add(new Message(resultSet.getInt(1), resultSet.getInt(2), resultSet.getString(3),
+                            resultSet.getLong(4)));
+                return messages;
+            }
+        }
+    }
+
+    @Benchmark
+    public Message postToFollowers() {
+        return messageDAO.createMessage(new Message(1, "benchmark message", Dataset.FIRST_EPOCH));
+    }
+
+    private static long firstPageCursor() {
+        return Long.MAX_VALUE - ThreadLocalRandom.current().nextInt(1_000_000);
+    }
+}
@@ -0,0 +1,75 @@
+package Bench;
+
+import DAO.MemoryAccountDAO;
+import DAO.MemoryMessageDAO;
+import DAO.MemoryStore;
+import Model.Account;
+import Model.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Message writes per second to the memory engine under each fsync policy of its write-ahead log. With always, the
+ * concurrent posters share fsyncs; the trial prints how many writes each fsync covered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+    @Param({"never", "interval", "always"})
+    public String fsync;
+
+    private Path walDirectory;
+    private MemoryStore store;
+    private MemoryMessageDAO messageDAO;
+    private final LongAdder writes = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        walDirectory = Files.createTempDirectory("wal");
+        store = MemoryStore.open(walDirectory, 64 << 20, fsync, 100);
+        new MemoryAccountDAO(store).createAccount(new Account("poster", "password"));
+        messageDAO = new MemoryMessageDAO(store);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%d writes, %d fsyncs%n", writes.sum(), store.getFsyncCount());
+        store.close();
+        try (Stream<Path> files = Files.walk(walDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        writes.increment();
+        return messageDAO.createMessage(new Message(1, "benchmark message", Dataset.FIRST_EPOCH));
+    }
+}
@@ -1,21 +1,77 @@
 package Controller;
 
+import DAO.AccountDAO;
+import DAO.MemoryStore;
+import DAO.MessageDAO;
+import DAO.Storage;
 import Model.Account;
+import Model.AccountMessagePage;
+import Model.BulkImportResult;
 import Model.Message;
+import Model.MessagePage;
+import Model.TimeRangePage;
+import Model.TimelinePage;
+import Service.AccountCache;
 import Service.AccountService;
+import Service.FollowService;
+import Service.MessageCache;
+import Service.MessageSearchIndex;
 import Service.MessageService;
+import Util.Config;
+import Util.ConnectionTimeoutException;
+import Util.HandlerExecutor;
+import Util.JsonUtil;
+import Util.Metrics;
+import Util.RateLimitHandler;
+import Util.Representation;
+import Util.RequestMetrics;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.javalin.Javalin;
+import io.javalin.http.BadRequestResponse;
 import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.Header;
+import io.javalin.http.HttpStatus;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.DoubleSupplier;
 
 public class SocialMediaController {
 
-    private final AccountService accountService = new AccountService();
-    private final MessageService messageService = new MessageService();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final AccountDAO accountDAO = Storage.accountDAO();
+    private final AccountCache accountCache = new AccountCache(accountDAO);
+    private final AccountService accountService = new AccountService(accountDAO, accountCache);
+    private final MessageService messageService;
+    private final FollowService followService = new FollowService();
+    private final HandlerExecutor handlerExecutor = new HandlerExecutor();
+
+    private final int defaultPageSize = Config.getInt("messages.pageSize", 100);
+    private final int maxPageSize = Config.getInt("messages.maxPageSize", 1000);
+    private final int maxBatchSize = Config.getInt("messages.maxBatchSize", 1000);
+
+    public SocialMediaController() {
+        this(Storage.messageDAO());
+    }
+
+    /**
+     * @param messageDAO the storage of messages, the configured engine's unless a test substitutes its own
+     */
+    public SocialMediaController(MessageDAO messageDAO) {
+        messageService = new MessageService(accountCache, messageDAO, new MessageCache(messageDAO));
+    }
 
     /**
      * In order for the test cases to work, you will need to write the endpoints in the startAPI() method, as the test
@@ -24,29 +80,79 @@ public class SocialMediaController {
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(JsonUtil.javalinMapper());
+            config.requestLogger.http(new RequestMetrics());
+            // Responses are compressed as they are written by Util.Representation, which also handles deflate.
+            config.compression.none();
+        });
+        registerMetrics();
+
+        // Bots hammer registration, login and posting, so these are limited per remote address and per account before
+        // their handlers run, see Util.RateLimitHandler. Login is limited by the username tried, posting by posted_by.
+        // A bulk import shares the address's posting limit, and as one request may carry any number of messages for
+        // any number of accounts, it is also limited on its own, per address, before its body is read.
+        app.before("/register", new RateLimitHandler("register.ip", HandlerType.POST, Context::ip, 1, 10));
+        app.before("/login", new RateLimitHandler("login.ip", HandlerType.POST, Context::ip, 5, 20));
+        app.before("/login", new RateLimitHandler("login.account", HandlerType.POST,
+                context -> JsonUtil.readField(context.bodyAsBytes(), "username"), 1, 10));
+        RateLimitHandler messagesPerIp = new RateLimitHandler("messages.ip", HandlerType.POST, Context::ip, 50, 200);
+        app.before("/messages", messagesPerIp);
+        app.before("/messages/bulk", messagesPerIp);
+        app.before("/messages/bulk", new RateLimitHandler("messages.bulk.ip", HandlerType.POST, Context::ip, 0.2, 2));
+        app.before("/messages", new RateLimitHandler("messages.account", HandlerType.POST,
+                context -> JsonUtil.readField(context.bodyAsBytes(), "posted_by"), 10, 50));
 
         // As a user, I should be able to create a new Account on the endpoint POST localhost:8080/register.
         // The body will contain a representation of a JSON Account, but will not contain an account_id.
+        // Registration and login hash passwords on the AccountService's own threads, so they bypass handlerExecutor.
         app.post("/register", this::createAccountHandler);
         // As a user, I should be able to verify my login on the endpoint POST localhost:8080/login.
         // The request body will contain a JSON representation of an Account, not containing an account_id.
         app.post("/login", this::loginAccountHandler);
         // As a user, I should be able to submit a new post on the endpoint POST localhost:8080/messages.
         // The request body will contain a JSON representation of a message, which should be persisted to the database, but will not contain a message_id.
-        app.post("/messages", this::createMessageHandler);
+        app.post("/messages", handlerExecutor.wrap(this::createMessageHandler));
         // As a user, I should be able to submit a GET request on the endpoint GET localhost:8080/messages.
-        app.get("/messages", this::getAllMessagesHandler);
+        app.get("/messages", handlerExecutor.wrap(this::getAllMessagesHandler));
+        // Imports messages from newline-delimited JSON, one message per line, and exports every message the same way.
+        app.post("/messages/bulk", handlerExecutor.wrap(this::importMessagesHandler));
+        // Reads many messages by message_id at once, for lists too long for GET /messages?ids=.
+        app.post("/messages/batch", handlerExecutor.wrap(this::getMessagesBatchHandler));
+        app.get("/messages/export", handlerExecutor.wrap(this::exportMessagesHandler));
+        // Searches message_text, see MessageSearchIndex. These are registered before /messages/{message_id} so that
+        // "export" and "search" are not taken for a message_id.
+        app.get("/messages/search", handlerExecutor.wrap(this::searchMessagesHandler));
         // As a user, I should be able to submit a GET request on the endpoint GET localhost:8080/messages/{message_id}.
-        app.get("/messages/{message_id}", this::getMessageHandler);
+        app.get("/messages/{message_id}", handlerExecutor.wrap(this::getMessageHandler));
         // As a User, I should be able to submit a DELETE request on the endpoint DELETE localhost:8080/messages/{message_id}.
-        app.delete("/messages/{message_id}", this::deleteMessageHandler);
+        app.delete("/messages/{message_id}", handlerExecutor.wrap(this::deleteMessageHandler));
         // As a user, I should be able to submit a PATCH request on the endpoint PATCH localhost:8080/messages/{message_id}.
         // The request body should contain a new message_text values to replace the message identified by message_id.
         // The request body can not be guaranteed to contain any other information.
-        app.patch("/messages/{message_id}", this::updateMessageHandler);
+        app.patch("/messages/{message_id}", handlerExecutor.wrap(this::updateMessageHandler));
         // As a user, I should be able to submit a GET request on the endpoint GET localhost:8080/accounts/{account_id}/messages.
-        app.get("/accounts/{account_id}/messages", this::getAccountMessagesHandler);
+        app.get("/accounts/{account_id}/messages", handlerExecutor.wrap(this::getAccountMessagesHandler));
+        // An account follows another with POST localhost:8080/accounts/{account_id}/following/{followee_id} and stops
+        // following it with DELETE on the same endpoint.
+        app.post("/accounts/{account_id}/following/{followee_id}", handlerExecutor.wrap(this::followHandler));
+        app.delete("/accounts/{account_id}/following/{followee_id}", handlerExecutor.wrap(this::unfollowHandler));
+        app.get("/accounts/{account_id}/following", handlerExecutor.wrap(this::getFolloweesHandler));
+        app.get("/accounts/{account_id}/followers", handlerExecutor.wrap(this::getFollowersHandler));
+        // The messages of the accounts an account follows, newest first, one page at a time.
+        app.get("/accounts/{account_id}/timeline", handlerExecutor.wrap(this::getTimelineHandler));
+        // Metrics in the Prometheus text format, see Util.Metrics.
+        app.get("/metrics", this::metricsHandler);
+
+        // A full message ingestion queue or handler queue, or a connection pool with no connection to lend, means the
+        // database is behind, so ask clients to retry later.
+        app.exception(RejectedExecutionException.class, (exception, context) -> retryLater(context));
+        app.exception(ConnectionTimeoutException.class, (exception, context) -> retryLater(context));
+        app.events(event -> event.serverStopped(() -> {
+            handlerExecutor.close();
+            messageService.close();
+            accountService.close();
+        }));
 
         return app;
     }
@@ -58,14 +164,10 @@ public class SocialMediaController {
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void createAccountHandler(Context context) throws JsonProcessingException {
-        Account input = objectMapper.readValue(context.body(), Account.class);
-        Account account = accountService.createAccount(input);
-
-        if (account == null)
-            context.status(400);
-        else
-            context.json(objectMapper.writeValueAsString(account));
+    private void createAccountHandler(Context context) throws IOException {
+        Account input = JsonUtil.ACCOUNT_READER.readValue(context.bodyAsBytes());
+        context.future(() -> accountService.createAccount(input)
+                .thenAccept(account -> writeAccount(context, account, HttpStatus.BAD_REQUEST)));
     }
 
     /**
@@ -75,14 +177,33 @@ public class SocialMediaController {
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void loginAccountHandler(Context context) throws JsonProcessingException {
-        Account input = objectMapper.readValue(context.body(), Account.class);
-        Account account = accountService.loginUser(input);
+    private void loginAccountHandler(Context context) throws IOException {
+        Account input = JsonUtil.ACCOUNT_READER.readValue(context.bodyAsBytes());
+        context.future(() -> accountService.loginUser(input)
+                .thenAccept(account -> writeAccount(context, account, HttpStatus.UNAUTHORIZED)));
+    }
 
-        if (account == null)
-            context.status(401);
-        else
-            context.json(objectMapper.writeValueAsString(account));
+    /**
+     * Responds 503, asking the client to retry in a second.
+     */
+    private static void retryLater(Context context) {
+        context.status(HttpStatus.SERVICE_UNAVAILABLE);
+        context.header(Header.RETRY_AFTER, "1");
+    }
+
+    /**
+     * Writes the account, or responds with the failure status if there is none.
+     */
+    private static void writeAccount(Context context, @Nullable Account account, HttpStatus failure) {
+        if (account == null) {
+            context.status(failure);
+            return;
+        }
+        try {
+            JsonUtil.write(context, JsonUtil.ACCOUNT_WRITER, account);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -92,27 +213,215 @@ public class SocialMediaController {
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void createMessageHandler(Context context) throws JsonProcessingException {
-        Message input = objectMapper.readValue(context.body(), Message.class);
+    private void createMessageHandler(Context context) throws IOException {
+        Message input = JsonUtil.MESSAGE_READER.readValue(context.bodyAsBytes());
         Message message = messageService.createMessage(input);
 
         if (message == null)
             context.status(400);
         else
-            context.json(objectMapper.writeValueAsString(message));
+            JsonUtil.write(context, JsonUtil.MESSAGE_WRITER, message);
     }
 
     /**
      * The response body should contain a JSON representation of a list containing all messages retrieved from the
      * database. It is expected for the list to simply be empty if there are no messages. The response status should
      * always be 200.
+     * <p>
+     * If either of the "after" or "limit" query parameters is given, the response is instead a single page of at most
+     * limit messages with a message_id greater than after, along with the cursor of the next page. An invalid
+     * parameter results in a 400.
+     * <p>
+     * If the "ids" query parameter is given, as comma-separated message_ids, the response is instead the list of those
+     * messages, as by POST /messages/batch.
+     * <p>
+     * If either of the "since" or "until" query parameters is given, as a time_posted_epoch, the response is instead
+     * the messages posted from since to until, both inclusive, newest first: streamed as a list, or a single page of
+     * them as for GET /accounts/{account_id}/messages if either of "before" or "limit" is also given.
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void getAllMessagesHandler(Context context) throws JsonProcessingException {
-        List<Message> messages = messageService.getAllMessages();
+    private void getAllMessagesHandler(Context context) throws IOException {
+        String ids = context.queryParam("ids");
+        if (ids != null) {
+            List<Integer> messageIDs = new ArrayList<>();
+            try {
+                for (String id : ids.split(",")) {
+                    if (!id.isBlank())
+                        messageIDs.add(Integer.parseInt(id.strip()));
+                }
+            } catch (NumberFormatException e) {
+                throw new BadRequestResponse("ids must be a comma-separated list of message_ids");
+            }
+            writeMessages(context, messageIDs);
+            return;
+        }
+        if (TimeRange.isGiven(context)) {
+            getMessagesBetween(context);
+            return;
+        }
+        if (context.queryParam("after") == null && context.queryParam("limit") == null) {
+            streamAllMessages(context);
+            return;
+        }
+
+        int after = context.queryParamAsClass("after", Integer.class)
+                .check(value -> value >= 0, "after must not be negative")
+                .getOrDefault(0);
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(value -> value > 0 && value <= maxPageSize, "limit must be between 1 and " + maxPageSize)
+                .getOrDefault(defaultPageSize);
+
+        // Ask for one extra row to learn whether another page follows without a separate count query.
+        List<Message> messages = messageService.getMessagesAfter(after, limit + 1);
+        Integer next = null;
+        if (messages.size() > limit) {
+            messages = messages.subList(0, limit);
+            next = messages.get(limit - 1).getMessage_id();
+        }
+
+        JsonUtil.write(context, JsonUtil.MESSAGE_PAGE_WRITER, new MessagePage(messages, next));
+    }
+
+    /**
+     * The messages of a time range, newest first, found in the time index: one page of at most limit of them with the
+     * cursor of the next page and the number of messages in the range, or all of them streamed.
+     */
+    private void getMessagesBetween(Context context) throws IOException {
+        TimeRange range = TimeRange.parse(context);
+        if (context.queryParam("before") == null && context.queryParam("limit") == null) {
+            streamMessages(context, consumer ->
+                    messageService.forEachMessageBetween(range.since(), range.until(), consumer));
+            return;
+        }
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(value -> value > 0 && value <= maxPageSize, "limit must be between 1 and " + maxPageSize)
+                .getOrDefault(defaultPageSize);
+        Cursor before = Cursor.parse(context).within(range);
+
+        List<Message> messages = messageService.getMessagesBetween(range.since(), before.epoch(), before.messageID(),
+                limit + 1);
+        String next = null;
+        if (messages.size() > limit) {
+            messages = messages.subList(0, limit);
+            next = Cursor.of(messages.get(limit - 1));
+        }
 
-        context.json(objectMapper.writeValueAsString(messages));
+        JsonUtil.write(context, JsonUtil.TIME_RANGE_PAGE_WRITER,
+                new TimeRangePage(messages, next, messageService.countMessagesBetween(range.since(), range.until())));
+    }
+
+    /**
+     * Writes the JSON array of every message straight from the database cursor to the response, one row at a time, so
+     * memory use does not depend on the number of messages.
+     */
+    private void streamAllMessages(Context context) throws IOException {
+        streamMessages(context, messageService::forEachMessage);
+    }
+
+    /**
+     * Writes the JSON array of the messages the source streams, one at a time as they come. If reading them fails part
+     * way, the response is aborted before the array is closed, as the status has long been sent.
+     */
+    private static void streamMessages(Context context, MessageSource source) throws IOException {
+        try (JsonGenerator generator = JsonUtil.createGenerator(context, null)) {
+            generator.writeStartArray();
+            if (!source.forEach(message -> JsonUtil.MESSAGE_ROW_WRITER.writeValue(generator, message)))
+                throw JsonUtil.abort(context, "Reading the messages failed part way");
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Streams messages to a consumer, as MessageService does for every message or a time range of them.
+     */
+    @FunctionalInterface
+    private interface MessageSource {
+        boolean forEach(MessageDAO.MessageConsumer consumer) throws IOException;
+    }
+
+    /**
+     * The request body should be a JSON array of message_ids. The response body should contain a JSON representation
+     * of a list of the messages that exist among them, in the order they were first requested, each only once; ids of
+     * messages that do not exist are left out. The response status should be 200, or 400 if the body is not an array
+     * of message_ids or holds more than messages.maxBatchSize of them.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getMessagesBatchHandler(Context context) throws IOException {
+        List<Integer> messageIDs;
+        try {
+            messageIDs = JsonUtil.MESSAGE_ID_LIST_READER.readValue(context.bodyAsBytes());
+        } catch (JsonProcessingException e) {
+            throw new BadRequestResponse("the body must be a JSON array of message_ids");
+        }
+        if (messageIDs == null || messageIDs.contains(null))
+            throw new BadRequestResponse("the body must be a JSON array of message_ids");
+        writeMessages(context, messageIDs);
+    }
+
+    /**
+     * Writes the messages with the message_ids, read with one query for those that are not cached.
+     */
+    private void writeMessages(Context context, List<Integer> messageIDs) throws IOException {
+        if (messageIDs.size() > maxBatchSize)
+            throw new BadRequestResponse("at most " + maxBatchSize + " message_ids may be requested at once");
+        JsonUtil.write(context, messageService.getMessagesJson(messageIDs));
+    }
+
+    /**
+     * The request body is newline-delimited JSON, one message per line without a message_id, read as it arrives. Each
+     * line is validated and created as by POST /messages. The response body should contain a JSON representation of
+     * the number of messages created and failed, and the line number and reason of each failure. The response status
+     * should be 200 even if some lines failed.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void importMessagesHandler(Context context) throws IOException {
+        Reader body = new InputStreamReader(context.bodyInputStream(), StandardCharsets.UTF_8);
+        BulkImportResult result = messageService.importMessages(body);
+
+        JsonUtil.write(context, JsonUtil.BULK_IMPORT_RESULT_WRITER, result);
+    }
+
+    /**
+     * The response body should contain every message as newline-delimited JSON, one message per line in message_id
+     * order, streamed from the database cursor so memory use does not depend on the number of messages. The response
+     * status should always be 200. If reading fails part way the response is aborted, as an export cut off between
+     * lines would otherwise look complete.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void exportMessagesHandler(Context context) throws IOException {
+        try (JsonGenerator generator = JsonUtil.createGenerator(context, NDJSON)) {
+            // Each line ends with its own newline instead of values being separated by spaces.
+            generator.setRootValueSeparator(null);
+            boolean complete = messageService.forEachMessage(message -> {
+                JsonUtil.MESSAGE_ROW_WRITER.writeValue(generator, message);
+                generator.writeRaw('\n');
+            });
+            if (!complete)
+                throw JsonUtil.abort(context, "Reading the messages failed part way");
+        }
+    }
+
+    /**
+     * The response body should contain a JSON representation of a list of at most limit messages whose message_text
+     * contains every word of the "q" query parameter, and each of its double-quoted phrases, ignoring case and
+     * punctuation. The messages are ordered newest first. The response status should be 200, or 400 if q is missing or
+     * blank or limit is invalid.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void searchMessagesHandler(Context context) throws IOException {
+        String query = context.queryParamAsClass("q", String.class)
+                .check(value -> !value.isBlank(), "q must not be blank")
+                .get();
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(value -> value > 0 && value <= maxPageSize, "limit must be between 1 and " + maxPageSize)
+                .getOrDefault(defaultPageSize);
+
+        JsonUtil.write(context, JsonUtil.MESSAGE_LIST_WRITER, messageService.searchMessages(query, limit));
     }
 
     /**
@@ -122,14 +431,14 @@ public class SocialMediaController {
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void getMessageHandler(Context context) throws JsonProcessingException {
+    private void getMessageHandler(Context context) throws IOException {
         int messageID = Integer.parseInt(context.pathParam("message_id"));
-        Message message = messageService.getMessage(messageID);
+        MessageCache.TaggedJson message = messageService.getTaggedMessageJson(messageID);
 
         if (message == null)
             context.status(200);
-        else
-            context.json(objectMapper.writeValueAsString(message));
+        else if (!notModified(context, Representation.of(context).tag(message.getETag())))
+            JsonUtil.write(context, message.getJson());
     }
 
     /**
@@ -138,14 +447,14 @@ public class SocialMediaController {
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void deleteMessageHandler(Context context) throws JsonProcessingException {
+    private void deleteMessageHandler(Context context) throws IOException {
         int messageID = Integer.parseInt(context.pathParam("message_id"));
         Message message = messageService.deleteMessage(messageID);
 
         if (message == null)
             context.status(200);
         else
-            context.json(objectMapper.writeValueAsString(message));
+            JsonUtil.write(context, JsonUtil.MESSAGE_WRITER, message);
     }
 
     /**
@@ -155,28 +464,286 @@ public class SocialMediaController {
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void updateMessageHandler(Context context) throws JsonProcessingException {
+    private void updateMessageHandler(Context context) throws IOException {
         int messageID = Integer.parseInt(context.pathParam("message_id"));
-        Message input = objectMapper.readValue(context.body(), Message.class);
+        Message input = JsonUtil.MESSAGE_READER.readValue(context.bodyAsBytes());
         Message message = messageService.updateMessage(messageID, input);
 
         if (message == null)
             context.status(400);
         else
-            context.json(objectMapper.writeValueAsString(message));
+            JsonUtil.write(context, JsonUtil.MESSAGE_WRITER, message);
     }
 
     /**
      * The response body should contain a JSON representation of a list containing all messages posted by a particular
      * user, which is retrieved from the database. It is expected for the list to simply be empty if there are no
      * messages. The response status should always be 200.
+     * <p>
+     * If either of the "before" or "limit" query parameters is given, the response is instead a single page of at most
+     * limit of the account's messages, newest first, with the cursor of the next page and the account's message count,
+     * as for GET /accounts/{account_id}/timeline. An invalid parameter results in a 400.
+     * <p>
+     * If either of the "since" or "until" query parameters is given, as a time_posted_epoch, only the account's
+     * messages posted from since to until, both inclusive, are listed or paged and counted, newest first; without a
+     * page they are streamed.
      *
      * @param context The Javalin Context object manages information about both the HTTP request and response.
      */
-    private void getAccountMessagesHandler(Context context) throws JsonProcessingException {
+    private void getAccountMessagesHandler(Context context) throws IOException {
         int accountID = Integer.parseInt(context.pathParam("account_id"));
+        // Taken before the messages are read, and answered from memory when the client's copy is current.
+        if (notModified(context, Representation.of(context).tag(messageService.getAccountMessagesETag(accountID))))
+            return;
+        if (context.queryParam("before") != null || context.queryParam("limit") != null) {
+            getAccountMessagesPage(context, accountID);
+            return;
+        }
+        if (TimeRange.isGiven(context)) {
+            TimeRange range = TimeRange.parse(context);
+            streamMessages(context, consumer ->
+                    messageService.forEachAccountMessageBetween(accountID, range.since(), range.until(), consumer));
+            return;
+        }
         List<Message> messages = messageService.getAccountMessages(accountID);
 
-        context.json(objectMapper.writeValueAsString(messages));
+        JsonUtil.write(context, JsonUtil.MESSAGE_LIST_WRITER, messages);
+    }
+
+    /**
+     * One page of at most limit of the account's messages in the time range, newest first, with the cursor of the
+     * next page and the number of the account's messages in the range, all found in the account index without reading
+     * the rest of the account's messages.
+     */
+    private void getAccountMessagesPage(Context context, int accountID) throws IOException {
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(value -> value > 0 && value <= maxPageSize, "limit must be between 1 and " + maxPageSize)
+                .getOrDefault(defaultPageSize);
+        TimeRange range = TimeRange.parse(context);
+        Cursor before = Cursor.parse(context).within(range);
+
+        List<Message> messages = messageService.getAccountMessagesPage(accountID, range.since(), before.epoch(),
+                before.messageID(), limit + 1);
+        String next = null;
+        if (messages.size() > limit) {
+            messages = messages.subList(0, limit);
+            next = Cursor.of(messages.get(limit - 1));
+        }
+
+        JsonUtil.write(context, JsonUtil.ACCOUNT_MESSAGE_PAGE_WRITER,
+                new AccountMessagePage(messages, next,
+                        messageService.countAccountMessages(accountID, range.since(), range.until())));
+    }
+
+    /**
+     * Sets the ETag of the response and answers 304 Not Modified with no body if it matches If-None-Match, which may
+     * list several ETags or be "*".
+     *
+     * @return whether the response is complete
+     */
+    private static boolean notModified(Context context, String etag) {
+        context.header(Header.ETAG, etag);
+        String ifNoneMatch = context.header(Header.IF_NONE_MATCH);
+        if (ifNoneMatch == null)
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // If-None-Match compares weakly, so a W/ prefix added by a cache does not prevent a match.
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                context.status(HttpStatus.NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If the follow is successful, or the account already followed the followee, the response status should be 200
+     * with an empty body. If either account does not exist or they are the same account, the response status should
+     * be 400. (Client error)
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void followHandler(Context context) {
+        int accountID = Integer.parseInt(context.pathParam("account_id"));
+        int followeeID = Integer.parseInt(context.pathParam("followee_id"));
+
+        context.status(followService.follow(accountID, followeeID) ? 200 : 400);
+    }
+
+    /**
+     * The response status should always be 200 with an empty body, whether or not the account was following the
+     * followee.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void unfollowHandler(Context context) {
+        int accountID = Integer.parseInt(context.pathParam("account_id"));
+        int followeeID = Integer.parseInt(context.pathParam("followee_id"));
+
+        followService.unfollow(accountID, followeeID);
+        context.status(200);
+    }
+
+    /**
+     * The response body should contain a JSON list of the account_ids the account follows, in ascending order. The
+     * response status should always be 200.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getFolloweesHandler(Context context) throws IOException {
+        int accountID = Integer.parseInt(context.pathParam("account_id"));
+
+        JsonUtil.write(context, JsonUtil.ACCOUNT_ID_LIST_WRITER, followService.getFollowees(accountID));
+    }
+
+    /**
+     * The response body should contain a JSON list of the account_ids following the account, in ascending order. The
+     * response status should always be 200.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getFollowersHandler(Context context) throws IOException {
+        int accountID = Integer.parseInt(context.pathParam("account_id"));
+
+        JsonUtil.write(context, JsonUtil.ACCOUNT_ID_LIST_WRITER, followService.getFollowers(accountID));
+    }
+
+    /**
+     * The response body should contain one page of at most limit messages posted by the accounts the account follows,
+     * ordered by time_posted_epoch and then message_id, newest first, along with the cursor of the next page. Passing
+     * that cursor as the "before" query parameter fetches the next page. The response status should be 200, or 400 if
+     * a parameter is invalid.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void getTimelineHandler(Context context) throws IOException {
+        int accountID = Integer.parseInt(context.pathParam("account_id"));
+        int limit = context.queryParamAsClass("limit", Integer.class)
+                .check(value -> value > 0 && value <= maxPageSize, "limit must be between 1 and " + maxPageSize)
+                .getOrDefault(defaultPageSize);
+
+        Cursor before = Cursor.parse(context);
+
+        // Ask for one extra row to learn whether another page follows without a separate count query.
+        List<Message> messages = followService.getTimeline(accountID, before.epoch(), before.messageID(), limit + 1);
+        String next = null;
+        if (messages.size() > limit) {
+            messages = messages.subList(0, limit);
+            next = Cursor.of(messages.get(limit - 1));
+        }
+
+        JsonUtil.write(context, JsonUtil.TIMELINE_PAGE_WRITER, new TimelinePage(messages, next));
+    }
+
+    /**
+     * Responds with every metric in the Prometheus text exposition format.
+     *
+     * @param context The Javalin Context object manages information about both the HTTP request and response.
+     */
+    private void metricsHandler(Context context) throws IOException {
+        context.contentType("text/plain; version=0.0.4; charset=utf-8");
+        Writer writer = new OutputStreamWriter(context.outputStream(), StandardCharsets.UTF_8);
+        Metrics.write(writer);
+        writer.flush();
+    }
+
+    /**
+     * Points the cache and handler queue metrics at this controller's instances, replacing those of any controller
+     * started before it.
+     */
+    private void registerMetrics() {
+        registerCacheMetrics("account", accountCache::getHitCount, accountCache::getMissCount,
+                accountCache::getEvictionCount, accountCache::getHitRate);
+        MessageCache messageCache = messageService.getMessageCache();
+        registerCacheMetrics("message", messageCache::getHitCount, messageCache::getMissCount,
+                messageCache::getEvictionCount, messageCache::getHitRate);
+        MessageSearchIndex searchIndex = messageService.getSearchIndex();
+        Metrics.gauge("search_index_messages", "Messages in the search index", searchIndex::getMessageCount);
+        Metrics.gauge("search_index_words", "Distinct words in the search index", searchIndex::getWordCount);
+        Metrics.gauge("account_index_messages", "Messages in the account index",
+                messageService.getAccountIndex()::getMessageCount);
+        Metrics.gauge("time_index_messages", "Messages in the time index",
+                messageService.getTimeIndex()::getMessageCount);
+        Metrics.gauge("time_index_buckets", "Buckets of the time index holding messages",
+                messageService.getTimeIndex()::getBucketCount);
+        Metrics.gauge("search_index_posting_bytes", "Bytes of compressed posting lists in the search index",
+                searchIndex::getPostingBytes);
+        if (Storage.isMemory())
+            Metrics.gauge("memory_store_message_bytes", "Bytes of direct memory holding the memory store's messages",
+                    MemoryStore.get()::getMessageBytes);
+        Metrics.gauge("http_handler_queue_size", "Requests waiting for a handler thread",
+                handlerExecutor::getQueuedHandlers);
+        Metrics.gauge("password_hash_queue_size", "Password hashes waiting for a hashing thread",
+                accountService.getPasswordHasher()::getQueuedHashes);
+    }
+
+    /**
+     * The position in a newest-first page, the time_posted_epoch and message_id of the last message of the previous
+     * page, given as "{time_posted_epoch}:{message_id}" in the "before" query parameter.
+     */
+    private record Cursor(long epoch, int messageID) {
+
+        /**
+         * @return the cursor in the "before" query parameter, or the start of the first page if there is none
+         */
+        static Cursor parse(Context context) {
+            String before = context.queryParam("before");
+            if (before == null)
+                return new Cursor(Long.MAX_VALUE, Integer.MAX_VALUE);
+            int separator = before.indexOf(':');
+            try {
+                return new Cursor(Long.parseLong(before.substring(0, separator)),
+                        Integer.parseInt(before.substring(separator + 1)));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new BadRequestResponse("before must be the next cursor of a previous page");
+            }
+        }
+
+        /**
+         * @return the cursor of the page after the one ending with the message
+         */
+        static String of(Message last) {
+            return last.getTime_posted_epoch() + ":" + last.getMessage_id();
+        }
+
+        /**
+         * @return this cursor, or the start of the first page of the range if that comes after it
+         */
+        Cursor within(TimeRange range) {
+            return epoch > range.until() ? new Cursor(range.until(), Integer.MAX_VALUE) : this;
+        }
+    }
+
+    /**
+     * The time_posted_epoch range from the "since" query parameter to the "until" one, both inclusive, each unbounded
+     * if not given.
+     */
+    private record TimeRange(long since, long until) {
+
+        static boolean isGiven(Context context) {
+            return context.queryParam("since") != null || context.queryParam("until") != null;
+        }
+
+        /**
+         * @return the range in the query parameters, the whole of time if there is none
+         */
+        static TimeRange parse(Context context) {
+            long since = context.queryParamAsClass("since", Long.class).getOrDefault(Long.MIN_VALUE);
+            long until = context.queryParamAsClass("until", Long.class).getOrDefault(Long.MAX_VALUE);
+            if (since > until)
+                throw new BadRequestResponse("since must not be after until");
+            return new TimeRange(since, until);
+        }
+    }
+
+    private static void registerCacheMetrics(String cache, DoubleSupplier hits, DoubleSupplier misses,
+                                             DoubleSupplier evictions, DoubleSupplier hitRate) {
+        Metrics.counter("cache_hits_total", "Cache lookups answered from the cache", hits, "cache", cache);
+        Metrics.counter("cache_misses_total", "Cache lookups that went to the database", misses, "cache", cache);
+        Metrics.counter("cache_evictions_total", "Entries evicted to keep caches bounded", evictions, "cache", cache);
+        Metrics.gauge("cache_hit_ratio", "Fraction of cache lookups that were hits", hitRate, "cache", cache);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package DAO;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * The follow graph. {@link JdbcFollowDAO} keeps it in the H2 database and {@link MemoryFollowDAO} in memory;
+ * {@link Storage} picks one at startup.
+ */
+public interface FollowDAO {
+
+    /**
+     * Records the follow, after which the followee's messages appear in the follower's timeline. Following an account
+     * that is already followed changes nothing.
+     *
+     * @return true if the follower now follows the followee, false if either account does not exist or any error
+     * occurred
+     */
+    boolean follow(int followerID, int followeeID);
+
+    /**
+     * Removes the follow and the followee's messages from the follower's timeline.
+     *
+     * @return true if the follower was following the followee, false if not or if any error occurred
+     */
+    boolean unfollow(int followerID, int followeeID);
+
+    /**
+     * @return the account_ids the account follows in ascending order, empty if none or if no such account exists
+     */
+    @NotNull
+    List<Integer> getFollowees(int accountID);
+
+    /**
+     * @return the account_ids following the account in ascending order, empty if none or if no such account exists
+     */
+    @NotNull
+    List<Integer> getFollowers(int accountID);
+}
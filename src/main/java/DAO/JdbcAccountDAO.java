@@ -0,0 +1,143 @@
+package DAO;
+
+import Model.Account;
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import Util.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.*;
+
+/**
+ * Accounts in the H2 database.
+ */
+public class JdbcAccountDAO implements AccountDAO {
+
+    /*
+     * The statements are constants so that QueryPlanTest can check the plan H2 chooses for each of them.
+     */
+    public static final String INSERT_ACCOUNT_SQL = "INSERT INTO account(username, password) VALUES (?,?);";
+    public static final String SELECT_BY_USERNAME_SQL = "SELECT * FROM account WHERE username=?;";
+    public static final String SELECT_BY_ID_SQL = "SELECT * FROM account WHERE account_id=?;";
+    // Only replaces the password it was read with, so a rehash at login cannot undo a concurrent password change.
+    public static final String UPDATE_PASSWORD_SQL = "UPDATE account SET password=? WHERE account_id=? AND password=?;";
+
+    private static final LatencyHistogram CREATE_ACCOUNT_TIME = Metrics.daoHistogram("AccountDAO", "createAccount");
+    private static final LatencyHistogram GET_ACCOUNT_BY_USERNAME_TIME =
+            Metrics.daoHistogram("AccountDAO", "getAccountByUsername");
+    private static final LatencyHistogram GET_ACCOUNT_BY_ID_TIME = Metrics.daoHistogram("AccountDAO", "getAccountById");
+    private static final LatencyHistogram UPDATE_PASSWORD_TIME = Metrics.daoHistogram("AccountDAO", "updatePassword");
+
+    /**
+     * @param account the account to be created, lacking its generated account_id
+     * @return the created account, populated with its generated account_id or null if any error occurs.
+     */
+    @Override
+    @Nullable
+    public Account createAccount(Account account) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(INSERT_ACCOUNT_SQL,
+                     Statement.RETURN_GENERATED_KEYS)) {
+
+            preparedStatement.setString(1, account.getUsername());
+            preparedStatement.setString(2, account.getPassword());
+
+            preparedStatement.executeUpdate();
+            try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+                if (resultSet.next()) {
+                    int generated_account_id = resultSet.getInt(1);
+                    account.setAccount_id(generated_account_id);
+                    return account;
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            CREATE_ACCOUNT_TIME.recordSince(start);
+        }
+        return null;
+    }
+
+    /**
+     * @return the account for a given username or null if no such account exists
+     */
+    @Override
+    @Nullable
+    public Account getAccount(String username) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_USERNAME_SQL)) {
+
+            preparedStatement.setString(1, username);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    int account_id = resultSet.getInt(1);
+                    String account_username = resultSet.getString(2);
+                    String account_password = resultSet.getString(3);
+
+                    return new Account(account_id, account_username, account_password);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ACCOUNT_BY_USERNAME_TIME.recordSince(start);
+        }
+        return null;
+    }
+
+    /**
+     * @return the account for a given account_id or null if no such account exists
+     */
+    @Override
+    @Nullable
+    public Account getAccount(int account_id) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_ID_SQL)) {
+
+            preparedStatement.setInt(1, account_id);
+
+            try (ResultSet returnedKeys = preparedStatement.executeQuery()) {
+                if (returnedKeys.next()) {
+                    String account_username = returnedKeys.getString(2);
+                    String account_password = returnedKeys.getString(3);
+
+                    return new Account(account_id, account_username, account_password);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ACCOUNT_BY_ID_TIME.recordSince(start);
+        }
+        return null;
+    }
+
+    /**
+     * @param oldPassword the stored password the new one replaces
+     * @param newPassword the password to store, typically a hash
+     * @return true if the password was replaced, false if the account does not exist, its password is no longer
+     * oldPassword, or any error occurred
+     */
+    @Override
+    public boolean updatePassword(int account_id, String oldPassword, String newPassword) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_PASSWORD_SQL)) {
+
+            preparedStatement.setString(1, newPassword);
+            preparedStatement.setInt(2, account_id);
+            preparedStatement.setString(3, oldPassword);
+
+            return preparedStatement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            UPDATE_PASSWORD_TIME.recordSince(start);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,167 @@
+package DAO;
+
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import Util.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The follow graph in the H2 database. Home timelines are materialized when they are written: following an account
+ * copies its most recent messages into the follower's timeline, {@link JdbcMessageDAO} copies each new message into the
+ * timelines of its author's followers, and unfollowing removes the account's messages again.
+ */
+public class JdbcFollowDAO implements FollowDAO {
+
+    /*
+     * The statements are constants so that QueryPlanTest can check the plan H2 chooses for each of them.
+     */
+    public static final String INSERT_FOLLOW_SQL = "INSERT INTO follow(follower_id, followee_id) SELECT ?,? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM follow WHERE follower_id=? AND followee_id=?);";
+    // MERGE rather than INSERT: a message posted while the follow commits may already have been fanned out.
+    public static final String BACKFILL_TIMELINE_SQL =
+            "MERGE INTO timeline(account_id, posted_by, message_id, time_posted_epoch) " +
+            "KEY(account_id, posted_by, message_id) " +
+            "SELECT ?, posted_by, message_id, time_posted_epoch FROM message WHERE posted_by=? " +
+            "ORDER BY time_posted_epoch DESC, message_id DESC LIMIT ?;";
+    public static final String DELETE_FOLLOW_SQL = "DELETE FROM follow WHERE follower_id=? AND followee_id=?;";
+    public static final String DELETE_TIMELINE_SQL = "DELETE FROM timeline WHERE account_id=? AND posted_by=?;";
+    public static final String SELECT_FOLLOWEES_SQL =
+            "SELECT followee_id FROM follow WHERE follower_id=? ORDER BY followee_id;";
+    public static final String SELECT_FOLLOWERS_SQL =
+            "SELECT follower_id FROM follow WHERE followee_id=? ORDER BY follower_id;";
+
+    private static final LatencyHistogram FOLLOW_TIME = Metrics.daoHistogram("FollowDAO", "follow");
+    private static final LatencyHistogram UNFOLLOW_TIME = Metrics.daoHistogram("FollowDAO", "unfollow");
+    private static final LatencyHistogram GET_FOLLOWEES_TIME = Metrics.daoHistogram("FollowDAO", "getFollowees");
+    private static final LatencyHistogram GET_FOLLOWERS_TIME = Metrics.daoHistogram("FollowDAO", "getFollowers");
+
+    private final int backfillSize;
+
+    /**
+     * @param backfillSize how many of an account's most recent messages are copied into a new follower's timeline
+     */
+    public JdbcFollowDAO(int backfillSize) {
+        this.backfillSize = backfillSize;
+    }
+
+    /**
+     * Records the follow and backfills the follower's timeline in one transaction. Following an account that is
+     * already followed changes nothing.
+     *
+     * @return true if the follower now follows the followee, false if either account does not exist or any error
+     * occurred
+     */
+    @Override
+    public boolean follow(int followerID, int followeeID) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement followStatement = connection.prepareStatement(INSERT_FOLLOW_SQL);
+             PreparedStatement backfillStatement = connection.prepareStatement(BACKFILL_TIMELINE_SQL)) {
+            connection.setAutoCommit(false);
+
+            followStatement.setInt(1, followerID);
+            followStatement.setInt(2, followeeID);
+            followStatement.setInt(3, followerID);
+            followStatement.setInt(4, followeeID);
+            if (followStatement.executeUpdate() > 0) {
+                backfillStatement.setInt(1, followerID);
+                backfillStatement.setInt(2, followeeID);
+                backfillStatement.setInt(3, backfillSize);
+                backfillStatement.executeUpdate();
+            }
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            // The pool rolls back the open transaction when the connection is returned.
+            System.out.println(e.getMessage());
+        } finally {
+            FOLLOW_TIME.recordSince(start);
+        }
+        return false;
+    }
+
+    /**
+     * Removes the follow and the followee's messages from the follower's timeline in one transaction.
+     *
+     * @return true if the follower was following the followee, false if not or if any error occurred
+     */
+    @Override
+    public boolean unfollow(int followerID, int followeeID) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement followStatement = connection.prepareStatement(DELETE_FOLLOW_SQL);
+             PreparedStatement timelineStatement = connection.prepareStatement(DELETE_TIMELINE_SQL)) {
+            connection.setAutoCommit(false);
+
+            followStatement.setInt(1, followerID);
+            followStatement.setInt(2, followeeID);
+            if (followStatement.executeUpdate() == 0) {
+                connection.rollback();
+                return false;
+            }
+            timelineStatement.setInt(1, followerID);
+            timelineStatement.setInt(2, followeeID);
+            timelineStatement.executeUpdate();
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            UNFOLLOW_TIME.recordSince(start);
+        }
+        return false;
+    }
+
+    /**
+     * @return the account_ids the account follows in ascending order, empty if none or if no such account exists
+     */
+    @Override
+    @NotNull
+    public List<Integer> getFollowees(int accountID) {
+        long start = System.nanoTime();
+        try {
+            return selectAccountIDs(SELECT_FOLLOWEES_SQL, accountID);
+        } finally {
+            GET_FOLLOWEES_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * @return the account_ids following the account in ascending order, empty if none or if no such account exists
+     */
+    @Override
+    @NotNull
+    public List<Integer> getFollowers(int accountID) {
+        long start = System.nanoTime();
+        try {
+            return selectAccountIDs(SELECT_FOLLOWERS_SQL, accountID);
+        } finally {
+            GET_FOLLOWERS_TIME.recordSince(start);
+        }
+    }
+
+    @NotNull
+    private static List<Integer> selectAccountIDs(String sql, int accountID) {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+
+            preparedStatement.setInt(1, accountID);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<Integer> accountIDs = new ArrayList<>();
+                while (resultSet.next()) {
+                    accountIDs.add(resultSet.getInt(1));
+                }
+                return accountIDs;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return Collections.emptyList();
+    }
+}
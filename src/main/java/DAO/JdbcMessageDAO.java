@@ -0,0 +1,467 @@
+package DAO;
+
+import Model.Message;
+import Model.VersionedMessage;
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import Util.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Messages in the H2 database. Home timelines are materialized: each new message is copied into the timeline table
+ * rows of its author's followers in the same transaction, see {@link JdbcFollowDAO}.
+ */
+public class JdbcMessageDAO implements MessageDAO {
+
+    /*
+     * The statements are constants so that QueryPlanTest can check the plan H2 chooses for each of them.
+     */
+    public static final String INSERT_MESSAGE_SQL =
+            "INSERT INTO message(posted_by,message_text,time_posted_epoch) VALUES (?,?,?);";
+    public static final String SELECT_ALL_SQL = "SELECT * FROM message;";
+    public static final String SELECT_PAGE_SQL = "SELECT * FROM message WHERE message_id>? ORDER BY message_id LIMIT ?;";
+    public static final String SELECT_ALL_ORDERED_SQL = "SELECT * FROM message ORDER BY message_id;";
+    public static final String SELECT_BY_ID_SQL = "SELECT * FROM message WHERE message_id=?;";
+    // The message_ids are bound as one array, so any number of them share a single prepared statement.
+    public static final String SELECT_BY_IDS_SQL = "SELECT * FROM message WHERE message_id = ANY(?);";
+    // Data change delta tables return the affected row from the same statement that changes it, so a delete or an
+    // update and the read of its result are one atomic round trip.
+    public static final String DELETE_BY_ID_SQL =
+            "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id=?);";
+    public static final String UPDATE_TEXT_SQL =
+            "SELECT * FROM FINAL TABLE (UPDATE message SET message_text=?, version=version+1 WHERE message_id=?);";
+    public static final String SELECT_BY_ACCOUNT_SQL = "SELECT * FROM message WHERE posted_by=?;";
+    // Copies a new message into the timeline of every follower of its author, see FollowDAO.
+    public static final String FAN_OUT_SQL =
+            "INSERT INTO timeline(account_id, posted_by, message_id, time_posted_epoch) " +
+            "SELECT follower_id, ?, ?, ? FROM follow WHERE followee_id=?;";
+    // Fans out a whole batch of new messages in one statement, given their message_ids as an array.
+    public static final String FAN_OUT_BATCH_SQL =
+            "INSERT INTO timeline(account_id, posted_by, message_id, time_posted_epoch) " +
+            "SELECT f.follower_id, m.posted_by, m.message_id, m.time_posted_epoch FROM message m " +
+            "JOIN follow f ON f.followee_id=m.posted_by WHERE m.message_id = ANY(?);";
+    // The cursor is the (time_posted_epoch, message_id) of the last message of the previous page. The range on
+    // time_posted_epoch alone lets H2 seek straight to it in the timeline index. H2 only reads rows in index order
+    // when the ORDER BY starts with the index's first column, even one fixed by the WHERE clause, and never for a
+    // join, so the page is cut from the index in a subquery ordered by account_id first.
+    public static final String SELECT_TIMELINE_SQL = "SELECT m.* FROM (SELECT message_id, time_posted_epoch " +
+            "FROM timeline WHERE account_id=? AND time_posted_epoch<=? AND (time_posted_epoch<? OR message_id<?) " +
+            "ORDER BY account_id, time_posted_epoch DESC, message_id DESC LIMIT ?) t " +
+            "JOIN message m ON m.message_id=t.message_id " +
+            "ORDER BY t.time_posted_epoch DESC, t.message_id DESC;";
+
+    private static final int STREAM_FETCH_SIZE = 256;
+
+    private static final LatencyHistogram CREATE_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "createMessage");
+    private static final LatencyHistogram CREATE_MESSAGES_TIME = Metrics.daoHistogram("MessageDAO", "createMessages");
+    private static final LatencyHistogram GET_ALL_MESSAGES_TIME = Metrics.daoHistogram("MessageDAO", "getAllMessages");
+    private static final LatencyHistogram GET_MESSAGES_AFTER_TIME =
+            Metrics.daoHistogram("MessageDAO", "getMessagesAfter");
+    private static final LatencyHistogram FOR_EACH_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "forEachMessage");
+    private static final LatencyHistogram GET_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "getMessage");
+    private static final LatencyHistogram GET_MESSAGES_TIME = Metrics.daoHistogram("MessageDAO", "getMessages");
+    private static final LatencyHistogram DELETE_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "deleteMessage");
+    private static final LatencyHistogram UPDATE_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "updateMessage");
+    private static final LatencyHistogram GET_ACCOUNT_MESSAGES_TIME =
+            Metrics.daoHistogram("MessageDAO", "getAccountMessages");
+    private static final LatencyHistogram GET_TIMELINE_TIME = Metrics.daoHistogram("MessageDAO", "getTimeline");
+
+    /**
+     * Inserts the message and fans it out to the timelines of its author's followers in one transaction.
+     *
+     * @param message a message to be created, lacking a generated message_id
+     * @return the created message with its message_id or null if any error occurred.
+     */
+    @Override
+    @Nullable
+    public Message createMessage(Message message) {
+        long start = System.nanoTime();
+        // To update our message with its generated ID we must pass the flag Statement.RETURN_GENERATED_KEYS
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(INSERT_MESSAGE_SQL,
+                     Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement fanOutStatement = connection.prepareStatement(FAN_OUT_SQL)) {
+            connection.setAutoCommit(false);
+
+            preparedStatement.setInt(1, message.getPosted_by());
+            preparedStatement.setString(2, message.getMessage_text());
+            preparedStatement.setLong(3, message.getTime_posted_epoch());
+
+            preparedStatement.executeUpdate();
+            try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+                if (resultSet.next()) {
+                    message.setMessage_id(resultSet.getInt(1));
+                    setFanOutParameters(fanOutStatement, message);
+                    fanOutStatement.executeUpdate();
+                    connection.commit();
+                    return message;
+                }
+            }
+        } catch (SQLException e) {
+            // The pool rolls back the open transaction when the connection is returned.
+            System.out.println(e.getMessage());
+        } finally {
+            CREATE_MESSAGE_TIME.recordSince(start);
+        }
+        return null;
+    }
+
+    /**
+     * Inserts the messages with a single JDBC batch inside one transaction, so either all of them are created or none
+     * are. The messages are fanned out to their authors' followers by one more statement in the same transaction.
+     *
+     * @param messages messages to be created, lacking generated message_ids
+     * @return true if every message was created and populated with its message_id, false if none were created
+     */
+    @Override
+    public boolean createMessages(List<Message> messages) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(INSERT_MESSAGE_SQL,
+                     Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement fanOutStatement = connection.prepareStatement(FAN_OUT_BATCH_SQL)) {
+            connection.setAutoCommit(false);
+
+            for (Message message : messages) {
+                preparedStatement.setInt(1, message.getPosted_by());
+                preparedStatement.setString(2, message.getMessage_text());
+                preparedStatement.setLong(3, message.getTime_posted_epoch());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+
+            // Generated keys come back in the order the rows were added to the batch.
+            Integer[] messageIDs = new Integer[messages.size()];
+            try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+                for (int i = 0; i < messageIDs.length; i++) {
+                    if (!resultSet.next()) {
+                        connection.rollback();
+                        return false;
+                    }
+                    messageIDs[i] = resultSet.getInt(1);
+                    messages.get(i).setMessage_id(messageIDs[i]);
+                }
+            }
+            fanOutStatement.setArray(1, connection.createArrayOf("INTEGER", messageIDs));
+            fanOutStatement.executeUpdate();
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            // The pool rolls back the open transaction when the connection is returned.
+            System.out.println(e.getMessage());
+        } finally {
+            CREATE_MESSAGES_TIME.recordSince(start);
+        }
+        return false;
+    }
+
+    /**
+     * @return a list of all messages or an empty list if no messaages exist
+     */
+    @Override
+    @NotNull
+    public List<Message> getAllMessages() {
+        long start = System.nanoTime();
+        List<Message> messages = new ArrayList<>();
+        /*
+         * This could be a normal Statement. However,
+         * "If the same SQL statement is executed many times, it may be more efficient to use a PreparedStatement object."
+         * - https://docs.oracle.com/en/java/javase/17/docs/api/java.sql/java/sql/Connection.html#createStatement()
+         */
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_SQL);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+
+            while (resultSet.next()) {
+                messages.add(createMessageFromResultSet(resultSet));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ALL_MESSAGES_TIME.recordSince(start);
+        }
+
+        return messages;
+    }
+
+    /**
+     * Keyset pagination over the primary key: the caller passes the last message_id it has seen instead of an offset,
+     * so every page is a bounded index range scan no matter how deep into the table it is.
+     *
+     * @param afterMessageID only messages with a greater message_id are returned, 0 to start from the beginning
+     * @param limit          the maximum number of messages to return
+     * @return up to limit messages ordered by message_id or an empty list if there are no more messages
+     */
+    @Override
+    @NotNull
+    public List<Message> getMessagesAfter(int afterMessageID, int limit) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_PAGE_SQL)) {
+
+            preparedStatement.setInt(1, afterMessageID);
+            preparedStatement.setInt(2, limit);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<Message> messages = new ArrayList<>();
+                while (resultSet.next()) {
+                    messages.add(createMessageFromResultSet(resultSet));
+                }
+                return messages;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGES_AFTER_TIME.recordSince(start);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Hands every message to the consumer one row at a time, in message_id order, without collecting them. The query
+     * runs lazily so H2 does not buffer the whole result either, which keeps memory constant for any table size.
+     *
+     * @param consumer receives each message as it is read
+     * @return true if every message was handed to the consumer, false if the query failed part way
+     * @throws IOException if the consumer fails, which stops the iteration
+     */
+    @Override
+    public boolean forEachMessage(MessageConsumer consumer) throws IOException {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            try (Statement setting = connection.createStatement()) {
+                setting.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_ORDERED_SQL)) {
+                preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(createMessageFromResultSet(resultSet));
+                    }
+                }
+            } finally {
+                // The connection goes back to the pool, so restore the default for the next borrower.
+                try (Statement setting = connection.createStatement()) {
+                    setting.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            FOR_EACH_MESSAGE_TIME.recordSince(start);
+        }
+        return false;
+    }
+
+    /**
+     * @return the message with the version of its row or null if no message exists
+     */
+    @Override
+    @Nullable
+    public VersionedMessage getVersionedMessage(int messageID) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_ID_SQL)) {
+
+            preparedStatement.setInt(1, messageID);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return createVersionedMessageFromResultSet(resultSet);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGE_TIME.recordSince(start);
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads any number of messages with one query.
+     *
+     * @return the messages that exist among the message_ids with the versions of their rows, in no particular order,
+     * an empty list if none exist, or null if any error occurred
+     */
+    @Override
+    @Nullable
+    public List<VersionedMessage> getVersionedMessages(Collection<Integer> messageIDs) {
+        if (messageIDs.isEmpty())
+            return Collections.emptyList();
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_IDS_SQL)) {
+
+            preparedStatement.setArray(1, connection.createArrayOf("INTEGER", messageIDs.toArray()));
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<VersionedMessage> messages = new ArrayList<>(messageIDs.size());
+                while (resultSet.next()) {
+                    messages.add(createVersionedMessageFromResultSet(resultSet));
+                }
+                return messages;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGES_TIME.recordSince(start);
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the message and reads it back in a single statement. Of several concurrent deletes of the same message,
+     * exactly one gets the message.
+     *
+     * @return the message as it was just before it was deleted or null if no such message was deleted
+     */
+    @Override
+    @Nullable
+    public Message deleteMessage(int messageID) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement deleteStatement = connection.prepareStatement(DELETE_BY_ID_SQL)) {
+
+            deleteStatement.setInt(1, messageID);
+
+            try (ResultSet resultSet = deleteStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return createMessageFromResultSet(resultSet);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            DELETE_MESSAGE_TIME.recordSince(start);
+        }
+        return null;
+    }
+
+    /**
+     * Updates the message and reads it back in a single statement, so the result is exactly the row this update wrote
+     * and not one written by a concurrent update.
+     *
+     * @param message a message containing the updated message_text, other fields are ignored
+     * @return the updated message or null if no such message was updated
+     */
+    @Override
+    @Nullable
+    public Message updateMessage(int messageID, Message message) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_TEXT_SQL)) {
+
+            preparedStatement.setString(1, message.getMessage_text());
+            preparedStatement.setInt(2, messageID);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return createMessageFromResultSet(resultSet);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            UPDATE_MESSAGE_TIME.recordSince(start);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return a possibly empty list of all messages tied to an account or an empty list if no such account exists
+     */
+    @Override
+    @NotNull
+    public List<Message> getAccountMessages(int accountID) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_BY_ACCOUNT_SQL)) {
+
+            preparedStatement.setInt(1, accountID);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<Message> messages = new ArrayList<>();
+                while (resultSet.next()) {
+                    messages.add(createMessageFromResultSet(resultSet));
+                }
+                return messages;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ACCOUNT_MESSAGES_TIME.recordSince(start);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * A page of the account's home timeline: the messages of the accounts it follows, newest first. Pass
+     * Long.MAX_VALUE and Integer.MAX_VALUE as the cursor for the first page.
+     *
+     * @param beforeEpoch     the time_posted_epoch of the last message of the previous page
+     * @param beforeMessageID the message_id of the last message of the previous page
+     * @param limit           the maximum number of messages to return
+     * @return up to limit messages ordered by time_posted_epoch then message_id, both descending, or an empty list if
+     * there are no more messages
+     */
+    @Override
+    @NotNull
+    public List<Message> getTimeline(int accountID, long beforeEpoch, int beforeMessageID, int limit) {
+        long start = System.nanoTime();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(SELECT_TIMELINE_SQL)) {
+
+            preparedStatement.setInt(1, accountID);
+            preparedStatement.setLong(2, beforeEpoch);
+            preparedStatement.setLong(3, beforeEpoch);
+            preparedStatement.setInt(4, beforeMessageID);
+            preparedStatement.setInt(5, limit);
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                List<Message> messages = new ArrayList<>();
+                while (resultSet.next()) {
+                    messages.add(createMessageFromResultSet(resultSet));
+                }
+                return messages;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            GET_TIMELINE_TIME.recordSince(start);
+        }
+        return Collections.emptyList();
+    }
+
+    private static void setFanOutParameters(PreparedStatement fanOutStatement, Message message) throws SQLException {
+        fanOutStatement.setInt(1, message.getPosted_by());
+        fanOutStatement.setInt(2, message.getMessage_id());
+        fanOutStatement.setLong(3, message.getTime_posted_epoch());
+        fanOutStatement.setInt(4, message.getPosted_by());
+    }
+
+    @NotNull
+    private static Message createMessageFromResultSet(ResultSet resultSet) throws SQLException {
+        int message_id = resultSet.getInt(1);
+        int posted_by = resultSet.getInt(2);
+        String message_text = resultSet.getString(3);
+        long time_posted = resultSet.getLong(4);
+
+        return new Message(message_id, posted_by, message_text, time_posted);
+    }
+
+    private static VersionedMessage createVersionedMessageFromResultSet(ResultSet resultSet) throws SQLException {
+        return new VersionedMessage(createMessageFromResultSet(resultSet), resultSet.getInt("version"));
+    }
+}
@@ -0,0 +1,85 @@
+package DAO;
+
+import Model.Account;
+import Util.LatencyHistogram;
+import Util.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Accounts in a {@link MemoryStore}.
+ */
+public class MemoryAccountDAO implements AccountDAO {
+
+    private static final LatencyHistogram CREATE_ACCOUNT_TIME = Metrics.daoHistogram("AccountDAO", "createAccount");
+    private static final LatencyHistogram GET_ACCOUNT_BY_USERNAME_TIME =
+            Metrics.daoHistogram("AccountDAO", "getAccountByUsername");
+    private static final LatencyHistogram GET_ACCOUNT_BY_ID_TIME = Metrics.daoHistogram("AccountDAO", "getAccountById");
+    private static final LatencyHistogram UPDATE_PASSWORD_TIME = Metrics.daoHistogram("AccountDAO", "updatePassword");
+
+    private final MemoryStore store;
+
+    public MemoryAccountDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    @Nullable
+    public Account createAccount(Account account) {
+        long start = System.nanoTime();
+        try {
+            int accountID = store.createAccount(account.getUsername(), account.getPassword());
+            if (accountID == 0)
+                return null;
+            account.setAccount_id(accountID);
+            return account;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } finally {
+            CREATE_ACCOUNT_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Account getAccount(String username) {
+        long start = System.nanoTime();
+        try {
+            int accountID = store.getAccountID(username);
+            return accountID == 0 ? null : toAccount(accountID, store.getAccount(accountID));
+        } finally {
+            GET_ACCOUNT_BY_USERNAME_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Account getAccount(int account_id) {
+        long start = System.nanoTime();
+        try {
+            return toAccount(account_id, store.getAccount(account_id));
+        } finally {
+            GET_ACCOUNT_BY_ID_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    public boolean updatePassword(int account_id, String oldPassword, String newPassword) {
+        long start = System.nanoTime();
+        try {
+            return store.updatePassword(account_id, oldPassword, newPassword);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } finally {
+            UPDATE_PASSWORD_TIME.recordSince(start);
+        }
+    }
+
+    @Nullable
+    private static Account toAccount(int accountID, @Nullable MemoryStore.StoredAccount account) {
+        return account == null ? null : new Account(accountID, account.username, account.password);
+    }
+}
@@ -0,0 +1,82 @@
+package DAO;
+
+import Util.LatencyHistogram;
+import Util.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The follow graph in a {@link MemoryStore}. Nothing is materialized: {@link MemoryMessageDAO} merges the messages of
+ * the followed accounts when a timeline is read, so following or unfollowing takes effect on the whole history at once.
+ */
+public class MemoryFollowDAO implements FollowDAO {
+
+    private static final LatencyHistogram FOLLOW_TIME = Metrics.daoHistogram("FollowDAO", "follow");
+    private static final LatencyHistogram UNFOLLOW_TIME = Metrics.daoHistogram("FollowDAO", "unfollow");
+    private static final LatencyHistogram GET_FOLLOWEES_TIME = Metrics.daoHistogram("FollowDAO", "getFollowees");
+    private static final LatencyHistogram GET_FOLLOWERS_TIME = Metrics.daoHistogram("FollowDAO", "getFollowers");
+
+    private final MemoryStore store;
+
+    public MemoryFollowDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean follow(int followerID, int followeeID) {
+        long start = System.nanoTime();
+        try {
+            return store.follow(followerID, followeeID);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } finally {
+            FOLLOW_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    public boolean unfollow(int followerID, int followeeID) {
+        long start = System.nanoTime();
+        try {
+            return store.unfollow(followerID, followeeID);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } finally {
+            UNFOLLOW_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @NotNull
+    public List<Integer> getFollowees(int accountID) {
+        long start = System.nanoTime();
+        try {
+            return toList(store.getFollowees(accountID));
+        } finally {
+            GET_FOLLOWEES_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @NotNull
+    public List<Integer> getFollowers(int accountID) {
+        long start = System.nanoTime();
+        try {
+            return toList(store.getFollowers(accountID));
+        } finally {
+            GET_FOLLOWERS_TIME.recordSince(start);
+        }
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        List<Integer> list = new ArrayList<>(ids.length);
+        for (int id : ids)
+            list.add(id);
+        return list;
+    }
+}
@@ -0,0 +1,318 @@
+package DAO;
+
+import Model.Message;
+import Model.VersionedMessage;
+import Util.LatencyHistogram;
+import Util.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Messages in a {@link MemoryStore}. Home timelines are not materialized as they are in the database: a page is merged
+ * from the message lists of the followed accounts when it is read, see {@link #getTimeline(int, long, int, int)}.
+ */
+public class MemoryMessageDAO implements MessageDAO {
+
+    private static final LatencyHistogram CREATE_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "createMessage");
+    private static final LatencyHistogram CREATE_MESSAGES_TIME = Metrics.daoHistogram("MessageDAO", "createMessages");
+    private static final LatencyHistogram GET_ALL_MESSAGES_TIME = Metrics.daoHistogram("MessageDAO", "getAllMessages");
+    private static final LatencyHistogram GET_MESSAGES_AFTER_TIME =
+            Metrics.daoHistogram("MessageDAO", "getMessagesAfter");
+    private static final LatencyHistogram FOR_EACH_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "forEachMessage");
+    private static final LatencyHistogram GET_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "getMessage");
+    private static final LatencyHistogram GET_MESSAGES_TIME = Metrics.daoHistogram("MessageDAO", "getMessages");
+    private static final LatencyHistogram DELETE_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "deleteMessage");
+    private static final LatencyHistogram UPDATE_MESSAGE_TIME = Metrics.daoHistogram("MessageDAO", "updateMessage");
+    private static final LatencyHistogram GET_ACCOUNT_MESSAGES_TIME =
+            Metrics.daoHistogram("MessageDAO", "getAccountMessages");
+    private static final LatencyHistogram GET_TIMELINE_TIME = Metrics.daoHistogram("MessageDAO", "getTimeline");
+    // How many of a followed account's messages a timeline merge reads at a time.
+    private static final int TIMELINE_BATCH_SIZE = 16;
+
+    private final MemoryStore store;
+
+    public MemoryMessageDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    @Nullable
+    public Message createMessage(Message message) {
+        long start = System.nanoTime();
+        try {
+            return store.createMessages(Collections.singletonList(message)) ? message : null;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } finally {
+            CREATE_MESSAGE_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * The messages are logged as a single record, so either all of them are created or none are, also across a
+     * restart.
+     */
+    @Override
+    public boolean createMessages(List<Message> messages) {
+        if (messages.isEmpty())
+            return true;
+        long start = System.nanoTime();
+        try {
+            return store.createMessages(messages);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } finally {
+            CREATE_MESSAGES_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @NotNull
+    public List<Message> getAllMessages() {
+        long start = System.nanoTime();
+        try {
+            return getMessagesAfter(0, Integer.MAX_VALUE, store.getLastMessageID());
+        } finally {
+            GET_ALL_MESSAGES_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @NotNull
+    public List<Message> getMessagesAfter(int afterMessageID, int limit) {
+        long start = System.nanoTime();
+        try {
+            return getMessagesAfter(afterMessageID, limit, store.getLastMessageID());
+        } finally {
+            GET_MESSAGES_AFTER_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Walks the message_ids upwards: they are handed out in order, so no message has one above lastMessageID.
+     */
+    private List<Message> getMessagesAfter(int afterMessageID, int limit, int lastMessageID) {
+        List<Message> messages = new ArrayList<>();
+        for (int messageID = Math.max(afterMessageID, 0) + 1;
+             messageID > 0 && messageID <= lastMessageID && messages.size() < limit; messageID++) {
+            MemoryStore.StoredMessage message = store.getMessage(messageID);
+            if (message != null)
+                messages.add(message.toMessage(messageID));
+        }
+        return messages;
+    }
+
+    @Override
+    public boolean forEachMessage(MessageConsumer consumer) throws IOException {
+        long start = System.nanoTime();
+        try {
+            int lastMessageID = store.getLastMessageID();
+            for (int messageID = 1; messageID <= lastMessageID; messageID++) {
+                MemoryStore.StoredMessage message = store.getMessage(messageID);
+                if (message != null)
+                    consumer.accept(message.toMessage(messageID));
+            }
+            return true;
+        } finally {
+            FOR_EACH_MESSAGE_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @Nullable
+    public VersionedMessage getVersionedMessage(int messageID) {
+        long start = System.nanoTime();
+        try {
+            return toVersionedMessage(messageID, store.getMessage(messageID));
+        } finally {
+            GET_MESSAGE_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Copies the message's text from its off-heap row into the JSON, without a String or a Message in between.
+     */
+    @Override
+    public int writeMessageJson(int messageID, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return store.writeMessageJson(messageID, out);
+        } finally {
+            GET_MESSAGE_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @NotNull
+    public List<VersionedMessage> getVersionedMessages(Collection<Integer> messageIDs) {
+        if (messageIDs.isEmpty())
+            return Collections.emptyList();
+        long start = System.nanoTime();
+        try {
+            List<VersionedMessage> messages = new ArrayList<>(messageIDs.size());
+            for (int messageID : messageIDs) {
+                VersionedMessage message = toVersionedMessage(messageID, store.getMessage(messageID));
+                if (message != null)
+                    messages.add(message);
+            }
+            return messages;
+        } finally {
+            GET_MESSAGES_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Message deleteMessage(int messageID) {
+        long start = System.nanoTime();
+        try {
+            MemoryStore.StoredMessage message = store.deleteMessage(messageID);
+            return message == null ? null : message.toMessage(messageID);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } finally {
+            DELETE_MESSAGE_TIME.recordSince(start);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Message updateMessage(int messageID, Message message) {
+        long start = System.nanoTime();
+        try {
+            MemoryStore.StoredMessage updated = store.updateMessage(messageID, message.getMessage_text());
+            return updated == null ? null : updated.toMessage(messageID);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return null;
+        } finally {
+            UPDATE_MESSAGE_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * @return the account's messages in message_id order or an empty list if there are none
+     */
+    @Override
+    @NotNull
+    public List<Message> getAccountMessages(int accountID) {
+        long start = System.nanoTime();
+        try {
+            int[] messageIDs = store.getAccountMessageIDs(accountID);
+            List<Message> messages = new ArrayList<>(messageIDs.length);
+            for (int messageID : messageIDs) {
+                // Deleted since the ids were read.
+                MemoryStore.StoredMessage message = store.getMessage(messageID);
+                if (message != null)
+                    messages.add(message.toMessage(messageID));
+            }
+            return messages;
+        } finally {
+            GET_ACCOUNT_MESSAGES_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Merges the page from the messages of every followed account, which the store keeps in time order: each account's
+     * messages are read from the cursor back, a few at a time, and the newest head among them is taken until the page
+     * is full, so only the messages on the page are read from their stripes. Unlike the materialized timeline of
+     * {@link JdbcFollowDAO}, which only backfills a new follow's most recent messages, the whole history of every
+     * followed account is reachable.
+     */
+    @Override
+    @NotNull
+    public List<Message> getTimeline(int accountID, long beforeEpoch, int beforeMessageID, int limit) {
+        long start = System.nanoTime();
+        try {
+            if (limit <= 0)
+                return Collections.emptyList();
+            int batchSize = Math.min(limit, TIMELINE_BATCH_SIZE);
+            PriorityQueue<FolloweeMessages> heads = new PriorityQueue<>();
+            for (int followeeID : store.getFollowees(accountID)) {
+                FolloweeMessages followee = new FolloweeMessages(followeeID, batchSize);
+                if (followee.read(store, beforeEpoch, beforeMessageID))
+                    heads.add(followee);
+            }
+            List<Message> page = new ArrayList<>(Math.min(limit, heads.size() * batchSize));
+            while (page.size() < limit && !heads.isEmpty()) {
+                FolloweeMessages followee = heads.poll();
+                int messageID = followee.messageID();
+                // Deleted since its id was read.
+                MemoryStore.StoredMessage message = store.getMessage(messageID);
+                if (message != null)
+                    page.add(message.toMessage(messageID));
+                if (followee.next(store))
+                    heads.add(followee);
+            }
+            return page;
+        } finally {
+            GET_TIMELINE_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * One followed account's messages in a timeline merge: a batch of them newest first from a cursor, and the head,
+     * the newest not yet taken. Ordered so the newest head comes first.
+     */
+    private static final class FolloweeMessages implements Comparable<FolloweeMessages> {
+        final int accountID;
+        final long[] times;
+        final int[] messageIDs;
+        int size;
+        int head;
+
+        FolloweeMessages(int accountID, int batchSize) {
+            this.accountID = accountID;
+            this.times = new long[batchSize];
+            this.messageIDs = new int[batchSize];
+        }
+
+        /**
+         * Reads the next batch, of the messages before the cursor.
+         *
+         * @return false if there are none
+         */
+        boolean read(MemoryStore store, long beforeEpoch, int beforeMessageID) {
+            size = store.getAccountMessagesBefore(accountID, beforeEpoch, beforeMessageID, times, messageIDs);
+            head = 0;
+            return size > 0;
+        }
+
+        /**
+         * Moves the head past the message just taken, reading the next batch when this one runs out.
+         *
+         * @return false if the account has no more messages
+         */
+        boolean next(MemoryStore store) {
+            if (++head < size)
+                return true;
+            return size == times.length && read(store, times[size - 1], messageIDs[size - 1]);
+        }
+
+        int messageID() {
+            return messageIDs[head];
+        }
+
+        @Override
+        public int compareTo(FolloweeMessages other) {
+            int byTime = Long.compare(other.times[other.head], times[head]);
+            return byTime != 0 ? byTime : Integer.compare(other.messageIDs[other.head], messageIDs[head]);
+        }
+    }
+
+    @Nullable
+    private static VersionedMessage toVersionedMessage(int messageID, @Nullable MemoryStore.StoredMessage message) {
+        return message == null ? null : new VersionedMessage(message.toMessage(messageID), message.version);
+    }
+}
@@ -0,0 +1,967 @@
+package DAO;
+
+import Model.Message;
+import Util.Config;
+import Util.ConnectionUtil;
+import Util.IntObjectHashMap;
+import Util.OffHeapMessageTable;
+import Util.SortedIntSet;
+import Util.TimeOrderedIds;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Accounts, messages and the follow graph held in memory, behind {@link MemoryAccountDAO}, {@link MemoryMessageDAO}
+ * and {@link MemoryFollowDAO}. Messages are kept off the heap in {@link OffHeapMessageTable}s split into stripes by
+ * message_id, each guarded by its own read-write lock, so that writers of different messages do not contend; a
+ * message's row in its stripe is its message_id without the stripe bits. Each account's message_ids are kept sorted
+ * by time_posted_epoch then message_id, in stripes of their own split by account_id. Accounts and follows change
+ * rarely and share one lock each.
+ * <p>
+ * Every change is appended to a {@link WriteAheadLog} before it is applied, and a change is only acknowledged once the
+ * log's fsync policy is satisfied. Other readers may see a change a moment before that. Snapshots of the whole store
+ * let the log drop its older segments. The store enforces what the database schema would: messages and follows must
+ * refer to existing accounts, usernames are unique and texts fit in 255 characters.
+ * <p>
+ * Every change holds the checkpoint lock shared from its append until it is applied, so a snapshot, which holds it
+ * exclusively, sees each change either in the store or in the log after the snapshot. Below it, locks are only ever
+ * nested message stripe first, then account stripe.
+ */
+public final class MemoryStore implements Closeable {
+
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = Integer.numberOfTrailingZeros(STRIPES);
+    // The varchar(255) columns of the database schema.
+    private static final int MAX_LENGTH = 255;
+    // Messages loaded from the database or written to a snapshot go this many to a record.
+    private static final int BATCH_SIZE = 1000;
+
+    private static MemoryStore instance;
+
+    /**
+     * A message as read from the store, without its message_id.
+     */
+    static final class StoredMessage {
+        final int postedBy;
+        final String text;
+        final long time;
+        final int version;
+
+        StoredMessage(int postedBy, String text, long time, int version) {
+            this.postedBy = postedBy;
+            this.text = text;
+            this.time = time;
+            this.version = version;
+        }
+
+        Message toMessage(int messageID) {
+            return new Message(messageID, postedBy, text, time);
+        }
+    }
+
+    /**
+     * An account as stored, without its account_id. A password change replaces the row.
+     */
+    static final class StoredAccount {
+        final String username;
+        final String password;
+
+        StoredAccount(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+
+    private static final class Stripe<V> {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final IntObjectHashMap<V> map = new IntObjectHashMap<>();
+    }
+
+    private static final class MessageStripe {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final OffHeapMessageTable table = new OffHeapMessageTable();
+    }
+
+    private final MessageStripe[] messages = newMessageStripes();
+    private final Stripe<TimeOrderedIds>[] accountMessages = newStripes();
+    private final AtomicInteger lastMessageID = new AtomicInteger();
+
+    private final ReentrantReadWriteLock accountLock = new ReentrantReadWriteLock();
+    private final IntObjectHashMap<StoredAccount> accounts = new IntObjectHashMap<>();
+    private final HashMap<String, Integer> accountIDs = new HashMap<>();
+    private int lastAccountID;
+
+    private final ReentrantReadWriteLock followLock = new ReentrantReadWriteLock();
+    private final IntObjectHashMap<SortedIntSet> followees = new IntObjectHashMap<>();
+    private final IntObjectHashMap<SortedIntSet> followers = new IntObjectHashMap<>();
+
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    // Held while a snapshot is written or the store is reloaded, so that neither overlaps the other.
+    private final Object snapshotMonitor = new Object();
+    @Nullable
+    private ScheduledExecutorService snapshotter;
+
+    @Nullable
+    private final WriteAheadLog log;
+
+    private MemoryStore(@Nullable WriteAheadLog log) {
+        this.log = log;
+    }
+
+    /**
+     * The store shared by the memory DAOs, opened on first use with its write-ahead log in the
+     * socialmedia.storage.memory.wal directory; an empty path keeps no log. A store without any logged changes is
+     * loaded from the database. A snapshot is taken every socialmedia.storage.memory.snapshotIntervalSeconds, 0 for
+     * never.
+     */
+    public static synchronized MemoryStore get() {
+        if (instance == null) {
+            String path = Config.getString("storage.memory.wal", "./h2/wal");
+            try {
+                instance = open(path.isEmpty() ? null : Path.of(path));
+                if (instance.isEmpty()) {
+                    try (Connection connection = ConnectionUtil.getConnection()) {
+                        instance.loadFrom(connection);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not load the memory store from the database", e);
+            }
+            long snapshotSeconds = Config.getLong("storage.memory.snapshotIntervalSeconds", 300);
+            if (snapshotSeconds > 0)
+                instance.scheduleSnapshots(TimeUnit.SECONDS.toMillis(snapshotSeconds));
+        }
+        return instance;
+    }
+
+    /**
+     * Opens a store and recovers it from its write-ahead log, configured by the socialmedia.storage.memory.wal.*
+     * properties: segmentBytes (64 MiB), fsync, one of always, interval or never (interval), and fsyncIntervalMillis
+     * (100).
+     *
+     * @param walDirectory the log's directory, created if missing, or null to keep no log
+     */
+    public static MemoryStore open(@Nullable Path walDirectory) throws IOException {
+        return open(walDirectory, Config.getInt("storage.memory.wal.segmentBytes", 64 << 20),
+                Config.getString("storage.memory.wal.fsync", "interval"),
+                Config.getLong("storage.memory.wal.fsyncIntervalMillis", 100));
+    }
+
+    /**
+     * @param fsyncPolicy always, interval or never, see {@link WriteAheadLog.FsyncPolicy}
+     */
+    public static MemoryStore open(@Nullable Path walDirectory, int segmentBytes, String fsyncPolicy,
+                                   long fsyncIntervalMillis) throws IOException {
+        if (walDirectory == null)
+            return new MemoryStore(null);
+        WriteAheadLog log = new WriteAheadLog(walDirectory, segmentBytes,
+                WriteAheadLog.FsyncPolicy.valueOf(fsyncPolicy.toUpperCase(Locale.ROOT)), fsyncIntervalMillis);
+        MemoryStore store = new MemoryStore(log);
+        try {
+            log.recover(store::apply);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Replaces the contents of the store, and of its log, with the accounts, messages and follows in the database.
+     */
+    public void loadFrom(Connection connection) throws SQLException, IOException {
+        synchronized (snapshotMonitor) {
+            checkpointLock.writeLock().lock();
+            lockAll();
+            try {
+                clear();
+                try (Statement statement = connection.createStatement()) {
+                    try (ResultSet resultSet = statement.executeQuery(
+                            "SELECT account_id, username, password FROM account ORDER BY account_id;")) {
+                        while (resultSet.next())
+                            logAccount(resultSet.getInt(1), resultSet.getString(2), resultSet.getString(3));
+                    }
+                    try (ResultSet resultSet = statement.executeQuery("SELECT message_id, posted_by, " +
+                            "message_text, time_posted_epoch, version FROM message ORDER BY message_id;")) {
+                        List<Integer> ids = new ArrayList<>(BATCH_SIZE);
+                        List<StoredMessage> rows = new ArrayList<>(BATCH_SIZE);
+                        while (resultSet.next()) {
+                            ids.add(resultSet.getInt(1));
+                            rows.add(new StoredMessage(resultSet.getInt(2), resultSet.getString(3),
+                                    resultSet.getLong(4), resultSet.getInt(5)));
+                            if (ids.size() == BATCH_SIZE) {
+                                logMessages(ids, rows);
+                                ids.clear();
+                                rows.clear();
+                            }
+                        }
+                        if (!ids.isEmpty())
+                            logMessages(ids, rows);
+                    }
+                    try (ResultSet resultSet = statement.executeQuery(
+                            "SELECT follower_id, followee_id FROM follow;")) {
+                        while (resultSet.next()) {
+                            int followerID = resultSet.getInt(1);
+                            int followeeID = resultSet.getInt(2);
+                            append(WriteAheadLog.FOLLOW, out -> writeFollow(out, followerID, followeeID));
+                            applyFollow(followerID, followeeID);
+                        }
+                    }
+                }
+            } finally {
+                unlockAll();
+                checkpointLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the whole store to a snapshot so that the log can drop the segments before it. Changes wait only while
+     * the store is copied, not while the snapshot is written.
+     */
+    public void snapshot() throws IOException {
+        if (log == null)
+            return;
+        synchronized (snapshotMonitor) {
+            long segment;
+            List<Integer> accountIDList = new ArrayList<>();
+            List<StoredAccount> accountList = new ArrayList<>();
+            OffHeapMessageTable[] messageTables = new OffHeapMessageTable[STRIPES];
+            List<int[]> follows = new ArrayList<>();
+            int accountCounter;
+            int messageCounter;
+            checkpointLock.writeLock().lock();
+            try {
+                // No change is in flight, and the maps are only read, so their stripe locks are not needed.
+                segment = log.roll();
+                accounts.forEach((accountID, account) -> {
+                    accountIDList.add(accountID);
+                    accountList.add(account);
+                });
+                // Copied buffer by buffer, without reading a message.
+                for (int i = 0; i < STRIPES; i++)
+                    messageTables[i] = messages[i].table.copy();
+                followees.forEach((followerID, followed) -> {
+                    for (int i = 0; i < followed.size(); i++)
+                        follows.add(new int[]{followerID, followed.get(i)});
+                });
+                accountCounter = lastAccountID;
+                messageCounter = lastMessageID.get();
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+
+            log.writeSnapshot(segment, sink -> {
+                for (int i = 0; i < accountIDList.size(); i++) {
+                    int accountID = accountIDList.get(i);
+                    StoredAccount account = accountList.get(i);
+                    sink.append(WriteAheadLog.ACCOUNT,
+                            out -> writeAccount(out, accountID, account.username, account.password));
+                }
+                List<Integer> ids = new ArrayList<>(BATCH_SIZE);
+                List<StoredMessage> rows = new ArrayList<>(BATCH_SIZE);
+                for (int stripe = 0; stripe < STRIPES; stripe++) {
+                    OffHeapMessageTable table = messageTables[stripe];
+                    for (int row = 0; row < table.capacity(); row++) {
+                        if (!table.contains(row))
+                            continue;
+                        ids.add(row << STRIPE_SHIFT | stripe);
+                        rows.add(toStoredMessage(table, row));
+                        if (ids.size() == BATCH_SIZE) {
+                            sink.append(WriteAheadLog.MESSAGES, out -> writeMessages(out, ids, rows));
+                            ids.clear();
+                            rows.clear();
+                        }
+                    }
+                    // The copy's buffers go as soon as it has been written.
+                    messageTables[stripe] = null;
+                }
+                if (!ids.isEmpty())
+                    sink.append(WriteAheadLog.MESSAGES, out -> writeMessages(out, ids, rows));
+                for (int[] follow : follows)
+                    sink.append(WriteAheadLog.FOLLOW, out -> writeFollow(out, follow[0], follow[1]));
+                // Deleted messages leave gaps that new message_ids must not fill.
+                sink.append(WriteAheadLog.IDS, out -> {
+                    out.writeInt(accountCounter);
+                    out.writeInt(messageCounter);
+                });
+            });
+        }
+    }
+
+    private void scheduleSnapshots(long intervalMillis) {
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "memory-store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                System.out.println(e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of fsyncs the log has made, or 0 without a log
+     */
+    public long getFsyncCount() {
+        return log == null ? 0 : log.getFsyncCount();
+    }
+
+    /**
+     * @return the bytes of direct memory holding the messages
+     */
+    public long getMessageBytes() {
+        long bytes = 0;
+        for (MessageStripe stripe : messages) {
+            stripe.lock.readLock().lock();
+            try {
+                bytes += stripe.table.getOffHeapBytes();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private boolean isEmpty() {
+        accountLock.readLock().lock();
+        try {
+            return accounts.isEmpty();
+        } finally {
+            accountLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null)
+            snapshotter.shutdownNow();
+        if (log != null)
+            log.close();
+    }
+
+    /*
+     * Accounts
+     */
+
+    /**
+     * @return the generated account_id or 0 if the username is taken or either value does not fit
+     */
+    int createAccount(String username, String password) throws IOException {
+        if (username == null || !fits(username) || !fits(password))
+            return 0;
+        int accountID;
+        long record;
+        checkpointLock.readLock().lock();
+        accountLock.writeLock().lock();
+        try {
+            if (accountIDs.containsKey(username))
+                return 0;
+            accountID = lastAccountID + 1;
+            record = logAccount(accountID, username, password);
+        } finally {
+            accountLock.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+        }
+        sync(record);
+        return accountID;
+    }
+
+    @Nullable
+    StoredAccount getAccount(int accountID) {
+        accountLock.readLock().lock();
+        try {
+            return accounts.get(accountID);
+        } finally {
+            accountLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the account_id for the username or 0 if there is no such account
+     */
+    int getAccountID(String username) {
+        accountLock.readLock().lock();
+        try {
+            Integer accountID = accountIDs.get(username);
+            return accountID == null ? 0 : accountID;
+        } finally {
+            accountLock.readLock().unlock();
+        }
+    }
+
+    boolean accountExists(int accountID) {
+        return getAccount(accountID) != null;
+    }
+
+    /**
+     * @return true if the password was oldPassword and has been replaced
+     */
+    boolean updatePassword(int accountID, String oldPassword, String newPassword) throws IOException {
+        if (!fits(newPassword))
+            return false;
+        long record;
+        checkpointLock.readLock().lock();
+        accountLock.writeLock().lock();
+        try {
+            StoredAccount account = accounts.get(accountID);
+            if (account == null || !Objects.equals(account.password, oldPassword))
+                return false;
+            record = append(WriteAheadLog.PASSWORD, out -> {
+                out.writeInt(accountID);
+                WriteAheadLog.writeString(out, newPassword);
+            });
+            applyPassword(accountID, newPassword);
+        } finally {
+            accountLock.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+        }
+        sync(record);
+        return true;
+    }
+
+    /*
+     * Messages
+     */
+
+    /**
+     * Creates the messages all at once, logged as one record, and populates their message_ids.
+     *
+     * @return false, creating none of the messages, if any of them refers to a missing account or its text does not
+     * fit
+     */
+    boolean createMessages(List<Message> newMessages) throws IOException {
+        for (Message message : newMessages) {
+            // Accounts are never deleted, so one that exists now still does when the message is added.
+            if (message.getMessage_text() == null || !fits(message.getMessage_text())
+                    || !accountExists(message.getPosted_by()))
+                return false;
+        }
+        int firstID = lastMessageID.getAndAdd(newMessages.size()) + 1;
+        List<Integer> ids = new ArrayList<>(newMessages.size());
+        List<StoredMessage> rows = new ArrayList<>(newMessages.size());
+        for (int i = 0; i < newMessages.size(); i++) {
+            Message message = newMessages.get(i);
+            ids.add(firstID + i);
+            rows.add(new StoredMessage(message.getPosted_by(), message.getMessage_text(),
+                    message.getTime_posted_epoch(), 0));
+        }
+        long record;
+        checkpointLock.readLock().lock();
+        try {
+            // The new message_ids cannot be seen until the messages are applied, so nothing about them can be logged
+            // before this record.
+            record = logMessages(ids, rows);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        sync(record);
+        for (int i = 0; i < newMessages.size(); i++)
+            newMessages.get(i).setMessage_id(firstID + i);
+        return true;
+    }
+
+    @Nullable
+    StoredMessage getMessage(int messageID) {
+        if (messageID <= 0)
+            return null;
+        MessageStripe stripe = messageStripe(messageID);
+        int row = messageID >>> STRIPE_SHIFT;
+        stripe.lock.readLock().lock();
+        try {
+            return stripe.table.contains(row) ? toStoredMessage(stripe.table, row) : null;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the message's JSON straight from its row, without reading it into a Message.
+     *
+     * @return the message's version or -1, writing nothing, if there is no such message
+     */
+    int writeMessageJson(int messageID, OutputStream out) throws IOException {
+        if (messageID <= 0)
+            return -1;
+        MessageStripe stripe = messageStripe(messageID);
+        int row = messageID >>> STRIPE_SHIFT;
+        stripe.lock.readLock().lock();
+        try {
+            return stripe.table.writeJson(row, messageID, out) ? stripe.table.getVersion(row) : -1;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the deleted message or null if there was no such message
+     */
+    @Nullable
+    StoredMessage deleteMessage(int messageID) throws IOException {
+        if (messageID <= 0)
+            return null;
+        MessageStripe stripe = messageStripe(messageID);
+        StoredMessage message;
+        long record;
+        checkpointLock.readLock().lock();
+        stripe.lock.writeLock().lock();
+        try {
+            int row = messageID >>> STRIPE_SHIFT;
+            if (!stripe.table.contains(row))
+                return null;
+            message = toStoredMessage(stripe.table, row);
+            record = append(WriteAheadLog.DELETE, out -> out.writeInt(messageID));
+            applyDelete(messageID);
+        } finally {
+            stripe.lock.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+        }
+        sync(record);
+        return message;
+    }
+
+    /**
+     * @return the updated message or null if there was no such message or the text does not fit
+     */
+    @Nullable
+    StoredMessage updateMessage(int messageID, String text) throws IOException {
+        if (text == null || !fits(text) || messageID <= 0)
+            return null;
+        MessageStripe stripe = messageStripe(messageID);
+        StoredMessage updated;
+        long record;
+        checkpointLock.readLock().lock();
+        stripe.lock.writeLock().lock();
+        try {
+            if (!stripe.table.contains(messageID >>> STRIPE_SHIFT))
+                return null;
+            record = append(WriteAheadLog.UPDATE, out -> {
+                out.writeInt(messageID);
+                WriteAheadLog.writeString(out, text);
+            });
+            updated = applyUpdate(messageID, text);
+        } finally {
+            stripe.lock.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+        }
+        sync(record);
+        return updated;
+    }
+
+    /**
+     * @return the message_ids of the account's messages in ascending order
+     */
+    @NotNull
+    int[] getAccountMessageIDs(int accountID) {
+        Stripe<TimeOrderedIds> stripe = accountStripe(accountID);
+        int[] messageIDs;
+        stripe.lock.readLock().lock();
+        try {
+            TimeOrderedIds entries = stripe.map.get(accountID);
+            if (entries == null)
+                return new int[0];
+            messageIDs = new int[entries.size()];
+            for (int i = 0; i < messageIDs.length; i++)
+                messageIDs[i] = entries.getMessageID(i);
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+        Arrays.sort(messageIDs);
+        return messageIDs;
+    }
+
+    /**
+     * Copies the account's messages before the cursor, newest first, into times and messageIDs until they are full.
+     *
+     * @return how many were copied
+     */
+    int getAccountMessagesBefore(int accountID, long beforeEpoch, int beforeMessageID, long[] times,
+                                 int[] messageIDs) {
+        Stripe<TimeOrderedIds> stripe = accountStripe(accountID);
+        stripe.lock.readLock().lock();
+        try {
+            TimeOrderedIds entries = stripe.map.get(accountID);
+            if (entries == null)
+                return 0;
+            int count = 0;
+            for (int i = entries.firstFrom(beforeEpoch, beforeMessageID) - 1; i >= 0 && count < times.length; i--) {
+                times[count] = entries.getTime(i);
+                messageIDs[count++] = entries.getMessageID(i);
+            }
+            return count;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the greatest message_id handed out so far; every existing message has one no greater
+     */
+    int getLastMessageID() {
+        return lastMessageID.get();
+    }
+
+    /*
+     * Follows
+     */
+
+    /**
+     * @return true if the follower now follows the followee, false if either account does not exist
+     */
+    boolean follow(int followerID, int followeeID) throws IOException {
+        if (!accountExists(followerID) || !accountExists(followeeID))
+            return false;
+        long record;
+        checkpointLock.readLock().lock();
+        followLock.writeLock().lock();
+        try {
+            SortedIntSet followed = followees.get(followerID);
+            if (followed != null && followed.contains(followeeID))
+                return true;
+            record = append(WriteAheadLog.FOLLOW, out -> writeFollow(out, followerID, followeeID));
+            applyFollow(followerID, followeeID);
+        } finally {
+            followLock.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+        }
+        sync(record);
+        return true;
+    }
+
+    /**
+     * @return true if the follower was following the followee
+     */
+    boolean unfollow(int followerID, int followeeID) throws IOException {
+        long record;
+        checkpointLock.readLock().lock();
+        followLock.writeLock().lock();
+        try {
+            SortedIntSet followed = followees.get(followerID);
+            if (followed == null || !followed.contains(followeeID))
+                return false;
+            record = append(WriteAheadLog.UNFOLLOW, out -> writeFollow(out, followerID, followeeID));
+            applyUnfollow(followerID, followeeID);
+        } finally {
+            followLock.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+        }
+        sync(record);
+        return true;
+    }
+
+    @NotNull
+    int[] getFollowees(int accountID) {
+        return followIDs(followees, accountID);
+    }
+
+    @NotNull
+    int[] getFollowers(int accountID) {
+        return followIDs(followers, accountID);
+    }
+
+    private int[] followIDs(IntObjectHashMap<SortedIntSet> graph, int accountID) {
+        followLock.readLock().lock();
+        try {
+            SortedIntSet ids = graph.get(accountID);
+            return ids == null ? new int[0] : ids.toArray();
+        } finally {
+            followLock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Logging and applying changes. Recovery applies the records of the snapshot and the log without logging them
+     * again, before the store is shared.
+     */
+
+    private void apply(byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case WriteAheadLog.ACCOUNT:
+                applyAccount(in.readInt(), WriteAheadLog.readString(in), WriteAheadLog.readString(in));
+                break;
+            case WriteAheadLog.PASSWORD:
+                applyPassword(in.readInt(), WriteAheadLog.readString(in));
+                break;
+            case WriteAheadLog.MESSAGES:
+                for (int count = in.readInt(); count > 0; count--) {
+                    int messageID = in.readInt();
+                    applyMessage(messageID, new StoredMessage(in.readInt(), WriteAheadLog.readString(in),
+                            in.readLong(), in.readInt()));
+                }
+                break;
+            case WriteAheadLog.UPDATE:
+                applyUpdate(in.readInt(), WriteAheadLog.readString(in));
+                break;
+            case WriteAheadLog.DELETE:
+                applyDelete(in.readInt());
+                break;
+            case WriteAheadLog.FOLLOW:
+                applyFollow(in.readInt(), in.readInt());
+                break;
+            case WriteAheadLog.UNFOLLOW:
+                applyUnfollow(in.readInt(), in.readInt());
+                break;
+            case WriteAheadLog.IDS:
+                lastAccountID = Math.max(lastAccountID, in.readInt());
+                lastMessageID.accumulateAndGet(in.readInt(), Math::max);
+                break;
+            default:
+                throw new IOException("Unknown write-ahead log record type " + type);
+        }
+    }
+
+    /**
+     * @return the record's sequence number in the log, or 0 without a log
+     */
+    private long append(byte type, WriteAheadLog.Payload payload) throws IOException {
+        return log == null ? 0 : log.append(type, payload);
+    }
+
+    /**
+     * Waits for the record as the fsync policy demands. Called holding no locks, so that concurrent changes can share
+     * the fsync.
+     */
+    private void sync(long record) throws IOException {
+        if (log != null)
+            log.sync(record);
+    }
+
+    /**
+     * Logs and applies an account. Called holding the account write lock.
+     */
+    private long logAccount(int accountID, String username, String password) throws IOException {
+        long record = append(WriteAheadLog.ACCOUNT, out -> writeAccount(out, accountID, username, password));
+        applyAccount(accountID, username, password);
+        return record;
+    }
+
+    private long logMessages(List<Integer> ids, List<StoredMessage> rows) throws IOException {
+        long record = append(WriteAheadLog.MESSAGES, out -> writeMessages(out, ids, rows));
+        for (int i = 0; i < ids.size(); i++)
+            applyMessage(ids.get(i), rows.get(i));
+        return record;
+    }
+
+    private static void writeAccount(DataOutputStream out, int accountID, String username, String password)
+            throws IOException {
+        out.writeInt(accountID);
+        WriteAheadLog.writeString(out, username);
+        WriteAheadLog.writeString(out, password);
+    }
+
+    private static void writeMessages(DataOutputStream out, List<Integer> ids, List<StoredMessage> rows)
+            throws IOException {
+        out.writeInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            StoredMessage row = rows.get(i);
+            out.writeInt(ids.get(i));
+            out.writeInt(row.postedBy);
+            WriteAheadLog.writeString(out, row.text);
+            out.writeLong(row.time);
+            out.writeInt(row.version);
+        }
+    }
+
+    private static void writeFollow(DataOutputStream out, int followerID, int followeeID) throws IOException {
+        out.writeInt(followerID);
+        out.writeInt(followeeID);
+    }
+
+    private void applyAccount(int accountID, String username, String password) {
+        accounts.put(accountID, new StoredAccount(username, password));
+        accountIDs.put(username, accountID);
+        lastAccountID = Math.max(lastAccountID, accountID);
+    }
+
+    private void applyPassword(int accountID, String password) {
+        StoredAccount account = accounts.get(accountID);
+        if (account != null)
+            accounts.put(accountID, new StoredAccount(account.username, password));
+    }
+
+    private void applyMessage(int messageID, StoredMessage message) {
+        MessageStripe stripe = messageStripe(messageID);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.table.put(messageID >>> STRIPE_SHIFT, message.postedBy, message.text, message.time,
+                    message.version);
+            // Added to the account's list while the message stripe is held, so a concurrent delete of the message
+            // cannot remove it from the list before it is there.
+            Stripe<TimeOrderedIds> accountStripe = accountStripe(message.postedBy);
+            accountStripe.lock.writeLock().lock();
+            try {
+                TimeOrderedIds entries = accountStripe.map.get(message.postedBy);
+                if (entries == null) {
+                    entries = new TimeOrderedIds();
+                    accountStripe.map.put(message.postedBy, entries);
+                }
+                entries.insert(message.time, messageID);
+            } finally {
+                accountStripe.lock.writeLock().unlock();
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+        lastMessageID.accumulateAndGet(messageID, Math::max);
+    }
+
+    /**
+     * Called holding the message's stripe, or while recovering.
+     */
+    private void applyDelete(int messageID) {
+        OffHeapMessageTable table = messageStripe(messageID).table;
+        int row = messageID >>> STRIPE_SHIFT;
+        if (!table.contains(row))
+            return;
+        int postedBy = table.getPostedBy(row);
+        long time = table.getTime(row);
+        table.remove(row);
+        Stripe<TimeOrderedIds> accountStripe = accountStripe(postedBy);
+        accountStripe.lock.writeLock().lock();
+        try {
+            TimeOrderedIds entries = accountStripe.map.get(postedBy);
+            if (entries != null && entries.remove(time, messageID) && entries.size() == 0)
+                accountStripe.map.remove(postedBy);
+        } finally {
+            accountStripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called holding the message's stripe, or while recovering.
+     */
+    @Nullable
+    private StoredMessage applyUpdate(int messageID, String text) {
+        OffHeapMessageTable table = messageStripe(messageID).table;
+        int row = messageID >>> STRIPE_SHIFT;
+        if (!table.contains(row))
+            return null;
+        StoredMessage updated = new StoredMessage(table.getPostedBy(row), text, table.getTime(row),
+                table.getVersion(row) + 1);
+        table.put(row, updated.postedBy, updated.text, updated.time, updated.version);
+        return updated;
+    }
+
+    private static StoredMessage toStoredMessage(OffHeapMessageTable table, int row) {
+        return new StoredMessage(table.getPostedBy(row), table.getText(row), table.getTime(row),
+                table.getVersion(row));
+    }
+
+    private void applyFollow(int followerID, int followeeID) {
+        add(followees, followerID, followeeID);
+        add(followers, followeeID, followerID);
+    }
+
+    private void applyUnfollow(int followerID, int followeeID) {
+        remove(followees, followerID, followeeID);
+        remove(followers, followeeID, followerID);
+    }
+
+    private static void add(IntObjectHashMap<SortedIntSet> graph, int from, int to) {
+        SortedIntSet ids = graph.get(from);
+        if (ids == null) {
+            ids = new SortedIntSet();
+            graph.put(from, ids);
+        }
+        ids.add(to);
+    }
+
+    private static void remove(IntObjectHashMap<SortedIntSet> graph, int from, int to) {
+        SortedIntSet ids = graph.get(from);
+        if (ids != null && ids.remove(to) && ids.isEmpty())
+            graph.remove(from);
+    }
+
+    /**
+     * Empties the store and its log. Called holding every lock.
+     */
+    private void clear() throws IOException {
+        if (log != null)
+            log.clear();
+        for (int i = 0; i < STRIPES; i++) {
+            messages[i].table.clear();
+            accountMessages[i].map.clear();
+        }
+        lastMessageID.set(0);
+        accounts.clear();
+        accountIDs.clear();
+        lastAccountID = 0;
+        followees.clear();
+        followers.clear();
+    }
+
+    private void lockAll() {
+        accountLock.writeLock().lock();
+        followLock.writeLock().lock();
+        for (MessageStripe stripe : messages)
+            stripe.lock.writeLock().lock();
+        for (Stripe<TimeOrderedIds> stripe : accountMessages)
+            stripe.lock.writeLock().lock();
+    }
+
+    private void unlockAll() {
+        for (Stripe<TimeOrderedIds> stripe : accountMessages)
+            stripe.lock.writeLock().unlock();
+        for (MessageStripe stripe : messages)
+            stripe.lock.writeLock().unlock();
+        followLock.writeLock().unlock();
+        accountLock.writeLock().unlock();
+    }
+
+    private MessageStripe messageStripe(int messageID) {
+        // Consecutive message_ids fall in consecutive stripes.
+        return messages[messageID & (STRIPES - 1)];
+    }
+
+    private Stripe<TimeOrderedIds> accountStripe(int accountID) {
+        return accountMessages[accountID & (STRIPES - 1)];
+    }
+
+    private static boolean fits(String value) {
+        return value == null || value.length() <= MAX_LENGTH;
+    }
+
+    private static MessageStripe[] newMessageStripes() {
+        MessageStripe[] stripes = new MessageStripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new MessageStripe();
+        return stripes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Stripe<V>[] newStripes() {
+        Stripe<V>[] stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe<>();
+        return stripes;
+    }
+}
@@ -1,165 +1,145 @@
 package DAO;
 
 import Model.Message;
-import Util.ConnectionUtil;
+import Model.VersionedMessage;
+import Util.JsonUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.sql.*;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
 
-public class MessageDAO {
+/**
+ * Storage of messages and the home timelines built from them. {@link JdbcMessageDAO} keeps them in the H2 database and
+ * {@link MemoryMessageDAO} in memory; {@link Storage} picks one at startup.
+ */
+public interface MessageDAO {
 
     /**
+     * Receives messages streamed out of storage by {@link #forEachMessage(MessageConsumer)}.
+     */
+    @FunctionalInterface
+    interface MessageConsumer {
+        void accept(Message message) throws IOException;
+    }
+
+    /**
+     * Creates the message and adds it to the timelines of its author's followers.
+     *
      * @param message a message to be created, lacking a generated message_id
      * @return the created message with its message_id or null if any error occurred.
      */
     @Nullable
-    public Message createMessage(Message message) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String SQL = "INSERT INTO message(posted_by,message_text,time_posted_epoch) VALUES (?,?,?);";
-            // To update our message with its generated ID we must pass the flag Statement.RETURN_GENERATED_KEYS
-            PreparedStatement preparedStatement = connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
-
-            preparedStatement.setInt(1, message.getPosted_by());
-            preparedStatement.setString(2, message.getMessage_text());
-            preparedStatement.setLong(3, message.getTime_posted_epoch());
-
-            preparedStatement.executeUpdate();
-            ResultSet resultSet = preparedStatement.getGeneratedKeys();
-            if (resultSet.next()) {
-                message.setMessage_id(resultSet.getInt(1));
-                return message;
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-        return null;
-    }
+    Message createMessage(Message message);
+
+    /**
+     * Creates the messages all at once, so either all of them are created or none are.
+     *
+     * @param messages messages to be created, lacking generated message_ids
+     * @return true if every message was created and populated with its message_id, false if none were created
+     */
+    boolean createMessages(List<Message> messages);
 
     /**
      * @return a list of all messages or an empty list if no messaages exist
      */
     @NotNull
-    public List<Message> getAllMessages() {
-        List<Message> messages = new ArrayList<>();
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String SQL = "SELECT * FROM message;";
-            /*
-             * This could be a normal Statement. However,
-             * "If the same SQL statement is executed many times, it may be more efficient to use a PreparedStatement object."
-             * - https://docs.oracle.com/en/java/javase/17/docs/api/java.sql/java/sql/Connection.html#createStatement()
-             */
-            PreparedStatement preparedStatement = connection.prepareStatement(SQL);
-
-            ResultSet resultSet = preparedStatement.executeQuery();
-            while (resultSet.next()) {
-                messages.add(createMessageFromResultSet(resultSet));
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-
-        return messages;
-    }
+    List<Message> getAllMessages();
+
+    /**
+     * Keyset pagination over message_id: the caller passes the last message_id it has seen instead of an offset.
+     *
+     * @param afterMessageID only messages with a greater message_id are returned, 0 to start from the beginning
+     * @param limit          the maximum number of messages to return
+     * @return up to limit messages ordered by message_id or an empty list if there are no more messages
+     */
+    @NotNull
+    List<Message> getMessagesAfter(int afterMessageID, int limit);
+
+    /**
+     * Hands every message to the consumer one at a time, in message_id order, without collecting them.
+     *
+     * @param consumer receives each message as it is read
+     * @return true if every message was handed to the consumer, false if reading failed part way
+     * @throws IOException if the consumer fails, which stops the iteration
+     */
+    boolean forEachMessage(MessageConsumer consumer) throws IOException;
 
     /**
      * @return the message or null if no message exists
      */
     @Nullable
-    public Message getMessage(int messageID) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String SQL = "SELECT * FROM message WHERE message_id=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(SQL);
-
-            preparedStatement.setInt(1, messageID);
-
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if (resultSet.next()) {
-                return createMessageFromResultSet(resultSet);
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-
-        return null;
+    default Message getMessage(int messageID) {
+        VersionedMessage versioned = getVersionedMessage(messageID);
+        return versioned == null ? null : versioned.getMessage();
     }
 
     /**
-     * @return true if such a message was deleted. Otherwise, return false.
+     * @return the message with its version or null if no message exists
      */
-    public boolean deleteMessage(int messageID) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String deleteSQL = "DELETE FROM message WHERE message_id=?;";
-            PreparedStatement deleteStatement = connection.prepareStatement(deleteSQL, Statement.RETURN_GENERATED_KEYS);
-
-            deleteStatement.setInt(1, messageID);
-
-            return deleteStatement.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-        return false;
-    }
+    @Nullable
+    VersionedMessage getVersionedMessage(int messageID);
 
     /**
-     * @param message a message containing the updated message_text, other fields are ignored
-     * @return true if a message was successfully updated. Otherwise, false
+     * Writes the message as {@link JsonUtil#MESSAGE_WRITER} would. Engines that can serialize a message straight from
+     * storage do so without building a Message.
+     *
+     * @return the message's version or -1, writing nothing, if no message exists
      */
-    public boolean updateMessage(int messageID, Message message) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String SQL = "UPDATE message SET message_text=? WHERE message_id=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(SQL);
+    default int writeMessageJson(int messageID, OutputStream out) throws IOException {
+        VersionedMessage versioned = getVersionedMessage(messageID);
+        if (versioned == null)
+            return -1;
+        JsonUtil.MESSAGE_WRITER.writeValue(out, versioned.getMessage());
+        return versioned.getVersion();
+    }
 
-            preparedStatement.setString(1, message.getMessage_text());
-            preparedStatement.setInt(2, messageID);
+    /**
+     * Reads any number of messages at once.
+     *
+     * @return the messages that exist among the message_ids with their versions, in no particular order, an empty list
+     * if none exist, or null if any error occurred
+     */
+    @Nullable
+    List<VersionedMessage> getVersionedMessages(Collection<Integer> messageIDs);
 
-            return preparedStatement.executeUpdate() > 0;
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
+    /**
+     * Deletes the message and returns it. Of several concurrent deletes of the same message, exactly one gets the
+     * message.
+     *
+     * @return the message as it was just before it was deleted or null if no such message was deleted
+     */
+    @Nullable
+    Message deleteMessage(int messageID);
 
-        return false;
-    }
+    /**
+     * Updates the text of the message and increments its version. The result is exactly the message this update
+     * wrote and not one written by a concurrent update.
+     *
+     * @param message a message containing the updated message_text, other fields are ignored
+     * @return the updated message or null if no such message was updated
+     */
+    @Nullable
+    Message updateMessage(int messageID, Message message);
 
     /**
      * @return a possibly empty list of all messages tied to an account or an empty list if no such account exists
      */
     @NotNull
-    public List<Message> getAccountMessages(int accountID) {
-        Connection connection = ConnectionUtil.getConnection();
-        try {
-            String SQL = "SELECT * FROM message WHERE posted_by=?;";
-            PreparedStatement preparedStatement = connection.prepareStatement(SQL);
-
-            preparedStatement.setInt(1, accountID);
-
-            ResultSet resultSet = preparedStatement.executeQuery();
-            List<Message> messages = new ArrayList<>();
-            while (resultSet.next()) {
-                messages.add(createMessageFromResultSet(resultSet));
-            }
-            return messages;
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-        return Collections.emptyList();
-    }
+    List<Message> getAccountMessages(int accountID);
 
+    /**
+     * A page of the account's home timeline: the messages of the accounts it follows, newest first. Pass
+     * Long.MAX_VALUE and Integer.MAX_VALUE as the cursor for the first page.
+     *
+     * @param beforeEpoch     the time_posted_epoch of the last message of the previous page
+     * @param beforeMessageID the message_id of the last message of the previous page
+     * @param limit           the maximum number of messages to return
+     * @return up to limit messages ordered by time_posted_epoch then message_id, both descending, or an empty list if
+     * there are no more messages
+     */
     @NotNull
-    private static Message createMessageFromResultSet(ResultSet resultSet) throws SQLException {
-        int message_id = resultSet.getInt(1);
-        int posted_by = resultSet.getInt(2);
-        String message_text = resultSet.getString(3);
-        long time_posted = resultSet.getLong(4);
-
-        return new Message(message_id, posted_by, message_text, time_posted);
-    }
+    List<Message> getTimeline(int accountID, long beforeEpoch, int beforeMessageID, int limit);
 }
@@ -0,0 +1,52 @@
+package DAO;
+
+import Util.Config;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Picks the storage engine behind the DAOs at startup with the socialmedia.storage system property. With jdbc, the
+ * default, the DAOs read and write the H2 database; with memory, they read and write a {@link MemoryStore}.
+ */
+public final class Storage {
+
+    private static final String ENGINE = Config.getString("storage", "jdbc");
+
+    static {
+        if (!ENGINE.equals("jdbc") && !ENGINE.equals("memory"))
+            throw new IllegalArgumentException("Unknown socialmedia.storage engine " + ENGINE);
+    }
+
+    private Storage() {
+    }
+
+    public static boolean isMemory() {
+        return ENGINE.equals("memory");
+    }
+
+    public static MessageDAO messageDAO() {
+        return isMemory() ? new MemoryMessageDAO(MemoryStore.get()) : new JdbcMessageDAO();
+    }
+
+    public static AccountDAO accountDAO() {
+        return isMemory() ? new MemoryAccountDAO(MemoryStore.get()) : new JdbcAccountDAO();
+    }
+
+    /**
+     * @param backfillSize how many of an account's most recent messages the jdbc engine copies into a new follower's
+     *                     timeline; the memory engine reads timelines from the whole history
+     */
+    public static FollowDAO followDAO(int backfillSize) {
+        return isMemory() ? new MemoryFollowDAO(MemoryStore.get()) : new JdbcFollowDAO(backfillSize);
+    }
+
+    /**
+     * Makes the memory engine, if it is in use, hold exactly what the database holds. The jdbc engine needs nothing.
+     */
+    public static void reload(Connection connection) throws SQLException, IOException {
+        if (isMemory())
+            MemoryStore.get().loadFrom(connection);
+    }
+}
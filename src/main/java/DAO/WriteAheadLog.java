@@ -0,0 +1,487 @@
+package DAO;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The write-ahead log that makes {@link MemoryStore} durable. Every change is appended as one record before it is
+ * applied, and recovery replays the records in order to rebuild the store.
+ * <p>
+ * The log is a directory of segments, wal-&lt;sequence&gt;.log, each a file of segmentBytes mapped into memory, so an
+ * append is a copy into the mapping rather than a system call. A record is its length, a CRC32C checksum of the rest,
+ * a type byte and the type's payload. A new segment file is all zeros, so a zero length marks the end of its records.
+ * A record that does not fit in the rest of a segment starts the next one.
+ * <p>
+ * When an appended record reaches the disk depends on the {@link FsyncPolicy}. With {@link FsyncPolicy#ALWAYS} the
+ * caller waits in {@link #sync(long)}, and the threads waiting at the same time share one fsync: the first becomes the
+ * leader and forces everything appended so far, and the others find their records already durable when it is done.
+ * <p>
+ * A snapshot, snapshot-&lt;sequence&gt;.snap, holds the whole store as of the start of that segment, in the same
+ * record format. Once it is written the segments before it are deleted. Recovery loads the newest snapshot and replays
+ * the segments from its sequence on. It stops at the first record that is cut short or fails its checksum and
+ * discards everything after it: a crash can leave the last pages of the mapping unwritten, in any order.
+ */
+final class WriteAheadLog implements Closeable {
+
+    /**
+     * When appended records are forced to the disk.
+     */
+    enum FsyncPolicy {
+        /**
+         * Before the change is acknowledged, with concurrent changes sharing one fsync. A change that was acknowledged
+         * survives a machine crash.
+         */
+        ALWAYS,
+        /**
+         * By a background thread every fsyncIntervalMillis. A machine crash loses at most the last interval of
+         * changes.
+         */
+        INTERVAL,
+        /**
+         * Whenever the operating system writes the pages back. Changes survive the process dying, but a machine crash
+         * can lose any number of them.
+         */
+        NEVER
+    }
+
+    static final byte ACCOUNT = 1;
+    static final byte PASSWORD = 2;
+    static final byte MESSAGES = 3;
+    static final byte UPDATE = 4;
+    static final byte DELETE = 5;
+    static final byte FOLLOW = 6;
+    static final byte UNFOLLOW = 7;
+    static final byte IDS = 8;
+
+    // The length and the checksum.
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * Writes the payload of a record.
+     */
+    @FunctionalInterface
+    interface Payload {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Receives each record read by {@link #recover(RecordHandler)}.
+     */
+    @FunctionalInterface
+    interface RecordHandler {
+        void accept(byte type, DataInputStream payload) throws IOException;
+    }
+
+    /**
+     * Takes the records of a snapshot.
+     */
+    @FunctionalInterface
+    interface RecordSink {
+        void append(byte type, Payload payload) throws IOException;
+    }
+
+    /**
+     * Writes the contents of a snapshot, see {@link #writeSnapshot(long, SnapshotContents)}.
+     */
+    @FunctionalInterface
+    interface SnapshotContents {
+        void writeTo(RecordSink sink) throws IOException;
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService syncer;
+    private final RecordWriter writer = new RecordWriter();
+    private final LongAdder fsyncs = new LongAdder();
+
+    // Guarded by this.
+    private long sequence;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int position;
+    private long appended;
+
+    private final Object syncMonitor = new Object();
+    // Guarded by syncMonitor.
+    private long durable;
+    private boolean syncing;
+
+    /**
+     * Call {@link #recover(RecordHandler)} before appending.
+     *
+     * @param segmentBytes        the size of each segment file
+     * @param fsyncIntervalMillis how often the records are forced to the disk with {@link FsyncPolicy#INTERVAL}
+     */
+    WriteAheadLog(Path directory, int segmentBytes, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis)
+            throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "write-ahead-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncAppended, fsyncIntervalMillis, fsyncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Hands the records of the newest snapshot and then of every segment after it to the handler, in the order they
+     * were appended. The log is cut at the first damaged record, and appends continue from there.
+     *
+     * @return the number of records replayed
+     */
+    synchronized int recover(RecordHandler handler) throws IOException {
+        for (long temporary : sequences("snapshot-", ".tmp"))
+            Files.delete(snapshotPath(temporary, ".tmp"));
+
+        int records = 0;
+        long first = 0;
+        List<Long> snapshots = sequences("snapshot-", ".snap");
+        if (!snapshots.isEmpty()) {
+            first = snapshots.get(snapshots.size() - 1);
+            Path snapshot = snapshotPath(first, ".snap");
+            try (FileChannel file = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                ByteBuffer contents = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+                int[] replayed = new int[1];
+                if (replay(contents, handler, replayed) != contents.limit())
+                    throw new IOException("Damaged snapshot " + snapshot);
+                records += replayed[0];
+            }
+        }
+
+        boolean damaged = false;
+        for (long segmentSequence : sequences("wal-", ".log")) {
+            if (segmentSequence < first || damaged) {
+                // Covered by the snapshot, or after a damaged record.
+                Files.delete(segmentPath(segmentSequence));
+                continue;
+            }
+            if (channel != null)
+                channel.close();
+            sequence = segmentSequence;
+            channel = FileChannel.open(segmentPath(sequence), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int[] replayed = new int[1];
+            position = replay(segment, handler, replayed);
+            records += replayed[0];
+            // Anything but zeros after the last intact record is a damaged one, or the start of one.
+            for (int i = position; i < segment.capacity(); i++) {
+                if (segment.get(i) != 0) {
+                    damaged = true;
+                    break;
+                }
+            }
+            if (damaged) {
+                for (int i = position; i < segment.capacity(); i++)
+                    segment.put(i, (byte) 0);
+                segment.force();
+            }
+        }
+        if (channel == null)
+            openSegment(first, segmentBytes);
+        return records;
+    }
+
+    /**
+     * @param replayed receives the number of records replayed
+     * @return the offset after the last intact record
+     */
+    private static int replay(ByteBuffer records, RecordHandler handler, int[] replayed) throws IOException {
+        CRC32C crc = new CRC32C();
+        int offset = 0;
+        while (records.limit() - offset >= HEADER_BYTES) {
+            int length = records.getInt(offset);
+            if (length < 1 || length > records.limit() - offset - HEADER_BYTES)
+                break;
+            crc.reset();
+            crc.update(records.slice(offset + HEADER_BYTES, length));
+            if ((int) crc.getValue() != records.getInt(offset + Integer.BYTES))
+                break;
+            byte[] record = new byte[length];
+            records.get(offset + HEADER_BYTES, record);
+            handler.accept(record[0], new DataInputStream(new ByteArrayInputStream(record, 1, length - 1)));
+            offset += HEADER_BYTES + length;
+            replayed[0]++;
+        }
+        return offset;
+    }
+
+    /**
+     * Appends one record. It is durable once {@link #sync(long)} returns for the returned sequence number.
+     *
+     * @return the sequence number of the record
+     */
+    synchronized long append(byte type, Payload payload) throws IOException {
+        ByteBuffer record = writer.frame(type, payload);
+        if (record.remaining() > segment.capacity() - position)
+            roll(record.remaining());
+        segment.put(position, record, 0, record.remaining());
+        position += record.remaining();
+        return ++appended;
+    }
+
+    /**
+     * Waits until the record is on the disk if the fsync policy is {@link FsyncPolicy#ALWAYS}, and returns at once
+     * otherwise.
+     *
+     * @param record the sequence number returned by {@link #append(byte, Payload)}
+     */
+    void sync(long record) throws IOException {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS)
+            force(record);
+    }
+
+    /**
+     * Forces the records up to the given one to the disk, unless a concurrent force already did. While one thread
+     * forces, the others wait, and each then forces again only if its record was appended after that force began.
+     */
+    private void force(long record) throws IOException {
+        synchronized (syncMonitor) {
+            while (durable < record && syncing) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the write-ahead log");
+                }
+            }
+            if (durable >= record)
+                return;
+            syncing = true;
+        }
+        long target = 0;
+        try {
+            MappedByteBuffer current;
+            synchronized (this) {
+                target = appended;
+                current = segment;
+            }
+            // The segments before the current one were forced when it was started.
+            current.force();
+            fsyncs.increment();
+        } catch (UncheckedIOException e) {
+            target = 0;
+            throw e.getCause();
+        } finally {
+            synchronized (syncMonitor) {
+                syncing = false;
+                durable = Math.max(durable, target);
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void syncAppended() {
+        try {
+            long last;
+            synchronized (this) {
+                last = appended;
+            }
+            force(last);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a new segment, so a snapshot taken now covers exactly the segments before it.
+     *
+     * @return the sequence of the new segment
+     */
+    synchronized long roll() throws IOException {
+        roll(0);
+        return sequence;
+    }
+
+    private void roll(int recordBytes) throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            segment.force();
+            fsyncs.increment();
+            synchronized (syncMonitor) {
+                durable = Math.max(durable, appended);
+            }
+        }
+        channel.close();
+        openSegment(sequence + 1, Math.max(segmentBytes, recordBytes));
+    }
+
+    private void openSegment(long segmentSequence, int size) throws IOException {
+        sequence = segmentSequence;
+        channel = FileChannel.open(segmentPath(sequence), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        position = 0;
+    }
+
+    /**
+     * Writes a snapshot holding the whole store as of the start of the segment, then deletes the segments before it
+     * and the older snapshots. The snapshot is written to a temporary file and forced to the disk before it is
+     * renamed into place, so recovery only ever finds complete snapshots.
+     *
+     * @param segmentSequence the sequence returned by {@link #roll()} when the contents were taken
+     */
+    void writeSnapshot(long segmentSequence, SnapshotContents contents) throws IOException {
+        Path temporary = snapshotPath(segmentSequence, ".tmp");
+        RecordWriter records = new RecordWriter();
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(file), 1 << 16);
+            contents.writeTo((type, payload) -> {
+                ByteBuffer record = records.frame(type, payload);
+                out.write(record.array(), 0, record.limit());
+            });
+            out.flush();
+            file.force(true);
+        }
+        Files.move(temporary, snapshotPath(segmentSequence, ".snap"), StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            // Not every platform can force a directory; the rename still reaches the disk eventually.
+        }
+
+        for (long older : sequences("snapshot-", ".snap")) {
+            if (older < segmentSequence)
+                Files.delete(snapshotPath(older, ".snap"));
+        }
+        for (long older : sequences("wal-", ".log")) {
+            if (older < segmentSequence)
+                Files.delete(segmentPath(older));
+        }
+    }
+
+    /**
+     * Deletes every segment and snapshot and starts an empty log.
+     */
+    synchronized void clear() throws IOException {
+        channel.close();
+        for (long older : sequences("snapshot-", ".snap"))
+            Files.delete(snapshotPath(older, ".snap"));
+        for (long older : sequences("wal-", ".log"))
+            Files.delete(segmentPath(older));
+        openSegment(0, segmentBytes);
+    }
+
+    /**
+     * @return the number of fsyncs so far, fewer than the synced appends when group commit shares them
+     */
+    long getFsyncCount() {
+        return fsyncs.sum();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncer != null)
+            syncer.shutdownNow();
+        if (fsyncPolicy != FsyncPolicy.NEVER)
+            segment.force();
+        channel.close();
+    }
+
+    private Path segmentPath(long segmentSequence) {
+        return directory.resolve("wal-" + segmentSequence + ".log");
+    }
+
+    private Path snapshotPath(long segmentSequence, String suffix) {
+        return directory.resolve("snapshot-" + segmentSequence + suffix);
+    }
+
+    /**
+     * @return the sequences in the names of the files with the prefix and suffix, ascending
+     */
+    private List<Long> sequences(String prefix, String suffix) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        sequences.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not one of ours.
+                    }
+                }
+            });
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Frames records in a reused buffer. Not thread safe.
+     */
+    private static final class RecordWriter {
+        private final RecordBuffer buffer = new RecordBuffer();
+        private final DataOutputStream out = new DataOutputStream(buffer);
+        private final CRC32C crc = new CRC32C();
+
+        /**
+         * @return the framed record, valid until the next call
+         */
+        ByteBuffer frame(byte type, Payload payload) throws IOException {
+            buffer.reset();
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(type);
+            payload.writeTo(out);
+            ByteBuffer record = buffer.toByteBuffer();
+            crc.reset();
+            crc.update(record.slice(HEADER_BYTES, record.limit() - HEADER_BYTES));
+            record.putInt(0, record.limit() - HEADER_BYTES);
+            record.putInt(Integer.BYTES, (int) crc.getValue());
+            return record;
+        }
+    }
+
+    /**
+     * Lets a record be written from the buffer it was built in without copying it.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
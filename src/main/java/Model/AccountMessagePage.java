@@ -0,0 +1,74 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of the messages posted by an account.
+ */
+public class AccountMessagePage {
+    /**
+     * The messages in this page, newest first.
+     */
+    public List<Message> messages;
+    /**
+     * The cursor to pass as the "before" query parameter to fetch the following page, or null if this is the last
+     * page.
+     */
+    public String next;
+    /**
+     * The number of messages the account has posted, in all pages, counting only those in the time range if one was
+     * given.
+     */
+    public int count;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public AccountMessagePage() {
+    }
+
+    /**
+     * @param messages the messages in this page
+     * @param next     the cursor for the following page or null if there is none
+     * @param count    the number of messages the account has posted, in the time range if one was given
+     */
+    public AccountMessagePage(List<Message> messages, String next, int count) {
+        this.messages = messages;
+        this.next = next;
+        this.count = count;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountMessagePage{" +
+                "messages=" + messages +
+                ", next='" + next + '\'' +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,106 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a class that models the outcome of a bulk message import: how many lines created a message, how many
+ * failed, and why each failed line failed, up to a limit.
+ */
+public class BulkImportResult {
+    /**
+     * The number of messages created.
+     */
+    public int created;
+    /**
+     * The number of non-blank lines that did not create a message.
+     */
+    public int failed;
+    /**
+     * The first failed lines, in line order. There are fewer errors than failed lines when the list was capped.
+     */
+    public List<LineError> errors = new ArrayList<>();
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public BulkImportResult() {
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<LineError> errors) {
+        this.errors = errors;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImportResult{" +
+                "created=" + created +
+                ", failed=" + failed +
+                ", errors=" + errors +
+                '}';
+    }
+
+    /**
+     * Why one line of the import did not create a message.
+     */
+    public static class LineError {
+        /**
+         * The 1-based line number in the request body.
+         */
+        public int line;
+        public String error;
+
+        public LineError() {
+        }
+
+        public LineError(int line, String error) {
+            this.line = line;
+            this.error = error;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public void setLine(int line) {
+            this.line = line;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return "LineError{" +
+                    "line=" + line +
+                    ", error='" + error + '\'' +
+                    '}';
+        }
+    }
+}
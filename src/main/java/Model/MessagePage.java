@@ -0,0 +1,57 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of messages returned by a paginated request.
+ */
+public class MessagePage {
+    /**
+     * The messages in this page, ordered by message_id.
+     */
+    public List<Message> messages;
+    /**
+     * The cursor to pass as the "after" query parameter to fetch the following page, or null if this is the last page.
+     */
+    public Integer next;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessagePage() {
+    }
+
+    /**
+     * @param messages the messages in this page
+     * @param next     the cursor for the following page or null if there is none
+     */
+    public MessagePage(List<Message> messages, Integer next) {
+        this.messages = messages;
+        this.next = next;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public Integer getNext() {
+        return next;
+    }
+
+    public void setNext(Integer next) {
+        this.next = next;
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next=" + next +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of an account's home timeline.
+ */
+public class TimelinePage {
+    /**
+     * The messages in this page, newest first.
+     */
+    public List<Message> messages;
+    /**
+     * The cursor to pass as the "before" query parameter to fetch the following page, or null if this is the last
+     * page.
+     */
+    public String next;
+
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public TimelinePage() {
+    }
+
+    /**
+     * @param messages the messages in this page
+     * @param next     the cursor for the following page or null if there is none
+     */
+    public TimelinePage(List<Message> messages, String next) {
+        this.messages = messages;
+        this.next = next;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    @Override
+    public String toString() {
+        return "TimelinePage{" +
+                "messages=" + messages +
+                ", next='" + next + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package Model;
+
+/**
+ * A message along with the version of its row, which every update of the message increments. The version is kept
+ * apart from {@link Message} so that the message's JSON representation does not change; it is used to build ETags.
+ */
+public class VersionedMessage {
+    private final Message message;
+    private final int version;
+
+    public VersionedMessage(Message message, int version) {
+        this.message = message;
+        this.version = version;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
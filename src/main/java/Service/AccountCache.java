@@ -0,0 +1,137 @@
+package Service;
+
+import DAO.AccountDAO;
+import Model.Account;
+import Util.Config;
+import Util.LruCache;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-through cache of accounts by account_id and by username, shared by AccountService and MessageService so the
+ * account table is only queried on a cold miss.
+ * <p>
+ * Lookups for accounts that do not exist are cached too, for a shorter time, so repeated requests naming a
+ * nonexistent account (typically abusive traffic) do not each cost a query. Creating an account replaces any such
+ * negative entry for its id and username.
+ */
+public class AccountCache {
+
+    /**
+     * Marks an account_id or username known not to exist.
+     */
+    private static final Account NOT_FOUND = new Account();
+
+    private final AccountDAO accountDAO;
+    private final LruCache<Integer, Account> byId;
+    private final LruCache<String, Account> byUsername;
+    private final long negativeTtlNanos;
+    /**
+     * Bumped by every account creation. A lookup that found nothing while an account was created does not keep the
+     * absence cached, since it may have read before the insert and would otherwise hide the new account. The count is
+     * checked again once the absence is put, as the creation may have cached the account just before.
+     */
+    private final AtomicLong creations = new AtomicLong();
+
+    public AccountCache(AccountDAO accountDAO) {
+        this(accountDAO,
+                Config.getInt("cache.account.maxSize", 10_000),
+                Config.getLong("cache.account.ttlMillis", 300_000),
+                Config.getLong("cache.account.negativeTtlMillis", 5_000));
+    }
+
+    /**
+     * @param maxSize           the maximum number of accounts cached by each of account_id and username
+     * @param ttlMillis         how long an account stays cached
+     * @param negativeTtlMillis how long the absence of an account stays cached
+     */
+    public AccountCache(AccountDAO accountDAO, int maxSize, long ttlMillis, long negativeTtlMillis) {
+        this.accountDAO = accountDAO;
+        this.byId = new LruCache<>(maxSize, ttlMillis);
+        this.byUsername = new LruCache<>(maxSize, ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+    }
+
+    /**
+     * @return the account for a given account_id or null if no such account exists
+     */
+    @Nullable
+    public Account getAccount(int account_id) {
+        Account cached = byId.get(account_id);
+        if (cached != null)
+            return cached == NOT_FOUND ? null : cached;
+
+        long creationsBefore = creations.get();
+        Account account = accountDAO.getAccount(account_id);
+        if (account != null)
+            accountLoaded(account);
+        else if (creations.get() == creationsBefore)
+            cacheAbsence(byId, account_id, creationsBefore);
+        return account;
+    }
+
+    /**
+     * @return the account for a given username or null if no such account exists
+     */
+    @Nullable
+    public Account getAccount(String username) {
+        Account cached = byUsername.get(username);
+        if (cached != null)
+            return cached == NOT_FOUND ? null : cached;
+
+        long creationsBefore = creations.get();
+        Account account = accountDAO.getAccount(username);
+        if (account != null)
+            accountLoaded(account);
+        else if (creations.get() == creationsBefore)
+            cacheAbsence(byUsername, username, creationsBefore);
+        return account;
+    }
+
+    /**
+     * Records a newly created account, replacing any cached absence of its account_id or username.
+     */
+    public void accountCreated(Account account) {
+        creations.incrementAndGet();
+        accountLoaded(account);
+    }
+
+    public void clear() {
+        byId.clear();
+        byUsername.clear();
+    }
+
+    public long getHitCount() {
+        return byId.getHitCount() + byUsername.getHitCount();
+    }
+
+    public long getMissCount() {
+        return byId.getMissCount() + byUsername.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return byId.getEvictionCount() + byUsername.getEvictionCount();
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache, 0 if there have been none
+     */
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private <K> void cacheAbsence(LruCache<K, Account> cache, K key, long creationsBefore) {
+        cache.put(key, NOT_FOUND, negativeTtlNanos);
+        if (creations.get() != creationsBefore)
+            cache.invalidate(key, NOT_FOUND);
+    }
+
+    private void accountLoaded(Account account) {
+        byId.put(account.getAccount_id(), account);
+        byUsername.put(account.getUsername(), account);
+    }
+}
@@ -0,0 +1,158 @@
+package Service;
+
+import Model.Message;
+import Util.IntObjectHashMap;
+import Util.TimeOrderedIds;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index of every account's messages: for each account, the time_posted_epoch and message_id of its
+ * messages in parallel primitive arrays, sorted by time_posted_epoch then message_id. A page of an account's newest
+ * messages before a cursor, or how many of them fall in a time range, is found by binary search without reading the
+ * messages, however many the account has.
+ * <p>
+ * A new message usually has the latest time of its account and is appended; one posted with an earlier time is
+ * inserted in place. Accounts are spread over stripes by account_id, each guarded by its own read-write lock.
+ * <p>
+ * MessageService keeps the index current as it creates and deletes messages. Updates change neither field.
+ */
+public class AccountMessageIndex {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger messageCount = new AtomicInteger();
+
+    public AccountMessageIndex() {
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe();
+    }
+
+    /**
+     * Indexes a new message. Adding a message that is already indexed does nothing.
+     */
+    public void add(Message message) {
+        Stripe stripe = stripe(message.getPosted_by());
+        stripe.lock.writeLock().lock();
+        try {
+            TimeOrderedIds entries = stripe.accounts.get(message.getPosted_by());
+            if (entries == null) {
+                entries = new TimeOrderedIds();
+                stripe.accounts.put(message.getPosted_by(), entries);
+            }
+            if (entries.insert(message.getTime_posted_epoch(), message.getMessage_id()))
+                messageCount.incrementAndGet();
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted message, found by its posted_by and time_posted_epoch. Removing a message that is not indexed
+     * does nothing.
+     */
+    public void remove(Message message) {
+        Stripe stripe = stripe(message.getPosted_by());
+        stripe.lock.writeLock().lock();
+        try {
+            TimeOrderedIds entries = stripe.accounts.get(message.getPosted_by());
+            if (entries == null || !entries.remove(message.getTime_posted_epoch(), message.getMessage_id()))
+                return;
+            messageCount.decrementAndGet();
+            if (entries.size() == 0)
+                stripe.accounts.remove(message.getPosted_by());
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages the account has posted
+     */
+    public int count(int accountID) {
+        Stripe stripe = stripe(accountID);
+        stripe.lock.readLock().lock();
+        try {
+            TimeOrderedIds entries = stripe.accounts.get(accountID);
+            return entries == null ? 0 : entries.size();
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of the account's messages with a time_posted_epoch from sinceEpoch to untilEpoch, both
+     * inclusive
+     */
+    public int count(int accountID, long sinceEpoch, long untilEpoch) {
+        if (sinceEpoch > untilEpoch)
+            return 0;
+        Stripe stripe = stripe(accountID);
+        stripe.lock.readLock().lock();
+        try {
+            TimeOrderedIds entries = stripe.accounts.get(accountID);
+            return entries == null ? 0 : entries.count(sinceEpoch, untilEpoch);
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A page of the account's messages, newest first. Pass Long.MAX_VALUE and Integer.MAX_VALUE as the cursor for the
+     * first page.
+     *
+     * @param sinceEpoch      the earliest time_posted_epoch to include, Long.MIN_VALUE for no limit
+     * @param beforeEpoch     the time_posted_epoch of the last message of the previous page
+     * @param beforeMessageID the message_id of the last message of the previous page
+     * @param limit           the maximum number of message_ids to return
+     * @return the message_ids ordered by time_posted_epoch then message_id, both descending, or an empty list if there
+     * are no more messages
+     */
+    @NotNull
+    public List<Integer> page(int accountID, long sinceEpoch, long beforeEpoch, int beforeMessageID, int limit) {
+        List<Integer> messageIDs = new ArrayList<>();
+        page(accountID, sinceEpoch, beforeEpoch, beforeMessageID, limit, messageIDs);
+        return messageIDs;
+    }
+
+    /**
+     * Adds the message_ids of a page, as {@link #page(int, long, long, int, int)} returns them, to messageIDs.
+     *
+     * @return the time_posted_epoch of the last message_id added, which with it is the cursor for the next page, or
+     * beforeEpoch if none were added
+     */
+    public long page(int accountID, long sinceEpoch, long beforeEpoch, int beforeMessageID, int limit,
+                     List<Integer> messageIDs) {
+        Stripe stripe = stripe(accountID);
+        stripe.lock.readLock().lock();
+        try {
+            TimeOrderedIds entries = stripe.accounts.get(accountID);
+            if (entries == null)
+                return beforeEpoch;
+            return entries.page(sinceEpoch, beforeEpoch, beforeMessageID, limit, messageIDs);
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages indexed
+     */
+    public int getMessageCount() {
+        return messageCount.get();
+    }
+
+    private Stripe stripe(int accountID) {
+        return stripes[accountID & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final IntObjectHashMap<TimeOrderedIds> accounts = new IntObjectHashMap<>();
+    }
+}
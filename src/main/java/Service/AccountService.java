@@ -1,14 +1,41 @@
 package Service;
 
 import DAO.AccountDAO;
+import DAO.Storage;
 import Model.Account;
-import org.jetbrains.annotations.Nullable;
+import Util.PasswordHasher;
+import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Passwords are stored as hashes made by {@link PasswordHasher}. Registration and login run entirely on its threads,
+ * account lookups included, and complete their futures there, so a request thread only hands them over.
+ */
 public class AccountService {
     private final AccountDAO accountDAO;
+    private final AccountCache accountCache;
+    private final PasswordHasher passwordHasher;
 
     public AccountService() {
-        accountDAO = new AccountDAO();
+        this(Storage.accountDAO());
+    }
+
+    private AccountService(AccountDAO accountDAO) {
+        this(accountDAO, new AccountCache(accountDAO));
+    }
+
+    /**
+     * @param accountCache the account cache, shared with MessageService so both see newly created accounts
+     */
+    public AccountService(AccountDAO accountDAO, AccountCache accountCache) {
+        this(accountDAO, accountCache, new PasswordHasher());
+    }
+
+    public AccountService(AccountDAO accountDAO, AccountCache accountCache, PasswordHasher passwordHasher) {
+        this.accountDAO = accountDAO;
+        this.accountCache = accountCache;
+        this.passwordHasher = passwordHasher;
     }
 
     /**
@@ -16,29 +43,66 @@ public class AccountService {
      * characters long, and an Account with that username does not already exist. If all these conditions are met, the
      * response should contain the Account, including its account_id.
      *
-     * @return the newly created account if the operation was successful. Returns null if unsuccessful.
+     * @return a future of the newly created account, with the password as given, if the operation was successful, or
+     * of null if unsuccessful
      */
-    @Nullable
-    public Account createAccount(Account account) {
+    @NotNull
+    public CompletableFuture<Account> createAccount(Account account) {
         if (account.getUsername().isEmpty())
-            return null;
+            return CompletableFuture.completedFuture(null);
         if (account.getPassword().length() < 4)
-            return null;
-        if (accountDAO.getAccount(account.getUsername()) != null)
-            return null;
-        return accountDAO.createAccount(account);
+            return CompletableFuture.completedFuture(null);
+        return passwordHasher.submit(() -> {
+            // Checked before hashing so that taken usernames cost no hash; the unique username still decides races.
+            if (accountCache.getAccount(account.getUsername()) != null)
+                return null;
+            Account created = accountDAO.createAccount(
+                    new Account(account.getUsername(), passwordHasher.hash(account.getPassword())));
+            if (created == null)
+                return null;
+            accountCache.accountCreated(created);
+            return new Account(created.getAccount_id(), account.getUsername(), account.getPassword());
+        });
     }
 
     /**
      * The login will be successful if and only if the username and password provided match a real account existing on
      * the database. If successful, the response body should contain the account, including its account_id.
+     * <p>
+     * A password stored in plaintext or hashed with other parameters than the current ones is hashed again and
+     * replaced on a successful login.
      *
-     * @return the account of the user including its account_id. Otherwise, null if an account could not be retrieved
-     * for any reason.
+     * @return a future of the account of the user including its account_id, with the password as given. Otherwise, of
+     * null if an account could not be retrieved for any reason.
+     */
+    @NotNull
+    public CompletableFuture<Account> loginUser(Account account) {
+        String password = account.getPassword();
+        if (password == null)
+            return CompletableFuture.completedFuture(null);
+        return passwordHasher.submit(() -> {
+            // Read from the database rather than the cache, so a password changed elsewhere is seen at once.
+            Account stored = account.getUsername() == null ? null : accountDAO.getAccount(account.getUsername());
+            // An unknown username costs a verification too, so response times do not reveal which usernames exist.
+            if (!passwordHasher.verify(password, stored == null ? null : stored.getPassword()))
+                return null;
+            if (passwordHasher.needsRehash(stored.getPassword()))
+                accountDAO.updatePassword(stored.getAccount_id(), stored.getPassword(), passwordHasher.hash(password));
+            return new Account(stored.getAccount_id(), stored.getUsername(), password);
+        });
+    }
+
+    /**
+     * @return the hasher registration and login use
      */
-    @Nullable
-    public Account loginUser(Account account) {
-        return accountDAO.loginAccount(account);
+    public PasswordHasher getPasswordHasher() {
+        return passwordHasher;
     }
 
+    /**
+     * Stops the password hashing threads.
+     */
+    public void close() {
+        passwordHasher.close();
+    }
 }
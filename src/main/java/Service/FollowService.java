@@ -0,0 +1,71 @@
+package Service;
+
+import DAO.FollowDAO;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Message;
+import Util.Config;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+public class FollowService {
+    private final FollowDAO followDAO;
+    private final MessageDAO messageDAO;
+
+    public FollowService() {
+        this(Storage.followDAO(Config.getInt("timeline.backfillSize", 1000)), Storage.messageDAO());
+    }
+
+    public FollowService(FollowDAO followDAO, MessageDAO messageDAO) {
+        this.followDAO = followDAO;
+        this.messageDAO = messageDAO;
+    }
+
+    /**
+     * Following will be successful if and only if both accounts exist and are different. Following an account again
+     * is successful and changes nothing.
+     *
+     * @return true if the follower now follows the followee, false if the follow could not be made for any reason
+     */
+    public boolean follow(int followerID, int followeeID) {
+        if (followerID == followeeID)
+            return false;
+        return followDAO.follow(followerID, followeeID);
+    }
+
+    /**
+     * @return true if the follower was following the followee and no longer is, false otherwise
+     */
+    public boolean unfollow(int followerID, int followeeID) {
+        return followDAO.unfollow(followerID, followeeID);
+    }
+
+    /**
+     * @return the account_ids the account follows, empty if none or if no such account exists
+     */
+    @NotNull
+    public List<Integer> getFollowees(int accountID) {
+        return followDAO.getFollowees(accountID);
+    }
+
+    /**
+     * @return the account_ids following the account, empty if none or if no such account exists
+     */
+    @NotNull
+    public List<Integer> getFollowers(int accountID) {
+        return followDAO.getFollowers(accountID);
+    }
+
+    /**
+     * @param beforeEpoch     the time_posted_epoch of the last message of the previous page, Long.MAX_VALUE for the
+     *                        first page
+     * @param beforeMessageID the message_id of the last message of the previous page, Integer.MAX_VALUE for the first
+     *                        page
+     * @return the page of the timeline, newest first, empty once there are no more messages
+     */
+    @NotNull
+    public List<Message> getTimeline(int accountID, long beforeEpoch, int beforeMessageID, int limit) {
+        return messageDAO.getTimeline(accountID, beforeEpoch, beforeMessageID, limit);
+    }
+}
@@ -0,0 +1,335 @@
+package Service;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Model.VersionedMessage;
+import Util.Config;
+import Util.JsonUtil;
+import Util.LruCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-through cache of messages by message_id. MessageService drops an entry when it updates or deletes the
+ * message.
+ * <p>
+ * Each entry can also keep the message's JSON, serialized the first time it is asked for, so a hot message is written
+ * to clients as a ready-made byte array instead of being serialized again on every request. A message first asked for
+ * as JSON is read with {@link MessageDAO#writeMessageJson(int, java.io.OutputStream)}, which the memory engine
+ * serves straight from its off-heap rows, and cached as JSON alone until it is asked for as a Message.
+ * <p>
+ * Entries also keep the version of the message's row, from which {@link #getTaggedMessageJson(int)} derives a strong
+ * ETag, so a conditional request for a cached message is answered without reading the database.
+ */
+public class MessageCache {
+
+    private final MessageDAO messageDAO;
+    private final LruCache<Integer, CachedMessage> cache;
+    private final boolean cacheJson;
+    /**
+     * Bumped by every write. A load that overlapped a write is not cached, since it may have read the row before the
+     * write and would otherwise replace the fresh entry with a stale one.
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    public MessageCache(MessageDAO messageDAO) {
+        this(messageDAO,
+                Config.getInt("cache.message.maxSize", 10_000),
+                Config.getLong("cache.message.ttlMillis", 60_000),
+                Config.getBoolean("cache.message.json", true));
+    }
+
+    /**
+     * @param maxSize   the maximum number of messages cached
+     * @param ttlMillis how long a message stays cached
+     * @param cacheJson whether to keep each message's serialized JSON alongside it
+     */
+    public MessageCache(MessageDAO messageDAO, int maxSize, long ttlMillis, boolean cacheJson) {
+        this.messageDAO = messageDAO;
+        this.cache = new LruCache<>(maxSize, ttlMillis);
+        this.cacheJson = cacheJson;
+    }
+
+    /**
+     * @return the message or null if no message exists
+     */
+    @Nullable
+    public Message getMessage(int messageID) {
+        CachedMessage cached = load(messageID);
+        return cached == null ? null : message(cached);
+    }
+
+    /**
+     * @return the JSON representation of the message or null if no message exists
+     */
+    @Nullable
+    public byte[] getMessageJson(int messageID) throws IOException {
+        CachedMessage cached = loadJson(messageID);
+        return cached == null ? null : json(cached);
+    }
+
+    /**
+     * @return the JSON representation of the message with its ETag, or null if no message exists
+     */
+    @Nullable
+    public TaggedJson getTaggedMessageJson(int messageID) throws IOException {
+        CachedMessage cached = loadJson(messageID);
+        return cached == null ? null : new TaggedJson(json(cached), etag(messageID, cached.version));
+    }
+
+    /**
+     * @return the strong ETag of the message at the version of its row
+     */
+    public static String etag(int messageID, int version) {
+        return "\"" + messageID + "-" + version + "\"";
+    }
+
+    private static Message message(CachedMessage cached) {
+        Message message = cached.message;
+        if (message == null) {
+            try {
+                message = JsonUtil.MESSAGE_READER.readValue(cached.json);
+            } catch (IOException e) {
+                // The JSON was written by the DAO from a stored message.
+                throw new UncheckedIOException(e);
+            }
+            // Racing threads may each parse once; they produce equal messages, so either result may win.
+            cached.message = message;
+        }
+        return message;
+    }
+
+    private byte[] json(CachedMessage cached) throws JsonProcessingException {
+        byte[] json = cached.json;
+        if (json == null) {
+            json = JsonUtil.MESSAGE_WRITER.writeValueAsBytes(cached.message);
+            // Racing threads may each serialize once; they produce identical bytes, so either result may win.
+            if (cacheJson)
+                cached.json = json;
+        }
+        return json;
+    }
+
+    /**
+     * Looks up every message in the cache first, then reads all of the misses with one query.
+     *
+     * @param messageIDs message_ids without duplicates
+     * @return the messages that exist, in the order of messageIDs, none if the misses could not be read
+     */
+    @NotNull
+    public List<Message> getMessages(List<Integer> messageIDs) {
+        List<Message> messages = readMessages(messageIDs);
+        return messages == null ? new ArrayList<>() : messages;
+    }
+
+    /**
+     * Like {@link #getMessages(List)}, but tells messages that no longer exist apart from a failed read.
+     *
+     * @param messageIDs message_ids without duplicates
+     * @return the messages that exist, in the order of messageIDs, or null if the misses could not be read
+     */
+    @Nullable
+    public List<Message> readMessages(List<Integer> messageIDs) {
+        List<CachedMessage> loaded = loadAll(messageIDs);
+        if (loaded == null)
+            return null;
+        List<Message> messages = new ArrayList<>(loaded.size());
+        for (CachedMessage cached : loaded)
+            messages.add(message(cached));
+        return messages;
+    }
+
+    /**
+     * @param messageIDs message_ids without duplicates
+     * @return the JSON array of the messages that exist, in the order of messageIDs, built from each message's cached
+     * JSON where there is one, empty if the misses could not be read
+     */
+    @NotNull
+    public byte[] getMessagesJson(List<Integer> messageIDs) throws JsonProcessingException {
+        List<CachedMessage> loaded = loadAll(messageIDs);
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write('[');
+        if (loaded != null) {
+            for (CachedMessage cached : loaded) {
+                if (json.size() > 1)
+                    json.write(',');
+                json.writeBytes(json(cached));
+            }
+        }
+        json.write(']');
+        return json.toByteArray();
+    }
+
+    /**
+     * Caches a message that has just been created, so is at the first version of its row, replacing any previous
+     * entry.
+     */
+    public void put(Message message) {
+        writes.incrementAndGet();
+        cache.put(message.getMessage_id(), new CachedMessage(message, 0));
+    }
+
+    /**
+     * Drops a message that has been deleted, or whose current state is unknown.
+     */
+    public void invalidate(int messageID) {
+        writes.incrementAndGet();
+        cache.invalidate(messageID);
+    }
+
+    public void clear() {
+        writes.incrementAndGet();
+        cache.clear();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache, 0 if there have been none
+     */
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    @Nullable
+    private CachedMessage load(int messageID) {
+        CachedMessage cached = cache.get(messageID);
+        if (cached != null)
+            return cached;
+
+        long writesBefore = writes.get();
+        VersionedMessage message = messageDAO.getVersionedMessage(messageID);
+        if (message == null)
+            return null;
+        cached = new CachedMessage(message.getMessage(), message.getVersion());
+        cacheLoaded(messageID, cached, writesBefore);
+        return cached;
+    }
+
+    /**
+     * Like {@link #load(int)}, but a miss is read as JSON. Without JSON caching, the entry must hold the Message, so it
+     * is read as one.
+     */
+    @Nullable
+    private CachedMessage loadJson(int messageID) throws IOException {
+        if (!cacheJson)
+            return load(messageID);
+        CachedMessage cached = cache.get(messageID);
+        if (cached != null)
+            return cached;
+
+        long writesBefore = writes.get();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        int version = messageDAO.writeMessageJson(messageID, json);
+        if (version < 0)
+            return null;
+        cached = new CachedMessage(null, version);
+        cached.json = json.toByteArray();
+        cacheLoaded(messageID, cached, writesBefore);
+        return cached;
+    }
+
+    /**
+     * Caches an entry loaded since writesBefore was read, unless a write overlapped the load. A write landing between
+     * that check and the put finds nothing to invalidate yet, so the count is checked again after the put and the
+     * entry, if it is still this one, dropped.
+     */
+    private void cacheLoaded(int messageID, CachedMessage cached, long writesBefore) {
+        if (writes.get() != writesBefore)
+            return;
+        cache.put(messageID, cached);
+        if (writes.get() != writesBefore)
+            cache.invalidate(messageID, cached);
+    }
+
+    @Nullable
+    private List<CachedMessage> loadAll(List<Integer> messageIDs) {
+        CachedMessage[] found = new CachedMessage[messageIDs.size()];
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < found.length; i++) {
+            found[i] = cache.get(messageIDs.get(i));
+            if (found[i] == null)
+                misses.add(messageIDs.get(i));
+        }
+
+        if (!misses.isEmpty()) {
+            long writesBefore = writes.get();
+            List<VersionedMessage> read = messageDAO.getVersionedMessages(misses);
+            if (read == null)
+                return null;
+            Map<Integer, CachedMessage> loaded = new HashMap<>();
+            for (VersionedMessage message : read)
+                loaded.put(message.getMessage().getMessage_id(),
+                        new CachedMessage(message.getMessage(), message.getVersion()));
+            for (int i = 0; i < found.length; i++) {
+                if (found[i] == null) {
+                    found[i] = loaded.get(messageIDs.get(i));
+                    if (found[i] != null)
+                        cacheLoaded(messageIDs.get(i), found[i], writesBefore);
+                }
+            }
+        }
+
+        List<CachedMessage> messages = new ArrayList<>(found.length);
+        for (CachedMessage cached : found) {
+            if (cached != null)
+                messages.add(cached);
+        }
+        return messages;
+    }
+
+    /**
+     * Holds the message, its JSON or both.
+     */
+    private static final class CachedMessage {
+        volatile Message message;
+        final int version;
+        volatile byte[] json;
+
+        CachedMessage(@Nullable Message message, int version) {
+            this.message = message;
+            this.version = version;
+        }
+    }
+
+    /**
+     * A message's JSON together with the ETag of the version it was serialized from.
+     */
+    public static final class TaggedJson {
+        private final byte[] json;
+        private final String etag;
+
+        TaggedJson(byte[] json, String etag) {
+            this.json = json;
+            this.etag = etag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+    }
+}
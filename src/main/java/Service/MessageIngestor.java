@@ -0,0 +1,189 @@
+package Service;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent message inserts into JDBC batches. Each submitted message waits in a bounded queue; a single
+ * writer thread collects up to maxBatchSize messages, or whatever has arrived within maxLatency of the first one, and
+ * inserts them with {@link MessageDAO#createMessages(List)}. Each submitter gets a future that completes with its
+ * message, populated with the generated message_id, or with null if it could not be inserted.
+ * <p>
+ * With a maxLatency of 0 the writer never lingers: a batch is simply everything that queued up while the previous batch
+ * was being written, which adapts the batch size to the load without adding latency when the load is light.
+ * <p>
+ * When the queue is full a submitter waits up to the offer timeout for space and is then rejected, so a burst that
+ * outruns the database slows producers down instead of growing the queue without bound.
+ */
+public class MessageIngestor implements AutoCloseable {
+
+    private final MessageDAO messageDAO;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final long offerTimeoutNanos;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param queueCapacity      the maximum number of messages waiting to be written
+     * @param maxBatchSize       the maximum number of messages written in one batch
+     * @param maxLatencyMillis   how long the first message of a batch may wait for others to join it
+     * @param offerTimeoutMillis how long a submitter waits for space in a full queue before being rejected
+     */
+    public MessageIngestor(MessageDAO messageDAO, int queueCapacity, int maxBatchSize, long maxLatencyMillis,
+                           long offerTimeoutMillis) {
+        this.messageDAO = messageDAO;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        this.writer = new Thread(this::run, "message-ingestor");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a validated message for insertion.
+     *
+     * @return a future completed with the created message or with null if it could not be created
+     * @throws RejectedExecutionException if the queue stayed full for the whole offer timeout or the ingestor is closed
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        if (closed)
+            throw new RejectedExecutionException("Message ingestion has been shut down");
+        Pending pending = new Pending(message);
+        try {
+            if (!queue.offer(pending, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejections.increment();
+                throw new RejectedExecutionException("Message ingestion queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while queueing a message", e);
+        }
+        // A close racing this submit may have let the writer exit without seeing the message. If it is still queued,
+        // take it back; otherwise the writer has taken it and will complete its future.
+        if (closed && queue.remove(pending))
+            throw new RejectedExecutionException("Message ingestion has been shut down");
+        return pending.future;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    // Take whatever is already queued without waiting, then wait out the rest of the window.
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0)
+                        continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                // Treat an interrupt as a shutdown: write what has been collected, then drain the queue.
+                closed = true;
+                write(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                batch.forEach(pending -> pending.future.complete(null));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty())
+            return;
+        List<Message> toInsert = new ArrayList<>(batch.size());
+        for (Pending pending : batch)
+            toInsert.add(pending.message);
+
+        batches.increment();
+        messages.add(batch.size());
+        if (messageDAO.createMessages(toInsert)) {
+            for (Pending pending : batch)
+                pending.future.complete(pending.message);
+            return;
+        }
+        // The batch was rolled back as a whole; retry one by one so a single bad row only fails its own request.
+        for (Pending pending : batch)
+            pending.future.complete(messageDAO.createMessage(pending.message));
+    }
+
+    /**
+     * Stops accepting messages and waits for the queued ones to be written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos) + 5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of batches written so far
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of messages written so far
+     */
+    public long getMessageCount() {
+        return messages.sum();
+    }
+
+    /**
+     * @return the number of submissions rejected because the queue was full
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return the number of messages waiting to be written
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private static final class Pending {
+        final Message message;
+        final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package Service;
+
+import Model.Message;
+import Util.PostingList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index of message_text, from each word to the messages containing it, so a search costs time
+ * in proportion to the matches it considers rather than to the number of messages.
+ * <p>
+ * Text is split into words at every character that is not a letter or digit, and words are lower-cased. A query
+ * matches the messages containing all of its words; words in double quotes must also appear consecutively, in order.
+ * Matches are ranked newest first, by time_posted_epoch and then message_id.
+ * <p>
+ * Every indexed message gets the next document number, and a word's {@link PostingList} holds the document numbers of
+ * the messages containing it in ascending order, so new messages are appended to the compressed lists. An updated
+ * message is indexed again under a new document number and its old one is marked deleted; deleted documents stay in
+ * the lists, skipped by searches, until they outnumber the live ones. The index is then compacted: the live documents
+ * are numbered again in the same order, every list is copied without the deleted ones, and words left without
+ * documents are dropped. A compaction reads fewer than twice as many documents as were deleted since the last one.
+ * <p>
+ * Searches share a read lock and changes take the write lock. Changes are cheap appends, so searches wait little,
+ * except behind the change that compacts the index.
+ */
+public class MessageSearchIndex {
+
+    /**
+     * The number of deleted documents below which the index is not compacted, however few are live.
+     */
+    private static final int MIN_COMPACT_DELETED = 1024;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int[] docMessageID = new int[1024];
+    private long[] docTime = new long[1024];
+    private int docCount;
+    /**
+     * Document number plus one for each message_id, 0 for messages that are not indexed.
+     */
+    private int[] messageDoc = new int[1024];
+    private int liveCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexes a new message, or re-indexes the current text of an updated one.
+     */
+    public void add(Message message) {
+        Map<String, PositionList> words = new LinkedHashMap<>();
+        List<String> tokens = tokenize(message.getMessage_text());
+        for (int position = 0; position < tokens.size(); position++)
+            words.computeIfAbsent(tokens.get(position), key -> new PositionList()).add(position);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(message.getMessage_id());
+            int doc = docCount++;
+            if (doc == docMessageID.length) {
+                docMessageID = Arrays.copyOf(docMessageID, doc * 2);
+                docTime = Arrays.copyOf(docTime, doc * 2);
+            }
+            docMessageID[doc] = message.getMessage_id();
+            docTime[doc] = message.getTime_posted_epoch();
+            if (message.getMessage_id() >= messageDoc.length)
+                messageDoc = Arrays.copyOf(messageDoc, Math.max(messageDoc.length * 2, message.getMessage_id() + 1));
+            messageDoc[message.getMessage_id()] = doc + 1;
+            liveCount++;
+            for (Map.Entry<String, PositionList> word : words.entrySet()) {
+                PositionList positions = word.getValue();
+                postings.computeIfAbsent(word.getKey(), key -> new PostingList())
+                        .add(doc, message.getTime_posted_epoch(), positions.positions, positions.size);
+            }
+            compactIfMostlyDeletedLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a message from search results. Removing a message that is not indexed does nothing.
+     */
+    public void remove(int messageID) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(messageID);
+            compactIfMostlyDeletedLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(int messageID) {
+        if (messageID < 0 || messageID >= messageDoc.length || messageDoc[messageID] == 0)
+            return;
+        deleted.set(messageDoc[messageID] - 1);
+        messageDoc[messageID] = 0;
+        liveCount--;
+    }
+
+    private void compactIfMostlyDeletedLocked() {
+        int deletedCount = docCount - liveCount;
+        if (deletedCount >= MIN_COMPACT_DELETED && deletedCount > liveCount)
+            compactLocked();
+    }
+
+    /**
+     * Numbers the live documents again from 0 in their current order, so every list stays ascending, and copies the
+     * lists without the deleted documents.
+     */
+    private void compactLocked() {
+        int[] newDoc = new int[docCount];
+        int[] newMessageID = new int[Math.max(1024, liveCount)];
+        long[] newTime = new long[newMessageID.length];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                newDoc[doc] = -1;
+                continue;
+            }
+            newDoc[doc] = live;
+            newMessageID[live] = docMessageID[doc];
+            newTime[live] = docTime[doc];
+            messageDoc[docMessageID[doc]] = live + 1;
+            live++;
+        }
+
+        int[] positions = new int[16];
+        Iterator<Map.Entry<String, PostingList>> words = postings.entrySet().iterator();
+        while (words.hasNext()) {
+            Map.Entry<String, PostingList> word = words.next();
+            PostingList list = word.getValue();
+            PostingList compacted = new PostingList();
+            PostingList.Cursor cursor = list.new Cursor();
+            for (int block = 0; block < list.getBlockCount(); block++) {
+                cursor.load(block);
+                for (int i = 0; i < cursor.count(); i++) {
+                    int doc = newDoc[cursor.doc(i)];
+                    if (doc < 0)
+                        continue;
+                    int count = cursor.positionCount(i);
+                    if (count > positions.length)
+                        positions = new int[Math.max(positions.length * 2, count)];
+                    for (int p = 0; p < count; p++)
+                        positions[p] = cursor.position(i, p);
+                    compacted.add(doc, newTime[doc], positions, count);
+                }
+            }
+            if (compacted.size() == 0)
+                words.remove();
+            else
+                word.setValue(compacted);
+        }
+
+        docMessageID = newMessageID;
+        docTime = newTime;
+        docCount = live;
+        deleted.clear();
+    }
+
+    /**
+     * @param query words to match, with phrases in double quotes, e.g. {@code hello "big world"}
+     * @param limit the maximum number of message_ids to return
+     * @return the message_ids of the newest messages matching the query, newest first, or an empty list if the query
+     * has no words or nothing matches
+     */
+    @NotNull
+    public List<Integer> search(String query, int limit) {
+        List<List<String>> phrases = parseQuery(query);
+        if (phrases.isEmpty() || limit <= 0)
+            return new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            Map<String, PostingList.Cursor> cursors = new HashMap<>();
+            PostingList lead = null;
+            String leadWord = null;
+            for (List<String> phrase : phrases) {
+                for (String word : phrase) {
+                    PostingList list = postings.get(word);
+                    if (list == null)
+                        return new ArrayList<>();
+                    cursors.put(word, list.new Cursor());
+                    if (lead == null || list.size() < lead.size()) {
+                        lead = list;
+                        leadWord = word;
+                    }
+                }
+            }
+
+            // Walk the rarest word's list from its newest documents back, checking each against the other words.
+            // Once the top limit are found, blocks whose newest message is older than all of them are skipped.
+            TopMessages top = new TopMessages(limit);
+            PostingList.Cursor leadCursor = cursors.get(leadWord);
+            for (int block = lead.getBlockCount() - 1; block >= 0; block--) {
+                if (top.isFull() && lead.getBlockMaxTime(block) < top.minTime())
+                    continue;
+                leadCursor.load(block);
+                for (int i = leadCursor.count() - 1; i >= 0; i--) {
+                    int doc = leadCursor.doc(i);
+                    if (deleted.get(doc) || !top.accepts(docTime[doc], docMessageID[doc]))
+                        continue;
+                    if (matches(doc, phrases, cursors))
+                        top.add(docTime[doc], docMessageID[doc]);
+                }
+            }
+            return top.messageIDs();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean matches(int doc, List<List<String>> phrases, Map<String, PostingList.Cursor> cursors) {
+        for (List<String> phrase : phrases) {
+            if (phrase.size() == 1) {
+                if (cursors.get(phrase.get(0)).find(doc) < 0)
+                    return false;
+                continue;
+            }
+            // Try every position of the phrase's first word as the start of the phrase.
+            PostingList.Cursor first = cursors.get(phrase.get(0));
+            int firstIndex = first.find(doc);
+            if (firstIndex < 0)
+                return false;
+            int starts = first.positionCount(firstIndex);
+            int[] startPositions = new int[starts];
+            for (int i = 0; i < starts; i++)
+                startPositions[i] = first.position(firstIndex, i);
+            boolean found = false;
+            for (int start = 0; start < starts && !found; start++) {
+                found = true;
+                for (int word = 1; word < phrase.size() && found; word++) {
+                    PostingList.Cursor cursor = cursors.get(phrase.get(word));
+                    int index = cursor.find(doc);
+                    found = index >= 0 && cursor.hasPosition(index, startPositions[start] + word);
+                }
+            }
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of messages in the index
+     */
+    public int getMessageCount() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of distinct words in the index
+     */
+    public int getWordCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes used by the encoded posting lists, excluding per-list overhead
+     */
+    public long getPostingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (PostingList list : postings.values())
+                bytes += list.getEncodedSize();
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the lower-cased words of the text, split at every character that is not a letter or digit
+     */
+    @NotNull
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null)
+            return words;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Splits a query into phrases: each quoted part is one phrase and each word outside quotes is a phrase of its own.
+     * An unclosed quote runs to the end of the query.
+     */
+    static List<List<String>> parseQuery(String query) {
+        List<List<String>> phrases = new ArrayList<>();
+        if (query == null)
+            return phrases;
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> words = tokenize(parts[i]);
+            if (i % 2 == 1) {
+                if (!words.isEmpty())
+                    phrases.add(words);
+            } else {
+                for (String word : words)
+                    phrases.add(List.of(word));
+            }
+        }
+        return phrases;
+    }
+
+    /**
+     * The positions of one word in the message being indexed.
+     */
+    private static final class PositionList {
+        int[] positions = new int[1];
+        int size;
+
+        void add(int position) {
+            if (size == positions.length)
+                positions = Arrays.copyOf(positions, size * 2);
+            positions[size++] = position;
+        }
+    }
+
+    /**
+     * The newest matches found so far, as a min-heap on (time_posted_epoch, message_id) holding at most limit.
+     */
+    private static final class TopMessages {
+        final long[] times;
+        final int[] messageIDs;
+        int size;
+
+        TopMessages(int limit) {
+            times = new long[limit];
+            messageIDs = new int[limit];
+        }
+
+        boolean isFull() {
+            return size == times.length;
+        }
+
+        long minTime() {
+            return times[0];
+        }
+
+        /**
+         * @return whether a message would make it into the top, so is worth checking
+         */
+        boolean accepts(long time, int messageID) {
+            return !isFull() || newer(time, messageID, times[0], messageIDs[0]);
+        }
+
+        void add(long time, int messageID) {
+            if (!isFull()) {
+                int i = size++;
+                times[i] = time;
+                messageIDs[i] = messageID;
+                while (i > 0 && newer(times[(i - 1) / 2], messageIDs[(i - 1) / 2], times[i], messageIDs[i])) {
+                    swap(i, (i - 1) / 2);
+                    i = (i - 1) / 2;
+                }
+                return;
+            }
+            times[0] = time;
+            messageIDs[0] = messageID;
+            int i = 0;
+            while (true) {
+                int oldest = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (newer(times[oldest], messageIDs[oldest], times[child], messageIDs[child]))
+                        oldest = child;
+                }
+                if (oldest == i)
+                    return;
+                swap(i, oldest);
+                i = oldest;
+            }
+        }
+
+        /**
+         * @return the message_ids, newest first
+         */
+        List<Integer> messageIDs() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = i;
+            Arrays.sort(order, (a, b) -> newer(times[a], messageIDs[a], times[b], messageIDs[b]) ? -1
+                    : newer(times[b], messageIDs[b], times[a], messageIDs[a]) ? 1 : 0);
+            List<Integer> result = new ArrayList<>(size);
+            for (Integer i : order)
+                result.add(messageIDs[i]);
+            return result;
+        }
+
+        private void swap(int a, int b) {
+            long time = times[a];
+            times[a] = times[b];
+            times[b] = time;
+            int messageID = messageIDs[a];
+            messageIDs[a] = messageIDs[b];
+            messageIDs[b] = messageID;
+        }
+
+        private static boolean newer(long time, int messageID, long otherTime, int otherMessageID) {
+            return time > otherTime || time == otherTime && messageID > otherMessageID;
+        }
+    }
+}
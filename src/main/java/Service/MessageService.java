@@ -1,20 +1,126 @@
 package Service;
 
-import DAO.AccountDAO;
 import DAO.MessageDAO;
+import DAO.Storage;
+import Model.BulkImportResult;
 import Model.Message;
+import Util.Config;
+import Util.JsonUtil;
+import Util.LineReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class MessageService {
+    /**
+     * The number of counters the accounts' message list versions are spread over.
+     */
+    private static final int ACCOUNT_VERSION_STRIPES = 4096;
+    /**
+     * The number of message_ids taken from an index at a time while streaming a time range.
+     */
+    private static final int STREAM_CHUNK_SIZE = 500;
+    /**
+     * The number of locks the messages' writes are spread over.
+     */
+    private static final int MESSAGE_LOCK_STRIPES = 256;
+
     private final MessageDAO messageDAO;
-    private final AccountDAO accountDAO;
+    private final AccountCache accountCache;
+    private final MessageCache messageCache;
+    private final MessageSearchIndex searchIndex;
+    private final AccountMessageIndex accountIndex;
+    private final MessageTimeIndex timeIndex;
+    private final int bulkChunkSize = Config.getInt("bulk.chunkSize", 1000);
+    private final int bulkMaxErrors = Config.getInt("bulk.maxErrors", 1000);
+    private final int bulkMaxLineLength = Config.getInt("bulk.maxLineLength", 4096);
+    /**
+     * Batches inserts from concurrent createMessage calls when socialmedia.ingest.enabled is set, otherwise null.
+     */
+    @Nullable
+    private final MessageIngestor ingestor;
+    /**
+     * Versions of each account's list of messages, bumped after every write that changes it. Accounts share counters
+     * by account_id modulo their number, so a write may also change the ETag of another account's list, which only
+     * costs that account a full response; a list can never keep its ETag through a change to it.
+     */
+    private final AtomicLongArray accountVersions = new AtomicLongArray(ACCOUNT_VERSION_STRIPES);
+    /**
+     * Random per instance, as the versions start from 0 again on every start and are not shared between instances.
+     */
+    private final long versionGeneration = ThreadLocalRandom.current().nextLong();
+    /**
+     * Held by message_id modulo their number across a write to the database and the index changes that follow it, so
+     * that the indexes change in the order the writes were applied: without it, an update could re-index a message
+     * after a concurrent delete had removed it.
+     */
+    private final Object[] messageLocks = new Object[MESSAGE_LOCK_STRIPES];
+    /**
+     * Bumped by every update and delete under its message's lock. A created message has no message_id, so no lock,
+     * until it is inserted, and an update or delete of it may run before it is indexed: a creation that sees the count
+     * change over its insert reads the message again before indexing it.
+     */
+    private final AtomicLong messageWrites = new AtomicLong();
 
     public MessageService() {
-        accountDAO = new AccountDAO();
-        messageDAO = new MessageDAO();
+        this(new AccountCache(Storage.accountDAO()));
+    }
+
+    /**
+     * @param accountCache the account cache used to check that posted_by exists, shared with AccountService
+     */
+    public MessageService(AccountCache accountCache) {
+        this(accountCache, Storage.messageDAO());
+    }
+
+    private MessageService(AccountCache accountCache, MessageDAO messageDAO) {
+        this(accountCache, messageDAO, new MessageCache(messageDAO));
+    }
+
+    /**
+     * Builds the search index, the account index and the time index from one pass over every message in the database.
+     *
+     * @param accountCache the account cache used to check that posted_by exists, shared with AccountService
+     * @param messageCache the message cache read by getMessage, kept current by updates and deletes
+     */
+    public MessageService(AccountCache accountCache, MessageDAO messageDAO, MessageCache messageCache) {
+        this.accountCache = accountCache;
+        this.messageDAO = messageDAO;
+        this.messageCache = messageCache;
+        this.searchIndex = new MessageSearchIndex();
+        this.accountIndex = new AccountMessageIndex();
+        this.timeIndex = new MessageTimeIndex(Config.getLong("messages.timeBucketSeconds", 3600));
+        for (int i = 0; i < MESSAGE_LOCK_STRIPES; i++)
+            messageLocks[i] = new Object();
+        try {
+            messageDAO.forEachMessage(message -> {
+                searchIndex.add(message);
+                accountIndex.add(message);
+                timeIndex.add(message);
+            });
+        } catch (IOException e) {
+            // No index throws IOException.
+            throw new UncheckedIOException(e);
+        }
+        if (Config.getBoolean("ingest.enabled", false)) {
+            ingestor = new MessageIngestor(messageDAO,
+                    Config.getInt("ingest.queueCapacity", 10_000),
+                    Config.getInt("ingest.maxBatchSize", 256),
+                    Config.getLong("ingest.maxLatencyMillis", 0),
+                    Config.getLong("ingest.offerTimeoutMillis", 50));
+        } else {
+            ingestor = null;
+        }
     }
 
     /**
@@ -23,16 +129,128 @@ public class MessageService {
      * message, including its message_id.
      *
      * @return the created message with its message_id or null if the message could not be created for any reason
+     * @throws java.util.concurrent.RejectedExecutionException if batched ingestion is enabled and its queue is full
      */
     @Nullable
     public Message createMessage(Message message) {
-        if (message.getMessage_text().isEmpty())
+        if (validate(message) != null)
             return null;
+        long writesBefore = messageWrites.get();
+        Message created = ingestor != null ? ingestor.submit(message).join() : messageDAO.createMessage(message);
+        if (created != null)
+            indexCreated(created, writesBefore, true);
+        return created;
+    }
+
+    /**
+     * Adds a message inserted since writesBefore was read to the indexes, and to the cache if asked. If any message
+     * was updated or deleted meanwhile, this one may have been, finding nothing to change in the indexes, so it is read
+     * again and indexed as it is now, or not at all if it is gone.
+     */
+    private void indexCreated(Message created, long writesBefore, boolean cache) {
+        synchronized (lockFor(created.getMessage_id())) {
+            Message current = messageWrites.get() == writesBefore
+                    ? created : messageDAO.getMessage(created.getMessage_id());
+            if (current != null) {
+                if (cache)
+                    messageCache.put(current);
+                searchIndex.add(current);
+                accountIndex.add(current);
+                timeIndex.add(current);
+            }
+        }
+        bumpAccountVersion(created.getPosted_by());
+    }
+
+    /**
+     * @return why the message cannot be created, or null if it can
+     */
+    @Nullable
+    private String validate(Message message) {
+        if (message.getMessage_text() == null || message.getMessage_text().isEmpty())
+            return "message_text must not be blank";
         if (message.getMessage_text().length() > 255)
-            return null;
-        if (accountDAO.getAccount(message.getPosted_by()) == null)
-            return null;
-        return messageDAO.createMessage(message);
+            return "message_text must not be over 255 characters";
+        if (accountCache.getAccount(message.getPosted_by()) == null)
+            return "posted_by must be an existing account_id";
+        return null;
+    }
+
+    /**
+     * Creates a message for every line of newline-delimited JSON, each line a message as for createMessage and
+     * validated by the same rules. Lines are read as they arrive and valid messages are inserted in chunks of
+     * socialmedia.bulk.chunkSize, each chunk one JDBC batch in one transaction, so memory use does not depend on the
+     * size of the input. Blank lines are skipped.
+     *
+     * @return how many messages were created and why the other lines failed, with at most socialmedia.bulk.maxErrors
+     * errors listed
+     * @throws IOException if reading the input fails, after the chunks read before it were created
+     */
+    @NotNull
+    public BulkImportResult importMessages(Reader ndjson) throws IOException {
+        BulkImportResult result = new BulkImportResult();
+        LineReader reader = new LineReader(ndjson, bulkMaxLineLength);
+        List<Message> chunk = new ArrayList<>(bulkChunkSize);
+        int[] chunkLines = new int[bulkChunkSize];
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank())
+                continue;
+            int lineNumber = reader.getLineNumber();
+            if (reader.wasTruncated()) {
+                addError(result, lineNumber, "line is longer than " + bulkMaxLineLength + " characters");
+                continue;
+            }
+            Message message;
+            try {
+                message = JsonUtil.MESSAGE_READER.readValue(line);
+            } catch (JsonProcessingException e) {
+                addError(result, lineNumber, "invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            String error = message == null ? "expected a JSON object" : validate(message);
+            if (error != null) {
+                addError(result, lineNumber, error);
+                continue;
+            }
+            chunkLines[chunk.size()] = lineNumber;
+            chunk.add(message);
+            if (chunk.size() == bulkChunkSize) {
+                insertChunk(chunk, chunkLines, result);
+                chunk.clear();
+            }
+        }
+        insertChunk(chunk, chunkLines, result);
+        return result;
+    }
+
+    private void insertChunk(List<Message> chunk, int[] chunkLines, BulkImportResult result) {
+        if (chunk.isEmpty())
+            return;
+        long writesBefore = messageWrites.get();
+        if (messageDAO.createMessages(chunk)) {
+            result.created += chunk.size();
+            for (Message message : chunk)
+                indexCreated(message, writesBefore, false);
+            return;
+        }
+        // The chunk was rolled back as a whole; retry one by one so only the lines that cannot be inserted fail.
+        for (int i = 0; i < chunk.size(); i++) {
+            writesBefore = messageWrites.get();
+            Message created = messageDAO.createMessage(chunk.get(i));
+            if (created == null) {
+                addError(result, chunkLines[i], "the message could not be inserted");
+            } else {
+                result.created++;
+                indexCreated(created, writesBefore, false);
+            }
+        }
+    }
+
+    private void addError(BulkImportResult result, int line, String error) {
+        result.failed++;
+        if (result.errors.size() < bulkMaxErrors)
+            result.errors.add(new BulkImportResult.LineError(line, error));
     }
 
     /**
@@ -43,9 +261,66 @@ public class MessageService {
         return messageDAO.getAllMessages();
     }
 
+    /**
+     * @param afterMessageID the last message_id of the previous page, 0 for the first page
+     * @param limit          the maximum number of messages in the page
+     * @return the page of messages ordered by message_id, empty once there are no more messages
+     */
+    @NotNull
+    public List<Message> getMessagesAfter(int afterMessageID, int limit) {
+        return messageDAO.getMessagesAfter(afterMessageID, limit);
+    }
+
+    /**
+     * Streams every message to the consumer without holding them all in memory.
+     *
+     * @return true if every message was streamed, false if reading them failed part way
+     */
+    public boolean forEachMessage(MessageDAO.MessageConsumer consumer) throws IOException {
+        return messageDAO.forEachMessage(consumer);
+    }
+
     @Nullable
     public Message getMessage(int messageID) {
-        return messageDAO.getMessage(messageID);
+        return messageCache.getMessage(messageID);
+    }
+
+    /**
+     * @return the JSON representation of the message or null if no message exists
+     */
+    @Nullable
+    public byte[] getMessageJson(int messageID) throws IOException {
+        return messageCache.getMessageJson(messageID);
+    }
+
+    /**
+     * @return the JSON representation of the message with the ETag of its current version, or null if no message
+     * exists; a cached message is answered without reading the database
+     */
+    @Nullable
+    public MessageCache.TaggedJson getTaggedMessageJson(int messageID) throws IOException {
+        return messageCache.getTaggedMessageJson(messageID);
+    }
+
+    /**
+     * @return the messages that exist among the message_ids, in the order first requested, each only once
+     */
+    @NotNull
+    public List<Message> getMessages(List<Integer> messageIDs) {
+        return messageCache.getMessages(distinct(messageIDs));
+    }
+
+    /**
+     * @return the JSON array of the messages that exist among the message_ids, in the order first requested, each
+     * only once
+     */
+    @NotNull
+    public byte[] getMessagesJson(List<Integer> messageIDs) throws IOException {
+        return messageCache.getMessagesJson(distinct(messageIDs));
+    }
+
+    private static List<Integer> distinct(List<Integer> messageIDs) {
+        return new ArrayList<>(new LinkedHashSet<>(messageIDs));
     }
 
     /**
@@ -53,12 +328,18 @@ public class MessageService {
      */
     @Nullable
     public Message deleteMessage(int messageID) {
-        Message message = messageDAO.getMessage(messageID);
-        if (message == null)
-            return null;
-        if (messageDAO.deleteMessage(messageID))
+        synchronized (lockFor(messageID)) {
+            Message message = messageDAO.deleteMessage(messageID);
+            messageCache.invalidate(messageID);
+            if (message != null) {
+                messageWrites.incrementAndGet();
+                searchIndex.remove(messageID);
+                accountIndex.remove(message);
+                timeIndex.remove(message);
+                bumpAccountVersion(message.getPosted_by());
+            }
             return message;
-        return null;
+        }
     }
 
     /**
@@ -72,15 +353,26 @@ public class MessageService {
      */
     @Nullable
     public Message updateMessage(int messageID, Message message) {
-        if (messageDAO.getMessage(messageID) == null)
-            return null;
         if (message.getMessage_text().isEmpty())
             return null;
         if (message.getMessage_text().length() > 255)
             return null;
-        if (messageDAO.updateMessage(messageID, message))
-            return messageDAO.getMessage(messageID);
-        return null;
+        synchronized (lockFor(messageID)) {
+            Message updated = messageDAO.updateMessage(messageID, message);
+            // Invalidated rather than refreshed: two concurrent updates could put their results in the opposite order
+            // to the one they were applied in, leaving the older text cached.
+            messageCache.invalidate(messageID);
+            if (updated != null) {
+                messageWrites.incrementAndGet();
+                searchIndex.add(updated);
+                bumpAccountVersion(updated.getPosted_by());
+            }
+            return updated;
+        }
+    }
+
+    private Object lockFor(int messageID) {
+        return messageLocks[Math.floorMod(messageID, MESSAGE_LOCK_STRIPES)];
     }
 
     /**
@@ -91,4 +383,190 @@ public class MessageService {
         return messageDAO.getAccountMessages(accountID);
     }
 
+    /**
+     * A page of the account's messages, newest first, found in the account index and read through the message cache.
+     * Pass Long.MIN_VALUE as sinceEpoch and Long.MAX_VALUE and Integer.MAX_VALUE as the cursor for the first page of
+     * all of them.
+     *
+     * @param sinceEpoch      the earliest time_posted_epoch to include
+     * @param beforeEpoch     the time_posted_epoch of the last message of the previous page
+     * @param beforeMessageID the message_id of the last message of the previous page
+     * @param limit           the maximum number of messages in the page
+     * @return up to limit messages ordered by time_posted_epoch then message_id, both descending, or an empty list if
+     * there are no more messages
+     */
+    @NotNull
+    public List<Message> getAccountMessagesPage(int accountID, long sinceEpoch, long beforeEpoch, int beforeMessageID,
+                                                int limit) {
+        // A message deleted since the index was read is left out.
+        return messageCache.getMessages(accountIndex.page(accountID, sinceEpoch, beforeEpoch, beforeMessageID, limit));
+    }
+
+    /**
+     * @return the number of the account's messages with a time_posted_epoch from sinceEpoch to untilEpoch, both
+     * inclusive, counted in the account index
+     */
+    public int countAccountMessages(int accountID, long sinceEpoch, long untilEpoch) {
+        return accountIndex.count(accountID, sinceEpoch, untilEpoch);
+    }
+
+    /**
+     * Streams the account's messages with a time_posted_epoch from sinceEpoch to untilEpoch, both inclusive, newest
+     * first, reading them through the message cache a chunk at a time so memory use does not depend on the size of
+     * the range.
+     *
+     * @return true if every message was streamed, false if reading them failed part way
+     */
+    public boolean forEachAccountMessageBetween(int accountID, long sinceEpoch, long untilEpoch,
+                                                MessageDAO.MessageConsumer consumer) throws IOException {
+        return forEachPage((beforeEpoch, beforeMessageID, messageIDs) -> accountIndex.page(accountID, sinceEpoch,
+                beforeEpoch, beforeMessageID, STREAM_CHUNK_SIZE, messageIDs), untilEpoch, consumer);
+    }
+
+    /**
+     * A page of every account's messages in a time range, newest first, found in the time index and read through the
+     * message cache. Pass the end of the range and Integer.MAX_VALUE as the cursor for the first page.
+     *
+     * @param sinceEpoch      the earliest time_posted_epoch to include
+     * @param beforeEpoch     the time_posted_epoch of the last message of the previous page
+     * @param beforeMessageID the message_id of the last message of the previous page
+     * @param limit           the maximum number of messages in the page
+     * @return up to limit messages ordered by time_posted_epoch then message_id, both descending, or an empty list if
+     * there are no more messages
+     */
+    @NotNull
+    public List<Message> getMessagesBetween(long sinceEpoch, long beforeEpoch, int beforeMessageID, int limit) {
+        // A message deleted since the index was read is left out.
+        return messageCache.getMessages(timeIndex.page(sinceEpoch, beforeEpoch, beforeMessageID, limit));
+    }
+
+    /**
+     * @return the number of messages with a time_posted_epoch from sinceEpoch to untilEpoch, both inclusive, counted
+     * in the time index
+     */
+    public int countMessagesBetween(long sinceEpoch, long untilEpoch) {
+        return timeIndex.count(sinceEpoch, untilEpoch);
+    }
+
+    /**
+     * Streams the messages with a time_posted_epoch from sinceEpoch to untilEpoch, both inclusive, newest first,
+     * reading them through the message cache a chunk at a time so memory use does not depend on the size of the range.
+     *
+     * @return true if every message was streamed, false if reading them failed part way
+     */
+    public boolean forEachMessageBetween(long sinceEpoch, long untilEpoch, MessageDAO.MessageConsumer consumer)
+            throws IOException {
+        return forEachPage((beforeEpoch, beforeMessageID, messageIDs) ->
+                timeIndex.page(sinceEpoch, beforeEpoch, beforeMessageID, STREAM_CHUNK_SIZE, messageIDs),
+                untilEpoch, consumer);
+    }
+
+    /**
+     * Takes pages of message_ids from the index newest first, starting at untilEpoch, and streams their messages,
+     * each page continuing from the last message_id of the one before. Messages deleted since their page was taken are
+     * left out.
+     *
+     * @return true if every message was streamed, false if reading a page failed
+     */
+    private boolean forEachPage(Pager pager, long untilEpoch, MessageDAO.MessageConsumer consumer) throws IOException {
+        long beforeEpoch = untilEpoch;
+        int beforeMessageID = Integer.MAX_VALUE;
+        List<Integer> messageIDs = new ArrayList<>(STREAM_CHUNK_SIZE);
+        while (true) {
+            long lastEpoch = pager.page(beforeEpoch, beforeMessageID, messageIDs);
+            if (messageIDs.isEmpty())
+                return true;
+            List<Message> messages = messageCache.readMessages(messageIDs);
+            if (messages == null)
+                return false;
+            for (Message message : messages)
+                consumer.accept(message);
+            // The cursor comes from the index rather than the messages read, so it moves past deleted ones too.
+            beforeEpoch = lastEpoch;
+            beforeMessageID = messageIDs.get(messageIDs.size() - 1);
+            messageIDs.clear();
+        }
+    }
+
+    /**
+     * Adds the message_ids of the page before a cursor from an index to messageIDs.
+     */
+    @FunctionalInterface
+    private interface Pager {
+        /**
+         * @return the time_posted_epoch of the last message_id added
+         */
+        long page(long beforeEpoch, int beforeMessageID, List<Integer> messageIDs);
+    }
+
+    /**
+     * Computed from memory alone. Read it before the messages: a version is bumped only after its write, so the ETag
+     * can at worst be older than the messages read after it, never newer.
+     *
+     * @return the strong ETag of the current version of the account's list of messages
+     */
+    @NotNull
+    public String getAccountMessagesETag(int accountID) {
+        long version = accountVersions.get(Math.floorMod(accountID, ACCOUNT_VERSION_STRIPES));
+        return "\"" + Long.toHexString(versionGeneration) + "-" + accountID + "-" + version + "\"";
+    }
+
+    private void bumpAccountVersion(int accountID) {
+        accountVersions.incrementAndGet(Math.floorMod(accountID, ACCOUNT_VERSION_STRIPES));
+    }
+
+    /**
+     * Searches message_text for messages containing every word of the query, see {@link MessageSearchIndex}.
+     *
+     * @param query words to match, with phrases in double quotes
+     * @param limit the maximum number of messages to return
+     * @return the newest matching messages, newest first, or an empty list if nothing matches
+     */
+    @NotNull
+    public List<Message> searchMessages(String query, int limit) {
+        List<Message> messages = new ArrayList<>();
+        for (int messageID : searchIndex.search(query, limit)) {
+            // A message deleted since it was found is left out.
+            Message message = messageCache.getMessage(messageID);
+            if (message != null)
+                messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * @return the message cache, for its statistics
+     */
+    public MessageCache getMessageCache() {
+        return messageCache;
+    }
+
+    /**
+     * @return the account index, for its statistics
+     */
+    public AccountMessageIndex getAccountIndex() {
+        return accountIndex;
+    }
+
+    /**
+     * @return the time index, for its statistics
+     */
+    public MessageTimeIndex getTimeIndex() {
+        return timeIndex;
+    }
+
+    /**
+     * @return the search index, for its statistics
+     */
+    public MessageSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Writes any messages still waiting in the ingestion queue and stops the ingestion thread.
+     */
+    public void close() {
+        if (ingestor != null)
+            ingestor.close();
+    }
 }
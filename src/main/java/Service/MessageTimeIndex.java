@@ -0,0 +1,164 @@
+package Service;
+
+import Model.Message;
+import Util.TimeOrderedIds;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index of every message by time_posted_epoch, partitioned into buckets of bucketSeconds each. A bucket
+ * holds the time_posted_epoch and message_id of its messages in parallel primitive arrays sorted by time then
+ * message_id, so a new message only moves the entries of its own bucket, and a page or a count of the messages in a
+ * time range only visits the buckets the range covers, however many messages there are outside it.
+ * <p>
+ * Buckets are created when a message first falls in them and dropped when their last message is deleted, so gaps in
+ * time cost nothing. One read-write lock guards the whole index: writes are short, as they touch one bucket.
+ * <p>
+ * MessageService keeps the index current as it creates and deletes messages. Updates change neither field.
+ */
+public class MessageTimeIndex {
+
+    private final long bucketSeconds;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Long, TimeOrderedIds> buckets = new TreeMap<>();
+    private int messageCount;
+
+    /**
+     * @param bucketSeconds the span of time_posted_epoch covered by each bucket
+     */
+    public MessageTimeIndex(long bucketSeconds) {
+        if (bucketSeconds <= 0)
+            throw new IllegalArgumentException("bucketSeconds must be positive");
+        this.bucketSeconds = bucketSeconds;
+    }
+
+    /**
+     * Indexes a new message. Adding a message that is already indexed does nothing.
+     */
+    public void add(Message message) {
+        lock.writeLock().lock();
+        try {
+            TimeOrderedIds bucket = buckets.computeIfAbsent(bucket(message.getTime_posted_epoch()),
+                    key -> new TimeOrderedIds());
+            if (bucket.insert(message.getTime_posted_epoch(), message.getMessage_id()))
+                messageCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted message, found by its time_posted_epoch. Removing a message that is not indexed does nothing.
+     */
+    public void remove(Message message) {
+        long key = bucket(message.getTime_posted_epoch());
+        lock.writeLock().lock();
+        try {
+            TimeOrderedIds bucket = buckets.get(key);
+            if (bucket == null || !bucket.remove(message.getTime_posted_epoch(), message.getMessage_id()))
+                return;
+            messageCount--;
+            if (bucket.size() == 0)
+                buckets.remove(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages with a time_posted_epoch from sinceEpoch to untilEpoch, both inclusive
+     */
+    public int count(long sinceEpoch, long untilEpoch) {
+        if (sinceEpoch > untilEpoch)
+            return 0;
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (TimeOrderedIds bucket : buckets.subMap(bucket(sinceEpoch), true, bucket(untilEpoch), true).values()) {
+                // Only the first and last bucket can hold messages outside the range; the others count whole.
+                count += bucket.getTime(0) >= sinceEpoch && bucket.getTime(bucket.size() - 1) <= untilEpoch
+                        ? bucket.size() : bucket.count(sinceEpoch, untilEpoch);
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A page of the messages in a time range, newest first. Pass the end of the range and Integer.MAX_VALUE as the
+     * cursor for the first page.
+     *
+     * @param sinceEpoch      the earliest time_posted_epoch to include, Long.MIN_VALUE for no limit
+     * @param beforeEpoch     the time_posted_epoch of the last message of the previous page
+     * @param beforeMessageID the message_id of the last message of the previous page
+     * @param limit           the maximum number of message_ids to return
+     * @return the message_ids ordered by time_posted_epoch then message_id, both descending, or an empty list if there
+     * are no more messages
+     */
+    @NotNull
+    public List<Integer> page(long sinceEpoch, long beforeEpoch, int beforeMessageID, int limit) {
+        List<Integer> messageIDs = new ArrayList<>();
+        page(sinceEpoch, beforeEpoch, beforeMessageID, limit, messageIDs);
+        return messageIDs;
+    }
+
+    /**
+     * Adds the message_ids of a page, as {@link #page(long, long, int, int)} returns them, to messageIDs.
+     *
+     * @return the time_posted_epoch of the last message_id added, which with it is the cursor for the next page, or
+     * beforeEpoch if none were added
+     */
+    public long page(long sinceEpoch, long beforeEpoch, int beforeMessageID, int limit, List<Integer> messageIDs) {
+        long lastEpoch = beforeEpoch;
+        if (sinceEpoch > beforeEpoch)
+            return lastEpoch;
+        lock.readLock().lock();
+        try {
+            for (TimeOrderedIds bucket : buckets
+                    .subMap(bucket(sinceEpoch), true, bucket(beforeEpoch), true).descendingMap().values()) {
+                int size = messageIDs.size();
+                if (size == limit)
+                    break;
+                long bucketLastEpoch = bucket.page(sinceEpoch, beforeEpoch, beforeMessageID, limit, messageIDs);
+                if (messageIDs.size() > size)
+                    lastEpoch = bucketLastEpoch;
+            }
+            return lastEpoch;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of messages indexed
+     */
+    public int getMessageCount() {
+        lock.readLock().lock();
+        try {
+            return messageCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of buckets holding at least one message
+     */
+    public int getBucketCount() {
+        lock.readLock().lock();
+        try {
+            return buckets.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long bucket(long epoch) {
+        return Math.floorDiv(epoch, bucketSeconds);
+    }
+}
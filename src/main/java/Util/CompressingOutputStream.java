@@ -0,0 +1,152 @@
+package Util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a response body with gzip or deflate as it is written, using only the JDK's Deflater, so a body of any
+ * size is compressed without being held in memory.
+ * <p>
+ * The first threshold bytes are buffered. A body that ends within them is written uncompressed, as compressing less
+ * than a packet saves nothing; once the body outgrows them, onCompress is called, to set Content-Encoding while the
+ * response is still uncommitted, and everything from then on goes through the Deflater.
+ * <p>
+ * Closing finishes the compressed stream and releases the Deflater's native memory but leaves the underlying stream
+ * open, as the servlet container owns it. Not thread safe.
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private final OutputStream out;
+    private final Representation.Encoding encoding;
+    private final int level;
+    private final int threshold;
+    private final Runnable onCompress;
+    private byte[] buffer;
+    private int count;
+    private Deflater deflater;
+    private CRC32 crc;
+    private byte[] deflated;
+    private boolean closed;
+
+    /**
+     * @param encoding   IDENTITY to pass everything through unbuffered, or the compression to apply
+     * @param level      the Deflater compression level, 1 (fastest) to 9 (smallest)
+     * @param threshold  the size in bytes a body must exceed to be compressed
+     * @param onCompress called once, before the first compressed byte is written, if the body is compressed
+     */
+    public CompressingOutputStream(OutputStream out, Representation.Encoding encoding, int level, int threshold,
+                                   Runnable onCompress) {
+        this.out = out;
+        this.encoding = encoding;
+        this.level = level;
+        this.threshold = threshold;
+        this.onCompress = onCompress;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (encoding == Representation.Encoding.IDENTITY) {
+            out.write(bytes, offset, length);
+            return;
+        }
+        if (deflater == null) {
+            if (count + length <= threshold) {
+                if (buffer == null || count + length > buffer.length)
+                    buffer = Arrays.copyOf(buffer == null ? new byte[0] : buffer,
+                            Math.min(threshold, Math.max(count + length, 2 * count + 512)));
+                System.arraycopy(bytes, offset, buffer, count, length);
+                count += length;
+                return;
+            }
+            startCompressing();
+        }
+        deflate(bytes, offset, length);
+    }
+
+    private void startCompressing() throws IOException {
+        onCompress.run();
+        boolean gzip = encoding == Representation.Encoding.GZIP;
+        // gzip wraps raw deflate data in its own header and trailer; HTTP's deflate is the zlib format.
+        deflater = new Deflater(level, gzip);
+        deflated = new byte[8192];
+        if (gzip) {
+            crc = new CRC32();
+            // Magic number, deflate method, no flags, no modification time, no extra flags, unknown OS.
+            out.write(new byte[]{(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0,
+                    (byte) 0xff});
+        }
+        if (count > 0)
+            deflate(buffer, 0, count);
+        buffer = null;
+    }
+
+    private void deflate(byte[] bytes, int offset, int length) throws IOException {
+        if (crc != null)
+            crc.update(bytes, offset, length);
+        deflater.setInput(bytes, offset, length);
+        while (!deflater.needsInput())
+            drain();
+    }
+
+    private void drain() throws IOException {
+        int length = deflater.deflate(deflated, 0, deflated.length, Deflater.NO_FLUSH);
+        if (length > 0)
+            out.write(deflated, 0, length);
+    }
+
+    /**
+     * Flushes what has been compressed so far without forcing the Deflater to emit a partial block, which would cost
+     * compression on every flush Jackson makes; buffered, uncompressed bytes stay buffered.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (deflater != null || encoding == Representation.Encoding.IDENTITY)
+            out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        if (deflater == null) {
+            if (count > 0)
+                out.write(buffer, 0, count);
+            buffer = null;
+            return;
+        }
+        try {
+            deflater.finish();
+            while (!deflater.finished())
+                drain();
+            if (crc != null) {
+                long checksum = crc.getValue();
+                long size = deflater.getBytesRead();
+                out.write(new byte[]{
+                        (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+                        (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)});
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return whether the body is being compressed
+     */
+    public boolean isCompressing() {
+        return deflater != null;
+    }
+}
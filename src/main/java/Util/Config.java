@@ -0,0 +1,76 @@
+package Util;
+
+/**
+ * Tunables for the application, read from JVM system properties prefixed with "socialmedia." (for example
+ * -Dsocialmedia.pool.maxSize=20). Every setting has a default so the application runs without any configuration.
+ */
+public final class Config {
+
+    private static final String PREFIX = "socialmedia.";
+
+    private Config() {
+    }
+
+    /**
+     * @return the configured value of the property or the default if it is unset or not a number
+     */
+    public static int getInt(String name, int defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + PREFIX + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return the configured value of the property or the default if it is unset or not a number
+     */
+    public static long getLong(String name, long defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + PREFIX + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return the configured value of the property or the default if it is unset or not a number
+     */
+    public static double getDouble(String name, double defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + PREFIX + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return the configured value of the property or the default if it is unset
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+            return defaultValue;
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @return the configured value of the property or the default if it is unset
+     */
+    public static String getString(String name, String defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        return value == null ? defaultValue : value.trim();
+    }
+}
@@ -0,0 +1,578 @@
+package Util;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of physical JDBC connections. Callers borrow a connection with {@link #getConnection()} and give it
+ * back by closing it, which is why every borrow should happen in a try-with-resources block.
+ * <p>
+ * At most maxSize connections exist at once; a borrower waits up to the borrow timeout for one to be returned.
+ * Connections idle for longer than the idle timeout are closed, connections idle for longer than the validation
+ * interval are checked with {@link Connection#isValid(int)} before being handed out, and connections held for longer
+ * than the leak threshold are reported. Only a borrow timestamp is recorded by default; capturing the stack trace of
+ * the code that borrowed each connection, to report it with the leak, is opt-in as it costs a stack walk per borrow.
+ * <p>
+ * Each physical connection can also keep up to statementCacheSize idle prepared statements keyed by their SQL, so the
+ * DAOs' constant statements are parsed and planned once per connection instead of on every call. Closing a statement
+ * from a pooled connection puts it back in the cache; the least recently used statement is closed once the cache is
+ * full.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final long leakThresholdNanos;
+    private final boolean captureBorrowSites;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    /**
+     * Idle connections, most recently returned first, so that the least recently used ones age out.
+     */
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder leaksDetected = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    /**
+     * @param dataSource              the source of physical connections
+     * @param maxSize                 the maximum number of physical connections open at once
+     * @param borrowTimeoutMillis     how long {@link #getConnection()} waits for a free connection
+     * @param idleTimeoutMillis       how long a connection may sit unused before it is closed, 0 to never close
+     * @param validationIntervalMillis how long a connection may sit unused before it is validated on borrow
+     * @param leakThresholdMillis     how long a connection may be held before it is reported as leaked, 0 to disable
+     */
+    public ConnectionPool(DataSource dataSource, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis,
+                          long validationIntervalMillis, long leakThresholdMillis) {
+        this(dataSource, maxSize, borrowTimeoutMillis, idleTimeoutMillis, validationIntervalMillis, leakThresholdMillis,
+                0);
+    }
+
+    /**
+     * @param statementCacheSize the number of idle prepared statements kept per connection, 0 to disable caching
+     */
+    public ConnectionPool(DataSource dataSource, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis,
+                          long validationIntervalMillis, long leakThresholdMillis, int statementCacheSize) {
+        this(dataSource, maxSize, borrowTimeoutMillis, idleTimeoutMillis, validationIntervalMillis, leakThresholdMillis,
+                statementCacheSize, false);
+    }
+
+    /**
+     * @param captureBorrowSites whether to capture the stack trace of every borrow, to report with a leak
+     */
+    public ConnectionPool(DataSource dataSource, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis,
+                          long validationIntervalMillis, long leakThresholdMillis, int statementCacheSize,
+                          boolean captureBorrowSites) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        this.dataSource = dataSource;
+        this.maxSize = maxSize;
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.captureBorrowSites = captureBorrowSites && leakThresholdMillis > 0;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+
+        long housekeepingMillis = 1000;
+        if (idleTimeoutMillis > 0)
+            housekeepingMillis = Math.min(housekeepingMillis, idleTimeoutMillis / 2);
+        if (leakThresholdMillis > 0)
+            housekeepingMillis = Math.min(housekeepingMillis, leakThresholdMillis / 2);
+        housekeepingMillis = Math.max(housekeepingMillis, 10);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingMillis, housekeepingMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the borrow timeout if all connections are in use. Closing the returned
+     * connection gives it back to the pool; the physical connection stays open.
+     *
+     * @return a connection that must be closed by the caller
+     * @throws SQLTimeoutException if no connection became available within the borrow timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed)
+            throw new SQLException("Connection pool is closed");
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                borrowTimeouts.increment();
+                throw new SQLTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos)
+                        + "ms waiting for a connection, all " + maxSize + " are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null)
+                pooled = open();
+            pooled.borrowedAt = System.nanoTime();
+            pooled.borrowSite = captureBorrowSites ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+
+            borrowCount.increment();
+            borrowWaitNanos.add(pooled.borrowedAt - start);
+            borrowWait.record(pooled.borrowedAt - start);
+            Lease lease = new Lease(pooled);
+            lease.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, lease);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the most recently returned idle connection that is still usable, or null if there is none
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long idleNanos = System.nanoTime() - pooled.returnedAt;
+            if (idleTimeoutNanos > 0 && idleNanos > idleTimeoutNanos) {
+                discard(pooled);
+                continue;
+            }
+            if (idleNanos > validationIntervalNanos && !isValid(pooled)) {
+                discard(pooled);
+                continue;
+            }
+            return pooled;
+        }
+        return null;
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = dataSource.getConnection();
+        totalConnections.incrementAndGet();
+        connectionsCreated.increment();
+        return new PooledConnection(physical);
+    }
+
+    private static boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Called when a borrower closes its connection. Any open transaction is rolled back so the next borrower starts
+     * from a clean, auto-committing session.
+     */
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        pooled.borrowSite = null;
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.returnedAt = System.nanoTime();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        connectionsClosed.increment();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes connections that have been idle for too long and reports connections that have been borrowed for too
+     * long.
+     */
+    private void housekeep() {
+        long now = System.nanoTime();
+        if (idleTimeoutNanos > 0) {
+            for (PooledConnection pooled : idle) {
+                // Only the thread that wins the remove may close it; a borrower may have polled it concurrently.
+                if (now - pooled.returnedAt > idleTimeoutNanos && idle.remove(pooled))
+                    discard(pooled);
+            }
+        }
+        if (leakThresholdNanos > 0) {
+            for (PooledConnection pooled : borrowed) {
+                Throwable borrowSite = pooled.borrowSite;
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdNanos) {
+                    pooled.leakReported = true;
+                    leaksDetected.increment();
+                    System.out.println("Possible connection leak: a connection has been held for "
+                            + TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedAt) + "ms"
+                            + (borrowSite == null ? ", set socialmedia.pool.leakStackTraces to see where" : ""));
+                    if (borrowSite != null)
+                        borrowSite.printStackTrace(System.out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops handing out connections and closes every idle connection. Borrowed connections are closed as they are
+     * returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null)
+            discard(pooled);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of physical connections currently open, borrowed or idle
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return the number of connections currently borrowed
+     */
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return the number of connections currently waiting in the pool
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of threads currently waiting to borrow a connection
+     */
+    public int getPendingBorrowers() {
+        return permits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    /**
+     * @return the total time borrowers have spent waiting for connections, in nanoseconds
+     */
+    public long getBorrowWaitNanos() {
+        return borrowWaitNanos.sum();
+    }
+
+    /**
+     * @return the distribution of the time each successful borrow waited for a connection
+     */
+    public LatencyHistogram getBorrowWaitHistogram() {
+        return borrowWait;
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.sum();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.sum();
+    }
+
+    public long getConnectionsClosed() {
+        return connectionsClosed.sum();
+    }
+
+    public long getLeaksDetected() {
+        return leaksDetected.sum();
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return the number of prepared statements served from a connection's statement cache
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return the number of cacheable prepared statements that had to be prepared afresh
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    private static final class PooledConnection {
+        final Connection physical;
+        volatile long returnedAt = System.nanoTime();
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+        /**
+         * Idle prepared statements, least recently used first. Only the thread currently borrowing the connection
+         * touches it; handing the connection between borrowers through the pool publishes it safely.
+         */
+        final LinkedHashMap<StatementKey, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    /**
+     * @param autoGeneratedKeys the flag passed to prepareStatement, or -1 if none was
+     */
+    private record StatementKey(String sql, int autoGeneratedKeys) {
+    }
+
+    /**
+     * The handle given to a single borrower. Once it is closed the handle refuses further use, so a stale reference
+     * can never reach a connection that has since been lent to someone else.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean returned = new AtomicBoolean();
+        /**
+         * Statements taken from or destined for the statement cache that the borrower has not closed yet.
+         */
+        private final List<StatementLease> openStatements = new ArrayList<>(2);
+        Connection proxy;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        closeOpenStatements();
+                        release(pooled);
+                    }
+                    return null;
+                case "prepareStatement":
+                    if (statementCacheSize > 0 && !returned.get() && isCacheable(method))
+                        return prepareCached((String) args[0], args.length == 2 ? (Integer) args[1] : -1);
+                    break;
+                case "isClosed":
+                    if (returned.get())
+                        return true;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + pooled.physical;
+                default:
+                    break;
+            }
+            if (returned.get())
+                throw new SQLException("Connection has already been returned to the pool");
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * @return true for prepareStatement(String) and prepareStatement(String, int autoGeneratedKeys)
+         */
+        private boolean isCacheable(Method method) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return parameterTypes.length == 1 || parameterTypes.length == 2 && parameterTypes[1] == int.class;
+        }
+
+        private PreparedStatement prepareCached(String sql, int autoGeneratedKeys) throws SQLException {
+            StatementKey key = new StatementKey(sql, autoGeneratedKeys);
+            PreparedStatement physical = pooled.statements.remove(key);
+            if (physical != null) {
+                statementCacheHits.increment();
+            } else {
+                statementCacheMisses.increment();
+                physical = autoGeneratedKeys == -1
+                        ? pooled.physical.prepareStatement(sql)
+                        : pooled.physical.prepareStatement(sql, autoGeneratedKeys);
+            }
+            StatementLease statementLease = new StatementLease(this, key, physical);
+            openStatements.add(statementLease);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, statementLease);
+        }
+
+        /**
+         * Puts a statement the borrower has closed back in the cache, unless its settings were changed or the cache
+         * already holds one for the same SQL, evicting and closing the least recently used statement if the cache is
+         * full.
+         */
+        private void statementClosed(StatementLease statementLease) {
+            openStatements.remove(statementLease);
+            PreparedStatement physical = statementLease.physical;
+            if (statementLease.modified || returned.get() || pooled.statements.containsKey(statementLease.key)) {
+                closeQuietly(physical);
+                return;
+            }
+            try {
+                physical.clearParameters();
+                physical.clearBatch();
+            } catch (SQLException e) {
+                closeQuietly(physical);
+                return;
+            }
+            pooled.statements.put(statementLease.key, physical);
+            if (pooled.statements.size() > statementCacheSize) {
+                Iterator<Map.Entry<StatementKey, PreparedStatement>> eldest = pooled.statements.entrySet().iterator();
+                closeQuietly(eldest.next().getValue());
+                eldest.remove();
+            }
+        }
+
+        /**
+         * Closes statements the borrower left open, which are not safe to reuse.
+         */
+        private void closeOpenStatements() {
+            for (StatementLease statementLease : openStatements) {
+                statementLease.closed = true;
+                closeQuietly(statementLease.physical);
+            }
+            openStatements.clear();
+        }
+    }
+
+    /**
+     * The handle given to a borrower for a cacheable prepared statement. Closing it returns the statement to its
+     * connection's cache instead of closing it.
+     */
+    private static final class StatementLease implements InvocationHandler {
+        private final Lease lease;
+        private final StatementKey key;
+        private final PreparedStatement physical;
+        boolean closed;
+        /**
+         * Set once the borrower changes a setting that would otherwise leak into the statement's next use.
+         */
+        boolean modified;
+
+        StatementLease(Lease lease, StatementKey key, PreparedStatement physical) {
+            this.lease = lease;
+            this.key = key;
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        lease.statementClosed(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "getConnection":
+                    return lease.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + physical;
+                default:
+                    if (method.getName().startsWith("set") && method.getDeclaringClass() == Statement.class
+                            || method.getName().equals("closeOnCompletion"))
+                        modified = true;
+                    break;
+            }
+            if (closed)
+                throw new SQLException("Statement has already been closed");
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package Util;
+
+import java.sql.SQLTimeoutException;
+
+/**
+ * Thrown by {@link ConnectionUtil#getConnection()} when no pooled connection became available within the borrow
+ * timeout. Unchecked so that it passes through the DAOs, which only catch SQLException, to the controller, which
+ * answers 503 and asks the client to retry: under load a busy pool is expected, not a fault.
+ */
+public class ConnectionTimeoutException extends RuntimeException {
+
+    public ConnectionTimeoutException(SQLTimeoutException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
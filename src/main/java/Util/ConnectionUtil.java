@@ -1,10 +1,16 @@
 package Util;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 
+import DAO.Storage;
 import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
 
@@ -13,7 +19,9 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are borrowed from a bounded {@link ConnectionPool} and must be
+ * closed by the caller, which returns them to the pool. The pool is sized with
+ * the socialmedia.pool.* system properties, see {@link Config}.
  */
 public class ConnectionUtil {
 
@@ -32,25 +40,57 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * DataSource for the physical connections held by the pool.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static JdbcDataSource dataSource = new JdbcDataSource();
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * static initialization block to establish credentials for the DataSource
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * Pool of connections shared by every DAO. Closing a borrowed connection returns it here.
+	 */
+	private static final ConnectionPool pool = new ConnectionPool(dataSource,
+			Config.getInt("pool.maxSize", 10),
+			Config.getLong("pool.borrowTimeoutMillis", 30_000),
+			Config.getLong("pool.idleTimeoutMillis", 600_000),
+			Config.getLong("pool.validationIntervalMillis", 5_000),
+			Config.getLong("pool.leakThresholdMillis", 60_000),
+			Config.getInt("pool.statementCacheSize", 32),
+			Config.getBoolean("pool.leakStackTraces", false));
+
+	static {
+		Metrics.gauge("db_pool_connections", "Physical connections held by the pool", pool::getTotalConnections);
+		Metrics.gauge("db_pool_connections_active", "Connections currently borrowed", pool::getActiveConnections);
+		Metrics.gauge("db_pool_connections_idle", "Connections idle in the pool", pool::getIdleConnections);
+		Metrics.gauge("db_pool_pending_borrowers", "Threads waiting to borrow a connection", pool::getPendingBorrowers);
+		Metrics.counter("db_pool_borrow_timeouts_total", "Borrows that timed out", pool::getBorrowTimeouts);
+		Metrics.counter("db_pool_leaks_detected_total", "Connections held past the leak threshold",
+				pool::getLeaksDetected);
+		Metrics.counter("db_statement_cache_hits_total", "Prepared statements reused from a connection's cache",
+				pool::getStatementCacheHits);
+		Metrics.counter("db_statement_cache_misses_total", "Cacheable prepared statements prepared afresh",
+				pool::getStatementCacheMisses);
+		Metrics.register("db_pool_borrow_wait_seconds", "Time spent waiting to borrow a connection",
+				pool.getBorrowWaitHistogram());
+	}
+
+	/**
+	 * @return an active connection to the database, which must be closed to return it to the pool, or null if no
+	 *         connection could be obtained
+	 * @throws ConnectionTimeoutException if every connection stayed borrowed for the whole borrow timeout
 	 */
 	public static Connection getConnection() {
 		try {
 			return pool.getConnection();
+		} catch (SQLTimeoutException e) {
+			throw new ConnectionTimeoutException(e);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -58,16 +98,43 @@ public class ConnectionUtil {
 		return null;
 	}
 
+	/**
+	 * @return the pool backing {@link #getConnection()}, for inspecting its metrics
+	 */
+	public static ConnectionPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Brings the database schema up to date, see {@link SchemaMigrator}. This is run once when the application starts.
+	 */
+	public static void migrateDatabase() {
+		try (Connection connection = getConnection()) {
+			SchemaMigrator.migrate(connection);
+		} catch (SQLException | IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
-	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * tables to keep it consistent across all tests. Every table is dropped, the
+	 * schema is rebuilt from the migrations and the test data in the
+	 * SocialMedia.sql resource is loaded, and the memory storage engine, if it is
+	 * in use, is reloaded from it. This will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
+		try (Connection connection = getConnection()) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("DROP ALL OBJECTS");
+			}
+			SchemaMigrator.migrate(connection);
+			try (InputStream seed = ConnectionUtil.class.getResourceAsStream("/SocialMedia.sql");
+				 Reader seedReader = new InputStreamReader(seed, StandardCharsets.UTF_8)) {
+				RunScript.execute(connection, seedReader);
+			}
+			Storage.reload(connection);
+		} catch (SQLException | IOException e) {
 			e.printStackTrace();
 		}
 	}
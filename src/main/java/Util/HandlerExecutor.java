@@ -0,0 +1,132 @@
+package Util;
+
+import io.javalin.http.Handler;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides which threads run the blocking JDBC work of each request handler.
+ * <p>
+ * In the default {@link Mode#JETTY} mode handlers run directly on Jetty's worker threads, as they always have. In the
+ * other modes each handler is handed to Javalin as a future running on a separate executor, so the Jetty thread
+ * returns to the pool while the handler waits on the database:
+ * <ul>
+ *     <li>{@link Mode#EXECUTOR} runs handlers on a fixed number of threads with a bounded queue. A full queue
+ *     rejects the request, which the controller answers with 503.</li>
+ *     <li>{@link Mode#VIRTUAL} runs each handler on its own virtual thread. This needs Java 21, and falls back to
+ *     EXECUTOR on older runtimes. Concurrency is then bounded by the connection pool alone.</li>
+ * </ul>
+ */
+public class HandlerExecutor implements AutoCloseable {
+
+    public enum Mode {JETTY, EXECUTOR, VIRTUAL}
+
+    private final Mode mode;
+    @Nullable
+    private final ExecutorService executor;
+
+    /**
+     * Reads socialmedia.handler.mode (jetty, executor or virtual), socialmedia.handler.threads, which defaults to the
+     * connection pool's maximum size, and socialmedia.handler.queueCapacity.
+     */
+    public HandlerExecutor() {
+        this(Mode.valueOf(Config.getString("handler.mode", "jetty").toUpperCase()),
+                Config.getInt("handler.threads", ConnectionUtil.getPool().getMaxSize()),
+                Config.getInt("handler.queueCapacity", 10_000));
+    }
+
+    /**
+     * @param threads       the number of threads in EXECUTOR mode
+     * @param queueCapacity the number of handlers that may wait for a thread in EXECUTOR mode
+     */
+    public HandlerExecutor(Mode mode, int threads, int queueCapacity) {
+        ExecutorService virtual = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (mode == Mode.VIRTUAL && virtual == null) {
+            System.out.println("Virtual threads need Java 21, running handlers on a bounded executor instead");
+            mode = Mode.EXECUTOR;
+        }
+        this.mode = mode;
+        if (mode == Mode.EXECUTOR)
+            executor = newBoundedExecutor(threads, queueCapacity);
+        else
+            executor = virtual;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the handler itself in JETTY mode, otherwise a handler that runs it on this executor
+     */
+    public Handler wrap(Handler handler) {
+        ExecutorService executor = this.executor;
+        if (executor == null)
+            return handler;
+        return context -> context.future(() -> CompletableFuture.runAsync(() -> {
+            try {
+                handler.handle(context);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor));
+    }
+
+    /**
+     * @return the number of handlers waiting for a thread in EXECUTOR mode, otherwise 0
+     */
+    public int getQueuedHandlers() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    /**
+     * Stops accepting handlers and waits briefly for running ones to finish.
+     */
+    @Override
+    public void close() {
+        if (executor == null)
+            return;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "db-handler-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Looked up reflectively so the build keeps targeting Java 17.
+     *
+     * @return a virtual-thread-per-task executor or null if the runtime has no virtual threads
+     */
+    @Nullable
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package Util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive int keys to non-null values, with open addressing and linear probing over two parallel
+ * arrays. Lookups neither box the key nor follow a pointer to an entry object, and the map holds no per-entry
+ * allocation. Removal shifts the following entries of the probe run back instead of leaving tombstones, so lookups stay
+ * short however many keys come and go.
+ * <p>
+ * Not thread safe: the owner guards it.
+ */
+public final class IntObjectHashMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int shift;
+
+    public IntObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize how many entries the map should hold without growing
+     */
+    public IntObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+    }
+
+    /**
+     * Receives the entries of the map from {@link #forEach(EntryConsumer)}.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    /**
+     * @return the value for the key or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            Object value = values[slot];
+            if (value == null)
+                return null;
+            if (keys[slot] == key)
+                return (V) value;
+        }
+    }
+
+    /**
+     * @param value a non-null value
+     * @return the previous value for the key or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null)
+            throw new NullPointerException("IntObjectHashMap does not hold null values");
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // Kept at most half full, so probe runs stay a slot or two long.
+        if (++size * 2 > values.length)
+            resize(values.length * 2);
+        return null;
+    }
+
+    /**
+     * @return the removed value or null if the key had none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V removed = (V) values[slot];
+                shiftBack(slot);
+                size--;
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the entries after the emptied slot back where a lookup would otherwise stop at the gap before reaching
+     * them.
+     */
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            int home = slot(keys[slot]);
+            // The entry may fill the gap if its home slot is not cyclically between the gap and where it is now.
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Hands every entry to the consumer, in no particular order. The map must not be changed meanwhile.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null)
+                consumer.accept(keys[slot], (V) values[slot]);
+        }
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing: the top bits of the product spread sequential ids over the whole table.
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+        for (int slot = 0; slot < oldValues.length; slot++) {
+            if (oldValues[slot] == null)
+                continue;
+            int newSlot = slot(oldKeys[slot]);
+            while (values[newSlot] != null)
+                newSlot = (newSlot + 1) & mask;
+            keys[newSlot] = oldKeys[slot];
+            values[newSlot] = oldValues[slot];
+        }
+    }
+}
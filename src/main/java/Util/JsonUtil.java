@@ -0,0 +1,163 @@
+package Util;
+
+import Model.Account;
+import Model.AccountMessagePage;
+import Model.BulkImportResult;
+import Model.Message;
+import Model.MessagePage;
+import Model.TimeRangePage;
+import Model.TimelinePage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+import io.javalin.json.JsonMapper;
+import org.eclipse.jetty.server.Request;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The single, pre-configured ObjectMapper used by the whole application, along with readers and writers bound to the
+ * types we exchange. Readers and writers are immutable and thread safe, and binding them to a type up front saves
+ * Jackson from resolving a serializer on every call.
+ * <p>
+ * Responses are written with {@link #write(Context, ObjectWriter, Object)}, which serializes the value once, straight
+ * into the response stream, rather than building an intermediate String for Javalin to encode again. The body is
+ * written in the format and encoding negotiated by {@link Representation}, which is JSON unless the client asks for
+ * Smile or CBOR, compressed if the client accepts it.
+ */
+public final class JsonUtil {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        // Javalin owns the response stream and finishes the response after the handler returns.
+        MAPPER.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public static final ObjectReader ACCOUNT_READER = MAPPER.readerFor(Account.class);
+    public static final ObjectReader MESSAGE_READER = MAPPER.readerFor(Message.class);
+    public static final ObjectReader MESSAGE_ID_LIST_READER = MAPPER.readerFor(new TypeReference<List<Integer>>() {
+    });
+
+    public static final ObjectWriter ACCOUNT_WRITER = MAPPER.writerFor(Account.class);
+    public static final ObjectWriter MESSAGE_WRITER = MAPPER.writerFor(Message.class);
+    public static final ObjectWriter MESSAGE_LIST_WRITER = MAPPER.writerFor(new TypeReference<List<Message>>() {
+    });
+    public static final ObjectWriter MESSAGE_PAGE_WRITER = MAPPER.writerFor(MessagePage.class);
+    public static final ObjectWriter TIMELINE_PAGE_WRITER = MAPPER.writerFor(TimelinePage.class);
+    public static final ObjectWriter ACCOUNT_MESSAGE_PAGE_WRITER = MAPPER.writerFor(AccountMessagePage.class);
+    public static final ObjectWriter TIME_RANGE_PAGE_WRITER = MAPPER.writerFor(TimeRangePage.class);
+    public static final ObjectWriter BULK_IMPORT_RESULT_WRITER = MAPPER.writerFor(BulkImportResult.class);
+    public static final ObjectWriter ACCOUNT_ID_LIST_WRITER = MAPPER.writerFor(new TypeReference<List<Integer>>() {
+    });
+    /**
+     * Writes one message into an already open generator without flushing, so streamed rows are batched into full
+     * socket writes.
+     */
+    public static final ObjectWriter MESSAGE_ROW_WRITER = MESSAGE_WRITER
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private JsonUtil() {
+    }
+
+    /**
+     * @return a Javalin JsonMapper backed by the shared ObjectMapper, for registering with Javalin.create
+     */
+    public static JsonMapper javalinMapper() {
+        return new JavalinJackson(MAPPER);
+    }
+
+    /**
+     * Reads one top-level field of a JSON object with the streaming parser, skipping everything else without binding
+     * it, e.g. to key a rate limit by a field of the request body before the handler reads the whole body.
+     *
+     * @return the field's value as text if it is a string or number, otherwise null, also if the JSON is malformed
+     */
+    @Nullable
+    public static String readField(byte[] json, String field) {
+        try (JsonParser parser = MAPPER.getFactory().createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals(field))
+                    return value.isScalarValue() && value != JsonToken.VALUE_NULL ? parser.getText() : null;
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Malformed JSON has no field; the handler reports it.
+        }
+        return null;
+    }
+
+    /**
+     * Serializes the value directly into the response body as JSON.
+     *
+     * @param writer a writer bound to the type of value
+     */
+    public static void write(Context context, ObjectWriter writer, Object value) throws IOException {
+        Representation representation = Representation.of(context);
+        try (OutputStream body = representation.open(context, null)) {
+            writer.with(representation.getFormat().getFactory()).writeValue(body, value);
+        }
+    }
+
+    /**
+     * Writes JSON that has already been serialized into the response body, translated token by token if the client
+     * asked for another format.
+     */
+    public static void write(Context context, byte[] json) throws IOException {
+        Representation representation = Representation.of(context);
+        try (OutputStream body = representation.open(context, null)) {
+            if (representation.getFormat() == Representation.Format.JSON) {
+                body.write(json);
+                return;
+            }
+            try (JsonParser parser = MAPPER.getFactory().createParser(json);
+                 JsonGenerator generator = representation.getFormat().getFactory().createGenerator(body)) {
+                while (parser.nextToken() != null)
+                    generator.copyCurrentEvent(parser);
+            }
+        }
+    }
+
+    /**
+     * Opens a generator over the response body, for streaming a value too large to hold in memory. Closing the
+     * generator finishes the body.
+     *
+     * @param textContentType null to write in the negotiated format, or the content type of a JSON text format of
+     *                        its own, such as NDJSON, which is then written whatever the client asked for
+     */
+    public static JsonGenerator createGenerator(Context context, @Nullable String textContentType) throws IOException {
+        Representation representation = Representation.of(context);
+        JsonFactory factory = textContentType != null ? MAPPER.getFactory()
+                : representation.getFormat().getFactory();
+        return factory.createGenerator(representation.open(context, textContentType))
+                .enable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Abandons a streamed body part way: the connection is dropped without finishing the response, so the client sees
+     * an incomplete response rather than a well-formed one that silently lacks the rest. Call it before closing the
+     * generator, which would otherwise finish the body.
+     *
+     * @return the exception for the handler to throw
+     */
+    public static IOException abort(Context context, String reason) {
+        IOException failure = new IOException(reason);
+        Request.getBaseRequest(context.req()).getHttpChannel().abort(failure);
+        return failure;
+    }
+}
@@ -0,0 +1,89 @@
+package Util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads text one line at a time, like BufferedReader.readLine, but never holds more than maxLineLength characters of
+ * a line: the rest of an overlong line is skipped and {@link #wasTruncated()} reports it. This keeps memory bounded when
+ * reading a request body of any size, whatever it contains.
+ * <p>
+ * Lines end at "\n", and a "\r" just before it is dropped. Not thread safe.
+ */
+public class LineReader {
+
+    private final Reader reader;
+    private final int maxLineLength;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private final StringBuilder line = new StringBuilder();
+    private boolean truncated;
+    private int lineNumber;
+
+    public LineReader(Reader reader, int maxLineLength) {
+        this.reader = reader;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * @return the next line without its line terminator, or null at the end of the input
+     */
+    @Nullable
+    public String readLine() throws IOException {
+        line.setLength(0);
+        truncated = false;
+        boolean read = false;
+        while (true) {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (!read)
+                        return null;
+                    break;
+                }
+            }
+            read = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n')
+                position++;
+            append(start, position);
+            if (position < limit) {
+                position++;
+                break;
+            }
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r')
+            line.setLength(length - 1);
+        lineNumber++;
+        return line.toString();
+    }
+
+    private void append(int start, int end) {
+        int room = maxLineLength - line.length();
+        if (end - start > room) {
+            truncated = true;
+            end = start + Math.max(room, 0);
+        }
+        line.append(buffer, start, end - start);
+    }
+
+    /**
+     * @return whether the last line read was longer than maxLineLength and was cut short
+     */
+    public boolean wasTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the 1-based number of the last line read
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,201 @@
+package Util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The application's metrics, written in the Prometheus text exposition format by the /metrics endpoint.
+ * <p>
+ * Metrics are registered by name and label values, and registering the same ones again returns the existing metric,
+ * so callers look a metric up once and keep the reference; recording then never touches this registry. Gauges and
+ * function counters read their value when the metrics are written, and registering one again replaces the function.
+ * JVM heap and garbage collection gauges are always included.
+ */
+public final class Metrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @param labels alternating label names and values, e.g. "method", "GET"
+     * @return the histogram registered under the name and labels, created if there is none yet
+     */
+    public static LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).children
+                .computeIfAbsent(renderLabels(labels), key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a histogram owned elsewhere, e.g. by the connection pool, replacing any registered before.
+     *
+     * @param labels alternating label names and values
+     */
+    public static void register(String name, String help, LatencyHistogram histogram, String... labels) {
+        family(name, help, Type.SUMMARY).children.put(renderLabels(labels), histogram);
+    }
+
+    /**
+     * @return the histogram of call durations for one DAO method
+     */
+    public static LatencyHistogram daoHistogram(String dao, String method) {
+        return histogram("dao_call_duration_seconds", "DAO method call durations", "dao", dao, "method", method);
+    }
+
+    /**
+     * @param labels alternating label names and values
+     * @return the counter registered under the name and labels, created if there is none yet
+     */
+    public static LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).children
+                .computeIfAbsent(renderLabels(labels), key -> new LongAdder());
+    }
+
+    /**
+     * Registers a counter whose value is kept elsewhere, e.g. by a cache or the connection pool.
+     *
+     * @param labels alternating label names and values
+     */
+    public static void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).children.put(renderLabels(labels), value);
+    }
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).children.put(renderLabels(labels), value);
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format, durations in seconds.
+     */
+    public static void write(Writer writer) throws IOException {
+        for (Map.Entry<String, Family> entry : families.entrySet())
+            writeFamily(writer, entry.getKey(), entry.getValue());
+        writeJvmMetrics(writer);
+    }
+
+    private static Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type)
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        return family;
+    }
+
+    private static void writeFamily(Writer writer, String name, Family family) throws IOException {
+        writeHeader(writer, name, family.help, family.type);
+        for (Map.Entry<String, Object> child : family.children.entrySet()) {
+            String labels = child.getKey();
+            Object metric = child.getValue();
+            if (metric instanceof LatencyHistogram) {
+                LatencyHistogram histogram = (LatencyHistogram) metric;
+                String separator = labels.isEmpty() ? "" : labels + ",";
+                for (double quantile : QUANTILES)
+                    writeSample(writer, name, separator + "quantile=\"" + quantile + "\"",
+                            seconds(histogram.getValueAtQuantile(quantile)));
+                writeSample(writer, name + "_sum", labels, seconds(histogram.getSum()));
+                writeSample(writer, name + "_count", labels, histogram.getCount());
+            } else if (metric instanceof LongAdder) {
+                writeSample(writer, name, labels, ((LongAdder) metric).sum());
+            } else {
+                writeSample(writer, name, labels, ((DoubleSupplier) metric).getAsDouble());
+            }
+        }
+    }
+
+    private static void writeJvmMetrics(Writer writer) throws IOException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        writeHeader(writer, "jvm_memory_used_bytes", "Used JVM memory", Type.GAUGE);
+        writeSample(writer, "jvm_memory_used_bytes", "area=\"heap\"", heap.getUsed());
+        writeSample(writer, "jvm_memory_used_bytes", "area=\"nonheap\"", nonHeap.getUsed());
+        writeHeader(writer, "jvm_memory_committed_bytes", "Committed JVM memory", Type.GAUGE);
+        writeSample(writer, "jvm_memory_committed_bytes", "area=\"heap\"", heap.getCommitted());
+        writeSample(writer, "jvm_memory_committed_bytes", "area=\"nonheap\"", nonHeap.getCommitted());
+        writeHeader(writer, "jvm_memory_max_bytes", "Maximum JVM heap, -1 if unbounded", Type.GAUGE);
+        writeSample(writer, "jvm_memory_max_bytes", "area=\"heap\"", heap.getMax());
+
+        writeHeader(writer, "jvm_gc_collections_total", "Garbage collections by collector", Type.COUNTER);
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            writeSample(writer, "jvm_gc_collections_total", renderLabels("gc", gc.getName()), gc.getCollectionCount());
+        writeHeader(writer, "jvm_gc_collection_seconds_total", "Time spent in garbage collection by collector",
+                Type.COUNTER);
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            writeSample(writer, "jvm_gc_collection_seconds_total", renderLabels("gc", gc.getName()),
+                    gc.getCollectionTime() / 1000.0);
+
+        writeHeader(writer, "jvm_threads_live", "Live JVM threads", Type.GAUGE);
+        writeSample(writer, "jvm_threads_live", "", ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private static void writeHeader(Writer writer, String name, String help, Type type) throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " " + type.name().toLowerCase() + "\n");
+    }
+
+    private static void writeSample(Writer writer, String name, String labels, double value) throws IOException {
+        writer.write(name);
+        if (!labels.isEmpty())
+            writer.write("{" + labels + "}");
+        writer.write(" ");
+        writer.write(value == (long) value ? Long.toString((long) value) : Double.toString(value));
+        writer.write("\n");
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static String renderLabels(String... labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0)
+                rendered.append(',');
+            rendered.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' || ch == '"')
+                    rendered.append('\\').append(ch);
+                else if (ch == '\n')
+                    rendered.append("\\n");
+                else
+                    rendered.append(ch);
+            }
+            rendered.append('"');
+        }
+        return rendered.toString();
+    }
+
+    private enum Type {COUNTER, GAUGE, SUMMARY}
+
+    private static final class Family {
+        final String help;
+        final Type type;
+        /**
+         * Keyed by rendered labels. Values are LatencyHistograms, LongAdders or DoubleSuppliers.
+         */
+        final Map<String, Object> children = new ConcurrentSkipListMap<>();
+
+        Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package Util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Messages held outside the Java heap, so that millions of them cost the garbage collector nothing to trace or copy.
+ * Rows are addressed by a dense int index chosen by the caller.
+ * <p>
+ * The fixed-width fields are kept in columns: pages of {@link #PAGE_ROWS} rows in direct ByteBuffers, allocated as
+ * rows are first used. Each row holds posted_by, the version, time_posted_epoch and a reference to the message_text,
+ * which is kept as UTF-8 in an arena of direct slabs. A text's block is rounded up to a size class of 16 bytes, and
+ * freed blocks go on a free list per size class, threaded through the blocks themselves, for the next text of the same
+ * class to reuse. Texts are not moved, so an arena that shrank from its peak keeps its slabs.
+ * <p>
+ * Rows are read field by field or written as JSON straight from the buffers with
+ * {@link #writeJson(int, int, OutputStream)}, neither of which builds a Message. Direct buffers count against
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ * <p>
+ * Not thread safe: the owner guards it. Reads may run concurrently with each other.
+ */
+public final class OffHeapMessageTable {
+
+    public static final int PAGE_ROWS = 1 << 12;
+    /**
+     * The longest text in UTF-8 bytes, well above the 765 bytes that 255 characters can take.
+     */
+    public static final int MAX_TEXT_BYTES = 4094;
+
+    private static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_ROWS);
+    // Row layout. A text reference of 0 marks an empty row.
+    private static final int POSTED_BY = 0;
+    private static final int VERSION = 4;
+    private static final int TIME = 8;
+    private static final int TEXT = 16;
+    private static final int ROW_BYTES = 24;
+
+    // A text block is a 2-byte length followed by the text; a free block holds the reference of the next free block.
+    private static final int BLOCK_ALIGNMENT = 16;
+    private static final int SIZE_CLASSES = (MAX_TEXT_BYTES + 2) / BLOCK_ALIGNMENT;
+
+    private static final byte[] MESSAGE_ID = "{\"message_id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] POSTED_BY_FIELD = ",\"posted_by\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MESSAGE_TEXT_FIELD = ",\"message_text\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIME_FIELD = "\",\"time_posted_epoch\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final int slabBytes;
+    private ByteBuffer[] pages = new ByteBuffer[1];
+    private ByteBuffer[] slabs = new ByteBuffer[1];
+    private int slabCount;
+    private int slabPosition;
+    private final long[] freeBlocks = new long[SIZE_CLASSES];
+    private int size;
+    private long textBytes;
+
+    public OffHeapMessageTable() {
+        this(1 << 20);
+    }
+
+    /**
+     * @param slabBytes the size of each slab of the text arena, a multiple of 16 that fits the largest block
+     */
+    public OffHeapMessageTable(int slabBytes) {
+        if (slabBytes % BLOCK_ALIGNMENT != 0 || slabBytes < SIZE_CLASSES * BLOCK_ALIGNMENT)
+            throw new IllegalArgumentException("slabBytes must be a multiple of 16 of at least "
+                    + SIZE_CLASSES * BLOCK_ALIGNMENT);
+        this.slabBytes = slabBytes;
+        slabPosition = slabBytes;
+    }
+
+    /**
+     * Stores a row, replacing any row already at the index and freeing its text.
+     *
+     * @throws IllegalArgumentException if the text is longer than {@link #MAX_TEXT_BYTES} in UTF-8
+     */
+    public void put(int row, int postedBy, String text, long time, int version) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length > MAX_TEXT_BYTES)
+            throw new IllegalArgumentException("Text of " + utf8.length + " bytes is longer than " + MAX_TEXT_BYTES);
+        ByteBuffer page = page(row, true);
+        int offset = rowOffset(row);
+        long previous = page.getLong(offset + TEXT);
+        if (previous != 0)
+            free(previous);
+        else
+            size++;
+        long reference = allocate(utf8.length + 2);
+        ByteBuffer slab = slab(reference);
+        int position = blockOffset(reference);
+        slab.putShort(position, (short) utf8.length);
+        slab.put(position + 2, utf8);
+        textBytes += utf8.length;
+
+        page.putInt(offset + POSTED_BY, postedBy);
+        page.putInt(offset + VERSION, version);
+        page.putLong(offset + TIME, time);
+        page.putLong(offset + TEXT, reference);
+    }
+
+    public boolean contains(int row) {
+        ByteBuffer page = page(row, false);
+        return page != null && page.getLong(rowOffset(row) + TEXT) != 0;
+    }
+
+    /**
+     * @return true if there was a row at the index
+     */
+    public boolean remove(int row) {
+        ByteBuffer page = page(row, false);
+        if (page == null)
+            return false;
+        int offset = rowOffset(row);
+        long reference = page.getLong(offset + TEXT);
+        if (reference == 0)
+            return false;
+        free(reference);
+        page.putLong(offset + TEXT, 0);
+        size--;
+        return true;
+    }
+
+    /*
+     * Field reads. Each requires a row at the index.
+     */
+
+    public int getPostedBy(int row) {
+        return existingPage(row).getInt(rowOffset(row) + POSTED_BY);
+    }
+
+    public int getVersion(int row) {
+        return existingPage(row).getInt(rowOffset(row) + VERSION);
+    }
+
+    public long getTime(int row) {
+        return existingPage(row).getLong(rowOffset(row) + TIME);
+    }
+
+    public String getText(int row) {
+        long reference = existingPage(row).getLong(rowOffset(row) + TEXT);
+        ByteBuffer slab = slab(reference);
+        int position = blockOffset(reference);
+        byte[] utf8 = new byte[Short.toUnsignedInt(slab.getShort(position))];
+        slab.get(position + 2, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the row as the JSON of a Message, byte for byte what {@link JsonUtil#MESSAGE_WRITER} writes, with its
+     * text copied from the arena and escaped on the way.
+     *
+     * @param messageID the message_id to write, which the table does not keep
+     * @return false, writing nothing, if there is no row at the index
+     */
+    public boolean writeJson(int row, int messageID, OutputStream out) throws IOException {
+        ByteBuffer page = page(row, false);
+        if (page == null)
+            return false;
+        int offset = rowOffset(row);
+        long reference = page.getLong(offset + TEXT);
+        if (reference == 0)
+            return false;
+        ByteBuffer slab = slab(reference);
+        int position = blockOffset(reference) + 2;
+        int length = Short.toUnsignedInt(slab.getShort(position - 2));
+
+        // Six bytes for each escaped text byte at most, and up to 20 for each number.
+        byte[] json = new byte[MESSAGE_ID.length + POSTED_BY_FIELD.length + MESSAGE_TEXT_FIELD.length
+                + TIME_FIELD.length + 3 * 20 + 6 * length + 1];
+        int n = append(json, 0, MESSAGE_ID);
+        n = appendNumber(json, n, messageID);
+        n = append(json, n, POSTED_BY_FIELD);
+        n = appendNumber(json, n, page.getInt(offset + POSTED_BY));
+        n = append(json, n, MESSAGE_TEXT_FIELD);
+        for (int end = position + length; position < end; position++) {
+            byte b = slab.get(position);
+            if (b == '"' || b == '\\') {
+                json[n++] = '\\';
+                json[n++] = b;
+            } else if (b >= 0 && b < 0x20) {
+                n = appendControl(json, n, b);
+            } else {
+                // ASCII and the bytes of multi-byte characters are written as they are.
+                json[n++] = b;
+            }
+        }
+        n = append(json, n, TIME_FIELD);
+        n = appendNumber(json, n, page.getLong(offset + TIME));
+        json[n++] = '}';
+        out.write(json, 0, n);
+        return true;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return one more than the greatest row index that may hold a row
+     */
+    public int capacity() {
+        return pages.length << PAGE_SHIFT;
+    }
+
+    /**
+     * @return the UTF-8 bytes of the texts stored, without the blocks' length prefixes and rounding
+     */
+    public long getTextBytes() {
+        return textBytes;
+    }
+
+    /**
+     * @return the bytes of direct memory held by the row pages and the arena's slabs
+     */
+    public long getOffHeapBytes() {
+        long bytes = (long) slabCount * slabBytes;
+        for (ByteBuffer page : pages) {
+            if (page != null)
+                bytes += PAGE_ROWS * ROW_BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a table with the same rows, in buffers of its own, copied a page and a slab at a time
+     */
+    public OffHeapMessageTable copy() {
+        OffHeapMessageTable copy = new OffHeapMessageTable(slabBytes);
+        copy.pages = new ByteBuffer[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] != null)
+                copy.pages[i] = ByteBuffer.allocateDirect(pages[i].capacity()).put(0, pages[i], 0,
+                        pages[i].capacity());
+        }
+        copy.slabs = new ByteBuffer[slabs.length];
+        for (int i = 0; i < slabCount; i++)
+            copy.slabs[i] = ByteBuffer.allocateDirect(slabBytes).put(0, slabs[i], 0, slabBytes);
+        copy.slabCount = slabCount;
+        copy.slabPosition = slabPosition;
+        System.arraycopy(freeBlocks, 0, copy.freeBlocks, 0, SIZE_CLASSES);
+        copy.size = size;
+        copy.textBytes = textBytes;
+        return copy;
+    }
+
+    /**
+     * Drops every row. The buffers are released when they are garbage collected.
+     */
+    public void clear() {
+        pages = new ByteBuffer[1];
+        slabs = new ByteBuffer[1];
+        slabCount = 0;
+        slabPosition = slabBytes;
+        Arrays.fill(freeBlocks, 0);
+        size = 0;
+        textBytes = 0;
+    }
+
+    /*
+     * Rows
+     */
+
+    private ByteBuffer page(int row, boolean create) {
+        if (row < 0)
+            throw new IndexOutOfBoundsException("Negative row " + row);
+        int index = row >>> PAGE_SHIFT;
+        if (index >= pages.length) {
+            if (!create)
+                return null;
+            pages = Arrays.copyOf(pages, Math.max(index + 1, pages.length * 2));
+        }
+        ByteBuffer page = pages[index];
+        if (page == null && create) {
+            page = ByteBuffer.allocateDirect(PAGE_ROWS * ROW_BYTES);
+            pages[index] = page;
+        }
+        return page;
+    }
+
+    private ByteBuffer existingPage(int row) {
+        ByteBuffer page = page(row, false);
+        if (page == null || page.getLong(rowOffset(row) + TEXT) == 0)
+            throw new IllegalArgumentException("No row " + row);
+        return page;
+    }
+
+    private static int rowOffset(int row) {
+        return (row & (PAGE_ROWS - 1)) * ROW_BYTES;
+    }
+
+    /*
+     * The text arena. A reference is the slab's number plus one in the high half, so that no reference is 0, and the
+     * block's offset in the slab in the low half.
+     */
+
+    private long allocate(int bytes) {
+        int sizeClass = sizeClass(bytes);
+        long reference = freeBlocks[sizeClass];
+        if (reference != 0) {
+            freeBlocks[sizeClass] = slab(reference).getLong(blockOffset(reference));
+            return reference;
+        }
+        int blockBytes = (sizeClass + 1) * BLOCK_ALIGNMENT;
+        if (slabPosition + blockBytes > slabBytes) {
+            // The end of the full slab becomes a free block of its own size class, if it is large enough for one.
+            if (slabPosition < slabBytes)
+                push(reference(slabCount - 1, slabPosition), (slabBytes - slabPosition) / BLOCK_ALIGNMENT - 1);
+            if (slabCount == slabs.length)
+                slabs = Arrays.copyOf(slabs, slabCount * 2);
+            slabs[slabCount++] = ByteBuffer.allocateDirect(slabBytes);
+            slabPosition = 0;
+        }
+        reference = reference(slabCount - 1, slabPosition);
+        slabPosition += blockBytes;
+        return reference;
+    }
+
+    private void free(long reference) {
+        ByteBuffer slab = slab(reference);
+        int length = Short.toUnsignedInt(slab.getShort(blockOffset(reference)));
+        textBytes -= length;
+        push(reference, sizeClass(length + 2));
+    }
+
+    private void push(long reference, int sizeClass) {
+        // The last slab's tail may be larger than any class a text needs; it is only ever reused by a text that fits.
+        sizeClass = Math.min(sizeClass, SIZE_CLASSES - 1);
+        slab(reference).putLong(blockOffset(reference), freeBlocks[sizeClass]);
+        freeBlocks[sizeClass] = reference;
+    }
+
+    private static int sizeClass(int blockBytes) {
+        return Math.max(0, (blockBytes + BLOCK_ALIGNMENT - 1) / BLOCK_ALIGNMENT - 1);
+    }
+
+    private ByteBuffer slab(long reference) {
+        return slabs[(int) (reference >>> 32) - 1];
+    }
+
+    private static int blockOffset(long reference) {
+        return (int) reference;
+    }
+
+    private static long reference(int slab, int offset) {
+        return (long) (slab + 1) << 32 | offset;
+    }
+
+    /*
+     * JSON
+     */
+
+    private static int append(byte[] json, int n, byte[] bytes) {
+        System.arraycopy(bytes, 0, json, n, bytes.length);
+        return n + bytes.length;
+    }
+
+    private static int appendNumber(byte[] json, int n, long value) {
+        if (value < 0)
+            json[n++] = '-';
+        else
+            value = -value;
+        // Digits are taken from the negative value, which unlike the positive one always exists.
+        int start = n;
+        do {
+            json[n++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = n - 1; i < j; i++, j--) {
+            byte digit = json[i];
+            json[i] = json[j];
+            json[j] = digit;
+        }
+        return n;
+    }
+
+    /**
+     * Escapes a control character as Jackson does: the short escapes where JSON has one, otherwise \\u00XX.
+     */
+    private static int appendControl(byte[] json, int n, byte b) {
+        json[n++] = '\\';
+        switch (b) {
+            case '\b':
+                json[n++] = 'b';
+                break;
+            case '\t':
+                json[n++] = 't';
+                break;
+            case '\n':
+                json[n++] = 'n';
+                break;
+            case '\f':
+                json[n++] = 'f';
+                break;
+            case '\r':
+                json[n++] = 'r';
+                break;
+            default:
+                json[n++] = 'u';
+                json[n++] = '0';
+                json[n++] = '0';
+                json[n++] = HEX[b >> 4];
+                json[n++] = HEX[b & 0xF];
+        }
+        return n;
+    }
+}
@@ -0,0 +1,167 @@
+package Util;
+
+import org.jetbrains.annotations.Nullable;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hashes passwords with PBKDF2-HMAC-SHA256 and a random salt per password, stored as
+ * {@code pbkdf2-sha256$iterations$salt$hash} with the salt and hash in base64.
+ * <p>
+ * A hash costs hundreds of milliseconds of CPU by design, so the work runs on a dedicated pool of
+ * socialmedia.password.threads threads, one per core by default, with a bounded queue. Logins and registrations then
+ * cannot occupy every request thread, and a burst of them queues here instead of slowing every other request. A full
+ * queue rejects the work with a RejectedExecutionException, which the controller answers with 503.
+ * <p>
+ * Hashes made with a different number of iterations, and passwords stored before hashing was introduced, still verify;
+ * {@link #needsRehash(String)} tells the caller to store a new hash once it has the plaintext at login.
+ */
+public class PasswordHasher implements AutoCloseable {
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    private final ExecutorService executor;
+    /**
+     * A hash of nothing in particular, verified against when no account matches so that an unknown username takes as
+     * long to reject as a wrong password. Made on first use.
+     */
+    private volatile String dummyHash;
+
+    /**
+     * Reads socialmedia.password.iterations, socialmedia.password.threads and socialmedia.password.queueCapacity.
+     */
+    public PasswordHasher() {
+        this(Config.getInt("password.iterations", 600_000),
+                Config.getInt("password.threads", Runtime.getRuntime().availableProcessors()),
+                Config.getInt("password.queueCapacity", 1000));
+    }
+
+    /**
+     * @param iterations    the PBKDF2 work factor for new hashes
+     * @param threads       the number of threads hashing at once
+     * @param queueCapacity the number of hashes that may wait for a thread
+     */
+    public PasswordHasher(int iterations, int threads, int queueCapacity) {
+        this.iterations = iterations;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Runs CPU-heavy work, typically calls to {@link #hash(String)} and {@link #verify(String, String)}, on the
+     * hashing threads.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, executor);
+    }
+
+    /**
+     * Hashes on the calling thread; see {@link #submit(Supplier)}.
+     *
+     * @return the encoded hash of the password with a new random salt
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Verifies on the calling thread in time independent of where the password differs.
+     *
+     * @param stored an encoded hash, a password stored before hashing was introduced, or null to spend the time of a
+     *               verification and fail
+     * @return whether the password matches
+     */
+    public boolean verify(String password, @Nullable String stored) {
+        if (stored == null) {
+            String dummy = dummyHash;
+            if (dummy == null)
+                dummyHash = dummy = hash("");
+            verify(password, dummy);
+            return false;
+        }
+        if (!stored.startsWith(PREFIX))
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4)
+            return false;
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] expected = base64.decode(parts[3]);
+            return MessageDigest.isEqual(expected,
+                    pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1])));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return whether the stored password is plaintext or hashed with other parameters than new hashes are
+     */
+    public boolean needsRehash(String stored) {
+        return !stored.startsWith(PREFIX + iterations + "$");
+    }
+
+    /**
+     * @return the number of hashes waiting for a thread
+     */
+    public int getQueuedHashes() {
+        return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+    /**
+     * Stops accepting work; queued hashes still complete.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Every Java SE runtime supports PBKDF2WithHmacSHA256.
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
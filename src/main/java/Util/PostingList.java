@@ -0,0 +1,214 @@
+package Util;
+
+import java.util.Arrays;
+
+/**
+ * The compressed, append-only posting list of one term in an inverted index: the ascending document numbers the term
+ * occurs in, each with the positions it occurs at.
+ * <p>
+ * Entries are written as variable length integers, each document as the difference from the one before it, so a list
+ * costs a few bytes per document. They are grouped into blocks of {@link #BLOCK_SIZE} documents, and for every block
+ * the list keeps its first document, where its bytes start and the greatest timestamp among its documents. The first
+ * two let a {@link Cursor} jump to the block holding a document without decoding the blocks before it; the timestamp
+ * lets a search for the newest matches skip whole blocks that cannot contain one.
+ * <p>
+ * Not thread safe: the owning index guards it.
+ */
+public final class PostingList {
+
+    public static final int BLOCK_SIZE = 128;
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int[] blockFirstDoc = new int[1];
+    private int[] blockOffset = new int[1];
+    private long[] blockMaxTime = new long[1];
+    private int blockCount;
+    private int size;
+    private int lastDoc = -1;
+
+    /**
+     * Appends a document.
+     *
+     * @param doc           a document number greater than any added before
+     * @param time          the document's timestamp, for {@link #getBlockMaxTime(int)}
+     * @param positions     the ascending positions the term occurs at in the document
+     * @param positionCount how many of positions are used, at least 1
+     */
+    public void add(int doc, long time, int[] positions, int positionCount) {
+        if (doc <= lastDoc)
+            throw new IllegalArgumentException("Documents must be added in ascending order");
+        if (size % BLOCK_SIZE == 0) {
+            if (blockCount == blockFirstDoc.length) {
+                int capacity = blockCount * 2;
+                blockFirstDoc = Arrays.copyOf(blockFirstDoc, capacity);
+                blockOffset = Arrays.copyOf(blockOffset, capacity);
+                blockMaxTime = Arrays.copyOf(blockMaxTime, capacity);
+            }
+            blockFirstDoc[blockCount] = doc;
+            blockOffset[blockCount] = length;
+            blockMaxTime[blockCount] = time;
+            blockCount++;
+        } else {
+            // The first document of a block is kept in blockFirstDoc, the others as the gap from their predecessor.
+            writeVarInt(doc - lastDoc);
+            blockMaxTime[blockCount - 1] = Math.max(blockMaxTime[blockCount - 1], time);
+        }
+        writeVarInt(positionCount);
+        int previous = 0;
+        for (int i = 0; i < positionCount; i++) {
+            writeVarInt(positions[i] - previous);
+            previous = positions[i];
+        }
+        lastDoc = doc;
+        size++;
+    }
+
+    /**
+     * @return the number of documents in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return the greatest timestamp of the documents in the block
+     */
+    public long getBlockMaxTime(int block) {
+        return blockMaxTime[block];
+    }
+
+    /**
+     * @return the bytes used by the encoded entries
+     */
+    public int getEncodedSize() {
+        return length;
+    }
+
+    private void writeVarInt(int value) {
+        if (length + 5 > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+
+    /**
+     * Reads a posting list one decoded block at a time. A cursor is cheap to create and is used by one thread for the
+     * duration of one search.
+     */
+    public final class Cursor {
+        private int block = -1;
+        private int count;
+        private final int[] docs = new int[BLOCK_SIZE];
+        private final int[] positionStart = new int[BLOCK_SIZE + 1];
+        private int[] positions = new int[BLOCK_SIZE * 4];
+
+        /**
+         * Decodes a block, making its documents available through {@link #count()} and {@link #doc(int)}.
+         */
+        public void load(int block) {
+            if (block == this.block)
+                return;
+            int end = block + 1 < blockCount ? blockOffset[block + 1] : length;
+            int offset = blockOffset[block];
+            int doc = blockFirstDoc[block];
+            int positionCount = 0;
+            count = 0;
+            while (offset < end) {
+                if (count > 0) {
+                    int gap = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        byte b = data[offset++];
+                        gap |= (b & 0x7F) << shift;
+                        if (b >= 0)
+                            break;
+                    }
+                    doc += gap;
+                }
+                docs[count] = doc;
+                positionStart[count] = positionCount;
+
+                int occurrences = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[offset++];
+                    occurrences |= (b & 0x7F) << shift;
+                    if (b >= 0)
+                        break;
+                }
+                if (positionCount + occurrences > positions.length)
+                    positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionCount + occurrences));
+                int position = 0;
+                for (int i = 0; i < occurrences; i++) {
+                    int delta = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        byte b = data[offset++];
+                        delta |= (b & 0x7F) << shift;
+                        if (b >= 0)
+                            break;
+                    }
+                    position += delta;
+                    positions[positionCount++] = position;
+                }
+                count++;
+            }
+            positionStart[count] = positionCount;
+            this.block = block;
+        }
+
+        /**
+         * @return the number of documents in the loaded block
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @return the document at the index in the loaded block
+         */
+        public int doc(int index) {
+            return docs[index];
+        }
+
+        /**
+         * Loads the block that would hold the document.
+         *
+         * @return the index of the document in the loaded block, or -1 if the list does not contain it
+         */
+        public int find(int doc) {
+            if (size == 0 || doc < blockFirstDoc[0] || doc > lastDoc)
+                return -1;
+            int candidate = Arrays.binarySearch(blockFirstDoc, 0, blockCount, doc);
+            load(candidate >= 0 ? candidate : -candidate - 2);
+            int index = Arrays.binarySearch(docs, 0, count, doc);
+            return index >= 0 ? index : -1;
+        }
+
+        /**
+         * @return whether the document at the index in the loaded block has the term at the position
+         */
+        public boolean hasPosition(int index, int position) {
+            return Arrays.binarySearch(positions, positionStart[index], positionStart[index + 1], position) >= 0;
+        }
+
+        /**
+         * @return the number of positions of the document at the index in the loaded block
+         */
+        public int positionCount(int index) {
+            return positionStart[index + 1] - positionStart[index];
+        }
+
+        /**
+         * @return the i-th position of the document at the index in the loaded block
+         */
+        public int position(int index, int i) {
+            return positions[positionStart[index] + i];
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package Util;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.Header;
+import io.javalin.http.HttpResponseException;
+import io.javalin.http.HttpStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A before-handler that limits the requests of one method and path per key, such as the remote address or the
+ * account named in the body, with a {@link RateLimiter}. A request over the limit is answered with 429 and a
+ * Retry-After header before its handler runs, so it costs no database work.
+ * <p>
+ * Each limit is named, and configured by socialmedia.ratelimit.{name}.perSecond, .burst and .maxKeys. A rate of 0
+ * disables it, as does socialmedia.ratelimit.enabled=false for every limit.
+ */
+public class RateLimitHandler implements Handler {
+
+    private final HandlerType method;
+    private final Function<Context, String> key;
+    @Nullable
+    private final RateLimiter<String> limiter;
+    private final LongAdder rejected;
+
+    /**
+     * @param name             the name of the limit, for its configuration and metrics
+     * @param method           the method limited; before-handlers match paths for every method
+     * @param key              what the limit applies to, e.g. {@link Context#ip()}; requests without one (null) are
+     *                         not limited
+     * @param defaultPerSecond the sustained requests per second and key unless configured otherwise
+     * @param defaultBurst     the requests a key may make at once unless configured otherwise
+     */
+    public RateLimitHandler(String name, HandlerType method, Function<Context, String> key,
+                            double defaultPerSecond, int defaultBurst) {
+        this.method = method;
+        this.key = key;
+        String prefix = "ratelimit." + name + ".";
+        double perSecond = Config.getBoolean("ratelimit.enabled", true)
+                ? Config.getDouble(prefix + "perSecond", defaultPerSecond) : 0;
+        this.limiter = perSecond <= 0 ? null : new RateLimiter<>(perSecond,
+                Config.getInt(prefix + "burst", defaultBurst), Config.getInt(prefix + "maxKeys", 100_000));
+        this.rejected = Metrics.counter("rate_limited_requests_total", "Requests rejected with 429 by rate limit",
+                "limit", name);
+        if (limiter != null)
+            Metrics.gauge("rate_limit_keys", "Keys tracked by rate limit", limiter::getKeyCount, "limit", name);
+    }
+
+    @Override
+    public void handle(@NotNull Context context) {
+        if (limiter == null || context.method() != method)
+            return;
+        String requestKey = key.apply(context);
+        if (requestKey == null)
+            return;
+        long waitNanos = limiter.acquire(requestKey);
+        if (waitNanos > 0) {
+            rejected.increment();
+            long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            context.header(Header.RETRY_AFTER, Long.toString(seconds));
+            throw new HttpResponseException(HttpStatus.TOO_MANY_REQUESTS.getCode(), "Too many requests");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package Util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limits per key, e.g. per remote address, implemented as the generic cell rate algorithm: each key's
+ * bucket is a single AtomicLong holding its theoretical arrival time, the time at which the bucket will be full again.
+ * A request is admitted if, after adding one emission interval to that time, it is no further ahead of now than the
+ * burst allows. Admitting a request is one map lookup and one compare-and-set, with no locks.
+ * <p>
+ * A bucket whose arrival time has passed is full and behaves exactly like a missing one, so such idle buckets are
+ * removed by a sweep, run by whichever request finds one due: once per sweep interval, or at most once a second while
+ * the map is at maxKeys. If no bucket can be removed at maxKeys, new keys share a single overflow bucket, so memory
+ * stays bounded whatever the number of distinct keys, at the price of limiting those keys together.
+ * <p>
+ * A request racing with the sweep that removes its idle bucket may be admitted without being charged. The bucket was
+ * full, so this admits at most one extra request per key and sweep.
+ */
+public class RateLimiter<K> {
+
+    /**
+     * How often a full map may be swept for room for new keys.
+     */
+    private static final long FULL_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long emissionNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final long sweepIntervalNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow;
+    private final AtomicLong lastSweep;
+
+    /**
+     * @param perSecond the sustained number of requests admitted per second and key
+     * @param burst     the number of requests a key may make at once after being idle
+     * @param maxKeys   the maximum number of buckets kept
+     */
+    public RateLimiter(double perSecond, int burst, int maxKeys) {
+        this(perSecond, burst, maxKeys, TimeUnit.MINUTES.toNanos(1), System::nanoTime);
+    }
+
+    /**
+     * @param sweepIntervalNanos how often idle buckets are removed
+     * @param clock              the time in nanoseconds, as by System.nanoTime
+     */
+    public RateLimiter(double perSecond, int burst, int maxKeys, long sweepIntervalNanos, LongSupplier clock) {
+        if (perSecond <= 0 || burst < 1)
+            throw new IllegalArgumentException("The rate must be positive and the burst at least 1");
+        this.emissionNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / perSecond));
+        this.burstNanos = emissionNanos * burst;
+        this.maxKeys = maxKeys;
+        this.sweepIntervalNanos = sweepIntervalNanos;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.overflow = new AtomicLong(now);
+        this.lastSweep = new AtomicLong(now);
+    }
+
+    /**
+     * Charges one request to the key's bucket if it has room.
+     *
+     * @return 0 if the request is admitted, otherwise the nanoseconds until the key may make a request again
+     */
+    public long acquire(K key) {
+        long now = clock.getAsLong();
+        if (now - lastSweep.get() >= sweepIntervalNanos)
+            trySweep(now, sweepIntervalNanos);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null)
+            bucket = newBucket(key, now);
+        while (true) {
+            long arrival = bucket.get();
+            long next = (arrival - now > 0 ? arrival : now) + emissionNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0)
+                return wait;
+            if (bucket.compareAndSet(arrival, next))
+                return 0;
+        }
+    }
+
+    /**
+     * @return the number of buckets kept, not counting the overflow bucket
+     */
+    public int getKeyCount() {
+        return buckets.size();
+    }
+
+    private AtomicLong newBucket(K key, long now) {
+        if (buckets.size() >= maxKeys) {
+            // Sweeping costs time in proportion to maxKeys, so a flood of new keys must not trigger one each.
+            trySweep(now, Math.min(sweepIntervalNanos, FULL_SWEEP_INTERVAL_NANOS));
+            if (buckets.size() >= maxKeys)
+                return overflow;
+        }
+        // A new bucket starts full: its arrival time is now.
+        return buckets.computeIfAbsent(key, ignored -> new AtomicLong(now));
+    }
+
+    /**
+     * Removes idle buckets unless another sweep started within the interval.
+     */
+    private void trySweep(long now, long intervalNanos) {
+        long last = lastSweep.get();
+        if (now - last >= intervalNanos && lastSweep.compareAndSet(last, now))
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+}
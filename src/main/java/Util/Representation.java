@@ -0,0 +1,208 @@
+package Util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.javalin.http.Context;
+import io.javalin.http.Header;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * The format and content encoding of a response body, negotiated from the request's Accept and Accept-Encoding
+ * headers.
+ * <p>
+ * The format is JSON unless Accept prefers Smile or CBOR, the binary encodings of the same data model that Jackson
+ * writes with the same serializers. A client that accepts none of the three still gets JSON rather than a 406.
+ * <p>
+ * The encoding is gzip or deflate if Accept-Encoding allows it, applied by {@link CompressingOutputStream} to bodies
+ * over socialmedia.compression.threshold bytes at socialmedia.compression.level; socialmedia.compression.enabled
+ * turns compression off. Every representation other than uncompressed JSON has its own ETags, see
+ * {@link #tag(String)}.
+ */
+public final class Representation {
+
+    public enum Format {
+        JSON("application/json", JsonUtil.MAPPER.getFactory()),
+        SMILE("application/x-jackson-smile", new SmileFactory()),
+        CBOR("application/cbor", new CBORFactory());
+
+        private final String mediaType;
+        private final JsonFactory factory;
+
+        Format(String mediaType, JsonFactory factory) {
+            this.mediaType = mediaType;
+            // As for JSON, Javalin owns the response stream.
+            factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.factory = factory;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        /**
+         * @return the factory of generators and parsers for this format
+         */
+        public JsonFactory getFactory() {
+            return factory;
+        }
+    }
+
+    public enum Encoding {
+        IDENTITY(null),
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        @Nullable
+        private final String token;
+
+        Encoding(@Nullable String token) {
+            this.token = token;
+        }
+
+        /**
+         * @return the Content-Encoding value, or null for no compression
+         */
+        @Nullable
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final String ATTRIBUTE = Representation.class.getName();
+    private static final Representation JSON = new Representation(Format.JSON, Encoding.IDENTITY);
+
+    private static final boolean COMPRESSION_ENABLED = Config.getBoolean("compression.enabled", true);
+    private static final int COMPRESSION_THRESHOLD = Config.getInt("compression.threshold", 1500);
+    private static final int COMPRESSION_LEVEL = Config.getInt("compression.level", 1);
+
+    private final Format format;
+    private final Encoding encoding;
+
+    public Representation(Format format, Encoding encoding) {
+        this.format = format;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Negotiates the representation of the response once per request, and sets Vary so caches keep the
+     * representations apart.
+     */
+    public static Representation of(Context context) {
+        Representation representation = context.attribute(ATTRIBUTE);
+        if (representation == null) {
+            representation = negotiate(context.header(Header.ACCEPT),
+                    COMPRESSION_ENABLED ? context.header(Header.ACCEPT_ENCODING) : null);
+            context.header(Header.VARY, "Accept, Accept-Encoding");
+            context.attribute(ATTRIBUTE, representation);
+        }
+        return representation;
+    }
+
+    /**
+     * @param accept         the Accept header or null
+     * @param acceptEncoding the Accept-Encoding header or null
+     */
+    public static Representation negotiate(@Nullable String accept, @Nullable String acceptEncoding) {
+        if (accept == null && acceptEncoding == null)
+            return JSON;
+        Format format = Format.JSON;
+        double best = quality(accept, "application", "json");
+        for (Format candidate : new Format[]{Format.SMILE, Format.CBOR}) {
+            String[] type = candidate.mediaType.split("/");
+            double quality = quality(accept, type[0], type[1]);
+            if (quality > best) {
+                format = candidate;
+                best = quality;
+            }
+        }
+        Encoding encoding = Encoding.IDENTITY;
+        double gzip = quality(acceptEncoding, "gzip", null);
+        double deflate = quality(acceptEncoding, "deflate", null);
+        if (gzip > 0 && gzip >= deflate)
+            encoding = Encoding.GZIP;
+        else if (deflate > 0)
+            encoding = Encoding.DEFLATE;
+        return format == Format.JSON && encoding == Encoding.IDENTITY ? JSON : new Representation(format, encoding);
+    }
+
+    /**
+     * Finds the quality the header gives a media type, or a content coding if subtype is null, taking the most
+     * specific matching range: an exact match over type/* over a wildcard.
+     *
+     * @return the quality from 0 to 1, 1 if header is null, or 0 if no range matches
+     */
+    private static double quality(@Nullable String header, String type, @Nullable String subtype) {
+        if (header == null)
+            return subtype == null ? 0 : 1;
+        double quality = 0;
+        int specificity = -1;
+        for (String range : header.split(",")) {
+            String[] parameters = range.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            int matched;
+            if (subtype == null)
+                matched = name.equals(type) ? 1 : name.equals("*") ? 0 : -1;
+            else
+                matched = name.equals(type + "/" + subtype) ? 2 : name.equals(type + "/*") ? 1
+                        : name.equals("*/*") ? 0 : -1;
+            if (matched <= specificity)
+                continue;
+            specificity = matched;
+            quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+        }
+        return quality;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Qualifies a strong ETag of the data with this representation, since the bytes of each representation differ.
+     * Uncompressed JSON keeps the ETag as it is.
+     *
+     * @param etag a quoted strong ETag
+     */
+    public String tag(String etag) {
+        if (format == Format.JSON && encoding == Encoding.IDENTITY)
+            return etag;
+        StringBuilder tagged = new StringBuilder(etag.length() + 16).append(etag, 0, etag.length() - 1);
+        if (format != Format.JSON)
+            tagged.append('.').append(format.name().toLowerCase(Locale.ROOT));
+        if (encoding != Encoding.IDENTITY)
+            tagged.append('.').append(encoding.getToken());
+        return tagged.append('"').toString();
+    }
+
+    /**
+     * Opens the response body with the content type of this format, or the given one for formats of its own such as
+     * NDJSON, compressing it if this encoding calls for it. The body must be closed to finish it; closing it leaves
+     * the response stream open.
+     *
+     * @param contentType the content type of the body, or null for this format's
+     */
+    public OutputStream open(Context context, @Nullable String contentType) {
+        context.contentType(contentType != null ? contentType : format.getMediaType());
+        return new CompressingOutputStream(context.outputStream(), encoding, COMPRESSION_LEVEL, COMPRESSION_THRESHOLD,
+                () -> context.header(Header.CONTENT_ENCODING, encoding.getToken()));
+    }
+}
@@ -0,0 +1,65 @@
+package Util;
+
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.RequestLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of every request by method and route, and counts responses by status code. Registered as
+ * Javalin's request logger, so it sees each request once its response has been written, whichever thread handled it.
+ * <p>
+ * The histograms and counters are looked up by route and status without allocating, and only registered with
+ * {@link Metrics} the first time a route or status is seen.
+ */
+public class RequestMetrics implements RequestLogger {
+
+    /**
+     * The route label for requests that matched no endpoint, such as 404s and requests stopped by a before-handler.
+     */
+    private static final String UNMATCHED = "unmatched";
+
+    private final Map<HandlerType, Map<String, LatencyHistogram>> histograms = new EnumMap<>(HandlerType.class);
+    private final AtomicReferenceArray<LongAdder> statusCounters = new AtomicReferenceArray<>(600);
+
+    public RequestMetrics() {
+        for (HandlerType method : HandlerType.values())
+            histograms.put(method, new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void handle(@NotNull Context context, @NotNull Float executionTimeMs) {
+        String route = context.handlerType() == HandlerType.BEFORE ? "" : context.endpointHandlerPath();
+        if (route.isEmpty())
+            route = UNMATCHED;
+        histogram(context.method(), route).record((long) (executionTimeMs * 1_000_000));
+        statusCounter(context.statusCode()).increment();
+    }
+
+    private LatencyHistogram histogram(HandlerType method, String route) {
+        Map<String, LatencyHistogram> byRoute = histograms.get(method);
+        LatencyHistogram histogram = byRoute.get(route);
+        if (histogram == null) {
+            histogram = byRoute.computeIfAbsent(route, key -> Metrics.histogram("http_request_duration_seconds",
+                    "HTTP request durations by method and route", "method", method.name(), "route", key));
+        }
+        return histogram;
+    }
+
+    private LongAdder statusCounter(int status) {
+        int index = status >= 0 && status < statusCounters.length() ? status : 0;
+        LongAdder counter = statusCounters.get(index);
+        if (counter == null) {
+            counter = Metrics.counter("http_responses_total", "HTTP responses by status code",
+                    "status", index == 0 ? "other" : Integer.toString(index));
+            statusCounters.set(index, counter);
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,93 @@
+package Util;
+
+import org.h2.tools.RunScript;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Brings the database schema up to date by running the numbered scripts in src/main/resources/db/migration in order.
+ * Script V1.sql is version 1, V2.sql is version 2 and so on; the first line of each script is a "--" comment describing
+ * it. Applied versions are recorded in the schema_version table, so each script runs exactly once per database.
+ * <p>
+ * To change the schema, add the next numbered script. Never edit a script that has already been released.
+ */
+public final class SchemaMigrator {
+
+    private static final String MIGRATION_PATH = "/db/migration/V";
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Applies every migration newer than the version recorded in the database.
+     *
+     * @return the schema version after migrating
+     */
+    public static int migrate(Connection connection) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(255), " +
+                    "applied_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP);");
+        }
+
+        int version = currentVersion(connection);
+        String script;
+        while ((script = readMigration(version + 1)) != null) {
+            version++;
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                RunScript.execute(connection, new StringReader(script));
+                try (PreparedStatement preparedStatement = connection.prepareStatement(
+                        "INSERT INTO schema_version(version, description) VALUES (?,?);")) {
+                    preparedStatement.setInt(1, version);
+                    preparedStatement.setString(2, describe(script));
+                    preparedStatement.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Migration V" + version + " failed: " + e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @return the highest version recorded as applied, 0 for an empty database
+     */
+    public static int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version;")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * @return the text of the numbered migration or null if there is no such migration
+     */
+    private static String readMigration(int version) throws IOException {
+        try (InputStream inputStream = SchemaMigrator.class.getResourceAsStream(MIGRATION_PATH + version + ".sql")) {
+            if (inputStream == null)
+                return null;
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String describe(String script) {
+        String firstLine = script.lines().findFirst().orElse("");
+        return firstLine.startsWith("--") ? firstLine.substring(2).trim() : "";
+    }
+}
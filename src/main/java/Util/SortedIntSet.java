@@ -0,0 +1,89 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A set of ints kept as one sorted primitive array, four bytes an element. Adding a value greater than all others, the
+ * usual case for generated ids, is an append; other additions and removals move the elements after it.
+ * <p>
+ * Not thread safe: the owner guards it.
+ */
+public final class SortedIntSet {
+
+    private int[] values = new int[4];
+    private int size;
+
+    /**
+     * @return true if the value was added, false if the set already held it
+     */
+    public boolean add(int value) {
+        if (size > 0 && value > values[size - 1]) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+            return true;
+        }
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0)
+            return false;
+        index = -index - 1;
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true if the value was removed, false if the set did not hold it
+     */
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0)
+            return false;
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value at the index, in ascending order
+     */
+    public int get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return values[index];
+    }
+
+    /**
+     * @return a copy of the values in ascending order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @return the values in ascending order, boxed
+     */
+    public List<Integer> toList() {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            list.add(values[i]);
+        return list;
+    }
+}
@@ -0,0 +1,119 @@
+package Util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The time_posted_epoch and message_id of a set of messages in parallel primitive arrays, sorted by time then
+ * message_id, with a binary search for any position. Not thread safe: the indexes and stores holding it guard it
+ * with their locks.
+ */
+public final class TimeOrderedIds {
+    private long[] times = new long[4];
+    private int[] ids = new int[4];
+    private int size;
+
+    /**
+     * @return true if the message was not in the set yet
+     */
+    public boolean insert(long time, int messageID) {
+        int index = firstFrom(time, messageID);
+        if (index < size && times[index] == time && ids[index] == messageID)
+            return false;
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(times, index, times, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        times[index] = time;
+        ids[index] = messageID;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true if the message was in the set
+     */
+    public boolean remove(long time, int messageID) {
+        int index = firstFrom(time, messageID);
+        if (index == size || times[index] != time || ids[index] != messageID)
+            return false;
+        System.arraycopy(times, index + 1, times, index, size - index - 1);
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the index of the first entry not before (time, messageID), size if there is none
+     */
+    public int firstFrom(long time, int messageID) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time || (times[middle] == time && ids[middle] < messageID))
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return the index of the first entry at or after time, size if there is none
+     */
+    public int firstFrom(long time) {
+        return firstFrom(time, Integer.MIN_VALUE);
+    }
+
+    /**
+     * @return the index of the first entry after time, size if there is none
+     */
+    public int firstAfter(long time) {
+        return time == Long.MAX_VALUE ? size : firstFrom(time + 1);
+    }
+
+    /**
+     * @return the number of entries from sinceEpoch to untilEpoch, both inclusive
+     */
+    public int count(long sinceEpoch, long untilEpoch) {
+        return Math.max(firstAfter(untilEpoch) - firstFrom(sinceEpoch), 0);
+    }
+
+    /**
+     * Adds the message_ids of the entries from sinceEpoch and before the cursor to messageIDs, newest first, until it
+     * holds limit of them.
+     *
+     * @return the time_posted_epoch of the last message_id added, beforeEpoch if none were
+     */
+    public long page(long sinceEpoch, long beforeEpoch, int beforeMessageID, int limit, List<Integer> messageIDs) {
+        int from = firstFrom(sinceEpoch);
+        int i = firstFrom(beforeEpoch, beforeMessageID);
+        long lastEpoch = beforeEpoch;
+        while (--i >= from && messageIDs.size() < limit) {
+            messageIDs.add(ids[i]);
+            lastEpoch = times[i];
+        }
+        return lastEpoch;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the time_posted_epoch of the entry at the index, in ascending order
+     */
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * @return the message_id of the entry at the index, in ascending order
+     */
+    public int getMessageID(int index) {
+        return ids[index];
+    }
+}
@@ -0,0 +1,2 @@
+-- Index messages by author, newest first, for per-account feeds
+create index if not exists message_posted_by_time_idx on message (posted_by, time_posted_epoch desc, message_id);
@@ -0,0 +1,23 @@
+-- Add the follow graph and the home timelines it is fanned out to
+create table if not exists follow (
+    follower_id int not null,
+    followee_id int not null,
+    primary key (follower_id, followee_id)
+);
+-- Covers the fan-out of a new message to everyone following its author
+create index if not exists follow_followee_idx on follow (followee_id, follower_id);
+alter table follow add foreign key (follower_id) references account(account_id);
+alter table follow add foreign key (followee_id) references account(account_id);
+
+-- One row per message per follower of its author, written when the message is posted or the author is followed
+create table if not exists timeline (
+    account_id int not null,
+    posted_by int not null,
+    message_id int not null,
+    time_posted_epoch bigint not null,
+    primary key (account_id, posted_by, message_id)
+);
+-- Serves each page of a timeline as one index range, newest first
+create index if not exists timeline_account_time_idx on timeline (account_id, time_posted_epoch desc, message_id desc);
+create index if not exists timeline_message_idx on timeline (message_id);
+alter table timeline add foreign key (message_id) references message(message_id) on delete cascade;
@@ -0,0 +1,2 @@
+-- Version each message row, bumped by every update of it, so responses can carry an ETag derived from it
+alter table message add column if not exists version int not null default 0;
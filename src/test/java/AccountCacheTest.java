@@ -0,0 +1,227 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.Storage;
+import Model.Account;
+import Model.Message;
+import Service.AccountCache;
+import Service.AccountService;
+import Service.MessageService;
+import Util.ConnectionUtil;
+
+public class AccountCacheTest {
+    AtomicInteger queries;
+    AccountDAO countingDAO;
+
+    /**
+     * Before every test, reset the database and wrap the AccountDAO so the tests can count the queries that reach it.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        queries = new AtomicInteger();
+        AccountDAO accountDAO = Storage.accountDAO();
+        countingDAO = new AccountDAO() {
+            @Override
+            public Account createAccount(Account account) {
+                return accountDAO.createAccount(account);
+            }
+
+            @Override
+            public Account getAccount(int account_id) {
+                queries.incrementAndGet();
+                return accountDAO.getAccount(account_id);
+            }
+
+            @Override
+            public Account getAccount(String username) {
+                queries.incrementAndGet();
+                return accountDAO.getAccount(username);
+            }
+
+            @Override
+            public boolean updatePassword(int account_id, String oldPassword, String newPassword) {
+                return accountDAO.updatePassword(account_id, oldPassword, newPassword);
+            }
+        };
+    }
+
+    /**
+     * Repeated lookups of an account, by either key, only query the database once.
+     */
+    @Test
+    public void repeatedLookupsHitTheDatabaseOnce() {
+        AccountCache cache = new AccountCache(countingDAO, 100, 60_000, 60_000);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("testuser1", cache.getAccount(1).getUsername());
+            Assert.assertEquals(1, cache.getAccount("testuser1").getAccount_id());
+        }
+
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals(19, cache.getHitCount());
+    }
+
+    /**
+     * Lookups of a nonexistent account are cached as absent.
+     */
+    @Test
+    public void missingAccountsAreNegativelyCached() {
+        AccountCache cache = new AccountCache(countingDAO, 100, 60_000, 60_000);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNull(cache.getAccount(42));
+            Assert.assertNull(cache.getAccount("nobody"));
+        }
+
+        Assert.assertEquals(2, queries.get());
+    }
+
+    /**
+     * Negative entries expire after their own, shorter time to live.
+     */
+    @Test
+    public void negativeEntriesExpire() throws InterruptedException {
+        AccountCache cache = new AccountCache(countingDAO, 100, 60_000, 20);
+        Assert.assertNull(cache.getAccount(42));
+        Thread.sleep(50);
+        Assert.assertNull(cache.getAccount(42));
+
+        Assert.assertEquals(2, queries.get());
+    }
+
+    /**
+     * Registering an account through one service replaces the cached absence seen by the other.
+     */
+    @Test
+    public void accountCreationReplacesNegativeEntries() {
+        AccountCache cache = new AccountCache(countingDAO, 100, 60_000, 60_000);
+        AccountService accountService = new AccountService(countingDAO, cache);
+        MessageService messageService = new MessageService(cache);
+
+        Assert.assertNull(messageService.createMessage(new Message(2, "too early", 1669947792)));
+        Account created = accountService.createAccount(new Account("newuser", "password")).join();
+        Assert.assertEquals(2, created.getAccount_id());
+
+        Assert.assertNotNull(messageService.createMessage(new Message(2, "now it exists", 1669947792)));
+        Assert.assertNull(accountService.createAccount(new Account("newuser", "password")).join());
+    }
+
+    /**
+     * A lookup that misses while the account is being created does not cache the absence over the new account.
+     */
+    @Test
+    public void lookupRacingCreationDoesNotHideTheAccount() {
+        AccountDAO accountDAO = Storage.accountDAO();
+        AccountCache[] cache = new AccountCache[1];
+        AccountDAO racingDAO = new AccountDAO() {
+            @Override
+            public Account createAccount(Account account) {
+                return accountDAO.createAccount(account);
+            }
+
+            @Override
+            public Account getAccount(int account_id) {
+                Account missed = accountDAO.getAccount(account_id);
+                cache[0].accountCreated(createAccount(new Account("racer", "password")));
+                return missed;
+            }
+
+            @Override
+            public Account getAccount(String username) {
+                Account missed = accountDAO.getAccount(username);
+                cache[0].accountCreated(createAccount(new Account(username, "password")));
+                return missed;
+            }
+
+            @Override
+            public boolean updatePassword(int account_id, String oldPassword, String newPassword) {
+                return accountDAO.updatePassword(account_id, oldPassword, newPassword);
+            }
+        };
+        cache[0] = new AccountCache(racingDAO, 100, 60_000, 60_000);
+
+        Assert.assertNull(cache[0].getAccount(2));
+        Assert.assertNotNull(cache[0].getAccount(2));
+        Assert.assertNull(cache[0].getAccount("newuser"));
+        Assert.assertNotNull(cache[0].getAccount("newuser"));
+    }
+
+    /**
+     * An account created just as a lookup that missed it caches its absence, between the lookup checking for
+     * creations and putting the absence, is still found afterwards. The creation is timed to land just after each
+     * lookup's read, so over many rounds some fall in that window.
+     */
+    @Test
+    public void creationRacingTheNegativePutIsNotHidden() throws Exception {
+        AtomicInteger readsReturned = new AtomicInteger();
+        Map<String, Account> created = new ConcurrentHashMap<>();
+        // Reads from before the account is created, as a lookup racing the insert may, until it is cached.
+        AccountDAO laggingDAO = new AccountDAO() {
+            @Override
+            public Account createAccount(Account account) {
+                return null;
+            }
+
+            @Override
+            public Account getAccount(int account_id) {
+                readsReturned.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public Account getAccount(String username) {
+                readsReturned.incrementAndGet();
+                return created.remove(username);
+            }
+
+            @Override
+            public boolean updatePassword(int account_id, String oldPassword, String newPassword) {
+                return false;
+            }
+        };
+        AccountCache cache = new AccountCache(laggingDAO, 100_000, 60_000, 60_000);
+        ExecutorService creator = Executors.newSingleThreadExecutor();
+        try {
+            for (int round = 1; round <= 100_000; round++) {
+                Account account = new Account(round, "racer" + round, "password");
+                int readsBefore = readsReturned.get();
+                int delay = round % 4;
+                Future<?> creation = creator.submit(() -> {
+                    // Created just after the lookup's read returns, a little later each round, so that some rounds
+                    // land while it decides whether to cache the absence.
+                    while (readsReturned.get() == readsBefore)
+                        Thread.onSpinWait();
+                    for (int i = 0; i < delay; i++)
+                        Thread.onSpinWait();
+                    cache.accountCreated(account);
+                    created.put(account.getUsername(), account);
+                });
+                cache.getAccount(account.getUsername());
+                creation.get();
+                Assert.assertEquals("round " + round, account, cache.getAccount(account.getUsername()));
+            }
+        } finally {
+            creator.shutdownNow();
+        }
+    }
+
+    /**
+     * The cache holds no more than its maximum size.
+     */
+    @Test
+    public void cacheIsBounded() {
+        AccountCache cache = new AccountCache(countingDAO, 16, 60_000, 60_000);
+        for (int id = 1; id <= 1000; id++)
+            cache.getAccount(id);
+
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Model.Message;
+import Service.AccountMessageIndex;
+
+public class AccountMessageIndexTest {
+
+    /**
+     * Pages come newest first by time_posted_epoch, then message_id, and following the cursor of each page walks every
+     * message once, also when messages arrive out of time order.
+     */
+    @Test
+    public void pagesWalkNewestFirst() {
+        AccountMessageIndex index = new AccountMessageIndex();
+        index.add(new Message(1, 1, "a", 300));
+        index.add(new Message(2, 1, "b", 100));
+        index.add(new Message(3, 1, "c", 300));
+        index.add(new Message(4, 2, "other account", 400));
+        index.add(new Message(5, 1, "d", 200));
+
+        Assert.assertEquals(List.of(3, 1), index.page(1, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, 2));
+        Assert.assertEquals(List.of(5, 2), index.page(1, Long.MIN_VALUE, 300, 1, 2));
+        Assert.assertEquals(List.of(), index.page(1, Long.MIN_VALUE, 100, 2, 2));
+        Assert.assertEquals(List.of(3, 1, 5), index.page(1, 200, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+        Assert.assertEquals(List.of(), index.page(3, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+    }
+
+    /**
+     * Counts cover the whole account or an inclusive time range, and follow adds and removes.
+     */
+    @Test
+    public void countsFollowChanges() {
+        AccountMessageIndex index = new AccountMessageIndex();
+        Message first = new Message(1, 1, "a", 100);
+        index.add(first);
+        index.add(new Message(2, 1, "b", 200));
+        index.add(new Message(3, 1, "c", 300));
+        index.add(new Message(3, 1, "c", 300));
+
+        Assert.assertEquals(3, index.count(1));
+        Assert.assertEquals(2, index.count(1, 100, 200));
+        Assert.assertEquals(1, index.count(1, 150, 250));
+        Assert.assertEquals(3, index.count(1, Long.MIN_VALUE, Long.MAX_VALUE));
+        Assert.assertEquals(0, index.count(1, 300, 200));
+        Assert.assertEquals(0, index.count(2));
+
+        index.remove(first);
+        index.remove(first);
+        index.remove(new Message(2, 1, "b", 999));
+        Assert.assertEquals(2, index.count(1));
+        Assert.assertEquals(List.of(3, 2), index.page(1, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+        Assert.assertEquals(2, index.getMessageCount());
+    }
+
+    /**
+     * Random adds and removes leave every page and count agreeing with sorting the remaining messages.
+     */
+    @Test
+    public void agreesWithSorting() {
+        Random random = new Random(42);
+        AccountMessageIndex index = new AccountMessageIndex();
+        List<Message> expected = new ArrayList<>();
+        for (int messageID = 1; messageID <= 5_000; messageID++) {
+            Message message = new Message(messageID, 7, "text", random.nextInt(1_000));
+            index.add(message);
+            expected.add(message);
+            if (random.nextInt(4) == 0)
+                index.remove(expected.remove(random.nextInt(expected.size())));
+        }
+        expected.sort(Comparator.comparingLong(Message::getTime_posted_epoch)
+                .thenComparingInt(Message::getMessage_id).reversed());
+
+        List<Integer> walked = new ArrayList<>();
+        long beforeEpoch = Long.MAX_VALUE;
+        int beforeMessageID = Integer.MAX_VALUE;
+        List<Integer> page;
+        while (!(page = index.page(7, Long.MIN_VALUE, beforeEpoch, beforeMessageID, 100)).isEmpty()) {
+            walked.addAll(page);
+            Message last = expected.get(walked.size() - 1);
+            beforeEpoch = last.getTime_posted_epoch();
+            beforeMessageID = last.getMessage_id();
+        }
+        Assert.assertEquals(expected.stream().map(Message::getMessage_id).toList(), walked);
+        Assert.assertEquals(expected.stream().filter(m -> m.getTime_posted_epoch() >= 250
+                && m.getTime_posted_epoch() <= 500).count(), index.count(7, 250, 500));
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.BulkImportResult;
+import Model.Message;
+import Model.TimelinePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class BulkMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk with valid, invalid and blank lines
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the count of created and failed lines and the reason each line failed
+     */
+    @Test
+    public void importReportsErrorsPerLine() throws IOException, InterruptedException {
+        String body = "{\"posted_by\":1,\"message_text\":\"bulk message 1\",\"time_posted_epoch\":1669947800}\n" +
+                "{\"posted_by\":1,\"message_text\":\"\",\"time_posted_epoch\":1669947801}\r\n" +
+                "\n" +
+                "not json\n" +
+                "{\"posted_by\":100,\"message_text\":\"no such account\",\"time_posted_epoch\":1669947802}\n" +
+                "{\"posted_by\":1,\"message_text\":\"" + "x".repeat(256) + "\",\"time_posted_epoch\":1}\n" +
+                "{\"posted_by\":1,\"message_text\":\"bulk message 2\",\"time_posted_epoch\":1669947803}";
+        HttpResponse<String> response = send("POST", "/messages/bulk", body);
+        Assert.assertEquals(200, response.statusCode());
+
+        BulkImportResult result = objectMapper.readValue(response.body(), BulkImportResult.class);
+        Assert.assertEquals(2, result.getCreated());
+        Assert.assertEquals(4, result.getFailed());
+        Assert.assertEquals(List.of(2, 4, 5, 6),
+                result.getErrors().stream().map(BulkImportResult.LineError::getLine).toList());
+        Assert.assertEquals("posted_by must be an existing account_id", result.getErrors().get(2).getError());
+
+        Message created = objectMapper.readValue(send("GET", "/messages/3", "").body(), Message.class);
+        Assert.assertEquals(new Message(3, 1, "bulk message 2", 1669947803), created);
+        Assert.assertEquals(1, objectMapper.readValue(send("GET", "/messages/search?q=bulk+2", "").body(),
+                Message[].class).length);
+    }
+
+    /**
+     * Importing more lines than fit in one chunk creates every message, in line order, and fans them out to the
+     * author's followers.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: every line created
+     */
+    @Test
+    public void importSpansChunks() throws IOException, InterruptedException {
+        send("POST", "/register", "{\"username\":\"testuser2\",\"password\":\"password\"}");
+        Assert.assertEquals(200, send("POST", "/accounts/2/following/1", "").statusCode());
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2500; i++)
+            body.append("{\"posted_by\":1,\"message_text\":\"message ").append(i).append("\",\"time_posted_epoch\":")
+                    .append(i).append("}\n");
+        BulkImportResult result = objectMapper.readValue(send("POST", "/messages/bulk", body.toString()).body(),
+                BulkImportResult.class);
+        Assert.assertEquals(2500, result.getCreated());
+        Assert.assertEquals(0, result.getFailed());
+
+        Message last = objectMapper.readValue(send("GET", "/messages/2501", "").body(), Message.class);
+        Assert.assertEquals("message 2499", last.getMessage_text());
+        // The seeded message 1 is the newest, so start the timeline just after it.
+        HttpResponse<String> timeline = send("GET", "/accounts/2/timeline?limit=1&before=1669947792:1", "");
+        Assert.assertEquals(List.of(last), objectMapper.readValue(timeline.body(), TimelinePage.class).getMessages());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/export
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON message per line, in message_id order, which can be imported again
+     */
+    @Test
+    public void exportIsNewlineDelimitedJson() throws IOException, InterruptedException {
+        send("POST", "/messages", "{\"posted_by\":1,\"message_text\":\"test message 2\",\"time_posted_epoch\":1}");
+
+        HttpResponse<String> response = send("GET", "/messages/export", "");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+        String[] lines = response.body().split("\n", -1);
+        Assert.assertEquals(3, lines.length);
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(lines[0], Message.class));
+        Assert.assertEquals(new Message(2, 1, "test message 2", 1), objectMapper.readValue(lines[1], Message.class));
+        Assert.assertEquals("", lines[2]);
+
+        BulkImportResult result = objectMapper.readValue(send("POST", "/messages/bulk", response.body()).body(),
+                BulkImportResult.class);
+        Assert.assertEquals(2, result.getCreated());
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending GET localhost:8080/messages/1 again with the ETag of the first response in If-None-Match
+     *
+     * Expected Response:
+     *  Status Code: 304 with an empty body while the message is unchanged, 200 with the new text and a new ETag once
+     *  it has been updated
+     */
+    @Test
+    public void getMessageRevalidates() throws IOException, InterruptedException {
+        HttpResponse<String> first = send("GET", "/messages/1", "", null);
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(first.body(), Message.class));
+
+        HttpResponse<String> unchanged = send("GET", "/messages/1", "", etag);
+        Assert.assertEquals(304, unchanged.statusCode());
+        Assert.assertEquals("", unchanged.body());
+        Assert.assertEquals(etag, unchanged.headers().firstValue("ETag").orElseThrow());
+        Assert.assertEquals(304, send("GET", "/messages/1", "", "\"other\", W/" + etag).statusCode());
+        Assert.assertEquals(304, send("GET", "/messages/1", "", "*").statusCode());
+        Assert.assertEquals(200, send("GET", "/messages/1", "", "\"other\"").statusCode());
+
+        send("PATCH", "/messages/1", "{\"message_text\": \"updated message\"}", null);
+        HttpResponse<String> updated = send("GET", "/messages/1", "", etag);
+        Assert.assertEquals(200, updated.statusCode());
+        Assert.assertEquals("updated message", objectMapper.readValue(updated.body(), Message.class).getMessage_text());
+        Assert.assertNotEquals(etag, updated.headers().firstValue("ETag").orElseThrow());
+    }
+
+    /**
+     * Sending GET localhost:8080/accounts/1/messages with the ETag of an earlier response in If-None-Match
+     *
+     * Expected Response:
+     *  Status Code: 304 while the account's messages are unchanged, 200 after a message is created, updated or deleted
+     */
+    @Test
+    public void getAccountMessagesRevalidates() throws IOException, InterruptedException {
+        String etag = send("GET", "/accounts/1/messages", "", null).headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(304, send("GET", "/accounts/1/messages", "", etag).statusCode());
+
+        send("POST", "/messages", "{\"posted_by\":1, \"message_text\": \"hello message\", \"time_posted_epoch\": 1669947792}", null);
+        etag = assertChanged(etag);
+
+        send("PATCH", "/messages/2", "{\"message_text\": \"updated message\"}", null);
+        etag = assertChanged(etag);
+
+        send("DELETE", "/messages/2", "", null);
+        etag = assertChanged(etag);
+
+        // A failed update changes nothing.
+        send("PATCH", "/messages/100", "{\"message_text\": \"updated message\"}", null);
+        Assert.assertEquals(304, send("GET", "/accounts/1/messages", "", etag).statusCode());
+    }
+
+    /**
+     * @return the new ETag after checking that the account's messages no longer match the old one
+     */
+    private String assertChanged(String etag) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", "/accounts/1/messages", "", etag);
+        Assert.assertEquals(200, response.statusCode());
+        String newETag = response.headers().firstValue("ETag").orElseThrow();
+        Assert.assertNotEquals(etag, newETag);
+        return newETag;
+    }
+
+    private HttpResponse<String> send(String method, String path, String body, String ifNoneMatch)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (ifNoneMatch != null)
+            request.header("If-None-Match", ifNoneMatch);
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
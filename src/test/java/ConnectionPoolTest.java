@@ -0,0 +1,318 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.JdbcAccountDAO;
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+
+public class ConnectionPoolTest {
+    JdbcDataSource dataSource;
+    ConnectionPool pool;
+
+    /**
+     * Before every test, reset the database and create a small standalone pool over a private in-memory database.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        pool = new ConnectionPool(dataSource, 2, 200, 60_000, 5_000, 0);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Closing a borrowed connection returns it to the pool instead of closing the physical connection.
+     */
+    @Test
+    public void closedConnectionsAreReused() throws SQLException {
+        for (int i = 0; i < 100; i++) {
+            try (Connection connection = pool.getConnection()) {
+                Assert.assertTrue(connection.isValid(1));
+            }
+        }
+        Assert.assertEquals(1, pool.getConnectionsCreated());
+        Assert.assertEquals(0, pool.getActiveConnections());
+        Assert.assertEquals(1, pool.getIdleConnections());
+        Assert.assertEquals(100, pool.getBorrowCount());
+    }
+
+    /**
+     * Once maxSize connections are borrowed, the next borrower times out instead of opening another connection.
+     */
+    @Test
+    public void borrowBeyondMaxSizeTimesOut() throws SQLException {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            Assert.assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+            Assert.assertEquals(2, pool.getTotalConnections());
+            Assert.assertEquals(1, pool.getBorrowTimeouts());
+        }
+        Assert.assertEquals(2, pool.getIdleConnections());
+    }
+
+    /**
+     * A handle that has been returned to the pool can no longer be used, and closing it twice does not return the
+     * underlying connection twice.
+     */
+    @Test
+    public void returnedHandleIsUnusable() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertThrows(SQLException.class, connection::createStatement);
+        Assert.assertEquals(1, pool.getIdleConnections());
+    }
+
+    /**
+     * An uncommitted transaction is rolled back when the connection is returned.
+     */
+    @Test
+    public void openTransactionIsRolledBackOnReturn() throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS pool_rollback (id INT)");
+        }
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute("INSERT INTO pool_rollback VALUES (1)");
+        }
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM pool_rollback")) {
+            Assert.assertTrue(connection.getAutoCommit());
+            resultSet.next();
+            Assert.assertEquals(0, resultSet.getInt(1));
+        }
+    }
+
+    /**
+     * Idle connections past the idle timeout are closed by the housekeeper.
+     */
+    @Test
+    public void idleConnectionsAreEvicted() throws SQLException, InterruptedException {
+        pool.close();
+        pool = new ConnectionPool(dataSource, 2, 200, 50, 5_000, 0);
+        pool.getConnection().close();
+        Assert.assertEquals(1, pool.getTotalConnections());
+
+        Thread.sleep(500);
+        Assert.assertEquals(0, pool.getTotalConnections());
+        Assert.assertEquals(1, pool.getConnectionsClosed());
+    }
+
+    /**
+     * A connection held past the leak threshold is reported, without capturing where it was borrowed by default.
+     */
+    @Test
+    public void leakedConnectionIsReported() throws SQLException, InterruptedException {
+        pool.close();
+        pool = new ConnectionPool(dataSource, 2, 200, 60_000, 5_000, 50);
+
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        try (Connection leaked = pool.getConnection()) {
+            Thread.sleep(500);
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        Assert.assertEquals(1, pool.getLeaksDetected());
+        Assert.assertTrue(captured.toString().contains("Possible connection leak"));
+        Assert.assertFalse(captured.toString().contains("leakedConnectionIsReported"));
+    }
+
+    /**
+     * With borrow sites captured, a connection held past the leak threshold is reported with the stack trace of the
+     * borrower.
+     */
+    @Test
+    public void leakedConnectionIsReportedWithBorrowSite() throws SQLException, InterruptedException {
+        pool.close();
+        pool = new ConnectionPool(dataSource, 2, 200, 60_000, 5_000, 50, 0, true);
+
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        try (Connection leaked = pool.getConnection()) {
+            Thread.sleep(500);
+        } finally {
+            System.setOut(originalOut);
+        }
+
+        Assert.assertEquals(1, pool.getLeaksDetected());
+        Assert.assertTrue(captured.toString().contains("leakedConnectionIsReportedWithBorrowSite"));
+    }
+
+    /**
+     * Closing a prepared statement returns it to its connection's cache, cleared of parameters, so preparing the same
+     * SQL again reuses it.
+     */
+    @Test
+    public void preparedStatementsAreReusedPerConnection() throws SQLException {
+        try (ConnectionPool cachingPool = new ConnectionPool(dataSource, 1, 200, 60_000, 5_000, 0, 2)) {
+            PreparedStatement first = null;
+            for (int i = 0; i < 10; i++) {
+                try (Connection connection = cachingPool.getConnection();
+                     PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+                    if (first == null)
+                        first = statement.unwrap(PreparedStatement.class);
+                    Assert.assertSame(first, statement.unwrap(PreparedStatement.class));
+                    Assert.assertSame(connection, statement.getConnection());
+                    statement.setInt(1, i);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        Assert.assertEquals(i, resultSet.getInt(1));
+                    }
+                }
+            }
+            Assert.assertEquals(9, cachingPool.getStatementCacheHits());
+            Assert.assertEquals(1, cachingPool.getStatementCacheMisses());
+
+            try (Connection connection = cachingPool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+                Assert.assertThrows(SQLException.class, statement::executeQuery);
+            }
+        }
+    }
+
+    /**
+     * The cache holds at most statementCacheSize statements per connection and closes the least recently used one to
+     * make room.
+     */
+    @Test
+    public void statementCacheEvictsAndClosesLeastRecentlyUsed() throws SQLException {
+        try (ConnectionPool cachingPool = new ConnectionPool(dataSource, 1, 200, 60_000, 5_000, 0, 2);
+             Connection connection = cachingPool.getConnection()) {
+            PreparedStatement one = prepareAndClose(connection, "SELECT 1");
+            PreparedStatement two = prepareAndClose(connection, "SELECT 2");
+            prepareAndClose(connection, "SELECT 1");
+            PreparedStatement three = prepareAndClose(connection, "SELECT 3");
+
+            Assert.assertFalse(one.isClosed());
+            Assert.assertTrue(two.isClosed());
+            Assert.assertFalse(three.isClosed());
+        }
+    }
+
+    /**
+     * A statement whose settings were changed is closed rather than cached, and a statement left open when its
+     * connection is returned is closed with it.
+     */
+    @Test
+    public void modifiedAndAbandonedStatementsAreNotReused() throws SQLException {
+        try (ConnectionPool cachingPool = new ConnectionPool(dataSource, 1, 200, 60_000, 5_000, 0, 2)) {
+            PreparedStatement modified;
+            try (Connection connection = cachingPool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+                statement.setMaxRows(1);
+                modified = statement.unwrap(PreparedStatement.class);
+            }
+            Assert.assertTrue(modified.isClosed());
+
+            PreparedStatement abandoned;
+            PreparedStatement physical;
+            try (Connection connection = cachingPool.getConnection()) {
+                abandoned = connection.prepareStatement("SELECT 1");
+                physical = abandoned.unwrap(PreparedStatement.class);
+            }
+            Assert.assertTrue(abandoned.isClosed());
+            Assert.assertTrue(physical.isClosed());
+            Assert.assertEquals(0, cachingPool.getStatementCacheHits());
+        }
+    }
+
+    private static PreparedStatement prepareAndClose(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.executeQuery().close();
+            return statement.unwrap(PreparedStatement.class);
+        }
+    }
+
+    /**
+     * Hammers the DAOs from several threads and checks that the H2 sessions never outnumber the pool and the heap stays
+     * flat, i.e. every borrowed connection, statement and result set is released. Raise socialmedia.loadtest.iterations
+     * to run millions of requests.
+     */
+    @Test
+    public void daoLoadKeepsSessionCountAndMemoryFlat() throws Exception {
+        int iterations = Integer.getInteger("socialmedia.loadtest.iterations", 20_000);
+        int threads = 8;
+        MessageDAO messageDAO = new JdbcMessageDAO();
+        AccountDAO accountDAO = new JdbcAccountDAO();
+        ConnectionPool sharedPool = ConnectionUtil.getPool();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        runLoad(messageDAO, accountDAO, threads, iterations / 10);
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        runLoad(messageDAO, accountDAO, threads, iterations);
+        int sessionsAfter = countSessions();
+        System.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+        Assert.assertEquals(sharedPool.getTotalConnections(), sessionsAfter);
+        Assert.assertTrue(sessionsAfter <= sharedPool.getMaxSize());
+        Assert.assertEquals(0, sharedPool.getActiveConnections());
+        Assert.assertTrue("heap grew by " + (heapAfter - heapBefore) + " bytes",
+                heapAfter - heapBefore < 32L * 1024 * 1024);
+    }
+
+    private static void runLoad(MessageDAO messageDAO, AccountDAO accountDAO, int threads, int iterations)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations / threads; i++) {
+                        Assert.assertNotNull(messageDAO.getMessage(1));
+                        Assert.assertNotNull(accountDAO.getAccount(1));
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static int countSessions() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLTimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Util.ConnectionTimeoutException;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConnectionTimeoutTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    /**
+     * Set once the app has started, after which every DAO call times out waiting for a connection.
+     */
+    volatile boolean exhausted;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app on a message DAO whose pool runs dry when told
+     * to, and create a new webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController(exhaustedDAO(Storage.messageDAO()));
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+        exhausted = true;
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 while no connection can be borrowed
+     *
+     * Expected Response:
+     *  Status Code: 503
+     *  Retry-After: 1
+     */
+    @Test
+    public void getMessageWithoutConnection() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(503, response.statusCode());
+        Assert.assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+    }
+
+    /**
+     * A DAO over the real one that, once exhausted, fails every call as ConnectionUtil does when the borrow timeout
+     * runs out.
+     */
+    private MessageDAO exhaustedDAO(MessageDAO delegate) {
+        return (MessageDAO) Proxy.newProxyInstance(MessageDAO.class.getClassLoader(), new Class<?>[]{MessageDAO.class},
+                (proxy, method, args) -> {
+                    if (exhausted)
+                        throw new ConnectionTimeoutException(new SQLTimeoutException("Timed out"));
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
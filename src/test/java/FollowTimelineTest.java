@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Account;
+import Model.Message;
+import Model.TimelinePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class FollowTimelineTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add accounts 2 and 3 with a message each, restart the Javalin app, and
+     * create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        AccountDAO accountDAO = Storage.accountDAO();
+        accountDAO.createAccount(new Account("testuser2", "password"));
+        accountDAO.createAccount(new Account("testuser3", "password"));
+        MessageDAO messageDAO = Storage.messageDAO();
+        messageDAO.createMessage(new Message(2, "test message 2", 1669947793));
+        messageDAO.createMessage(new Message(3, "test message 3", 1669947794));
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Account 1 follows accounts 2 and 3, then account 2 posts again. Walking GET
+     * localhost:8080/accounts/1/timeline?limit=2 by following the next cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages posted before the follows and after them, newest first, in pages of two
+     */
+    @Test
+    public void timelineMergesFollowedAccountsNewestFirst() throws IOException, InterruptedException {
+        Assert.assertEquals(200, send("POST", "/accounts/1/following/2").statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/1/following/3").statusCode());
+        HttpResponse<String> posted = send("POST", "/messages",
+                "{\"posted_by\":2,\"message_text\":\"test message 4\",\"time_posted_epoch\":1669947795}");
+        Assert.assertEquals(200, posted.statusCode());
+
+        TimelinePage firstPage = getTimeline(1, "limit=2");
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(4, 2, "test message 4", 1669947795));
+        expectedFirst.add(new Message(3, 3, "test message 3", 1669947794));
+        Assert.assertEquals(expectedFirst, firstPage.getMessages());
+        Assert.assertEquals("1669947794:3", firstPage.getNext());
+
+        TimelinePage secondPage = getTimeline(1, "limit=2&before=" + firstPage.getNext());
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(2, 2, "test message 2", 1669947793));
+        Assert.assertEquals(expectedSecond, secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext());
+
+        // Account 1's own message is not in its timeline, and nobody follows account 1.
+        Assert.assertTrue(getTimeline(2, "").getMessages().isEmpty());
+    }
+
+    /**
+     * Unfollowing an account, or deleting one of its messages, removes them from the timeline.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the messages of the accounts still followed that still exist
+     */
+    @Test
+    public void unfollowAndDeleteRemoveMessages() throws IOException, InterruptedException {
+        send("POST", "/accounts/1/following/2");
+        send("POST", "/accounts/1/following/3");
+
+        Assert.assertEquals(200, send("DELETE", "/accounts/1/following/3").statusCode());
+        Assert.assertEquals(200, send("DELETE", "/messages/2").statusCode());
+        send("POST", "/messages", "{\"posted_by\":3,\"message_text\":\"test message 4\",\"time_posted_epoch\":1}");
+        Assert.assertTrue(getTimeline(1, "").getMessages().isEmpty());
+
+        // Unfollowing an account that is not followed is not an error.
+        Assert.assertEquals(200, send("DELETE", "/accounts/1/following/3").statusCode());
+    }
+
+    /**
+     * Following yourself or an account that does not exist fails, following twice does not.
+     *
+     * Expected Response:
+     *  Status Code: 400 for the failed follows, 200 otherwise
+     *  Response Body: the following and followers lists of account_ids
+     */
+    @Test
+    public void followValidationAndLists() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send("POST", "/accounts/1/following/1").statusCode());
+        Assert.assertEquals(400, send("POST", "/accounts/1/following/100").statusCode());
+        Assert.assertEquals(400, send("POST", "/accounts/100/following/1").statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/1/following/3").statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/1/following/3").statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/1/following/2").statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/2/following/3").statusCode());
+
+        Assert.assertEquals(List.of(2, 3), getAccountIDs("/accounts/1/following"));
+        Assert.assertEquals(List.of(1, 2), getAccountIDs("/accounts/3/followers"));
+        Assert.assertEquals(List.of(), getAccountIDs("/accounts/1/followers"));
+        Assert.assertEquals(1, getTimeline(1, "").getMessages().stream()
+                .filter(message -> message.getPosted_by() == 3).count());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/timeline with an invalid cursor or limit
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void timelineInvalidParameters() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send("GET", "/accounts/1/timeline?before=abc").statusCode());
+        Assert.assertEquals(400, send("GET", "/accounts/1/timeline?before=1:x").statusCode());
+        Assert.assertEquals(400, send("GET", "/accounts/1/timeline?limit=0").statusCode());
+    }
+
+    private TimelinePage getTimeline(int accountID, String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET",
+                "/accounts/" + accountID + "/timeline" + (query.isEmpty() ? "" : "?" + query));
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), TimelinePage.class);
+    }
+
+    private List<Integer> getAccountIDs(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", path);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Integer>>(){});
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        return send(method, path, "");
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.HandlerExecutor;
+import io.javalin.Javalin;
+
+public class HandlerExecutorTest {
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("socialmedia.handler.mode");
+        if (app != null)
+            app.stop();
+    }
+
+    /**
+     * With handlers running on the bounded executor, the API answers exactly as it does on Jetty's threads.
+     */
+    @Test
+    public void executorModeServesRequests() throws IOException, InterruptedException {
+        System.setProperty("socialmedia.handler.mode", "executor");
+        app = new SocialMediaController().startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        HttpResponse<String> created = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, " +
+                        "\"message_text\": \"off the jetty thread\", \"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build());
+        Assert.assertEquals(200, created.statusCode());
+        Assert.assertEquals(new Message(2, 1, "off the jetty thread", 1669947792),
+                objectMapper.readValue(created.body(), Message.class));
+
+        HttpResponse<String> found = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1")).build());
+        Assert.assertEquals(200, found.statusCode());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(found.body(), Message.class));
+
+        HttpResponse<String> missing = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/100")).build());
+        Assert.assertEquals(200, missing.statusCode());
+        Assert.assertEquals("", missing.body());
+
+        HttpResponse<String> all = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages")).build());
+        Assert.assertEquals(200, all.statusCode());
+        Assert.assertEquals(2, objectMapper.readValue(all.body(), Message[].class).length);
+    }
+
+    /**
+     * Exceptions thrown by a handler on the executor reach the app's exception handlers, and a request arriving while
+     * the executor's queue is full is rejected rather than queued without bound.
+     */
+    @Test
+    public void failuresAndRejectionsReachExceptionHandlers() throws Exception {
+        HandlerExecutor executor = new HandlerExecutor(HandlerExecutor.Mode.EXECUTOR, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        app = Javalin.create();
+        app.get("/slow", executor.wrap(context -> {
+            release.await();
+            context.result("done");
+        }));
+        app.get("/fail", executor.wrap(context -> {
+            throw new IllegalStateException("handler failed");
+        }));
+        app.exception(IllegalStateException.class, (exception, context) -> context.status(418));
+        app.exception(RejectedExecutionException.class, (exception, context) -> context.status(503));
+        app.start(8080);
+        Thread.sleep(1000);
+
+        Assert.assertEquals(418, send(get("/fail")).statusCode());
+
+        // One request occupies the only thread and a second fills the queue, so a third is rejected.
+        CompletableFuture<HttpResponse<String>> running = sendAsync(get("/slow"));
+        while (executor.getQueuedHandlers() == 0 && !running.isDone()) {
+            sendAsync(get("/slow"));
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(503, send(get("/slow")).statusCode());
+
+        release.countDown();
+        Assert.assertEquals("done", running.get(10, TimeUnit.SECONDS).body());
+        executor.close();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        return webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.IntObjectHashMap;
+import Util.SortedIntSet;
+
+public class IntObjectHashMapTest {
+
+    /**
+     * Random puts and removes, with keys clustered enough to build long probe runs, leave the map agreeing with a
+     * HashMap.
+     */
+    @Test
+    public void agreesWithHashMap() {
+        Random random = new Random(42);
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assert.assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 4_900; key++)
+            Assert.assertEquals(expected.get(key), map.get(key));
+
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        Assert.assertEquals(expected, visited);
+
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(1));
+    }
+
+    /**
+     * The set stays sorted and free of duplicates whether values arrive in order or not.
+     */
+    @Test
+    public void sortedIntSetKeepsOrder() {
+        SortedIntSet set = new SortedIntSet();
+        for (int value : new int[]{5, 1, 9, 3, 9, 7, 11})
+            set.add(value);
+        Assert.assertArrayEquals(new int[]{1, 3, 5, 7, 9, 11}, set.toArray());
+        Assert.assertTrue(set.remove(5));
+        Assert.assertFalse(set.remove(5));
+        Assert.assertFalse(set.contains(5));
+        Assert.assertTrue(set.contains(11));
+        Assert.assertEquals(7, set.get(2));
+        Assert.assertEquals(5, set.size());
+    }
+}
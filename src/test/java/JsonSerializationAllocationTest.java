@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import Model.Message;
+import Util.JsonUtil;
+
+/**
+ * Compares the bytes allocated to write a response body the old way (serialize to a String, then encode it for the
+ * socket) against writing it straight to the output stream through the shared writers in JsonUtil.
+ */
+public class JsonSerializationAllocationTest {
+    private static final int ROUNDS = 200;
+
+    com.sun.management.ThreadMXBean threads;
+    List<Message> messages;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        messages = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++)
+            messages.add(new Message(i, i % 10, "test message number " + i, 1669947792L + i));
+    }
+
+    /**
+     * The list bodies of GET /messages and GET /accounts/{account_id}/messages.
+     */
+    @Test
+    public void messageListStreamsWithLessAllocation() throws IOException {
+        long viaString = allocatedPerRound(() -> writeViaString(messages));
+        long streamed = allocatedPerRound(() -> writeStreamed(JsonUtil.MESSAGE_LIST_WRITER, messages));
+        System.out.println("message list: " + viaString + " bytes via String, " + streamed + " bytes streamed");
+
+        Assert.assertTrue(streamed * 2 < viaString);
+    }
+
+    /**
+     * The body of GET /messages/{message_id}.
+     */
+    @Test
+    public void singleMessageStreamsWithLessAllocation() throws IOException {
+        Message message = messages.get(0);
+        long viaString = allocatedPerRound(() -> writeViaString(message));
+        long streamed = allocatedPerRound(() -> writeStreamed(JsonUtil.MESSAGE_WRITER, message));
+        System.out.println("single message: " + viaString + " bytes via String, " + streamed + " bytes streamed");
+
+        Assert.assertTrue(streamed < viaString);
+    }
+
+    private static void writeViaString(Object value) throws IOException {
+        String body = JsonUtil.MAPPER.writeValueAsString(value);
+        OutputStream.nullOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeStreamed(ObjectWriter writer, Object value) throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), value);
+    }
+
+    private long allocatedPerRound(Round round) throws IOException {
+        // Warm up so class loading and serializer construction are not counted.
+        for (int i = 0; i < ROUNDS; i++)
+            round.run();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++)
+            round.run();
+        return (threads.getThreadAllocatedBytes(threadId) - before) / ROUNDS;
+    }
+
+    private interface Round {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import DAO.MemoryAccountDAO;
+import DAO.MemoryFollowDAO;
+import DAO.MemoryMessageDAO;
+import DAO.MemoryStore;
+import Model.Account;
+import Model.Message;
+
+public class MemoryStoreTest {
+    // Small enough that a few messages fill a segment.
+    private static final int SEGMENT_BYTES = 256;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Path walDirectory;
+    MemoryStore store;
+    MemoryAccountDAO accountDAO;
+    MemoryMessageDAO messageDAO;
+    MemoryFollowDAO followDAO;
+
+    @Before
+    public void setUp() throws IOException {
+        walDirectory = folder.getRoot().toPath().resolve("wal");
+        open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    private void open() throws IOException {
+        store = MemoryStore.open(walDirectory, SEGMENT_BYTES, "always", 100);
+        accountDAO = new MemoryAccountDAO(store);
+        messageDAO = new MemoryMessageDAO(store);
+        followDAO = new MemoryFollowDAO(store);
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        open();
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(walDirectory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    /**
+     * Every kind of change is recovered when the store is opened again.
+     */
+    @Test
+    public void changesSurviveReopening() throws IOException {
+        Account first = accountDAO.createAccount(new Account("first", "password"));
+        Account second = accountDAO.createAccount(new Account("second", "password"));
+        Assert.assertTrue(accountDAO.updatePassword(second.getAccount_id(), "password", "changed"));
+        List<Message> messages = List.of(new Message(first.getAccount_id(), "one", 100),
+                new Message(second.getAccount_id(), "two", 200), new Message(second.getAccount_id(), "three", 300));
+        Assert.assertTrue(messageDAO.createMessages(messages));
+        Assert.assertNotNull(messageDAO.updateMessage(2, new Message(0, "two, edited", 0)));
+        Assert.assertNotNull(messageDAO.deleteMessage(3));
+        Assert.assertTrue(followDAO.follow(first.getAccount_id(), second.getAccount_id()));
+        Assert.assertTrue(followDAO.follow(second.getAccount_id(), first.getAccount_id()));
+        Assert.assertTrue(followDAO.unfollow(second.getAccount_id(), first.getAccount_id()));
+
+        reopen();
+
+        Assert.assertEquals("changed", accountDAO.getAccount("second").getPassword());
+        Assert.assertEquals(List.of(new Message(1, 1, "one", 100), new Message(2, 2, "two, edited", 200)),
+                messageDAO.getAllMessages());
+        Assert.assertEquals(1, messageDAO.getVersionedMessage(2).getVersion());
+        Assert.assertEquals(List.of(2), followDAO.getFollowees(1));
+        Assert.assertEquals(List.of(), followDAO.getFollowees(2));
+        Assert.assertEquals(List.of(new Message(2, 2, "two, edited", 200)),
+                messageDAO.getTimeline(1, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+        // Generated ids carry on after the recovered ones, even the deleted message's.
+        Assert.assertEquals(3, accountDAO.createAccount(new Account("third", "password")).getAccount_id());
+        Assert.assertEquals(4, messageDAO.createMessage(new Message(3, "four", 400)).getMessage_id());
+    }
+
+    /**
+     * A snapshot replaces the segments before it, and recovery combines it with the changes logged after it.
+     */
+    @Test
+    public void snapshotReplacesOlderSegments() throws IOException {
+        accountDAO.createAccount(new Account("first", "password"));
+        for (int i = 1; i <= 20; i++)
+            messageDAO.createMessage(new Message(1, "message " + i, i));
+        Assert.assertTrue(files().size() > 2);
+
+        store.snapshot();
+        String segment = segmentOf(files());
+        Assert.assertEquals(List.of("snapshot-" + segment + ".snap", "wal-" + segment + ".log"), files());
+        messageDAO.deleteMessage(20);
+        messageDAO.createMessage(new Message(1, "message 21", 21));
+
+        reopen();
+        List<Message> recovered = messageDAO.getAllMessages();
+        Assert.assertEquals(20, recovered.size());
+        Assert.assertEquals(new Message(21, 1, "message 21", 21), recovered.get(19));
+        Assert.assertEquals(22, messageDAO.createMessage(new Message(1, "message 22", 22)).getMessage_id());
+    }
+
+    private static String segmentOf(List<String> files) {
+        String segment = files.stream().filter(file -> file.startsWith("wal-")).findFirst().orElseThrow();
+        return segment.substring("wal-".length(), segment.length() - ".log".length());
+    }
+
+    /**
+     * A record damaged by a crash is dropped along with everything after it, and what is written after recovery
+     * survives the next one.
+     */
+    @Test
+    public void damagedRecordIsDropped() throws IOException {
+        accountDAO.createAccount(new Account("first", "password"));
+        messageDAO.createMessage(new Message(1, "kept", 100));
+        messageDAO.createMessage(new Message(1, "torn", 200));
+        store.close();
+        // The last non-zero byte of the last segment belongs to the last record.
+        List<String> files = files();
+        try (RandomAccessFile file = new RandomAccessFile(
+                walDirectory.resolve(files.get(files.size() - 1)).toFile(), "rw")) {
+            long position = file.length() - 1;
+            file.seek(position);
+            while (file.read() == 0)
+                file.seek(--position);
+            file.seek(position);
+            file.write(0x55);
+        }
+
+        open();
+        Assert.assertEquals(List.of(new Message(1, 1, "kept", 100)), messageDAO.getAllMessages());
+        messageDAO.createMessage(new Message(1, "after", 300));
+
+        reopen();
+        Assert.assertEquals(List.of(new Message(1, 1, "kept", 100), new Message(2, 1, "after", 300)),
+                messageDAO.getAllMessages());
+    }
+
+    /**
+     * Writers that wait for their fsyncs at the same time, across segment rolls, have every message recovered.
+     */
+    @Test
+    public void concurrentWritersAreAllRecovered() throws Exception {
+        accountDAO.createAccount(new Account("first", "password"));
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 25; i++)
+                    Assert.assertNotNull(messageDAO.createMessage(new Message(1, "concurrent", i)));
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        Assert.assertTrue(store.getFsyncCount() > 0);
+
+        reopen();
+        Assert.assertEquals(200, messageDAO.getAccountMessages(1).size());
+    }
+
+    /**
+     * Walking a timeline page by page gives the followed accounts' messages newest first, as sorting them would, and an
+     * account's own list stays in message_id order, however their times are ordered.
+     */
+    @Test
+    public void timelinePagesAgreeWithSorting() {
+        Random random = new Random(42);
+        for (int i = 1; i <= 5; i++)
+            accountDAO.createAccount(new Account("account" + i, "password"));
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            messages.add(new Message(1 + random.nextInt(5), "text", random.nextInt(100)));
+        Assert.assertTrue(messageDAO.createMessages(messages));
+        for (int i = 0; i < 50; i++)
+            messageDAO.deleteMessage(messages.remove(random.nextInt(messages.size())).getMessage_id());
+        for (int followeeID = 2; followeeID <= 4; followeeID++)
+            Assert.assertTrue(followDAO.follow(1, followeeID));
+
+        List<Message> expected = new ArrayList<>(messages);
+        expected.removeIf(message -> message.getPosted_by() < 2 || message.getPosted_by() > 4);
+        expected.sort(Comparator.comparingLong(Message::getTime_posted_epoch)
+                .thenComparingInt(Message::getMessage_id).reversed());
+        for (int limit : new int[]{7, 40}) {
+            List<Message> walked = new ArrayList<>();
+            long beforeEpoch = Long.MAX_VALUE;
+            int beforeMessageID = Integer.MAX_VALUE;
+            List<Message> page;
+            while (!(page = messageDAO.getTimeline(1, beforeEpoch, beforeMessageID, limit)).isEmpty()) {
+                Assert.assertTrue(page.size() <= limit);
+                walked.addAll(page);
+                beforeEpoch = page.get(page.size() - 1).getTime_posted_epoch();
+                beforeMessageID = page.get(page.size() - 1).getMessage_id();
+            }
+            Assert.assertEquals(expected, walked);
+        }
+
+        List<Integer> ownIDs = messageDAO.getAccountMessages(3).stream().map(Message::getMessage_id).toList();
+        Assert.assertEquals(messages.stream().filter(message -> message.getPosted_by() == 3)
+                .map(Message::getMessage_id).sorted().toList(), ownIDs);
+    }
+
+    /**
+     * The store refuses what the database schema would, and a batch with any such message creates none of them.
+     */
+    @Test
+    public void schemaConstraintsAreEnforced() {
+        accountDAO.createAccount(new Account("first", "password"));
+        Assert.assertNull(accountDAO.createAccount(new Account("first", "other")));
+        Assert.assertNull(messageDAO.createMessage(new Message(2, "no such account", 100)));
+        Assert.assertNull(messageDAO.createMessage(new Message(1, "x".repeat(256), 100)));
+        Assert.assertFalse(followDAO.follow(1, 2));
+
+        Assert.assertFalse(messageDAO.createMessages(List.of(new Message(1, "fine", 100),
+                new Message(2, "no such account", 100))));
+        Assert.assertEquals(List.of(), messageDAO.getAllMessages());
+        Assert.assertEquals(List.of(), messageDAO.getAccountMessages(1));
+    }
+}
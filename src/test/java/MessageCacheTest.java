@@ -0,0 +1,202 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcAccountDAO;
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import Model.Message;
+import Model.VersionedMessage;
+import Service.AccountCache;
+import Service.MessageCache;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import Util.JsonUtil;
+
+public class MessageCacheTest {
+    AtomicInteger queries;
+    List<Integer> batchedIDs;
+    MessageDAO countingDAO;
+
+    /**
+     * Before every test, reset the database and wrap the MessageDAO so the tests can count the lookups that reach it.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        queries = new AtomicInteger();
+        batchedIDs = new ArrayList<>();
+        countingDAO = new JdbcMessageDAO() {
+            @Override
+            public VersionedMessage getVersionedMessage(int message_id) {
+                queries.incrementAndGet();
+                return super.getVersionedMessage(message_id);
+            }
+
+            @Override
+            public List<VersionedMessage> getVersionedMessages(Collection<Integer> messageIDs) {
+                queries.incrementAndGet();
+                batchedIDs.addAll(messageIDs);
+                return super.getVersionedMessages(messageIDs);
+            }
+        };
+    }
+
+    private MessageService newService(MessageCache cache) {
+        return new MessageService(new AccountCache(new JdbcAccountDAO()), countingDAO, cache);
+    }
+
+    /**
+     * Repeated lookups of a message only query the database once.
+     */
+    @Test
+    public void repeatedLookupsHitTheDatabaseOnce() {
+        MessageCache cache = new MessageCache(countingDAO, 100, 60_000, true);
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals("test message 1", cache.getMessage(1).getMessage_text());
+
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals(9, cache.getHitCount());
+        Assert.assertEquals(0.9, cache.getHitRate(), 1e-9);
+    }
+
+    /**
+     * A batch lookup reads every miss with one query, keeps the requested order, leaves out missing messages, and
+     * caches what it read.
+     */
+    @Test
+    public void batchLookupsQueryOnlyTheMisses() throws Exception {
+        MessageDAO messageDAO = new JdbcMessageDAO();
+        messageDAO.createMessage(new Message(1, "test message 2", 1669947793));
+        messageDAO.createMessage(new Message(1, "test message 3", 1669947794));
+        MessageCache cache = new MessageCache(countingDAO, 100, 60_000, true);
+        cache.getMessage(2);
+        queries.set(0);
+
+        List<Message> messages = cache.getMessages(List.of(3, 42, 2, 1));
+        Assert.assertEquals(List.of(3, 2, 1), messages.stream().map(Message::getMessage_id).toList());
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals(List.of(3, 42, 1), batchedIDs);
+
+        byte[] json = cache.getMessagesJson(List.of(1, 3));
+        Assert.assertEquals(List.of(messages.get(2), messages.get(0)),
+                List.of(JsonUtil.MAPPER.readValue(json, Message[].class)));
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals("[]", new String(cache.getMessagesJson(List.of(42))));
+    }
+
+    /**
+     * The serialized JSON matches the message and is reused rather than serialized again.
+     */
+    @Test
+    public void jsonIsSerializedOnce() throws Exception {
+        MessageCache cache = new MessageCache(countingDAO, 100, 60_000, true);
+        byte[] json = cache.getMessageJson(1);
+
+        Assert.assertEquals(cache.getMessage(1), JsonUtil.MESSAGE_READER.readValue(json));
+        Assert.assertSame(json, cache.getMessageJson(1));
+        Assert.assertNull(cache.getMessageJson(42));
+    }
+
+    /**
+     * Updating a message through the service drops its cached entry, including the cached JSON.
+     */
+    @Test
+    public void updatesInvalidateTheCache() throws Exception {
+        MessageCache cache = new MessageCache(countingDAO, 100, 60_000, true);
+        MessageService service = newService(cache);
+        byte[] before = cache.getMessageJson(1);
+
+        Message updated = service.updateMessage(1, new Message(1, "updated text", 1669947792));
+        Assert.assertEquals("updated text", updated.getMessage_text());
+
+        Message fromJson = JsonUtil.MESSAGE_READER.readValue(service.getMessageJson(1));
+        Assert.assertEquals("updated text", fromJson.getMessage_text());
+        Assert.assertNotSame(before, service.getMessageJson(1));
+        Assert.assertEquals("updated text", service.getMessage(1).getMessage_text());
+        Assert.assertEquals(2, queries.get());
+    }
+
+    /**
+     * Deleting a message through the service drops its cached entry.
+     */
+    @Test
+    public void deletesInvalidateTheCache() {
+        MessageCache cache = new MessageCache(countingDAO, 100, 60_000, true);
+        MessageService service = newService(cache);
+        Assert.assertNotNull(service.getMessage(1));
+
+        Assert.assertNotNull(service.deleteMessage(1));
+        Assert.assertNull(service.getMessage(1));
+        Assert.assertNull(service.deleteMessage(1));
+    }
+
+    /**
+     * A delete that commits after a batch read has decided to cache what it read, but before it puts it, does not
+     * leave the deleted message cached: its invalidation finds nothing yet, so the read must drop its own entry.
+     */
+    @Test
+    public void deleteRacingTheCachePutIsNotServedStale() {
+        AtomicInteger readsReturned = new AtomicInteger();
+        MessageDAO readingDAO = new JdbcMessageDAO() {
+            @Override
+            public List<VersionedMessage> getVersionedMessages(Collection<Integer> messageIDs) {
+                List<VersionedMessage> messages = super.getVersionedMessages(messageIDs);
+                readsReturned.incrementAndGet();
+                return messages;
+            }
+        };
+        MessageCache cache = new MessageCache(readingDAO, 100, 60_000, true);
+        MessageService service = newService(cache);
+        // The cache reads the message_id again just before putting the message it loaded for it. Delete it then.
+        List<Integer> messageIDs = new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                if (readsReturned.get() == 1 && readsReturned.incrementAndGet() == 2)
+                    Assert.assertNotNull(service.deleteMessage(1));
+                return 1;
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        };
+
+        Assert.assertEquals(1, cache.getMessages(messageIDs).size());
+        Assert.assertEquals(2, readsReturned.get());
+        Assert.assertNull(service.getMessage(1));
+    }
+
+    /**
+     * Created messages are cached, so reading one back does not query the database.
+     */
+    @Test
+    public void createdMessagesAreCached() {
+        MessageCache cache = new MessageCache(countingDAO, 100, 60_000, true);
+        MessageService service = newService(cache);
+        Message created = service.createMessage(new Message(1, "fresh message", 1669947793));
+
+        Assert.assertEquals(created, service.getMessage(created.getMessage_id()));
+        Assert.assertEquals(0, queries.get());
+    }
+
+    /**
+     * With JSON caching disabled the message is still cached but its JSON is serialized on every request.
+     */
+    @Test
+    public void jsonCachingCanBeDisabled() throws Exception {
+        MessageCache cache = new MessageCache(countingDAO, 100, 60_000, false);
+        byte[] json = cache.getMessageJson(1);
+
+        Assert.assertArrayEquals(json, cache.getMessageJson(1));
+        Assert.assertNotSame(json, cache.getMessageJson(1));
+        Assert.assertEquals(1, queries.get());
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class MessageDAOConcurrencyTest {
+    static final int THREADS = 8;
+    static final int ROUNDS = 20;
+
+    MessageDAO messageDAO;
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = Storage.messageDAO();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Of several concurrent deletes of the same message, exactly one gets the message back.
+     */
+    @Test
+    public void concurrentDeletesReturnTheMessageOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Message message = messageDAO.createMessage(new Message(1, "delete me " + round, 1669947792));
+            List<Callable<Message>> deletes = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++)
+                deletes.add(() -> messageDAO.deleteMessage(message.getMessage_id()));
+
+            int deleted = 0;
+            for (Message result : runTogether(deletes)) {
+                if (result != null) {
+                    Assert.assertEquals(message, result);
+                    deleted++;
+                }
+            }
+            Assert.assertEquals(1, deleted);
+            Assert.assertNull(messageDAO.getMessage(message.getMessage_id()));
+        }
+    }
+
+    /**
+     * Each of several concurrent updates gets back exactly the row it wrote, never one written by another update, and
+     * the stored text is the one written last.
+     */
+    @Test
+    public void concurrentUpdatesReturnTheirOwnWrite() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Callable<Message>> updates = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                String text = "round " + round + " update " + i;
+                updates.add(() -> messageDAO.updateMessage(1, new Message(0, text, 0)));
+            }
+
+            List<Message> results = runTogether(updates);
+            List<String> written = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Message result = results.get(i);
+                Assert.assertEquals("round " + round + " update " + i, result.getMessage_text());
+                Assert.assertEquals(1, result.getMessage_id());
+                Assert.assertEquals(1, result.getPosted_by());
+                Assert.assertEquals(1669947792, result.getTime_posted_epoch());
+                written.add(result.getMessage_text());
+            }
+            Assert.assertTrue(written.contains(messageDAO.getMessage(1).getMessage_text()));
+        }
+    }
+
+    /**
+     * An update racing a delete either lands before the delete, in which case the delete returns the updated text, or
+     * finds no row. It never reports success on a message that has already been deleted.
+     */
+    @Test
+    public void updateRacingDeleteNeverUpdatesADeletedMessage() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            Message message = messageDAO.createMessage(new Message(1, "original " + round, 1669947792));
+            String text = "updated " + round;
+            List<Callable<Message>> tasks = new ArrayList<>();
+            tasks.add(() -> messageDAO.updateMessage(message.getMessage_id(), new Message(0, text, 0)));
+            tasks.add(() -> messageDAO.deleteMessage(message.getMessage_id()));
+
+            List<Message> results = runTogether(tasks);
+            Message updated = results.get(0);
+            Message deleted = results.get(1);
+            Assert.assertNotNull(deleted);
+            if (updated != null)
+                Assert.assertEquals(text, deleted.getMessage_text());
+            else
+                Assert.assertEquals("original " + round, deleted.getMessage_text());
+            Assert.assertNull(messageDAO.getMessage(message.getMessage_id()));
+        }
+    }
+
+    /**
+     * Starts every task at once and waits for all of their results, in the order of the tasks.
+     */
+    private List<Message> runTogether(List<Callable<Message>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Message>> futures = new ArrayList<>();
+        for (Callable<Message> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+
+        List<Message> results = new ArrayList<>();
+        for (Future<Message> future : futures)
+            results.add(future.get(10, TimeUnit.SECONDS));
+        return results;
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcMessageDAO;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Message;
+import Service.MessageIngestor;
+import Util.ConnectionUtil;
+
+public class MessageIngestorTest {
+    MessageDAO messageDAO;
+    MessageIngestor ingestor;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = Storage.messageDAO();
+    }
+
+    @After
+    public void tearDown() {
+        if (ingestor != null)
+            ingestor.close();
+    }
+
+    /**
+     * Concurrent submissions are written in fewer batches than messages, and every submitter gets its own generated
+     * message_id back.
+     */
+    @Test
+    public void concurrentSubmissionsAreBatched() throws Exception {
+        ingestor = new MessageIngestor(messageDAO, 1000, 64, 20, 1000);
+        int threads = 16;
+        int perThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < threads * perThread; i++) {
+            String text = "batched message " + i;
+            futures.add(executor.submit(() -> ingestor.submit(new Message(1, text, 1669947792)).join()));
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (Future<Message> future : futures) {
+            Message created = future.get(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(created);
+            Assert.assertEquals(created, messageDAO.getMessage(created.getMessage_id()));
+            ids.add(created.getMessage_id());
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(threads * perThread, ids.size());
+        Assert.assertEquals(threads * perThread, ingestor.getMessageCount());
+        Assert.assertTrue(ingestor.getBatchCount() < threads * perThread);
+    }
+
+    /**
+     * A lone message is written once the latency window closes rather than waiting for a full batch.
+     */
+    @Test
+    public void singleMessageIsWrittenWithinLatencyWindow() throws Exception {
+        ingestor = new MessageIngestor(messageDAO, 1000, 64, 5, 1000);
+        Message created = ingestor.submit(new Message(1, "lonely message", 1669947792)).get(1, TimeUnit.SECONDS);
+
+        Assert.assertEquals(2, created.getMessage_id());
+    }
+
+    /**
+     * A message the database rejects fails only its own future, the rest of its batch is still written.
+     */
+    @Test
+    public void badRowOnlyFailsItsOwnRequest() throws Exception {
+        ingestor = new MessageIngestor(messageDAO, 1000, 64, 50, 1000);
+        CompletableFuture<Message> good = ingestor.submit(new Message(1, "good message", 1669947792));
+        CompletableFuture<Message> bad = ingestor.submit(new Message(99, "no such account", 1669947792));
+
+        Assert.assertNotNull(good.get(1, TimeUnit.SECONDS));
+        Assert.assertNull(bad.get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * When the writer falls behind and the queue fills up, further submissions are rejected after the offer timeout.
+     */
+    @Test
+    public void fullQueueRejectsSubmissions() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MessageDAO slowDAO = new JdbcMessageDAO() {
+            @Override
+            public boolean createMessages(List<Message> messages) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.createMessages(messages);
+            }
+        };
+        ingestor = new MessageIngestor(slowDAO, 2, 1, 0, 10);
+
+        List<CompletableFuture<Message>> accepted = new ArrayList<>();
+        accepted.add(ingestor.submit(new Message(1, "in flight", 1669947792)));
+        // Give the writer time to take the first message and block in the DAO.
+        Thread.sleep(100);
+        accepted.add(ingestor.submit(new Message(1, "queued 1", 1669947792)));
+        accepted.add(ingestor.submit(new Message(1, "queued 2", 1669947792)));
+
+        Assert.assertThrows(RejectedExecutionException.class,
+                () -> ingestor.submit(new Message(1, "rejected", 1669947792)));
+        Assert.assertEquals(1, ingestor.getRejectionCount());
+
+        release.countDown();
+        for (CompletableFuture<Message> future : accepted)
+            Assert.assertNotNull(future.get(1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Submissions racing a close are either rejected or completed, so no submitter is left waiting on its future.
+     */
+    @Test
+    public void submissionsRacingCloseNeverHang() throws Exception {
+        MessageDAO discardingDAO = new JdbcMessageDAO() {
+            @Override
+            public boolean createMessages(List<Message> messages) {
+                return true;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int round = 0; round < 50; round++) {
+            MessageIngestor racing = new MessageIngestor(discardingDAO, 1000, 16, 0, 10);
+            List<Future<List<CompletableFuture<Message>>>> submitters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                submitters.add(executor.submit(() -> {
+                    List<CompletableFuture<Message>> accepted = new ArrayList<>();
+                    try {
+                        while (true)
+                            accepted.add(racing.submit(new Message(1, "racing close", 1669947792)));
+                    } catch (RejectedExecutionException e) {
+                        return accepted;
+                    }
+                }));
+            }
+            Thread.sleep(2);
+            racing.close();
+            for (Future<List<CompletableFuture<Message>>> submitter : submitters) {
+                for (CompletableFuture<Message> future : submitter.get(5, TimeUnit.SECONDS))
+                    Assert.assertNotNull(future.get(5, TimeUnit.SECONDS));
+            }
+        }
+        executor.shutdown();
+    }
+}
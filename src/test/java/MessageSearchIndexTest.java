@@ -0,0 +1,180 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Model.Message;
+import Service.MessageSearchIndex;
+
+public class MessageSearchIndexTest {
+
+    /**
+     * Words are split at punctuation and whitespace and lower-cased.
+     */
+    @Test
+    public void tokenizeSplitsAndLowerCases() {
+        Assert.assertEquals(List.of("hello", "world", "it", "s", "2022"),
+                MessageSearchIndex.tokenize("Hello,  WORLD! it's 2022"));
+        Assert.assertEquals(List.of(), MessageSearchIndex.tokenize(" ?! "));
+    }
+
+    /**
+     * Every word of a query must match, and matches come newest first by time_posted_epoch, not by message_id.
+     */
+    @Test
+    public void allWordsMustMatchNewestFirst() {
+        MessageSearchIndex index = new MessageSearchIndex();
+        index.add(new Message(1, 1, "red apple", 300));
+        index.add(new Message(2, 1, "green apple", 100));
+        index.add(new Message(3, 1, "Red, ripe APPLE", 200));
+        index.add(new Message(4, 1, "red car", 400));
+
+        Assert.assertEquals(List.of(1, 3), index.search("apple red", 10));
+        Assert.assertEquals(List.of(1, 3, 2), index.search("apple", 10));
+        Assert.assertEquals(List.of(1), index.search("apple", 1));
+        Assert.assertEquals(List.of(), index.search("red banana", 10));
+        Assert.assertEquals(List.of(), index.search("!!", 10));
+    }
+
+    /**
+     * A quoted phrase only matches its words consecutively and in order.
+     */
+    @Test
+    public void phrasesMatchConsecutiveWords() {
+        MessageSearchIndex index = new MessageSearchIndex();
+        index.add(new Message(1, 1, "the big red dog", 1));
+        index.add(new Message(2, 1, "the red big dog", 2));
+        index.add(new Message(3, 1, "big. red! dog and a big cat", 3));
+        index.add(new Message(4, 1, "la la land", 4));
+
+        Assert.assertEquals(List.of(3, 1), index.search("\"big red\"", 10));
+        Assert.assertEquals(List.of(3, 1), index.search("dog \"big red\"", 10));
+        Assert.assertEquals(List.of(3), index.search("\"big cat\" \"red dog", 10));
+        Assert.assertEquals(List.of(4), index.search("\"la la land\"", 10));
+        Assert.assertEquals(List.of(4), index.search("\"la land\"", 10));
+        Assert.assertEquals(List.of(), index.search("\"land la\"", 10));
+    }
+
+    /**
+     * Updated messages are found by their new text only, and deleted messages are not found.
+     */
+    @Test
+    public void updatesAndDeletesAreApplied() {
+        MessageSearchIndex index = new MessageSearchIndex();
+        index.add(new Message(1, 1, "old text", 1));
+        index.add(new Message(2, 1, "other text", 2));
+
+        index.add(new Message(1, 1, "new text", 1));
+        index.remove(2);
+        index.remove(100);
+
+        Assert.assertEquals(List.of(), index.search("old", 10));
+        Assert.assertEquals(List.of(1), index.search("new", 10));
+        Assert.assertEquals(List.of(1), index.search("text", 10));
+        Assert.assertEquals(1, index.getMessageCount());
+    }
+
+    /**
+     * Once deleted and superseded documents outnumber the live ones the index is compacted: words found only in them
+     * are dropped and the lists shrink, while the live messages are still found, in the same order, and can still be
+     * updated and deleted.
+     */
+    @Test
+    public void deletedDocumentsAreReclaimed() {
+        MessageSearchIndex index = new MessageSearchIndex();
+        for (int id = 1; id <= 1500; id++)
+            index.add(new Message(id, 1, "common unique" + id, id % 7));
+        long bytesBefore = index.getPostingBytes();
+        for (int id = 1; id <= 100; id++)
+            index.add(new Message(id, 1, "common changed" + id, id % 7));
+        // The 1024th deleted document outnumbers the live ones.
+        for (int id = 101; id <= 1024; id++)
+            index.remove(id);
+
+        Assert.assertEquals(576, index.getMessageCount());
+        Assert.assertEquals(1 + 100 + 476, index.getWordCount());
+        Assert.assertTrue(index.getPostingBytes() < bytesBefore / 2);
+        Assert.assertEquals(List.of(), index.search("unique1", 10));
+        Assert.assertEquals(List.of(1), index.search("changed1", 10));
+        Assert.assertEquals(List.of(), index.search("unique200", 10));
+        Assert.assertEquals(List.of(1100), index.search("unique1100", 10));
+        Assert.assertEquals(List.of(1497, 1490, 1483), index.search("common", 3));
+
+        index.add(new Message(1100, 1, "common moved", 1100 % 7));
+        index.remove(1497);
+        Assert.assertEquals(List.of(1100), index.search("moved", 10));
+        Assert.assertEquals(List.of(), index.search("unique1100", 10));
+        Assert.assertEquals(List.of(1490), index.search("common", 1));
+        Assert.assertEquals(575, index.getMessageCount());
+    }
+
+    /**
+     * Searches over posting lists spanning many blocks, with updates, deletes and timestamps out of message_id order,
+     * agree with checking every message.
+     */
+    @Test
+    public void searchesAgreeWithBruteForce() {
+        String[] vocabulary = {"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"};
+        Random random = new Random(42);
+        MessageSearchIndex index = new MessageSearchIndex();
+        List<Message> messages = new ArrayList<>();
+        for (int id = 1; id <= 5000; id++) {
+            Message message = new Message(id, 1, randomText(random, vocabulary), random.nextInt(1000));
+            messages.add(message);
+            index.add(message);
+        }
+        for (int i = 0; i < 500; i++) {
+            Message message = messages.get(random.nextInt(messages.size()));
+            if (random.nextBoolean()) {
+                message.setMessage_text(randomText(random, vocabulary));
+                index.add(message);
+            } else {
+                messages.remove(message);
+                index.remove(message.getMessage_id());
+            }
+        }
+
+        for (String query : new String[]{"alpha", "alpha beta", "\"gamma delta\"", "eta \"theta alpha\" zeta"}) {
+            List<Integer> expected = messages.stream()
+                    .filter(message -> matches(message.getMessage_text(), query))
+                    .sorted(Comparator.comparingLong(Message::getTime_posted_epoch)
+                            .thenComparingInt(Message::getMessage_id).reversed())
+                    .limit(50)
+                    .map(Message::getMessage_id)
+                    .collect(Collectors.toList());
+            Assert.assertEquals(query, expected, index.search(query, 50));
+        }
+    }
+
+    private static String randomText(Random random, String[] vocabulary) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0, words = 1 + random.nextInt(8); i < words; i++)
+            text.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        return text.toString();
+    }
+
+    /**
+     * The specification: every quoted phrase appears in the text with single spaces, and every other word appears.
+     */
+    private static boolean matches(String text, String query) {
+        String padded = " " + text + " ";
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i].trim();
+            if (part.isEmpty())
+                continue;
+            if (i % 2 == 1 && !padded.contains(" " + part + " "))
+                return false;
+            if (i % 2 == 0) {
+                for (String word : part.split(" +"))
+                    if (!padded.contains(" " + word + " "))
+                        return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcAccountDAO;
+import DAO.JdbcMessageDAO;
+import Model.Message;
+import Service.AccountCache;
+import Service.MessageCache;
+import Service.MessageService;
+import Util.ConnectionUtil;
+
+public class MessageServiceConcurrencyTest {
+    ExecutorService executor;
+    /**
+     * Counted down by the DAO once its update is in the database, before MessageService changes its indexes.
+     */
+    CountDownLatch updateWritten;
+    /**
+     * Awaited by the DAO before it returns the update.
+     */
+    CountDownLatch updateReleased;
+    /**
+     * Counted down by the DAO once a created message is in the database, before MessageService indexes it.
+     */
+    CountDownLatch createWritten;
+    /**
+     * Awaited by the DAO before it returns the created message.
+     */
+    CountDownLatch createReleased;
+    MessageService messageService;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        executor = Executors.newFixedThreadPool(2);
+        updateWritten = new CountDownLatch(1);
+        updateReleased = new CountDownLatch(1);
+        createWritten = new CountDownLatch(1);
+        createReleased = new CountDownLatch(1);
+        JdbcMessageDAO messageDAO = new JdbcMessageDAO() {
+            @Override
+            public Message createMessage(Message message) {
+                Message created = super.createMessage(message);
+                createWritten.countDown();
+                await(createReleased);
+                return created;
+            }
+
+            @Override
+            public Message updateMessage(int messageID, Message message) {
+                Message updated = super.updateMessage(messageID, message);
+                updateWritten.countDown();
+                await(updateReleased);
+                return updated;
+            }
+        };
+        messageService = new MessageService(new AccountCache(new JdbcAccountDAO()), messageDAO,
+                new MessageCache(messageDAO, 100, 60_000, true));
+    }
+
+    @After
+    public void tearDown() {
+        updateReleased.countDown();
+        createReleased.countDown();
+        executor.shutdownNow();
+    }
+
+    /**
+     * A delete that arrives while an update of the same message is between its database write and its re-indexing
+     * waits for it, so the deleted message cannot be re-indexed by the update and found by searches.
+     */
+    @Test
+    public void deleteRacingAnUpdateIsNotUndoneInTheIndex() throws Exception {
+        Future<Message> update = executor.submit(() ->
+                messageService.updateMessage(1, new Message(0, "raced", 0)));
+        Assert.assertTrue(updateWritten.await(10, TimeUnit.SECONDS));
+        Future<Message> delete = executor.submit(() -> messageService.deleteMessage(1));
+        try {
+            delete.get(200, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Waiting for the update, as it should.
+        }
+        updateReleased.countDown();
+
+        Assert.assertNotNull(update.get(10, TimeUnit.SECONDS));
+        Assert.assertNotNull(delete.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, messageService.getSearchIndex().search("raced", 10).size());
+        Assert.assertEquals(0, messageService.getSearchIndex().getMessageCount());
+    }
+
+    /**
+     * A message deleted after it was inserted but before its creation indexed it is left out of every index and the
+     * cache, rather than the creation adding entries for a message that no longer exists.
+     */
+    @Test
+    public void deleteRacingACreationLeavesNoGhost() throws Exception {
+        Future<Message> create = executor.submit(() ->
+                messageService.createMessage(new Message(1, "ghost", 1669947793)));
+        Assert.assertTrue(createWritten.await(10, TimeUnit.SECONDS));
+        Assert.assertNotNull(messageService.deleteMessage(2));
+        createReleased.countDown();
+
+        Assert.assertEquals(2, create.get(10, TimeUnit.SECONDS).getMessage_id());
+        Assert.assertEquals(1, messageService.getAccountIndex().count(1));
+        Assert.assertEquals(1, messageService.getTimeIndex().getMessageCount());
+        Assert.assertEquals(0, messageService.getSearchIndex().search("ghost", 10).size());
+        Assert.assertNull(messageService.getMessage(2));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Model.Message;
+import Service.MessageTimeIndex;
+
+public class MessageTimeIndexTest {
+
+    /**
+     * Pages come newest first by time_posted_epoch, then message_id, across buckets, and stay within the range.
+     */
+    @Test
+    public void pagesCrossBuckets() {
+        MessageTimeIndex index = new MessageTimeIndex(100);
+        index.add(new Message(1, 1, "a", 50));
+        index.add(new Message(2, 2, "b", 150));
+        index.add(new Message(3, 1, "c", 150));
+        index.add(new Message(4, 3, "d", 420));
+        index.add(new Message(5, 2, "e", -30));
+
+        Assert.assertEquals(4, index.getBucketCount());
+        Assert.assertEquals(List.of(4, 3, 2), index.page(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, 3));
+        Assert.assertEquals(List.of(2, 1, 5), index.page(Long.MIN_VALUE, 150, 3, 10));
+        Assert.assertEquals(List.of(3, 2, 1), index.page(0, 200, Integer.MAX_VALUE, 10));
+        Assert.assertEquals(List.of(), index.page(151, 149, Integer.MAX_VALUE, 10));
+        Assert.assertEquals(List.of(), index.page(500, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+
+        // The time of the last message_id added moves the cursor, even past a bucket with none in the range.
+        List<Integer> messageIDs = new ArrayList<>();
+        Assert.assertEquals(150, index.page(60, 500, Integer.MAX_VALUE, 10, messageIDs));
+        Assert.assertEquals(List.of(4, 3, 2), messageIDs);
+        Assert.assertEquals(150, index.page(60, 150, 2, 10, new ArrayList<>()));
+    }
+
+    /**
+     * Counts cover an inclusive time range, and follow adds and removes, dropping buckets left empty.
+     */
+    @Test
+    public void countsFollowChanges() {
+        MessageTimeIndex index = new MessageTimeIndex(100);
+        Message first = new Message(1, 1, "a", 100);
+        index.add(first);
+        index.add(new Message(2, 1, "b", 199));
+        index.add(new Message(3, 2, "c", 300));
+        index.add(new Message(3, 2, "c", 300));
+
+        Assert.assertEquals(3, index.getMessageCount());
+        Assert.assertEquals(2, index.count(100, 199));
+        Assert.assertEquals(1, index.count(150, 250));
+        Assert.assertEquals(3, index.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        Assert.assertEquals(0, index.count(300, 200));
+
+        index.remove(first);
+        index.remove(first);
+        index.remove(new Message(3, 2, "c", 999));
+        Assert.assertEquals(2, index.getMessageCount());
+        Assert.assertEquals(2, index.getBucketCount());
+        index.remove(new Message(3, 2, "c", 300));
+        Assert.assertEquals(1, index.getBucketCount());
+        Assert.assertEquals(List.of(2), index.page(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, 10));
+    }
+
+    /**
+     * Random adds and removes leave every page and count of a range agreeing with filtering and sorting the remaining
+     * messages.
+     */
+    @Test
+    public void agreesWithSorting() {
+        Random random = new Random(42);
+        MessageTimeIndex index = new MessageTimeIndex(16);
+        List<Message> expected = new ArrayList<>();
+        for (int messageID = 1; messageID <= 5_000; messageID++) {
+            Message message = new Message(messageID, random.nextInt(10), "text", random.nextInt(1_000));
+            index.add(message);
+            expected.add(message);
+            if (random.nextInt(4) == 0)
+                index.remove(expected.remove(random.nextInt(expected.size())));
+        }
+        expected.removeIf(m -> m.getTime_posted_epoch() < 250 || m.getTime_posted_epoch() > 500);
+        expected.sort(Comparator.comparingLong(Message::getTime_posted_epoch)
+                .thenComparingInt(Message::getMessage_id).reversed());
+
+        List<Integer> walked = new ArrayList<>();
+        long beforeEpoch = 500;
+        int beforeMessageID = Integer.MAX_VALUE;
+        List<Integer> page;
+        while (!(page = index.page(250, beforeEpoch, beforeMessageID, 100)).isEmpty()) {
+            walked.addAll(page);
+            Message last = expected.get(walked.size() - 1);
+            beforeEpoch = last.getTime_posted_epoch();
+            beforeMessageID = last.getMessage_id();
+        }
+        Assert.assertEquals(expected.stream().map(Message::getMessage_id).toList(), walked);
+        Assert.assertEquals(expected.size(), index.count(250, 500));
+    }
+}
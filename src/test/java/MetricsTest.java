@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    HttpClient webClient;
+    Javalin app;
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        if (app != null)
+            app.stop();
+    }
+
+    /**
+     * Quantiles are reported to within the histogram's relative precision, and count, sum and max are exact.
+     */
+    @Test
+    public void histogramQuantilesAreAccurate() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++)
+            histogram.record(micros * 1_000);
+
+        Assert.assertEquals(100_000, histogram.getCount());
+        Assert.assertEquals(100_000L * 100_001 / 2 * 1_000, histogram.getSum());
+        Assert.assertEquals(100_000_000, histogram.getMax());
+        assertWithinPrecision(50_000_000, histogram.getValueAtQuantile(0.5));
+        assertWithinPrecision(99_000_000, histogram.getValueAtQuantile(0.99));
+        assertWithinPrecision(99_900_000, histogram.getValueAtQuantile(0.999));
+        Assert.assertEquals(100_000_000, histogram.getValueAtQuantile(1.0));
+        Assert.assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.99));
+    }
+
+    /**
+     * Recording into a histogram allocates nothing.
+     */
+    @Test
+    public void recordingDoesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100_000; i++)
+            histogram.record(i);
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1_000_000; i++)
+            histogram.record(i * 7L);
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        Assert.assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    /**
+     * GET /metrics reports request latency by route, responses by status, DAO latency, the connection pool, the
+     * caches and the JVM.
+     */
+    @Test
+    public void metricsEndpointReportsEveryLayer() throws IOException, InterruptedException {
+        app = new SocialMediaController().startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        Assert.assertEquals(404, get("/no/such/route").statusCode());
+        get("/messages/1");
+        get("/messages/1");
+
+        String metrics = scrapeUntilContains("route=\"/messages/{message_id}\"");
+        Assert.assertTrue(metrics.contains("# TYPE http_request_duration_seconds summary"));
+        Assert.assertTrue(metrics.contains(
+                "http_request_duration_seconds{method=\"GET\",route=\"/messages/{message_id}\",quantile=\"0.99\"}"));
+        Assert.assertTrue(metrics.contains("http_responses_total{status=\"404\"}"));
+        Assert.assertTrue(metrics.contains("http_responses_total{status=\"200\"}"));
+        Assert.assertTrue(metrics.contains(
+                "dao_call_duration_seconds_count{dao=\"MessageDAO\",method=\"getMessage\"}"));
+        Assert.assertTrue(metrics.contains("db_pool_borrow_wait_seconds_count"));
+        Assert.assertTrue(metrics.contains("db_pool_connections_active"));
+        Assert.assertTrue(metrics.contains("cache_hits_total{cache=\"message\"} 1\n"));
+        Assert.assertTrue(metrics.contains("cache_misses_total{cache=\"message\"} 1\n"));
+        Assert.assertTrue(metrics.contains("jvm_memory_used_bytes{area=\"heap\"}"));
+        Assert.assertTrue(metrics.contains("jvm_gc_collections_total{gc="));
+    }
+
+    /**
+     * Requests are recorded just after their response is sent, so the last one may take a moment to show up.
+     */
+    private String scrapeUntilContains(String expected) throws IOException, InterruptedException {
+        String metrics = "";
+        for (int attempt = 0; attempt < 50 && !metrics.contains(expected); attempt++) {
+            HttpResponse<String> response = get("/metrics");
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+            metrics = response.body();
+            Thread.sleep(20);
+        }
+        return metrics;
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        Assert.assertTrue("expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * 0.032);
+    }
+}
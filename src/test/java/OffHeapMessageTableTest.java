@@ -0,0 +1,82 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Model.Message;
+import Util.JsonUtil;
+import Util.OffHeapMessageTable;
+
+public class OffHeapMessageTableTest {
+
+    /**
+     * Random puts, replacements and removes, spread over several pages, leave the table agreeing with a HashMap, and
+     * freed text blocks are reused rather than the arena growing.
+     */
+    @Test
+    public void agreesWithHashMap() {
+        Random random = new Random(42);
+        OffHeapMessageTable table = new OffHeapMessageTable(64 << 10);
+        Map<Integer, Message> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int row = random.nextInt(3 * OffHeapMessageTable.PAGE_ROWS);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(row) != null, table.remove(row));
+            } else {
+                Message message = new Message(row, random.nextInt(1000), "text ".repeat(random.nextInt(50)), i);
+                expected.put(row, message);
+                table.put(row, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch(), i);
+            }
+        }
+        long offHeapBytes = table.getOffHeapBytes();
+        Assert.assertEquals(expected.size(), table.size());
+        for (int row = 0; row < table.capacity(); row++) {
+            Message message = expected.get(row);
+            Assert.assertEquals(message != null, table.contains(row));
+            if (message != null)
+                Assert.assertEquals(message, new Message(row, table.getPostedBy(row), table.getText(row),
+                        table.getTime(row)));
+        }
+
+        // Replacing every text with one of the same size class takes no more memory.
+        for (int row : expected.keySet())
+            table.put(row, 1, expected.get(row).getMessage_text().toUpperCase(), 0, 0);
+        Assert.assertEquals(offHeapBytes, table.getOffHeapBytes());
+
+        OffHeapMessageTable copy = table.copy();
+        table.clear();
+        Assert.assertEquals(0, table.size());
+        Assert.assertFalse(table.contains(expected.keySet().iterator().next()));
+        Assert.assertEquals(expected.size(), copy.size());
+        for (int row : expected.keySet())
+            Assert.assertEquals(expected.get(row).getMessage_text().toUpperCase(), copy.getText(row));
+    }
+
+    /**
+     * The JSON written from a row is byte for byte what Jackson writes for the same Message, whatever the text needs
+     * escaped or encoded.
+     */
+    @Test
+    public void jsonMatchesJackson() throws IOException {
+        StringBuilder controls = new StringBuilder();
+        for (char c = 0; c < 0x20; c++)
+            controls.append(c);
+        String[] texts = {"", "plain", "\"quoted\" and \\slashed\\ /", controls.toString(),
+                "caf\u00e9 \u20ac \ud83d\ude00", "\u007f".repeat(255)};
+        long[] times = {0, 1669947792L, -1, Long.MIN_VALUE, Long.MAX_VALUE};
+        OffHeapMessageTable table = new OffHeapMessageTable();
+        for (int i = 0; i < texts.length; i++) {
+            Message message = new Message(i == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE - i, -i, texts[i],
+                    times[i % times.length]);
+            table.put(i, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch(), 0);
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            Assert.assertTrue(table.writeJson(i, message.getMessage_id(), json));
+            Assert.assertEquals(JsonUtil.MESSAGE_WRITER.writeValueAsString(message), json.toString("UTF-8"));
+        }
+        Assert.assertFalse(table.writeJson(texts.length, 1, new ByteArrayOutputStream()));
+    }
+}
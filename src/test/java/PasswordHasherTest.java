@@ -0,0 +1,69 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.PasswordHasher;
+
+public class PasswordHasherTest {
+
+    /**
+     * A hash verifies its password only, and hashing the same password twice gives different salts.
+     */
+    @Test
+    public void hashesVerifyOnlyTheirPassword() {
+        try (PasswordHasher hasher = new PasswordHasher(1000, 1, 10)) {
+            String hash = hasher.hash("password");
+            Assert.assertTrue(hash.startsWith("pbkdf2-sha256$1000$"));
+            Assert.assertNotEquals(hash, hasher.hash("password"));
+            Assert.assertTrue(hasher.verify("password", hash));
+            Assert.assertFalse(hasher.verify("passwore", hash));
+            Assert.assertFalse(hasher.verify("password", "pbkdf2-sha256$1000$not base64"));
+            Assert.assertFalse(hasher.verify("", null));
+            Assert.assertFalse(hasher.needsRehash(hash));
+        }
+    }
+
+    /**
+     * Plaintext passwords and hashes with other iterations still verify, and are reported for rehashing.
+     */
+    @Test
+    public void oldPasswordsVerifyAndNeedRehash() {
+        try (PasswordHasher weak = new PasswordHasher(1000, 1, 10);
+             PasswordHasher strong = new PasswordHasher(2000, 1, 10)) {
+            String weakHash = weak.hash("password");
+            Assert.assertTrue(strong.verify("password", weakHash));
+            Assert.assertTrue(strong.needsRehash(weakHash));
+
+            Assert.assertTrue(strong.verify("password", "password"));
+            Assert.assertFalse(strong.verify("password", "passwore"));
+            Assert.assertTrue(strong.needsRehash("password"));
+        }
+    }
+
+    /**
+     * Work beyond the threads and the queue is rejected rather than queued without bound.
+     */
+    @Test
+    public void fullQueueRejectsWork() throws InterruptedException {
+        try (PasswordHasher hasher = new PasswordHasher(1000, 1, 1)) {
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            hasher.submit(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+            running.await();
+            hasher.submit(() -> null);
+            Assert.assertEquals(1, hasher.getQueuedHashes());
+            Assert.assertThrows(RejectedExecutionException.class, () -> hasher.submit(() -> null));
+            release.countDown();
+        }
+    }
+}
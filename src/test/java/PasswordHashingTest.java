@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.AccountDAO;
+import DAO.Storage;
+import Model.Account;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class PasswordHashingTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+    AccountDAO accountDAO;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        accountDAO = Storage.accountDAO();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Registering an account stores a salted hash of its password, never the password itself, and logging in checks
+     * against that hash.
+     *
+     * Expected Response:
+     *  Status Code: 200 for the registration and the login with the right password, 401 with the wrong one
+     */
+    @Test
+    public void registrationStoresAHash() throws IOException, InterruptedException {
+        Assert.assertEquals(200, send("/register", "user", "secret").statusCode());
+        String stored = accountDAO.getAccount("user").getPassword();
+        Assert.assertTrue(stored, stored.startsWith("pbkdf2-sha256$"));
+
+        HttpResponse<String> login = send("/login", "user", "secret");
+        Assert.assertEquals(200, login.statusCode());
+        Assert.assertEquals(new Account(2, "user", "secret"), objectMapper.readValue(login.body(), Account.class));
+        Assert.assertEquals(401, send("/login", "user", stored).statusCode());
+    }
+
+    /**
+     * The seeded account's password is stored in plaintext. Logging in replaces it with a hash, after which the same
+     * password still logs in and a wrong one still does not.
+     *
+     * Expected Response:
+     *  Status Code: 200 for both logins with the right password, 401 for the wrong one
+     */
+    @Test
+    public void loginRehashesPlaintextPasswords() throws IOException, InterruptedException {
+        Assert.assertEquals("password", accountDAO.getAccount(1).getPassword());
+        Assert.assertEquals(200, send("/login", "testuser1", "password").statusCode());
+
+        String stored = accountDAO.getAccount(1).getPassword();
+        Assert.assertTrue(stored, stored.startsWith("pbkdf2-sha256$"));
+        Assert.assertEquals(200, send("/login", "testuser1", "password").statusCode());
+        Assert.assertEquals(stored, accountDAO.getAccount(1).getPassword());
+        Assert.assertEquals(401, send("/login", "testuser1", "pass123").statusCode());
+        Assert.assertEquals(401, send("/login", "nobody", "password").statusCode());
+    }
+
+    private HttpResponse<String> send(String path, String username, String password)
+            throws IOException, InterruptedException {
+        String body = objectMapper.writeValueAsString(new Account(username, password));
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,106 @@
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.JdbcAccountDAO;
+import DAO.JdbcFollowDAO;
+import DAO.JdbcMessageDAO;
+import Util.ConnectionUtil;
+import Util.SchemaMigrator;
+
+public class QueryPlanTest {
+
+    /**
+     * Before every test, reset the database so the schema is built from the migrations.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Every migration is applied once, and migrating an up to date database does nothing.
+     */
+    @Test
+    public void migrationsAreAppliedOnce() throws Exception {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            int version = SchemaMigrator.currentVersion(connection);
+            Assert.assertTrue(version >= 2);
+            Assert.assertEquals(version, SchemaMigrator.migrate(connection));
+            Assert.assertEquals(version, SchemaMigrator.currentVersion(connection));
+        }
+    }
+
+    /**
+     * Lookups by key must be served by an index, never by scanning the table.
+     */
+    @Test
+    public void hotQueriesUseAnIndex() throws SQLException {
+        assertIndexed(JdbcAccountDAO.SELECT_BY_ID_SQL);
+        assertIndexed(JdbcAccountDAO.SELECT_BY_USERNAME_SQL);
+        assertIndexed(JdbcAccountDAO.UPDATE_PASSWORD_SQL);
+        assertIndexed(JdbcMessageDAO.SELECT_BY_ID_SQL);
+        assertIndexed(JdbcMessageDAO.SELECT_BY_IDS_SQL);
+        assertIndexed(JdbcMessageDAO.SELECT_PAGE_SQL);
+        assertIndexed(JdbcMessageDAO.UPDATE_TEXT_SQL);
+        assertIndexed(JdbcMessageDAO.DELETE_BY_ID_SQL);
+        assertIndexed(JdbcMessageDAO.SELECT_BY_ACCOUNT_SQL);
+        assertIndexed(JdbcMessageDAO.FAN_OUT_SQL);
+        assertIndexed(JdbcMessageDAO.FAN_OUT_BATCH_SQL);
+        assertIndexed(JdbcFollowDAO.INSERT_FOLLOW_SQL);
+        assertIndexed(JdbcFollowDAO.BACKFILL_TIMELINE_SQL);
+        assertIndexed(JdbcFollowDAO.DELETE_FOLLOW_SQL);
+        assertIndexed(JdbcFollowDAO.DELETE_TIMELINE_SQL);
+        assertIndexed(JdbcFollowDAO.SELECT_FOLLOWEES_SQL);
+        assertIndexed(JdbcFollowDAO.SELECT_FOLLOWERS_SQL);
+    }
+
+    /**
+     * A timeline page seeks to its cursor in the timeline index and reads it in order, so it costs the same however
+     * deep into the timeline it is and however many accounts are followed.
+     */
+    @Test
+    public void timelinePageIsAnIndexRange() throws SQLException {
+        String plan = explain(JdbcMessageDAO.SELECT_TIMELINE_SQL);
+        Assert.assertTrue(plan, plan.contains("TIMELINE_ACCOUNT_TIME_IDX"));
+        Assert.assertTrue(plan, plan.contains("index sorted"));
+        assertIndexed(JdbcMessageDAO.SELECT_TIMELINE_SQL);
+    }
+
+    /**
+     * Reading every message in order walks the primary key rather than sorting the table.
+     */
+    @Test
+    public void orderedFullReadAvoidsSort() throws SQLException {
+        String plan = explain(JdbcMessageDAO.SELECT_ALL_ORDERED_SQL);
+        Assert.assertTrue(plan, plan.contains("index sorted"));
+    }
+
+    private static void assertIndexed(String sql) throws SQLException {
+        String plan = explain(sql);
+        Assert.assertFalse(sql + " scans the table:\n" + plan, plan.contains("tableScan"));
+    }
+
+    /**
+     * @return the plan H2 chooses for the statement, with every parameter bound to a placeholder value
+     */
+    private static String explain(String sql) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("EXPLAIN " + sql)) {
+            ParameterMetaData parameters = preparedStatement.getParameterMetaData();
+            for (int i = 1; i <= parameters.getParameterCount(); i++)
+                preparedStatement.setObject(i, 1, Types.INTEGER);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RateLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, configure small limits, restart the Javalin app, and create a new
+     * webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        System.setProperty("socialmedia.ratelimit.messages.account.perSecond", "0.01");
+        System.setProperty("socialmedia.ratelimit.messages.account.burst", "2");
+        System.setProperty("socialmedia.ratelimit.login.ip.perSecond", "0.01");
+        System.setProperty("socialmedia.ratelimit.login.ip.burst", "1");
+        System.setProperty("socialmedia.ratelimit.messages.bulk.ip.perSecond", "0.01");
+        System.setProperty("socialmedia.ratelimit.messages.bulk.ip.burst", "1");
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("socialmedia.ratelimit.messages.account.perSecond");
+        System.clearProperty("socialmedia.ratelimit.messages.account.burst");
+        System.clearProperty("socialmedia.ratelimit.login.ip.perSecond");
+        System.clearProperty("socialmedia.ratelimit.login.ip.burst");
+        System.clearProperty("socialmedia.ratelimit.messages.bulk.ip.perSecond");
+        System.clearProperty("socialmedia.ratelimit.messages.bulk.ip.burst");
+    }
+
+    /**
+     * Sending a third http request to POST localhost:8080/messages for the same account within the limit's window
+     *
+     * Expected Response:
+     *  Status Code: 429 with a Retry-After header, while other accounts and other methods are not limited
+     */
+    @Test
+    public void postingIsLimitedPerAccount() throws IOException, InterruptedException {
+        String message = "{\"posted_by\":1,\"message_text\":\"limited\",\"time_posted_epoch\":1}";
+        Assert.assertEquals(200, send("POST", "/messages", message).statusCode());
+        Assert.assertEquals(200, send("POST", "/messages", message).statusCode());
+
+        HttpResponse<String> limited = send("POST", "/messages", message);
+        Assert.assertEquals(429, limited.statusCode());
+        long retryAfter = Long.parseLong(limited.headers().firstValue("Retry-After").orElseThrow());
+        Assert.assertTrue(String.valueOf(retryAfter), retryAfter >= 1 && retryAfter <= 100);
+
+        Assert.assertEquals(400, send("POST", "/messages",
+                "{\"posted_by\":2,\"message_text\":\"other account\",\"time_posted_epoch\":1}").statusCode());
+        Assert.assertEquals(200, send("GET", "/messages", "").statusCode());
+        Assert.assertTrue(send("GET", "/metrics", "").body()
+                .contains("rate_limited_requests_total{limit=\"messages.account\"}"));
+    }
+
+    /**
+     * Sending a second http request to POST localhost:8080/login from the same address
+     *
+     * Expected Response:
+     *  Status Code: 429, before the password is checked
+     */
+    @Test
+    public void loginIsLimitedPerAddress() throws IOException, InterruptedException {
+        String login = "{\"username\":\"testuser1\",\"password\":\"password\"}";
+        Assert.assertEquals(200, send("POST", "/login", login).statusCode());
+        Assert.assertEquals(429, send("POST", "/login", login).statusCode());
+    }
+
+    /**
+     * Sending a second http request to POST localhost:8080/messages/bulk from the same address
+     *
+     * Expected Response:
+     *  Status Code: 429 with a Retry-After header, before any message of the second import is inserted
+     */
+    @Test
+    public void bulkImportIsLimitedPerAddress() throws IOException, InterruptedException {
+        String messages = "{\"posted_by\":1,\"message_text\":\"imported\",\"time_posted_epoch\":1}\n";
+        Assert.assertEquals(200, send("POST", "/messages/bulk", messages).statusCode());
+
+        HttpResponse<String> limited = send("POST", "/messages/bulk", messages);
+        Assert.assertEquals(429, limited.statusCode());
+        Assert.assertTrue(limited.headers().firstValue("Retry-After").isPresent());
+        Assert.assertEquals(1, send("GET", "/accounts/1/messages", "").body().split("imported", -1).length - 1);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.RateLimiter;
+
+public class RateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    AtomicLong clock = new AtomicLong(1000 * SECOND);
+
+    /**
+     * A key may make burst requests at once, then one per emission interval, and is told how long to wait.
+     */
+    @Test
+    public void burstThenSustainedRate() {
+        RateLimiter<String> limiter = new RateLimiter<>(2, 3, 100, 60 * SECOND, clock::get);
+        for (int i = 0; i < 3; i++)
+            Assert.assertEquals(0, limiter.acquire("a"));
+        Assert.assertEquals(SECOND / 2, limiter.acquire("a"));
+        Assert.assertEquals(0, limiter.acquire("b"));
+
+        clock.addAndGet(SECOND / 2);
+        Assert.assertEquals(0, limiter.acquire("a"));
+        Assert.assertEquals(SECOND / 2, limiter.acquire("a"));
+
+        // After being idle long enough the whole burst is available again, but not more.
+        clock.addAndGet(10 * SECOND);
+        for (int i = 0; i < 3; i++)
+            Assert.assertEquals(0, limiter.acquire("a"));
+        Assert.assertTrue(limiter.acquire("a") > 0);
+    }
+
+    /**
+     * Idle buckets are swept, and keys beyond maxKeys share one overflow bucket instead of growing the map.
+     */
+    @Test
+    public void memoryIsBounded() {
+        RateLimiter<Integer> limiter = new RateLimiter<>(1, 1, 10, 60 * SECOND, clock::get);
+        for (int key = 0; key < 10; key++)
+            Assert.assertEquals(0, limiter.acquire(key));
+        Assert.assertEquals(10, limiter.getKeyCount());
+
+        // Every bucket is busy, so new keys are limited together.
+        Assert.assertEquals(0, limiter.acquire(100));
+        Assert.assertTrue(limiter.acquire(101) > 0);
+        Assert.assertEquals(10, limiter.getKeyCount());
+
+        // Once the buckets are full again they are idle, and the next new key sweeps them away.
+        clock.addAndGet(2 * SECOND);
+        Assert.assertEquals(0, limiter.acquire(102));
+        Assert.assertEquals(1, limiter.getKeyCount());
+
+        // The periodic sweep removes idle buckets even without pressure from new keys.
+        clock.addAndGet(61 * SECOND);
+        Assert.assertEquals(0, limiter.acquire(102));
+        Assert.assertEquals(1, limiter.getKeyCount());
+        clock.addAndGet(61 * SECOND);
+        Assert.assertEquals(0, limiter.acquire(0));
+        Assert.assertEquals(1, limiter.getKeyCount());
+    }
+
+    /**
+     * Threads racing on the same keys admit exactly the burst of each key while the clock stands still, and the map
+     * never holds more than maxKeys buckets.
+     */
+    @Test
+    public void concurrentAcquiresAdmitExactlyTheBurst() throws InterruptedException {
+        int threads = 8;
+        int keys = 50;
+        int burst = 20;
+        RateLimiter<Integer> limiter = new RateLimiter<>(1, burst, keys, 60 * SECOND, clock::get);
+        AtomicInteger[] admitted = new AtomicInteger[keys];
+        for (int key = 0; key < keys; key++)
+            admitted[key] = new AtomicInteger();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    int key = i % keys;
+                    if (limiter.acquire(key) == 0)
+                        admitted[key].incrementAndGet();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+
+        for (int key = 0; key < keys; key++)
+            Assert.assertEquals("key " + key, burst, admitted[key].get());
+        Assert.assertEquals(keys, limiter.getKeyCount());
+    }
+}
@@ -0,0 +1,184 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import Controller.SocialMediaController;
+import DAO.Storage;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.Representation;
+import io.javalin.Javalin;
+
+public class ResponseEncodingTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+    List<Message> expected;
+
+    /**
+     * Before every test, reset the database, add 199 messages so the list of all messages is well over the compression
+     * threshold, restart the Javalin app, and create a new webClient and ObjectMapper for interacting locally on the
+     * web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        List<Message> messages = new ArrayList<>();
+        for (int i = 2; i <= 200; i++) {
+            messages.add(new Message(1, "compressible message " + i, 1669947792 + i));
+            expected.add(new Message(i, 1, "compressible message " + i, 1669947792 + i));
+        }
+        Storage.messageDAO().createMessages(messages);
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending GET localhost:8080/messages with Accept-Encoding gzip, then deflate
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the JSON list of all messages, compressed as asked, with Content-Encoding and Vary set
+     */
+    @Test
+    public void largeListsAreCompressed() throws IOException, InterruptedException {
+        HttpResponse<byte[]> gzip = send("/messages", null, "gzip;q=1.0, deflate;q=0.5", null);
+        Assert.assertEquals(200, gzip.statusCode());
+        Assert.assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElseThrow());
+        Assert.assertEquals("Accept, Accept-Encoding", gzip.headers().firstValue("Vary").orElseThrow());
+        byte[] json = new GZIPInputStream(new ByteArrayInputStream(gzip.body())).readAllBytes();
+        Assert.assertEquals(expected, objectMapper.readValue(json, new TypeReference<List<Message>>(){}));
+        Assert.assertTrue(gzip.body().length < json.length / 4);
+
+        HttpResponse<byte[]> deflate = send("/messages", null, "gzip;q=0, deflate", null);
+        Assert.assertEquals("deflate", deflate.headers().firstValue("Content-Encoding").orElseThrow());
+        json = new InflaterInputStream(new ByteArrayInputStream(deflate.body())).readAllBytes();
+        Assert.assertEquals(expected, objectMapper.readValue(json, new TypeReference<List<Message>>(){}));
+
+        HttpResponse<byte[]> identity = send("/messages", null, null, null);
+        Assert.assertTrue(identity.headers().firstValue("Content-Encoding").isEmpty());
+        Assert.assertArrayEquals(json, identity.body());
+    }
+
+    /**
+     * Sending GET localhost:8080/messages/1 with Accept-Encoding gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message uncompressed, as it is under the compression threshold
+     */
+    @Test
+    public void smallBodiesAreNotCompressed() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = send("/messages/1", null, "gzip", null);
+        Assert.assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        Assert.assertEquals(expected.get(0), objectMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Sending GET localhost:8080/accounts/1/messages, GET localhost:8080/messages and GET localhost:8080/messages/1
+     * with Accept application/x-jackson-smile or application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same messages in the binary format asked for, with its Content-Type
+     */
+    @Test
+    public void binaryFormatsAreNegotiated() throws IOException, InterruptedException {
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+        HttpResponse<byte[]> response = send("/accounts/1/messages", "application/x-jackson-smile", "gzip", null);
+        Assert.assertEquals("application/x-jackson-smile", response.headers().firstValue("Content-Type").orElseThrow());
+        byte[] body = new GZIPInputStream(new ByteArrayInputStream(response.body())).readAllBytes();
+        Assert.assertEquals(expected, smile.readValue(body, new TypeReference<List<Message>>(){}));
+
+        response = send("/messages", "application/json;q=0.5, application/cbor", null, null);
+        Assert.assertEquals("application/cbor", response.headers().firstValue("Content-Type").orElseThrow());
+        Assert.assertEquals(expected, cbor.readValue(response.body(), new TypeReference<List<Message>>(){}));
+
+        response = send("/messages/1", "application/cbor", null, null);
+        Assert.assertEquals(expected.get(0), cbor.readValue(response.body(), Message.class));
+
+        response = send("/messages?ids=2,1", "application/x-jackson-smile", null, null);
+        Assert.assertEquals(List.of(expected.get(1), expected.get(0)),
+                smile.readValue(response.body(), new TypeReference<List<Message>>(){}));
+    }
+
+    /**
+     * Sending conditional GETs for localhost:8080/messages/1 in different representations
+     *
+     * Expected Response:
+     *  Status Code: 304 only for the ETag of the representation asked for
+     */
+    @Test
+    public void etagsDifferPerRepresentation() throws IOException, InterruptedException {
+        String json = send("/messages/1", null, null, null).headers().firstValue("ETag").orElseThrow();
+        String gzip = send("/messages/1", null, "gzip", null).headers().firstValue("ETag").orElseThrow();
+        String smile = send("/messages/1", "application/x-jackson-smile", null, null)
+                .headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(3, List.of(json, gzip, smile).stream().distinct().count());
+
+        Assert.assertEquals(304, send("/messages/1", null, "gzip", gzip).statusCode());
+        Assert.assertEquals(200, send("/messages/1", null, null, gzip).statusCode());
+        Assert.assertEquals(200, send("/messages/1", null, "gzip", json).statusCode());
+    }
+
+    /**
+     * Negotiation honors quality values and the most specific matching range.
+     */
+    @Test
+    public void negotiationHonorsQuality() {
+        Assert.assertEquals(Representation.Format.JSON, Representation.negotiate("*/*", null).getFormat());
+        Assert.assertEquals(Representation.Format.JSON, Representation.negotiate("text/html", null).getFormat());
+        Assert.assertEquals(Representation.Format.SMILE,
+                Representation.negotiate("application/*;q=0.1, application/x-jackson-smile", null).getFormat());
+        Assert.assertEquals(Representation.Encoding.IDENTITY, Representation.negotiate(null, "br").getEncoding());
+        Assert.assertEquals(Representation.Encoding.IDENTITY,
+                Representation.negotiate(null, "*;q=0").getEncoding());
+        Assert.assertEquals(Representation.Encoding.GZIP, Representation.negotiate(null, "*").getEncoding());
+        Assert.assertEquals(Representation.Encoding.DEFLATE,
+                Representation.negotiate(null, "gzip;q=0.2, deflate").getEncoding());
+    }
+
+    private HttpResponse<byte[]> send(String path, String accept, String acceptEncoding, String ifNoneMatch)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (accept != null)
+            request.header("Accept", accept);
+        if (acceptEncoding != null)
+            request.header("Accept-Encoding", acceptEncoding);
+        if (ifNoneMatch != null)
+            request.header("If-None-Match", ifNoneMatch);
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
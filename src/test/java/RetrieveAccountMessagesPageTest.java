@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.AccountMessagePage;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveAccountMessagesPageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add two more messages for account 1, the second posted earlier than the
+     * first, restart the Javalin app, which indexes them, and create a new webClient and ObjectMapper for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        MessageDAO messageDAO = Storage.messageDAO();
+        messageDAO.createMessage(new Message(1, "test message 2", 1669947794));
+        messageDAO.createMessage(new Message(1, "test message 3", 1669947793));
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Walking GET localhost:8080/accounts/1/messages?limit=2 by following the next cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the two newest messages by time_posted_epoch with a next cursor, then the oldest with no next,
+     *  each page counting all three messages
+     */
+    @Test
+    public void getAccountMessagesFollowingCursor() throws IOException, InterruptedException {
+        AccountMessagePage firstPage = getPage(1, "limit=2");
+        Assert.assertEquals(List.of(new Message(2, 1, "test message 2", 1669947794),
+                new Message(3, 1, "test message 3", 1669947793)), firstPage.getMessages());
+        Assert.assertEquals("1669947793:3", firstPage.getNext());
+        Assert.assertEquals(3, firstPage.getCount());
+
+        AccountMessagePage secondPage = getPage(1, "limit=2&before=" + firstPage.getNext());
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792)), secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext());
+        Assert.assertEquals(3, secondPage.getCount());
+    }
+
+    /**
+     * Posting and deleting messages through the API, then GET localhost:8080/accounts/1/messages?limit=10
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the new message first and without the deleted one, counted accordingly
+     */
+    @Test
+    public void getAccountMessagesAfterChanges() throws IOException, InterruptedException {
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1,\"message_text\":\"newest\",\"time_posted_epoch\":1669947800}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        AccountMessagePage page = getPage(1, "limit=10");
+        Assert.assertEquals(List.of(4, 3, 1), page.getMessages().stream().map(Message::getMessage_id).toList());
+        Assert.assertNull(page.getNext());
+        Assert.assertEquals(3, page.getCount());
+        Assert.assertEquals(0, getPage(2, "limit=10").getCount());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with an invalid limit or cursor
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getAccountMessagesInvalidParameters() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send(1, "limit=0").statusCode());
+        Assert.assertEquals(400, send(1, "before=abc").statusCode());
+        Assert.assertEquals(400, send(1, "before=1669947793:x").statusCode());
+    }
+
+    private AccountMessagePage getPage(int accountID, String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(accountID, query);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), AccountMessagePage.class);
+    }
+
+    private HttpResponse<String> send(int accountID, String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + accountID + "/messages?" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesByIdsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add messages 2 and 3, restart the Javalin app, and create a new webClient
+     * and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        MessageDAO messageDAO = Storage.messageDAO();
+        messageDAO.createMessage(new Message(1, "test message 2", 1669947793));
+        messageDAO.createMessage(new Message(1, "test message 3", 1669947794));
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?ids=3,100,1,3
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: messages 3 and 1 in that order, without the missing message 100 or the repeated 3
+     */
+    @Test
+    public void getMessagesByIdsKeepsRequestOrder() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", "/messages?ids=3,100,1,3", "");
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, 1, "test message 3", 1669947794));
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){}));
+        Assert.assertEquals("[]", send("GET", "/messages?ids=", "").body());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a JSON array of message_ids
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same messages as GET /messages?ids=
+     */
+    @Test
+    public void postBatchMatchesGet() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/messages/batch", "[2,1,100]");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(send("GET", "/messages?ids=2,1,100", "").body(), response.body());
+        Assert.assertEquals(2, objectMapper.readValue(response.body(), Message[].class).length);
+    }
+
+    /**
+     * Sending ids that are not message_ids, or more of them than messages.maxBatchSize
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidIdsAreRejected() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send("GET", "/messages?ids=1,x", "").statusCode());
+        Assert.assertEquals(400, send("POST", "/messages/batch", "{\"ids\":[1]}").statusCode());
+        Assert.assertEquals(400, send("POST", "/messages/batch", "[1,null]").statusCode());
+
+        StringBuilder tooMany = new StringBuilder("[0");
+        for (int i = 1; i <= 1000; i++)
+            tooMany.append(',').append(i);
+        Assert.assertEquals(400, send("POST", "/messages/batch", tooMany.append(']').toString()).statusCode());
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Account;
+import Model.AccountMessagePage;
+import Model.Message;
+import Model.TimeRangePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesByTimeTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add account 2 and three more messages posted by accounts 1 and 2 in turn,
+     * an hour or so apart, restart the Javalin app, and create a new webClient and ObjectMapper for interacting locally
+     * on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        Storage.accountDAO().createAccount(new Account("testuser2", "password"));
+        MessageDAO messageDAO = Storage.messageDAO();
+        messageDAO.createMessage(new Message(2, "test message 2", 1669950000));
+        messageDAO.createMessage(new Message(1, "test message 3", 1669953600));
+        messageDAO.createMessage(new Message(2, "test message 4", 1669960000));
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with since and until, or only one of them
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages of every account posted in the range, both ends inclusive, newest first
+     */
+    @Test
+    public void getMessagesInRange() throws IOException, InterruptedException {
+        Assert.assertEquals(List.of(3, 2), getList("/messages?since=1669947793&until=1669953600"));
+        Assert.assertEquals(List.of(4, 3), getList("/messages?since=1669953600"));
+        Assert.assertEquals(List.of(1), getList("/messages?until=1669949999"));
+        Assert.assertEquals(List.of(), getList("/messages?since=1669960001"));
+    }
+
+    /**
+     * Walking GET localhost:8080/messages?since=1669947792&limit=2 by following the next cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the newest two messages with a next cursor, then the other two with no next, each page counting
+     *  all four messages
+     */
+    @Test
+    public void getMessagesInRangeFollowingCursor() throws IOException, InterruptedException {
+        TimeRangePage firstPage = getPage("/messages?since=1669947792&limit=2", TimeRangePage.class);
+        Assert.assertEquals(List.of(new Message(4, 2, "test message 4", 1669960000),
+                new Message(3, 1, "test message 3", 1669953600)), firstPage.getMessages());
+        Assert.assertEquals("1669953600:3", firstPage.getNext());
+        Assert.assertEquals(4, firstPage.getCount());
+
+        TimeRangePage secondPage = getPage("/messages?since=1669947792&limit=2&before=" + firstPage.getNext(),
+                TimeRangePage.class);
+        Assert.assertEquals(List.of(2, 1), secondPage.getMessages().stream().map(Message::getMessage_id).toList());
+        Assert.assertNull(secondPage.getNext());
+        Assert.assertEquals(4, secondPage.getCount());
+
+        TimeRangePage clamped = getPage("/messages?until=1669950000&before=1669960000:4", TimeRangePage.class);
+        Assert.assertEquals(List.of(2, 1), clamped.getMessages().stream().map(Message::getMessage_id).toList());
+        Assert.assertEquals(2, clamped.getCount());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/{account_id}/messages with since or until, listed and
+     * paged
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the account's messages posted in the range, newest first, counted within the range
+     */
+    @Test
+    public void getAccountMessagesInRange() throws IOException, InterruptedException {
+        Assert.assertEquals(List.of(3), getList("/accounts/1/messages?since=1669947793"));
+        Assert.assertEquals(List.of(4, 2), getList("/accounts/2/messages?since=1669947792&until=1669960000"));
+
+        AccountMessagePage page = getPage("/accounts/2/messages?until=1669955000&limit=1", AccountMessagePage.class);
+        Assert.assertEquals(List.of(new Message(2, 2, "test message 2", 1669950000)), page.getMessages());
+        Assert.assertNull(page.getNext());
+        Assert.assertEquals(1, page.getCount());
+    }
+
+    /**
+     * Posting and deleting messages through the API, then GET localhost:8080/messages?until=1669955000
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the new message in its place by time and without the deleted one
+     */
+    @Test
+    public void getMessagesInRangeAfterChanges() throws IOException, InterruptedException {
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1,\"message_text\":\"in between\",\"time_posted_epoch\":1669951000}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assert.assertEquals(List.of(3, 5, 1), getList("/messages?until=1669955000"));
+        Assert.assertEquals(3, getPage("/messages?until=1669955000&limit=10", TimeRangePage.class).getCount());
+    }
+
+    /**
+     * Sending an http request with a since or until that is not a time_posted_epoch, or a since after until
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesInvalidRange() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send("/messages?since=abc").statusCode());
+        Assert.assertEquals(400, send("/messages?since=1669953600&until=1669950000").statusCode());
+        Assert.assertEquals(400, send("/messages?until=1669953600&before=x").statusCode());
+        Assert.assertEquals(400, send("/accounts/1/messages?until=abc").statusCode());
+        Assert.assertEquals(400, send("/accounts/1/messages?since=5&until=4&limit=10").statusCode());
+    }
+
+    private List<Integer> getList(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(path);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {}).stream()
+                .map(Message::getMessage_id).toList();
+    }
+
+    private <T> T getPage(String path, Class<T> type) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(path);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), type);
+    }
+
+    private HttpResponse<String> send(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Message;
+import Model.MessagePage;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesPageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add two more messages, restart the Javalin app, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        MessageDAO messageDAO = Storage.messageDAO();
+        messageDAO.createMessage(new Message(1, "test message 2", 1669947793));
+        messageDAO.createMessage(new Message(1, "test message 3", 1669947794));
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Walking GET localhost:8080/messages?limit=2 by following the next cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a page of two messages with next 2, then a page of one message with no next
+     */
+    @Test
+    public void getMessagesFollowingCursor() throws IOException, InterruptedException {
+        MessagePage firstPage = getPage("limit=2");
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedFirst.add(new Message(2, 1, "test message 2", 1669947793));
+        Assert.assertEquals(expectedFirst, firstPage.getMessages());
+        Assert.assertEquals(Integer.valueOf(2), firstPage.getNext());
+
+        MessagePage secondPage = getPage("after=2&limit=2");
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(3, 1, "test message 3", 1669947794));
+        Assert.assertEquals(expectedSecond, secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?after=3 past the last message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: an empty page with no next
+     */
+    @Test
+    public void getMessagesPastEnd() throws IOException, InterruptedException {
+        MessagePage page = getPage("after=3");
+        Assert.assertTrue(page.getMessages().isEmpty());
+        Assert.assertNull(page.getNext());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with an invalid limit
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesInvalidLimit() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send("limit=0").statusCode());
+        Assert.assertEquals(400, send("limit=abc").statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages without pagination parameters
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: every message streamed as a JSON array in message_id order
+     */
+    @Test
+    public void getAllMessagesStreamed() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(3, messages.get(2).getMessage_id());
+    }
+
+    private MessagePage getPage(String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(query);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), MessagePage.class);
+    }
+
+    private HttpResponse<String> send(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages" + (query.isEmpty() ? "" : "?" + query)))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.Storage;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add a message before the app starts so it must be indexed at startup,
+     * restart the Javalin app, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        Storage.messageDAO().createMessage(new Message(1, "another test, with punctuation", 1669947793));
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=TEST
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: both messages in the database, newest first
+     */
+    @Test
+    public void searchFindsMessagesIndexedAtStartup() throws IOException, InterruptedException {
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(2, 1, "another test, with punctuation", 1669947793));
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        Assert.assertEquals(expected, search("TEST"));
+        Assert.assertEquals(expected.subList(0, 1), search("test&limit=1"));
+    }
+
+    /**
+     * Created, updated and deleted messages are reflected in the next search, and phrases must match in order.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages matching the current text
+     */
+    @Test
+    public void searchFollowsChanges() throws IOException, InterruptedException {
+        send("POST", "/messages", "{\"posted_by\":1,\"message_text\":\"hello big world\",\"time_posted_epoch\":1}");
+        send("PATCH", "/messages/1", "{\"message_text\":\"goodbye world\"}");
+        send("DELETE", "/messages/2", "");
+
+        Assert.assertEquals(List.of(), search("test"));
+        Assert.assertEquals(List.of(new Message(1, 1, "goodbye world", 1669947792)), search("goodbye"));
+        Assert.assertEquals(2, search("world").size());
+        Assert.assertEquals(List.of(new Message(3, 1, "hello big world", 1)), search("\"big world\""));
+        Assert.assertEquals(List.of(), search("\"world big\""));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search without a query
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchRequiresAQuery() throws IOException, InterruptedException {
+        Assert.assertEquals(400, send("GET", "/messages/search", "").statusCode());
+        Assert.assertEquals(400, send("GET", "/messages/search?q=%20", "").statusCode());
+        Assert.assertEquals(400, send("GET", "/messages/search?q=test&limit=0", "").statusCode());
+    }
+
+    private List<Message> search(String query) throws IOException, InterruptedException {
+        String[] parts = query.split("&", 2);
+        String path = "/messages/search?q=" + URLEncoder.encode(parts[0], StandardCharsets.UTF_8)
+                + (parts.length > 1 ? "&" + parts[1] : "");
+        HttpResponse<String> response = send("GET", path, "");
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.Storage;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class StreamFailureTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    /**
+     * Set once the app has started, after which the DAO fails as a broken database would.
+     */
+    volatile boolean failing;
+    /**
+     * Set to have the DAO find none of the messages it is asked for, as if they had all just been deleted.
+     */
+    volatile boolean deletedMeanwhile;
+
+    /**
+     * Before every test, reset the database, add a second message, restart the Javalin app on a message DAO that
+     * fails when told to, and create a new webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        MessageDAO messageDAO = Storage.messageDAO();
+        messageDAO.createMessage(new Message(1, "test message 2", 1669947793));
+        socialMediaController = new SocialMediaController(failingDAO(messageDAO));
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+        failing = true;
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Reading every message fails after the first one while GET localhost:8080/messages streams them
+     *
+     * Expected Response:
+     *  The response is cut off rather than ending as a well-formed, truncated JSON array
+     */
+    @Test
+    public void getAllMessagesFailingPartWay() throws InterruptedException {
+        assertCutOff("/messages");
+    }
+
+    /**
+     * Reading every message fails after the first one while GET localhost:8080/messages/export streams them
+     *
+     * Expected Response:
+     *  The response is cut off rather than ending after the first line as if that were every message
+     */
+    @Test
+    public void exportMessagesFailingPartWay() throws InterruptedException {
+        assertCutOff("/messages/export");
+    }
+
+    /**
+     * Reading the messages fails while GET localhost:8080/messages?since=0 streams them from the time index
+     *
+     * Expected Response:
+     *  The response is cut off rather than ending as a well-formed, empty JSON array
+     */
+    @Test
+    public void getMessagesInRangeFailing() throws InterruptedException {
+        assertCutOff("/messages?since=0");
+    }
+
+    /**
+     * Every message found in the time index is deleted before it is read while GET localhost:8080/messages?since=0
+     * streams them
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: an empty JSON array, as the deleted messages are left out
+     */
+    @Test
+    public void getMessagesInRangeDeletedMeanwhile() throws IOException, InterruptedException {
+        failing = false;
+        deletedMeanwhile = true;
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?since=0"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("[]", response.body());
+    }
+
+    /**
+     * A DAO over the real one whose forEachMessage, once failing, streams the first message and then reports that
+     * reading the rest failed, and whose getVersionedMessages reports a failure or finds nothing when told to.
+     */
+    private MessageDAO failingDAO(MessageDAO delegate) {
+        return (MessageDAO) Proxy.newProxyInstance(MessageDAO.class.getClassLoader(), new Class<?>[]{MessageDAO.class},
+                (proxy, method, args) -> {
+                    if (failing && method.getName().equals("forEachMessage")) {
+                        List<Message> messages = delegate.getAllMessages();
+                        ((MessageDAO.MessageConsumer) args[0]).accept(messages.get(0));
+                        return false;
+                    }
+                    if (method.getName().equals("getVersionedMessages")) {
+                        if (failing)
+                            return null;
+                        if (deletedMeanwhile)
+                            return List.of();
+                    }
+                    try {
+                        return method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void assertCutOff(String path) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        try {
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.fail("the response ended cleanly with " + response.statusCode() + ": " + response.body());
+        } catch (IOException expected) {
+            // The connection was dropped before the body was finished.
+        }
+    }
+}